@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.internal.io;
+
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Utilities for working with memory-mapped regions of files.
+ */
+public abstract class MappedByteBuffers {
+    private MappedByteBuffers() {
+    }
+
+    /**
+     * Releases the given mapped region straight away, rather than waiting for it to be garbage collected. This bounds the address space used when a
+     * file is mapped region by region, and allows the file to be truncated or deleted on platforms which prevent this while a region is mapped.
+     * Does nothing where this is not supported. The region must not be used after it has been released.
+     */
+    public static void unmap(MappedByteBuffer region) {
+        if (region == null) {
+            return;
+        }
+        try {
+            Method cleanerMethod = region.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(region);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // Ignore, the region is released when it is garbage collected
+        }
+    }
+}
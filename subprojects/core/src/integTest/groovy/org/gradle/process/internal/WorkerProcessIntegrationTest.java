@@ -75,7 +75,8 @@ public class WorkerProcessIntegrationTest {
     private final CacheRepository cacheRepository = new DefaultCacheRepository(scopeMapping, factory);
     private final ModuleRegistry moduleRegistry = new DefaultModuleRegistry();
     private final ClassPathRegistry classPathRegistry = new DefaultClassPathRegistry(new DefaultClassPathProvider(moduleRegistry), new WorkerProcessClassPathProvider(cacheRepository, moduleRegistry));
-    private final DefaultWorkerProcessFactory workerFactory = new DefaultWorkerProcessFactory(LogLevel.INFO, server, classPathRegistry, TestFiles.resolver(tmpDir.getTestDirectory()), new LongIdGenerator());
+    private final WorkerProcessPool workerProcessPool = new WorkerProcessPool();
+    private final DefaultWorkerProcessFactory workerFactory = new DefaultWorkerProcessFactory(LogLevel.INFO, server, classPathRegistry, TestFiles.resolver(tmpDir.getTestDirectory()), new LongIdGenerator(), workerProcessPool);
     private final ListenerBroadcast<TestListenerInterface> broadcast = new ListenerBroadcast<TestListenerInterface>(TestListenerInterface.class);
     private final RemoteExceptionListener exceptionListener = new RemoteExceptionListener(broadcast.getSource());
 
@@ -86,6 +87,7 @@ public class WorkerProcessIntegrationTest {
 
     @After
     public void tearDown() {
+        workerProcessPool.stop();
         messagingServices.stop();
     }
 
@@ -168,6 +170,39 @@ public class WorkerProcessIntegrationTest {
         execute(worker(Actions.doNothing()).jvmArgs("--broken").expectStartFailure());
     }
 
+    @Test
+    public void reusableWorkerProcessesRunInTheSameJvm() throws Throwable {
+        context.checking(new Expectations() {{
+            exactly(2).of(listenerMock).send("message 1", 1);
+            exactly(2).of(listenerMock).send("message 2", 2);
+        }});
+
+        executeInSequence(worker(new RemoteProcess()).reusable(), worker(new RemoteProcess()).reusable());
+
+        assertThat(workerProcessPool.getStatistics().getStarted(), equalTo(1));
+        assertThat(workerProcessPool.getStatistics().getReused(), equalTo(1));
+    }
+
+    @Test
+    public void doesNotReuseWorkerProcessWhoseActionThrowsException() throws Throwable {
+        context.checking(new Expectations() {{
+            one(listenerMock).send("message 1", 1);
+            one(listenerMock).send("message 2", 2);
+        }});
+
+        executeInSequence(worker(new BrokenRemoteProcess()).reusable().expectStopFailure(), worker(new RemoteProcess()).reusable());
+
+        assertThat(workerProcessPool.getStatistics().getStarted(), equalTo(2));
+        assertThat(workerProcessPool.getStatistics().getReused(), equalTo(0));
+    }
+
+    @Test
+    public void doesNotReuseWorkerProcessWithDifferentJvmOptions() throws Throwable {
+        executeInSequence(worker(Actions.doNothing()).reusable(), worker(Actions.doNothing()).reusable().jvmArgs("-Dother=value"));
+
+        assertThat(workerProcessPool.getStatistics().getStarted(), equalTo(2));
+    }
+
     private ChildProcess worker(Action<? super WorkerProcessContext> action) {
         return new ChildProcess(action);
     }
@@ -183,9 +218,19 @@ public class WorkerProcessIntegrationTest {
         exceptionListener.rethrow();
     }
 
+    void executeInSequence(ChildProcess... processes) throws Throwable {
+        for (ChildProcess process : processes) {
+            process.start();
+            process.waitForStop();
+        }
+        messagingServices.stop();
+        exceptionListener.rethrow();
+    }
+
     private class ChildProcess {
         private boolean stopFails;
         private boolean startFails;
+        private boolean reusable;
         private WorkerProcess proc;
         private Action<? super WorkerProcessContext> action;
         private List<String> jvmArgs = Collections.emptyList();
@@ -212,6 +257,7 @@ public class WorkerProcessIntegrationTest {
             builder.getJavaCommand().systemProperty("test.system.property", "value");
             builder.getJavaCommand().environment("TEST_ENV_VAR", "value");
             builder.worker(action);
+            builder.setReusable(reusable);
 
             builder.getJavaCommand().jvmArgs(jvmArgs);
 
@@ -247,6 +293,11 @@ public class WorkerProcessIntegrationTest {
             return this;
         }
 
+        public ChildProcess reusable() {
+            reusable = true;
+            return this;
+        }
+
         public ChildProcess jvmArgs(String... jvmArgs) {
             this.jvmArgs = Arrays.asList(jvmArgs);
             return this;
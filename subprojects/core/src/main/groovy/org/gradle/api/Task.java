@@ -141,6 +141,8 @@ import java.util.Set;
  * In parallel mode, the tasks of different projects (i.e. in a multi project build) are able to be executed in parallel.
  * If a task is annotated with {@link org.gradle.api.tasks.ParallelizableTask}, it may also be executed in parallel with other tasks of the same project.
  * See {@link org.gradle.api.tasks.ParallelizableTask} for more details on writing parallelizable tasks.
+ * A task which declares the shared resources it uses by calling {@link #usesSharedResources(String...)} may also be executed in parallel with other tasks
+ * of the same project, regardless of its type and actions.
  */
 public interface Task extends Comparable<Task>, ExtensionAware {
     public static final String TASK_NAME = "name";
@@ -695,5 +697,34 @@ public interface Task extends Comparable<Task>, ExtensionAware {
      */
     @Incubating
     TaskDependency getShouldRunAfter();
+
+    /**
+     * <p>Declares the shared resources that this task uses when it executes, such as a database, a server, or a directory which is not one of the
+     * outputs of the task. When the build is executed in parallel, two tasks which use the same shared resource are never executed at the same time.</p>
+     *
+     * <pre autoTested="true">
+     * task generateSchema {
+     *     usesSharedResources "database"
+     * }
+     * </pre>
+     *
+     * <p>By declaring its shared resources, even if it uses none, a task also declares that its actions, including any custom actions, do not interfere with
+     * other tasks in any other way. Such a task may be executed in parallel with other tasks of the same project, provided these do not use the same shared
+     * resources and do not have overlapping outputs.</p>
+     *
+     * @param resources The names of the shared resources used by this task.
+     *
+     * @return the task object this method is applied to
+     */
+    @Incubating
+    Task usesSharedResources(String... resources);
+
+    /**
+     * <p>Returns the names of the shared resources that this task uses when it executes.</p>
+     *
+     * @return The shared resources. Returns an empty set if this task has not declared any shared resources.
+     */
+    @Incubating
+    Set<String> getSharedResources();
 }
 
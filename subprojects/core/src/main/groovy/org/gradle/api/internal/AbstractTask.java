@@ -49,10 +49,7 @@ import javax.inject.Inject;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.Callable;
 
 public abstract class AbstractTask implements TaskInternal, DynamicObjectAware {
@@ -97,6 +94,8 @@ public abstract class AbstractTask implements TaskInternal, DynamicObjectAware {
     private boolean impliesSubProjects;
     private boolean hasCustomActions;
 
+    private Set<String> sharedResources;
+
     protected AbstractTask() {
         this(taskInfo());
     }
@@ -748,4 +747,24 @@ public abstract class AbstractTask implements TaskInternal, DynamicObjectAware {
     public boolean isHasCustomActions() {
         return hasCustomActions;
     }
+
+    public Task usesSharedResources(final String... resources) {
+        taskMutator.mutate("Task.usesSharedResources(String...)", new Runnable() {
+            public void run() {
+                if (sharedResources == null) {
+                    sharedResources = new LinkedHashSet<String>();
+                }
+                sharedResources.addAll(Arrays.asList(resources));
+            }
+        });
+        return this;
+    }
+
+    public Set<String> getSharedResources() {
+        return sharedResources == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(sharedResources);
+    }
+
+    public boolean isSharedResourcesDeclared() {
+        return sharedResources != null;
+    }
 }
@@ -72,4 +72,9 @@ public interface TaskInternal extends Task, Configurable<Task> {
     void appendParallelSafeAction(Action<? super Task> action);
 
     boolean isHasCustomActions();
+
+    /**
+     * Returns true if this task has declared the shared resources it uses, even if it uses none.
+     */
+    boolean isSharedResourcesDeclared();
 }
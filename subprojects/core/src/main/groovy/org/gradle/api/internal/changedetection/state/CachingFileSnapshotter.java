@@ -27,42 +27,107 @@ import java.io.File;
 public class CachingFileSnapshotter implements FileSnapshotter {
     private final PersistentIndexedCache<File, FileInfo> cache;
     private final Hasher hasher;
+    private final String algorithm;
     private final FileInfoSerializer serializer = new FileInfoSerializer();
+    private final FileStateCache fileStateCache;
 
     public CachingFileSnapshotter(Hasher hasher, PersistentStore store) {
+        this(hasher, store, new NoOpFileStateCache());
+    }
+
+    public CachingFileSnapshotter(Hasher hasher, PersistentStore store, FileStateCache fileStateCache) {
         this.hasher = hasher;
+        this.algorithm = hasher.getAlgorithm();
         this.cache = store.createCache("fileHashes", File.class, serializer);
+        this.fileStateCache = fileStateCache;
     }
 
     public FileInfo snapshot(File file) {
-        FileInfo info = cache.get(file);
-
         long length = file.length();
         long timestamp = file.lastModified();
-        if (info != null && length == info.length && timestamp == info.timestamp) {
+        FileInfo unchanged = getUnchanged(file, length, timestamp);
+        if (unchanged != null) {
+            return unchanged;
+        }
+
+        FileInfo info = getCached(file, length, timestamp);
+        if (info != null) {
             return info;
         }
 
-        byte[] hash = hasher.hash(file);
-        info = new FileInfo(hash, length, timestamp);
-        cache.put(file, info);
+        info = hash(file, length, timestamp);
+        cache(file, info);
         return info;
     }
 
+    /**
+     * Returns the in-memory snapshot of the given file, if there is one and it is still valid for the given length and timestamp. Does not require the cache
+     * lock, and may be called concurrently.
+     *
+     * @return The snapshot, or null if the file may have changed.
+     */
+    FileInfo getUnchanged(File file, long length, long timestamp) {
+        FileInfo info = fileStateCache.get(file);
+        if (info != null && length == info.length && timestamp == info.timestamp && algorithm.equals(info.algorithm)) {
+            return info;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the cached snapshot of the given file, if it is still valid for the given length and timestamp and was created using the current hash
+     * algorithm. Must be called while holding the cache lock.
+     *
+     * @return The cached snapshot, or null if there is no valid cached snapshot.
+     */
+    FileInfo getCached(File file, long length, long timestamp) {
+        FileInfo info = cache.get(file);
+        if (info != null && length == info.length && timestamp == info.timestamp && algorithm.equals(info.algorithm)) {
+            fileStateCache.put(file, info);
+            return info;
+        }
+        return null;
+    }
+
+    /**
+     * Calculates a new snapshot of the given file, without consulting or updating the cache. Does not require the cache lock, and may be called concurrently.
+     */
+    FileInfo hash(File file, long length, long timestamp) {
+        return new FileInfo(hasher.hash(file), length, timestamp, algorithm);
+    }
+
+    /**
+     * Stores the given snapshot in the cache. Must be called while holding the cache lock.
+     */
+    void cache(File file, FileInfo info) {
+        cache.put(file, info);
+        fileStateCache.put(file, info);
+    }
+
     public static class FileInfo implements FileSnapshot {
         private final byte[] hash;
         private final long timestamp;
         private final long length;
+        private final String algorithm;
 
-        public FileInfo(byte[] hash, long length, long timestamp) {
+        public FileInfo(byte[] hash, long length, long timestamp, String algorithm) {
             this.hash = hash;
             this.length = length;
             this.timestamp = timestamp;
+            this.algorithm = algorithm;
         }
 
         public byte[] getHash() {
             return hash;
         }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
     }
 
     private static class FileInfoSerializer implements Serializer<FileInfo> {
@@ -70,13 +135,15 @@ public class CachingFileSnapshotter implements FileSnapshotter {
             byte[] hash = decoder.readBinary();
             long timestamp = decoder.readLong();
             long length = decoder.readLong();
-            return new FileInfo(hash, length, timestamp);
+            String algorithm = decoder.readString();
+            return new FileInfo(hash, length, timestamp, algorithm);
         }
 
         public void write(Encoder encoder, FileInfo value) throws Exception {
             encoder.writeBinary(value.hash);
             encoder.writeLong(value.timestamp);
             encoder.writeLong(value.length);
+            encoder.writeString(value.algorithm);
         }
     }
 }
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.internal.changedetection.state.DefaultFileCollectionSnapshotter.DirSnapshot;
+import org.gradle.api.internal.changedetection.state.DefaultFileCollectionSnapshotter.FileHashSnapshot;
+import org.gradle.api.internal.changedetection.state.DefaultFileCollectionSnapshotter.IncrementalFileSnapshot;
+import org.gradle.api.internal.changedetection.state.DefaultFileCollectionSnapshotter.MissingFileSnapshot;
+
+import java.util.*;
+
+/**
+ * An immutable map from absolute file path to file snapshot, which uses far less heap than a {@link HashMap} of the same content.
+ *
+ * <ul>
+ *     <li>Each entry's path is split into its parent directory and its name. Each distinct parent directory is stored only once and shared by all of its entries.</li>
+ *     <li>The kind of each entry is held in a byte array and the file hashes in a single byte array, rather than as an object per entry.</li>
+ *     <li>Entries are ordered by path, so that lookups use a binary search and two maps can be compared by merging them.</li>
+ * </ul>
+ *
+ * Snapshot objects are created on demand when entries are queried. Directories and missing files are represented by shared instances.
+ */
+class CompactFileSnapshotMap extends AbstractMap<String, IncrementalFileSnapshot> {
+    static final byte DIR = 1;
+    static final byte MISSING = 2;
+    static final byte FILE = 3;
+
+    private static final CompactFileSnapshotMap EMPTY = new CompactFileSnapshotMap(new String[0], new int[0], new String[0], new byte[0], new int[1], new byte[0]);
+
+    private final String[] directories;
+    private final int[] directoryIndexes;
+    private final String[] names;
+    private final byte[] kinds;
+    // The hash of entry i is hashes[hashOffsets[i]..hashOffsets[i + 1]]. The range is empty for directories and missing files
+    private final int[] hashOffsets;
+    private final byte[] hashes;
+
+    /**
+     * Creates a map from its stored form. Entries must be in path order.
+     *
+     * @param directories The distinct parent directories. Each directory ends with a separator, apart from the empty directory used for paths without a separator.
+     * @param directoryIndexes For each entry, the index of its parent directory.
+     * @param names For each entry, the portion of its path following its parent directory.
+     * @param kinds For each entry, one of {@link #DIR}, {@link #MISSING} or {@link #FILE}.
+     * @param hashOffsets For each entry, the start of its hash. Contains one more element than there are entries.
+     * @param hashes The concatenated hashes of all entries.
+     */
+    CompactFileSnapshotMap(String[] directories, int[] directoryIndexes, String[] names, byte[] kinds, int[] hashOffsets, byte[] hashes) {
+        this.directories = directories;
+        this.directoryIndexes = directoryIndexes;
+        this.names = names;
+        this.kinds = kinds;
+        this.hashOffsets = hashOffsets;
+        this.hashes = hashes;
+    }
+
+    static CompactFileSnapshotMap of(Map<String, ? extends IncrementalFileSnapshot> snapshots) {
+        if (snapshots instanceof CompactFileSnapshotMap) {
+            return (CompactFileSnapshotMap) snapshots;
+        }
+        if (snapshots.isEmpty()) {
+            return EMPTY;
+        }
+
+        String[] paths = snapshots.keySet().toArray(new String[snapshots.size()]);
+        Arrays.sort(paths);
+
+        int count = paths.length;
+        Map<String, Integer> directoryLookup = new HashMap<String, Integer>();
+        List<String> directories = new ArrayList<String>();
+        int[] directoryIndexes = new int[count];
+        String[] names = new String[count];
+        byte[] kinds = new byte[count];
+        int[] hashOffsets = new int[count + 1];
+        int hashesSize = 0;
+        for (int i = 0; i < count; i++) {
+            String path = paths[i];
+            int nameStart = nameStart(path);
+            String directory = path.substring(0, nameStart);
+            Integer directoryIndex = directoryLookup.get(directory);
+            if (directoryIndex == null) {
+                // Copy the substrings, so that they do not retain the full path on JVMs where substrings share their parent's characters
+                directory = new String(directory);
+                directoryIndex = directories.size();
+                directories.add(directory);
+                directoryLookup.put(directory, directoryIndex);
+            }
+            directoryIndexes[i] = directoryIndex;
+            names[i] = new String(path.substring(nameStart));
+
+            IncrementalFileSnapshot snapshot = snapshots.get(path);
+            hashOffsets[i] = hashesSize;
+            if (snapshot instanceof FileHashSnapshot) {
+                kinds[i] = FILE;
+                hashesSize += ((FileHashSnapshot) snapshot).hash.length;
+            } else if (snapshot instanceof DirSnapshot) {
+                kinds[i] = DIR;
+            } else if (snapshot instanceof MissingFileSnapshot) {
+                kinds[i] = MISSING;
+            } else {
+                throw new IllegalArgumentException(String.format("Unexpected snapshot type %s for file %s.", snapshot, path));
+            }
+        }
+        hashOffsets[count] = hashesSize;
+
+        byte[] hashes = new byte[hashesSize];
+        for (int i = 0; i < count; i++) {
+            if (kinds[i] == FILE) {
+                byte[] hash = ((FileHashSnapshot) snapshots.get(paths[i])).hash;
+                System.arraycopy(hash, 0, hashes, hashOffsets[i], hash.length);
+            }
+        }
+
+        return new CompactFileSnapshotMap(directories.toArray(new String[directories.size()]), directoryIndexes, names, kinds, hashOffsets, hashes);
+    }
+
+    static int nameStart(String path) {
+        return Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+    }
+
+    String[] getDirectories() {
+        return directories;
+    }
+
+    int getDirectoryIndex(int index) {
+        return directoryIndexes[index];
+    }
+
+    String getName(int index) {
+        return names[index];
+    }
+
+    byte getKind(int index) {
+        return kinds[index];
+    }
+
+    byte[] getHash(int index) {
+        return Arrays.copyOfRange(hashes, hashOffsets[index], hashOffsets[index + 1]);
+    }
+
+    int getHashLength(int index) {
+        return hashOffsets[index + 1] - hashOffsets[index];
+    }
+
+    /**
+     * Returns the concatenated hashes of all entries. The returned array must not be modified.
+     */
+    byte[] getHashes() {
+        return hashes;
+    }
+
+    String getPath(int index) {
+        return directories[directoryIndexes[index]].concat(names[index]);
+    }
+
+    IncrementalFileSnapshot getSnapshot(int index) {
+        switch (kinds[index]) {
+            case DIR:
+                return DirSnapshot.INSTANCE;
+            case MISSING:
+                return MissingFileSnapshot.INSTANCE;
+            default:
+                return new FileHashSnapshot(getHash(index));
+        }
+    }
+
+    Entry<String, IncrementalFileSnapshot> getEntry(int index) {
+        return new SimpleImmutableEntry<String, IncrementalFileSnapshot>(getPath(index), getSnapshot(index));
+    }
+
+    /**
+     * Returns the index of the entry with the given path, or a negative value when there is no such entry.
+     */
+    int indexOf(String path) {
+        int low = 0;
+        int high = kinds.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int diff = compare(mid, path);
+            if (diff < 0) {
+                low = mid + 1;
+            } else if (diff > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the path of the given entry with the given path, using the same ordering as {@link String#compareTo(String)} but without building the entry's path.
+     */
+    int compare(int index, String path) {
+        String directory = directories[directoryIndexes[index]];
+        String name = names[index];
+        int length = directory.length() + name.length();
+        int commonLength = Math.min(length, path.length());
+        for (int i = 0; i < commonLength; i++) {
+            int diff = charAt(directory, name, i) - path.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - path.length();
+    }
+
+    /**
+     * Compares the path of the given entry with the path of an entry of the given map, using the same ordering as {@link String#compareTo(String)} but without
+     * building either path.
+     */
+    int compare(int index, CompactFileSnapshotMap other, int otherIndex) {
+        String directory = directories[directoryIndexes[index]];
+        String otherDirectory = other.directories[other.directoryIndexes[otherIndex]];
+        String name = names[index];
+        String otherName = other.names[otherIndex];
+        if (directory.equals(otherDirectory)) {
+            return name.compareTo(otherName);
+        }
+        int length = directory.length() + name.length();
+        int otherLength = otherDirectory.length() + otherName.length();
+        int commonLength = Math.min(length, otherLength);
+        for (int i = 0; i < commonLength; i++) {
+            int diff = charAt(directory, name, i) - charAt(otherDirectory, otherName, i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - otherLength;
+    }
+
+    private static char charAt(String directory, String name, int index) {
+        int directoryLength = directory.length();
+        return index < directoryLength ? directory.charAt(index) : name.charAt(index - directoryLength);
+    }
+
+    /**
+     * Returns true when the given entry has the same kind and hash as an entry of the given map.
+     */
+    boolean isUpToDate(int index, CompactFileSnapshotMap other, int otherIndex) {
+        byte kind = kinds[index];
+        if (kind != other.kinds[otherIndex]) {
+            return false;
+        }
+        if (kind != FILE) {
+            return true;
+        }
+        int start = hashOffsets[index];
+        int length = hashOffsets[index + 1] - start;
+        int otherStart = other.hashOffsets[otherIndex];
+        if (length != other.hashOffsets[otherIndex + 1] - otherStart) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (hashes[start + i] != other.hashes[otherStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return kinds.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Override
+    public IncrementalFileSnapshot get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int index = indexOf((String) key);
+        return index < 0 ? null : getSnapshot(index);
+    }
+
+    @Override
+    public Set<Entry<String, IncrementalFileSnapshot>> entrySet() {
+        return new AbstractSet<Entry<String, IncrementalFileSnapshot>>() {
+            @Override
+            public Iterator<Entry<String, IncrementalFileSnapshot>> iterator() {
+                return new Iterator<Entry<String, IncrementalFileSnapshot>>() {
+                    private int next;
+
+                    public boolean hasNext() {
+                        return next < kinds.length;
+                    }
+
+                    public Entry<String, IncrementalFileSnapshot> next() {
+                        if (next >= kinds.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return getEntry(next++);
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return kinds.length;
+            }
+        };
+    }
+}
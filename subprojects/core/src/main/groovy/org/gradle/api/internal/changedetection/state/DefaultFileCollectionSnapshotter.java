@@ -27,12 +27,26 @@ import java.math.BigInteger;
 import java.util.*;
 
 public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshotter {
+    /**
+     * The minimum number of files in a collection before it is snapshotted in parallel, when parallel snapshotting is enabled.
+     */
+    static final int PARALLEL_SNAPSHOT_THRESHOLD = 100;
+
     private final FileSnapshotter snapshotter;
     private TaskArtifactStateCacheAccess cacheAccess;
+    private final ParallelFileSnapshotter parallelSnapshotter;
 
     public DefaultFileCollectionSnapshotter(FileSnapshotter snapshotter, TaskArtifactStateCacheAccess cacheAccess) {
+        this(snapshotter, cacheAccess, null);
+    }
+
+    /**
+     * @param parallelSnapshotter The snapshotter to use for large collections, or null to snapshot all collections serially.
+     */
+    public DefaultFileCollectionSnapshotter(FileSnapshotter snapshotter, TaskArtifactStateCacheAccess cacheAccess, ParallelFileSnapshotter parallelSnapshotter) {
         this.snapshotter = snapshotter;
         this.cacheAccess = cacheAccess;
+        this.parallelSnapshotter = parallelSnapshotter;
     }
 
     public void registerSerializers(SerializerRegistry<FileCollectionSnapshot> registry) {
@@ -48,6 +62,9 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
         if (files.isEmpty()) {
             return new FileCollectionSnapshotImpl(Collections.<String, IncrementalFileSnapshot>emptyMap());
         }
+        if (parallelSnapshotter != null && files.size() >= PARALLEL_SNAPSHOT_THRESHOLD) {
+            return new FileCollectionSnapshotImpl(parallelSnapshotter.snapshot(files));
+        }
         final Map<String, IncrementalFileSnapshot> snapshots = new HashMap<String, IncrementalFileSnapshot>();
         cacheAccess.useCache("Create file snapshot", new Runnable() {
             public void run() {
@@ -55,9 +72,9 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
                     if (file.isFile()) {
                         snapshots.put(file.getAbsolutePath(), new FileHashSnapshot(snapshotter.snapshot(file).getHash()));
                     } else if (file.isDirectory()) {
-                        snapshots.put(file.getAbsolutePath(), new DirSnapshot());
+                        snapshots.put(file.getAbsolutePath(), DirSnapshot.INSTANCE);
                     } else {
-                        snapshots.put(file.getAbsolutePath(), new MissingFileSnapshot());
+                        snapshots.put(file.getAbsolutePath(), MissingFileSnapshot.INSTANCE);
                     }
                 }
             }
@@ -96,29 +113,39 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
     }
 
     static class DirSnapshot implements IncrementalFileSnapshot {
+        static final DirSnapshot INSTANCE = new DirSnapshot();
+
+        private DirSnapshot() {
+        }
+
         public boolean isUpToDate(IncrementalFileSnapshot snapshot) {
             return snapshot instanceof DirSnapshot;
         }
     }
 
     static class MissingFileSnapshot implements IncrementalFileSnapshot {
+        static final MissingFileSnapshot INSTANCE = new MissingFileSnapshot();
+
+        private MissingFileSnapshot() {
+        }
+
         public boolean isUpToDate(IncrementalFileSnapshot snapshot) {
             return snapshot instanceof MissingFileSnapshot;
         }
     }
 
     static class FileCollectionSnapshotImpl implements FileCollectionSnapshot {
-        final Map<String, IncrementalFileSnapshot> snapshots;
+        final CompactFileSnapshotMap snapshots;
 
         public FileCollectionSnapshotImpl(Map<String, IncrementalFileSnapshot> snapshots) {
-            this.snapshots = snapshots;
+            this.snapshots = CompactFileSnapshotMap.of(snapshots);
         }
 
         public FileCollection getFiles() {
             List<File> files = new ArrayList<File>();
-            for (Map.Entry<String, IncrementalFileSnapshot> entry : snapshots.entrySet()) {
-                if (entry.getValue() instanceof FileHashSnapshot) {
-                    files.add(new File(entry.getKey()));
+            for (int i = 0; i < snapshots.size(); i++) {
+                if (snapshots.getKind(i) == CompactFileSnapshotMap.FILE) {
+                    files.add(new File(snapshots.getPath(i)));
                 }
             }
             return new SimpleFileCollection(files);
@@ -136,38 +163,36 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
             };
         }
 
+        /**
+         * Merges the entries of both snapshots in path order, so that no copy of either snapshot is required. Changes are found lazily, so that a caller
+         * which only needs to know whether anything has changed stops at the first change.
+         */
         public ChangeIterator<String> iterateChangesSince(FileCollectionSnapshot oldSnapshot) {
-            FileCollectionSnapshotImpl other = (FileCollectionSnapshotImpl) oldSnapshot;
-            final Map<String, IncrementalFileSnapshot> otherSnapshots = new HashMap<String, IncrementalFileSnapshot>(other.snapshots);
-            final Iterator<String> currentFiles = snapshots.keySet().iterator();
+            final CompactFileSnapshotMap oldSnapshots = ((FileCollectionSnapshotImpl) oldSnapshot).snapshots;
 
             return new ChangeIterator<String>() {
-                private Iterator<String> removedFiles;
+                private int current;
+                private int previous;
 
                 public boolean next(ChangeListener<String> listener) {
-                    while (currentFiles.hasNext()) {
-                        String currentFile = currentFiles.next();
-                        IncrementalFileSnapshot otherFile = otherSnapshots.remove(currentFile);
-
-                        if (otherFile == null) {
-                            listener.added(currentFile);
+                    while (current < snapshots.size() || previous < oldSnapshots.size()) {
+                        int diff = compare(snapshots, current, oldSnapshots, previous);
+                        if (diff < 0) {
+                            listener.added(snapshots.getPath(current++));
                             return true;
-                        } else if (!snapshots.get(currentFile).isUpToDate(otherFile)) {
-                            listener.changed(currentFile);
+                        }
+                        if (diff > 0) {
+                            listener.removed(oldSnapshots.getPath(previous++));
+                            return true;
+                        }
+                        boolean upToDate = snapshots.isUpToDate(current, oldSnapshots, previous);
+                        current++;
+                        previous++;
+                        if (!upToDate) {
+                            listener.changed(snapshots.getPath(current - 1));
                             return true;
                         }
                     }
-
-                    // Create a single iterator to use for all of the removed files
-                    if (removedFiles == null) {
-                        removedFiles = otherSnapshots.keySet().iterator();
-                    }
-
-                    if (removedFiles.hasNext()) {
-                        listener.removed(removedFiles.next());
-                        return true;
-                    }
-
                     return false;
                 }
             };
@@ -189,20 +214,37 @@ public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshott
             };
         }
 
-        private void diff(Map<String, IncrementalFileSnapshot> snapshots, Map<String, IncrementalFileSnapshot> oldSnapshots,
+        private void diff(CompactFileSnapshotMap snapshots, CompactFileSnapshotMap oldSnapshots,
                           ChangeListener<Map.Entry<String, IncrementalFileSnapshot>> listener) {
-            Map<String, IncrementalFileSnapshot> otherSnapshots = new HashMap<String, IncrementalFileSnapshot>(oldSnapshots);
-            for (Map.Entry<String, IncrementalFileSnapshot> entry : snapshots.entrySet()) {
-                IncrementalFileSnapshot otherFile = otherSnapshots.remove(entry.getKey());
-                if (otherFile == null) {
-                    listener.added(entry);
-                } else if (!entry.getValue().isUpToDate(otherFile)) {
-                    listener.changed(entry);
+            int current = 0;
+            int previous = 0;
+            while (current < snapshots.size() || previous < oldSnapshots.size()) {
+                int diff = compare(snapshots, current, oldSnapshots, previous);
+                if (diff < 0) {
+                    listener.added(snapshots.getEntry(current++));
+                } else if (diff > 0) {
+                    listener.removed(oldSnapshots.getEntry(previous++));
+                } else {
+                    if (!snapshots.isUpToDate(current, oldSnapshots, previous)) {
+                        listener.changed(snapshots.getEntry(current));
+                    }
+                    current++;
+                    previous++;
                 }
             }
-            for (Map.Entry<String, IncrementalFileSnapshot> entry : otherSnapshots.entrySet()) {
-                listener.removed(entry);
+        }
+
+        /**
+         * Compares the entry at the given position of each snapshot. A position past the end of its snapshot sorts after every entry of the other snapshot.
+         */
+        private static int compare(CompactFileSnapshotMap snapshots, int current, CompactFileSnapshotMap oldSnapshots, int previous) {
+            if (current == snapshots.size()) {
+                return 1;
+            }
+            if (previous == oldSnapshots.size()) {
+                return -1;
             }
+            return snapshots.compare(current, oldSnapshots, previous);
         }
 
     }
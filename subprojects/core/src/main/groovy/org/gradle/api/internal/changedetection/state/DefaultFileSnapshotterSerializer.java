@@ -20,48 +20,81 @@ import org.gradle.messaging.serialize.Decoder;
 import org.gradle.messaging.serialize.Encoder;
 import org.gradle.messaging.serialize.Serializer;
 
-import java.util.HashMap;
-import java.util.Map;
-
+/**
+ * Writes a file collection snapshot in the same shape as it is held in memory by {@link CompactFileSnapshotMap}. Each parent directory is written once,
+ * encoded as the length of the prefix it shares with the previous directory followed by the remainder of its path, and each entry refers to its
+ * parent directory by index. The hashes of all files are written as a single block.
+ */
 class DefaultFileSnapshotterSerializer implements Serializer<DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl> {
     public DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl read(Decoder decoder) throws Exception {
-        Map<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot> snapshots = new HashMap<String, DefaultFileCollectionSnapshotter.IncrementalFileSnapshot>();
-        DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl snapshot = new DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl(snapshots);
+        int directoriesCount = decoder.readSmallInt();
+        String[] directories = new String[directoriesCount];
+        String previous = "";
+        for (int i = 0; i < directoriesCount; i++) {
+            int prefixLength = decoder.readSmallInt();
+            String directory = previous.substring(0, prefixLength).concat(decoder.readString());
+            directories[i] = directory;
+            previous = directory;
+        }
+
         int snapshotsCount = decoder.readSmallInt();
+        int[] directoryIndexes = new int[snapshotsCount];
+        String[] names = new String[snapshotsCount];
+        byte[] kinds = new byte[snapshotsCount];
+        int[] hashOffsets = new int[snapshotsCount + 1];
+        int hashesSize = 0;
         for (int i = 0; i < snapshotsCount; i++) {
-            String key = decoder.readString();
+            directoryIndexes[i] = decoder.readSmallInt();
+            names[i] = decoder.readString();
             byte fileSnapshotKind = decoder.readByte();
-            if (fileSnapshotKind == 1) {
-                snapshots.put(key, new DefaultFileCollectionSnapshotter.DirSnapshot());
-            } else if (fileSnapshotKind == 2) {
-                snapshots.put(key, new DefaultFileCollectionSnapshotter.MissingFileSnapshot());
-            } else if (fileSnapshotKind == 3) {
-                byte hashSize = decoder.readByte();
-                byte[] hash = new byte[hashSize];
-                decoder.readBytes(hash);
-                snapshots.put(key, new DefaultFileCollectionSnapshotter.FileHashSnapshot(hash));
-            } else {
+            hashOffsets[i] = hashesSize;
+            if (fileSnapshotKind == CompactFileSnapshotMap.FILE) {
+                hashesSize += decoder.readByte();
+            } else if (fileSnapshotKind != CompactFileSnapshotMap.DIR && fileSnapshotKind != CompactFileSnapshotMap.MISSING) {
                 throw new RuntimeException("Unable to read serialized file collection snapshot. Unrecognized value found in the data stream.");
             }
+            kinds[i] = fileSnapshotKind;
         }
-        return snapshot;
+        hashOffsets[snapshotsCount] = hashesSize;
+        byte[] hashes = new byte[hashesSize];
+        decoder.readBytes(hashes);
+
+        return new DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl(new CompactFileSnapshotMap(directories, directoryIndexes, names, kinds, hashOffsets, hashes));
     }
 
     public void write(Encoder encoder, DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl value) throws Exception {
-        encoder.writeSmallInt(value.snapshots.size());
-        for (String key : value.snapshots.keySet()) {
-            encoder.writeString(key);
-            DefaultFileCollectionSnapshotter.IncrementalFileSnapshot incrementalFileSnapshot = value.snapshots.get(key);
-            if (incrementalFileSnapshot instanceof DefaultFileCollectionSnapshotter.DirSnapshot) {
-                encoder.writeByte((byte) 1);
-            } else if (incrementalFileSnapshot instanceof DefaultFileCollectionSnapshotter.MissingFileSnapshot) {
-                encoder.writeByte((byte) 2);
-            } else if (incrementalFileSnapshot instanceof DefaultFileCollectionSnapshotter.FileHashSnapshot) {
-                encoder.writeByte((byte) 3);
-                byte[] hash = ((DefaultFileCollectionSnapshotter.FileHashSnapshot) incrementalFileSnapshot).hash;
-                encoder.writeByte((byte) hash.length);
-                encoder.writeBytes(hash);
+        CompactFileSnapshotMap snapshots = value.snapshots;
+
+        String[] directories = snapshots.getDirectories();
+        encoder.writeSmallInt(directories.length);
+        String previous = "";
+        for (String directory : directories) {
+            int prefixLength = commonPrefixLength(previous, directory);
+            encoder.writeSmallInt(prefixLength);
+            encoder.writeString(directory.substring(prefixLength));
+            previous = directory;
+        }
+
+        encoder.writeSmallInt(snapshots.size());
+        for (int i = 0; i < snapshots.size(); i++) {
+            encoder.writeSmallInt(snapshots.getDirectoryIndex(i));
+            encoder.writeString(snapshots.getName(i));
+            byte kind = snapshots.getKind(i);
+            encoder.writeByte(kind);
+            if (kind == CompactFileSnapshotMap.FILE) {
+                encoder.writeByte((byte) snapshots.getHashLength(i));
+            }
+        }
+        encoder.writeBytes(snapshots.getHashes());
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return i;
             }
         }
+        return length;
     }
 }
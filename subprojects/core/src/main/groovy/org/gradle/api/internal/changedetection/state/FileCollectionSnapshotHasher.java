@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.hash.Hasher;
+
+import java.io.File;
+
+/**
+ * A {@link Hasher} which takes the hash of each file from a snapshot of a file collection, such as the input files of a task. When the task's inputs
+ * have just been snapshotted, the file hashes cache already holds the hash of each file, so taking the snapshot only stats each file rather than
+ * hashing its content again. The snapshot is taken on first use. Files outside the collection are hashed using the given hasher, which must use the
+ * same algorithm as the file hashes cache.
+ */
+public class FileCollectionSnapshotHasher implements Hasher {
+    private final FileCollectionSnapshotter snapshotter;
+    private final FileCollection files;
+    private final Hasher hasher;
+    private FilesSnapshotSet snapshot;
+
+    public FileCollectionSnapshotHasher(FileCollectionSnapshotter snapshotter, FileCollection files, Hasher hasher) {
+        this.snapshotter = snapshotter;
+        this.files = files;
+        this.hasher = hasher;
+    }
+
+    public String getAlgorithm() {
+        return hasher.getAlgorithm();
+    }
+
+    public byte[] hash(File file) {
+        FileSnapshot fileSnapshot = getSnapshot().findSnapshot(file);
+        if (fileSnapshot != null) {
+            return fileSnapshot.getHash();
+        }
+        return hasher.hash(file);
+    }
+
+    private synchronized FilesSnapshotSet getSnapshot() {
+        if (snapshot == null) {
+            snapshot = snapshotter.snapshot(files).getSnapshot();
+        }
+        return snapshot;
+    }
+}
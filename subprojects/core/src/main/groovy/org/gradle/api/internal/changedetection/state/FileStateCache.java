@@ -0,0 +1,42 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import java.io.File;
+
+/**
+ * An in-memory cache of file snapshots. A file snapshot can be used without consulting the persistent cache while it is in this cache, provided the file
+ * still has the snapshot's length and timestamp.
+ */
+public interface FileStateCache {
+    /**
+     * Returns the snapshot of the given file, or null if there is none. The file may have changed since it was snapshotted, so the caller must check the
+     * file's current length and timestamp against the snapshot before using it.
+     */
+    CachingFileSnapshotter.FileInfo get(File file);
+
+    /**
+     * Adds the snapshot of the given file, which was taken from the file's current length and timestamp. The snapshot may be discarded, for example when the
+     * cache is full.
+     */
+    void put(File file, CachingFileSnapshotter.FileInfo info);
+
+    /**
+     * Discards the snapshots of the given files, and of any files beneath them.
+     */
+    void invalidate(Iterable<File> files);
+}
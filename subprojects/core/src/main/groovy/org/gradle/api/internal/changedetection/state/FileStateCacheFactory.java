@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.internal.Factory;
+import org.gradle.internal.environment.GradleBuildEnvironment;
+
+/**
+ * Creates the {@link FileStateCache} to use for the current process. File state is only cached in memory in a long living process, and when the
+ * {@value #ENABLED_PROPERTY} system property is set to true.
+ */
+public class FileStateCacheFactory implements Factory<FileStateCache> {
+    public static final String ENABLED_PROPERTY = "org.gradle.caching.filesystem";
+
+    private final GradleBuildEnvironment environment;
+
+    public FileStateCacheFactory(GradleBuildEnvironment environment) {
+        this.environment = environment;
+    }
+
+    public FileStateCache create() {
+        if (!environment.isLongLivingProcess() || !Boolean.getBoolean(ENABLED_PROPERTY)) {
+            return new NoOpFileStateCache();
+        }
+        return new InMemoryFileStateCache();
+    }
+}
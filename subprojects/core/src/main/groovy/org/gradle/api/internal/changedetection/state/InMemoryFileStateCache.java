@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.util.TreeMap;
+
+/**
+ * A {@link FileStateCache} which holds the snapshots of recently used files in memory, so that they can be used without a lookup in the persistent cache.
+ * Nothing tracks changes to the files, so callers must check a returned snapshot against the file's current length and timestamp.
+ */
+public class InMemoryFileStateCache implements FileStateCache {
+    private static final Logger LOGGER = Logging.getLogger(InMemoryFileStateCache.class);
+    private static final int DEFAULT_MAX_ENTRIES = 500000;
+
+    private final int maxEntries;
+    private final TreeMap<String, CachingFileSnapshotter.FileInfo> snapshots = new TreeMap<String, CachingFileSnapshotter.FileInfo>();
+
+    public InMemoryFileStateCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    InMemoryFileStateCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public synchronized CachingFileSnapshotter.FileInfo get(File file) {
+        return snapshots.get(file.getAbsolutePath());
+    }
+
+    public synchronized void put(File file, CachingFileSnapshotter.FileInfo info) {
+        String path = file.getAbsolutePath();
+        if (snapshots.size() >= maxEntries && !snapshots.containsKey(path)) {
+            LOGGER.info("File state cache is full. Discarding all {} cached file snapshots.", snapshots.size());
+            snapshots.clear();
+        }
+        snapshots.put(path, info);
+    }
+
+    public synchronized void invalidate(Iterable<File> files) {
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            snapshots.remove(path);
+            // Removes the snapshots of all files beneath the given path, which sort between "path/" and "path/" + Character.MAX_VALUE
+            String prefix = path + File.separatorChar;
+            snapshots.subMap(prefix, prefix + Character.MAX_VALUE).clear();
+        }
+    }
+}
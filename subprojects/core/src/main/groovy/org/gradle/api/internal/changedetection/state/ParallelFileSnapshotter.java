@@ -0,0 +1,209 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.internal.changedetection.state.DefaultFileCollectionSnapshotter.DirSnapshot;
+import org.gradle.api.internal.changedetection.state.DefaultFileCollectionSnapshotter.FileHashSnapshot;
+import org.gradle.api.internal.changedetection.state.DefaultFileCollectionSnapshotter.IncrementalFileSnapshot;
+import org.gradle.api.internal.changedetection.state.DefaultFileCollectionSnapshotter.MissingFileSnapshot;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Snapshots a set of files using a bounded pool of workers. The work is split into phases, so that the cache lock is held only while reading and writing
+ * the file hashes cache, and not while the file system is being queried:
+ *
+ * <ol>
+ *     <li>Stat each file in parallel, and use the in-memory snapshot of each file, if it still matches.</li>
+ *     <li>Look up the cached hashes of the remaining regular files in a single cache operation.</li>
+ *     <li>Hash the files whose cached hash is missing or stale in parallel.</li>
+ *     <li>Write the new hashes to the cache in a single cache operation.</li>
+ * </ol>
+ *
+ * <p>The workers run on a single executor, which is created on first use and shared by all snapshots. It is stopped along with the executor factory.</p>
+ */
+public class ParallelFileSnapshotter {
+    private static final int KIND_MISSING = 0;
+    private static final int KIND_FILE = 1;
+    private static final int KIND_DIR = 2;
+
+    private final CachingFileSnapshotter snapshotter;
+    private final TaskArtifactStateCacheAccess cacheAccess;
+    private final ExecutorFactory executorFactory;
+    private final int workerCount;
+    private StoppableExecutor executor;
+
+    public ParallelFileSnapshotter(CachingFileSnapshotter snapshotter, TaskArtifactStateCacheAccess cacheAccess, ExecutorFactory executorFactory, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Not a valid number of snapshot workers: " + workerCount);
+        }
+        this.snapshotter = snapshotter;
+        this.cacheAccess = cacheAccess;
+        this.executorFactory = executorFactory;
+        this.workerCount = workerCount;
+    }
+
+    public Map<String, IncrementalFileSnapshot> snapshot(Collection<File> input) {
+        final File[] files = input.toArray(new File[input.size()]);
+        final int[] kinds = new int[files.length];
+        final long[] lengths = new long[files.length];
+        final long[] timestamps = new long[files.length];
+        final CachingFileSnapshotter.FileInfo[] infos = new CachingFileSnapshotter.FileInfo[files.length];
+
+        runInParallel(files.length, new IndexedAction() {
+            public void execute(int index) {
+                File file = files[index];
+                if (file.isFile()) {
+                    kinds[index] = KIND_FILE;
+                    lengths[index] = file.length();
+                    timestamps[index] = file.lastModified();
+                    infos[index] = snapshotter.getUnchanged(file, lengths[index], timestamps[index]);
+                } else if (file.isDirectory()) {
+                    kinds[index] = KIND_DIR;
+                } else {
+                    kinds[index] = KIND_MISSING;
+                }
+            }
+        });
+
+        final List<Integer> staleFiles = new ArrayList<Integer>();
+        cacheAccess.useCache("Read file hashes", new Runnable() {
+            public void run() {
+                for (int i = 0; i < files.length; i++) {
+                    if (kinds[i] == KIND_FILE && infos[i] == null) {
+                        infos[i] = snapshotter.getCached(files[i], lengths[i], timestamps[i]);
+                        if (infos[i] == null) {
+                            staleFiles.add(i);
+                        }
+                    }
+                }
+            }
+        });
+
+        if (!staleFiles.isEmpty()) {
+            runInParallel(staleFiles.size(), new IndexedAction() {
+                public void execute(int index) {
+                    int fileIndex = staleFiles.get(index);
+                    infos[fileIndex] = snapshotter.hash(files[fileIndex], lengths[fileIndex], timestamps[fileIndex]);
+                }
+            });
+            cacheAccess.useCache("Write file hashes", new Runnable() {
+                public void run() {
+                    for (Integer fileIndex : staleFiles) {
+                        snapshotter.cache(files[fileIndex], infos[fileIndex]);
+                    }
+                }
+            });
+        }
+
+        Map<String, IncrementalFileSnapshot> snapshots = new HashMap<String, IncrementalFileSnapshot>(files.length * 4 / 3 + 1);
+        for (int i = 0; i < files.length; i++) {
+            String path = files[i].getAbsolutePath();
+            switch (kinds[i]) {
+                case KIND_FILE:
+                    snapshots.put(path, new FileHashSnapshot(infos[i].getHash()));
+                    break;
+                case KIND_DIR:
+                    snapshots.put(path, DirSnapshot.INSTANCE);
+                    break;
+                default:
+                    snapshots.put(path, MissingFileSnapshot.INSTANCE);
+            }
+        }
+        return snapshots;
+    }
+
+    private void runInParallel(int count, IndexedAction action) {
+        AtomicInteger nextIndex = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        int workers = Math.min(workerCount, count);
+        CountDownLatch finished = new CountDownLatch(Math.max(workers - 1, 0));
+        if (workers > 1) {
+            StoppableExecutor executor = getExecutor();
+            for (int i = 1; i < workers; i++) {
+                executor.execute(new Worker(count, nextIndex, action, failure, finished));
+            }
+        }
+        new Worker(count, nextIndex, action, failure, null).run();
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        if (failure.get() != null) {
+            throw UncheckedException.throwAsUncheckedException(failure.get());
+        }
+    }
+
+    private synchronized StoppableExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("File snapshot worker");
+        }
+        return executor;
+    }
+
+    private interface IndexedAction {
+        void execute(int index);
+    }
+
+    private static class Worker implements Runnable {
+        private final int count;
+        private final AtomicInteger nextIndex;
+        private final IndexedAction action;
+        private final AtomicReference<Throwable> failure;
+        private final CountDownLatch finished;
+
+        private Worker(int count, AtomicInteger nextIndex, IndexedAction action, AtomicReference<Throwable> failure, CountDownLatch finished) {
+            this.count = count;
+            this.nextIndex = nextIndex;
+            this.action = action;
+            this.failure = failure;
+            this.finished = finished;
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    int index = nextIndex.getAndIncrement();
+                    if (index >= count) {
+                        return;
+                    }
+                    action.execute(index);
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+                // Stop the other workers from picking up further work
+                nextIndex.set(count);
+            } finally {
+                if (finished != null) {
+                    finished.countDown();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Keeps track of how long tasks take to execute, so that the scheduler can estimate the duration of a task before it runs.
+ */
+public interface TaskDurationRepository {
+    /**
+     * Returns the estimated duration in milliseconds of each of the given tasks, keyed by task path. Tasks with no recorded duration are not included.
+     */
+    Map<String, Long> getDurations(Collection<String> taskPaths);
+
+    /**
+     * Records the durations in milliseconds of the given tasks, keyed by task path.
+     */
+    void recordDurations(Map<String, Long> durations);
+}
@@ -20,7 +20,11 @@ import org.gradle.internal.hash.HashUtil;
 import java.io.File;
 
 public class DefaultHasher implements Hasher {
+    public String getAlgorithm() {
+        return "MD5";
+    }
+
     public byte[] hash(File file) {
         return HashUtil.createHash(file, "MD5").asByteArray();
     }
-}
\ No newline at end of file
+}
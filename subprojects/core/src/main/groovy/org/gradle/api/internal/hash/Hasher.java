@@ -17,6 +17,14 @@ package org.gradle.api.internal.hash;
 
 import java.io.File;
 
+/**
+ * Calculates a hash of the content of a file.
+ */
 public interface Hasher {
+    /**
+     * Returns the name of the algorithm used by this hasher. Hashes created using different algorithms are not comparable.
+     */
+    String getAlgorithm();
+
     byte[] hash(File file);
 }
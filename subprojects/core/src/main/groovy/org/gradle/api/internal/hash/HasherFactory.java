@@ -0,0 +1,37 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.hash;
+
+import org.gradle.api.InvalidUserDataException;
+import org.gradle.internal.Factory;
+
+/**
+ * Creates the {@link Hasher} to use for file content hashes, as selected by the {@value #HASH_ALGORITHM_PROPERTY} system property.
+ */
+public class HasherFactory implements Factory<Hasher> {
+    public final static String HASH_ALGORITHM_PROPERTY = "org.gradle.hash.algorithm";
+
+    public Hasher create() {
+        String algorithm = System.getProperty(HASH_ALGORITHM_PROPERTY);
+        if (algorithm == null || algorithm.equalsIgnoreCase("md5")) {
+            return new DefaultHasher();
+        }
+        if (algorithm.equalsIgnoreCase("murmur3")) {
+            return new Murmur3Hasher();
+        }
+        throw new InvalidUserDataException(String.format("Unknown file hash algorithm '%s' specified for %s. Supported values are 'md5' and 'murmur3'.", algorithm, HASH_ALGORITHM_PROPERTY));
+    }
+}
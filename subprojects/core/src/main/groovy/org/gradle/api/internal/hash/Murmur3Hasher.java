@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.hash;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.io.MappedByteBuffers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A non-cryptographic hasher, which calculates the 128-bit x64 variant of MurmurHash3 of a file's content. Produces the same hash as Guava's
+ * {@code Hashing.murmur3_128()}, but reads large files through memory-mapped regions rather than copying their content onto the heap.
+ */
+public class Murmur3Hasher implements Hasher {
+    public static final String ALGORITHM = "MURMUR3-128";
+
+    // Files larger than this are memory-mapped, smaller files are read into a heap buffer
+    private static final int MAP_THRESHOLD = 256 * 1024;
+    // Must be a multiple of the block size, so that only the final region has a partial block
+    private static final int MAP_REGION_SIZE = 64 * 1024 * 1024;
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    public String getAlgorithm() {
+        return ALGORITHM;
+    }
+
+    public byte[] hash(File file) {
+        try {
+            FileInputStream inputStream = new FileInputStream(file);
+            try {
+                return hash(inputStream.getChannel());
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create %s hash for file %s.", ALGORITHM, file.getAbsolutePath()), e);
+        }
+    }
+
+    private byte[] hash(FileChannel channel) throws IOException {
+        long size = channel.size();
+        State state = new State();
+        if (size < MAP_THRESHOLD) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            state.update(buffer);
+        } else {
+            for (long position = 0; position < size; position += MAP_REGION_SIZE) {
+                long regionSize = Math.min(MAP_REGION_SIZE, size - position);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize);
+                try {
+                    state.update(region);
+                } finally {
+                    MappedByteBuffers.unmap(region);
+                }
+            }
+        }
+        return state.finish();
+    }
+
+    private static class State {
+        private long h1;
+        private long h2;
+        private long length;
+
+        void update(ByteBuffer buffer) {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            length += buffer.remaining();
+            while (buffer.remaining() >= 16) {
+                long k1 = buffer.getLong();
+                long k2 = buffer.getLong();
+                h1 ^= mixK1(k1);
+                h1 = Long.rotateLeft(h1, 27);
+                h1 += h2;
+                h1 = h1 * 5 + 0x52dce729;
+                h2 ^= mixK2(k2);
+                h2 = Long.rotateLeft(h2, 31);
+                h2 += h1;
+                h2 = h2 * 5 + 0x38495ab5;
+            }
+            int remaining = buffer.remaining();
+            if (remaining > 0) {
+                long k1 = 0;
+                long k2 = 0;
+                int offset = buffer.position();
+                for (int i = remaining - 1; i >= 8; i--) {
+                    k2 = (k2 << 8) | (buffer.get(offset + i) & 0xff);
+                }
+                for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+                    k1 = (k1 << 8) | (buffer.get(offset + i) & 0xff);
+                }
+                buffer.position(offset + remaining);
+                if (remaining > 8) {
+                    h2 ^= mixK2(k2);
+                }
+                h1 ^= mixK1(k1);
+            }
+        }
+
+        byte[] finish() {
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+            ByteBuffer result = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            result.putLong(h1);
+            result.putLong(h2);
+            return result.array();
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            return k1;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            return k2;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
@@ -20,7 +20,6 @@ import org.gradle.internal.io.RandomAccessFileInputStream;
 import org.gradle.internal.io.RandomAccessFileOutputStream;
 
 import java.io.*;
-import java.util.zip.CRC32;
 
 public class FileBackedBlockStore implements BlockStore {
     private RandomAccessFile file;
@@ -117,80 +116,24 @@ public class FileBackedBlockStore implements BlockStore {
         return pos;
     }
 
-    private final class BlockImpl extends Block {
-        private static final int HEADER_SIZE = 2 + INT_SIZE;
-        private static final int TAIL_SIZE = LONG_SIZE;
-        static final int BLOCK_MARKER = 0xCC;
-
-        private BlockPointer pos;
-        private int payloadSize;
-
+    private final class BlockImpl extends FileBlock {
         private BlockImpl(BlockPayload payload, BlockPointer pos) {
             this(payload);
             setPos(pos);
         }
 
         public BlockImpl(BlockPayload payload) {
-            super(payload);
-            pos = null;
-            payloadSize = -1;
-        }
-
-        @Override
-        public boolean hasPos() {
-            return pos != null;
-        }
-
-        @Override
-        public BlockPointer getPos() {
-            if (pos == null) {
-                pos = new BlockPointer(alloc(getSize()));
-            }
-            return pos;
+            super(FileBackedBlockStore.this, payload);
         }
 
         @Override
-        public void setPos(BlockPointer pos) {
-            assert this.pos == null && !pos.isNull();
-            this.pos = pos;
-        }
-
-        public int getSize() {
-            if (payloadSize < 0) {
-                payloadSize = getPayload().getSize();
-            }
-            return payloadSize + HEADER_SIZE + TAIL_SIZE;
-        }
-
-        @Override
-        public void setSize(int size) {
-            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
-            assert newPayloadSize >= payloadSize;
-            payloadSize = newPayloadSize;
+        protected long alloc(long length) {
+            return FileBackedBlockStore.this.alloc(length);
         }
 
         public void write() throws Exception {
-            long pos = getPos().getPos();
-            file.seek(pos);
-
-            Crc32OutputStream checkSumOutputStream = new Crc32OutputStream(new BufferedOutputStream(
-                    new RandomAccessFileOutputStream(file)));
-            DataOutputStream outputStream = new DataOutputStream(checkSumOutputStream);
-
-            BlockPayload payload = getPayload();
-
-            // Write header
-            outputStream.writeByte(BLOCK_MARKER);
-            outputStream.writeByte(payload.getType());
-            outputStream.writeInt(payloadSize);
-            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
-
-            // Write body
-            payload.write(outputStream);
-
-            // Write checksum
-            outputStream.writeLong(checkSumOutputStream.checksum.getValue());
-            outputStream.close();
+            file.seek(getPos().getPos());
+            long finalSize = writeTo(new BufferedOutputStream(new RandomAccessFileOutputStream(file)));
 
             // Pad
             if (file.length() < finalSize) {
@@ -230,80 +173,12 @@ public class FileBackedBlockStore implements BlockStore {
             payload.read(inputStream);
 
             // Read and verify checksum
-            long actualChecksum = checkSumInputStream.checksum.getValue();
+            long actualChecksum = checkSumInputStream.getChecksum();
             long checksum = inputStream.readLong();
             if (actualChecksum != checksum) {
                 throw blockCorruptedException();
             }
             inputStream.close();
         }
-
-        public RuntimeException blockCorruptedException() {
-            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
-                    FileBackedBlockStore.this));
-        }
-    }
-
-    private static class Crc32InputStream extends FilterInputStream {
-        private final CRC32 checksum;
-
-        private Crc32InputStream(InputStream inputStream) {
-            super(inputStream);
-            checksum = new CRC32();
-        }
-
-        @Override
-        public int read() throws IOException {
-            int b = in.read();
-            if (b >= 0) {
-                checksum.update(b);
-            }
-            return b;
-        }
-
-        @Override
-        public int read(byte[] bytes) throws IOException {
-            int count = in.read(bytes);
-            if (count > 0) {
-                checksum.update(bytes, 0, count);
-            }
-            return count;
-        }
-
-        @Override
-        public int read(byte[] bytes, int offset, int max) throws IOException {
-            int count = in.read(bytes, offset, max);
-            if (count > 0) {
-                checksum.update(bytes, offset, count);
-            }
-            return count;
-        }
-    }
-
-    private static class Crc32OutputStream extends FilterOutputStream {
-        private final CRC32 checksum;
-
-        private Crc32OutputStream(OutputStream outputStream) {
-            super(outputStream);
-            this.checksum = new CRC32();
-        }
-
-        @Override
-        public void write(int b) throws IOException {
-            checksum.update(b);
-            out.write(b);
-        }
-
-        @Override
-        public void write(byte[] bytes) throws IOException {
-            checksum.update(bytes);
-            out.write(bytes);
-        }
-
-        @Override
-        public void write(byte[] bytes, int offset, int count) throws IOException {
-            checksum.update(bytes, offset, count);
-            out.write(bytes, offset, count);
-        }
     }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.btree;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+
+/**
+ * A block stored in a cache file. Each block is made up of a marker byte, the payload type, the payload size, the payload, and finally the CRC32
+ * checksum of all of the preceding bytes. Subclasses take care of reading and writing the block content from and to the file.
+ */
+abstract class FileBlock extends Block {
+    static final int HEADER_SIZE = 2 + INT_SIZE;
+    static final int TAIL_SIZE = LONG_SIZE;
+    static final int BLOCK_MARKER = 0xCC;
+
+    private final BlockStore store;
+    private BlockPointer pos;
+    protected int payloadSize;
+
+    protected FileBlock(BlockStore store, BlockPayload payload) {
+        super(payload);
+        this.store = store;
+        pos = null;
+        payloadSize = -1;
+    }
+
+    /**
+     * Allocates space for a new block of the given size, returning its position in the file.
+     */
+    protected abstract long alloc(long length);
+
+    public abstract void write() throws Exception;
+
+    public abstract void read() throws Exception;
+
+    @Override
+    public boolean hasPos() {
+        return pos != null;
+    }
+
+    @Override
+    public BlockPointer getPos() {
+        if (pos == null) {
+            pos = new BlockPointer(alloc(getSize()));
+        }
+        return pos;
+    }
+
+    @Override
+    public void setPos(BlockPointer pos) {
+        assert this.pos == null && !pos.isNull();
+        this.pos = pos;
+    }
+
+    public int getSize() {
+        if (payloadSize < 0) {
+            payloadSize = getPayload().getSize();
+        }
+        return payloadSize + HEADER_SIZE + TAIL_SIZE;
+    }
+
+    @Override
+    public void setSize(int size) {
+        int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+        assert newPayloadSize >= payloadSize;
+        payloadSize = newPayloadSize;
+    }
+
+    /**
+     * Writes the content of this block, including the header and checksum, to the given stream, and closes the stream.
+     *
+     * @return the position in the file just past the end of this block.
+     */
+    protected long writeTo(OutputStream target) throws Exception {
+        Crc32OutputStream checkSumOutputStream = new Crc32OutputStream(target);
+        DataOutputStream outputStream = new DataOutputStream(checkSumOutputStream);
+
+        BlockPayload payload = getPayload();
+
+        // Write header
+        outputStream.writeByte(BLOCK_MARKER);
+        outputStream.writeByte(payload.getType());
+        outputStream.writeInt(payloadSize);
+        long finalSize = getPos().getPos() + HEADER_SIZE + TAIL_SIZE + payloadSize;
+
+        // Write body
+        payload.write(outputStream);
+
+        // Write checksum
+        outputStream.writeLong(checkSumOutputStream.getChecksum());
+        outputStream.close();
+        return finalSize;
+    }
+
+    public RuntimeException blockCorruptedException() {
+        return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this, store));
+    }
+}
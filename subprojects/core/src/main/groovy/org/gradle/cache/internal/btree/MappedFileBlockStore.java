@@ -0,0 +1,284 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.io.ByteBufferInputStream;
+import org.gradle.internal.io.MappedByteBuffers;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link BlockStore} which reads blocks from memory-mapped regions of the cache file, rather than using positioned reads. Uses the same file
+ * format as {@link FileBackedBlockStore}.
+ *
+ * <p>The file is mapped in fixed size regions. The most recently used regions are retained, up to a configurable total size, and act as an
+ * off-heap cache of hot blocks. Block headers are decoded directly from the mapped region, and payloads are read from the region without
+ * copying it onto the heap. A block which spans two regions is read using a positioned read instead.</p>
+ *
+ * <p>Writes go through the file channel, and are visible through the mapped regions.</p>
+ */
+public class MappedFileBlockStore implements BlockStore {
+    public static final String ENABLED_PROPERTY = "org.gradle.cache.mapped";
+    public static final String MAX_MAPPED_SIZE_PROPERTY = "org.gradle.cache.mapped.maxsize";
+    static final int DEFAULT_REGION_SIZE = 1024 * 1024;
+    private static final int DEFAULT_MAX_MAPPED_SIZE_MB = 64;
+
+    private final File cacheFile;
+    private final int regionSize;
+    private final int maxRegions;
+    private final Map<Long, MappedByteBuffer> regions;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long nextBlock;
+    private Factory factory;
+
+    public MappedFileBlockStore(File cacheFile, int regionSize, long maxMappedSize) {
+        this.cacheFile = cacheFile;
+        this.regionSize = regionSize;
+        this.maxRegions = (int) Math.max(1, maxMappedSize / regionSize);
+        this.regions = new LinkedHashMap<Long, MappedByteBuffer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, MappedByteBuffer> eldest) {
+                if (size() > maxRegions) {
+                    MappedByteBuffers.unmap(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns true when memory-mapped block stores should be used for persistent caches, as selected by the {@value #ENABLED_PROPERTY} system property.
+     */
+    public static boolean isEnabled() {
+        return "true".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+    }
+
+    /**
+     * Creates a store using the maximum mapped size selected by the {@value #MAX_MAPPED_SIZE_PROPERTY} system property, in megabytes.
+     */
+    public static MappedFileBlockStore create(File cacheFile) {
+        long maxMappedSize = Integer.getInteger(MAX_MAPPED_SIZE_PROPERTY, DEFAULT_MAX_MAPPED_SIZE_MB) * 1024L * 1024L;
+        return new MappedFileBlockStore(cacheFile, DEFAULT_REGION_SIZE, maxMappedSize);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cache '%s'", cacheFile);
+    }
+
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            file = new RandomAccessFile(cacheFile, "rw");
+            channel = file.getChannel();
+            nextBlock = file.length();
+            if (file.length() == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void close() {
+        unmapRegions();
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void clear() {
+        // Release the mapped regions before truncating the file, so that no region refers past the end of the file
+        unmapRegions();
+        try {
+            file.setLength(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nextBlock = 0;
+    }
+
+    private void unmapRegions() {
+        for (MappedByteBuffer region : regions.values()) {
+            MappedByteBuffers.unmap(region);
+        }
+        regions.clear();
+    }
+
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    public void flush() {
+    }
+
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(new BlockPointer(0), payloadType);
+    }
+
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    /**
+     * Returns a buffer containing the given range of the file, positioned at the start of the range. Uses a mapped region when the range fits
+     * within a single region, otherwise reads the range onto the heap.
+     */
+    private ByteBuffer slice(long pos, int length) throws IOException {
+        long regionStart = pos - pos % regionSize;
+        if (pos + length <= regionStart + regionSize) {
+            MappedByteBuffer region = regions.get(regionStart);
+            int offset = (int) (pos - regionStart);
+            if (region == null || region.capacity() < offset + length) {
+                // Not mapped yet, or the file has grown since the region was mapped. Never map past the end of the file, as this would extend it
+                long mappedLength = Math.min(regionSize, channel.size() - regionStart);
+                MappedByteBuffers.unmap(region);
+                region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, mappedLength);
+                regions.put(regionStart, region);
+            }
+            ByteBuffer buffer = region.duplicate();
+            buffer.position(offset);
+            buffer.limit(offset + length);
+            return buffer;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, pos + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private final class BlockImpl extends FileBlock {
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(MappedFileBlockStore.this, payload);
+        }
+
+        @Override
+        protected long alloc(long length) {
+            return MappedFileBlockStore.this.alloc(length);
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + TAIL_SIZE + Math.max(payloadSize, 0));
+            long finalSize = writeTo(bytes);
+
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, pos + buffer.position());
+            }
+
+            // Pad
+            if (file.length() < finalSize) {
+                file.setLength(finalSize);
+            }
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            long fileLength = channel.size();
+            if (pos + HEADER_SIZE >= fileLength) {
+                throw blockCorruptedException();
+            }
+
+            // Read header directly from the file content
+            ByteBuffer header = slice(pos, HEADER_SIZE);
+            byte type = header.get();
+            if (type != (byte) BLOCK_MARKER) {
+                throw blockCorruptedException();
+            }
+            type = header.get();
+            if (type != (byte) getPayload().getType()) {
+                throw blockCorruptedException();
+            }
+            payloadSize = header.getInt();
+            if (payloadSize < 0 || pos + HEADER_SIZE + TAIL_SIZE + payloadSize > fileLength) {
+                throw blockCorruptedException();
+            }
+
+            // Read header and body, calculating the checksum of the bytes consumed
+            ByteBuffer block = slice(pos, HEADER_SIZE + payloadSize + TAIL_SIZE);
+            InputStream blockInputStream = new ByteBufferInputStream(block);
+            Crc32InputStream checkSumInputStream = new Crc32InputStream(blockInputStream);
+            DataInputStream inputStream = new DataInputStream(checkSumInputStream);
+            inputStream.readFully(new byte[HEADER_SIZE]);
+            getPayload().read(inputStream);
+
+            // Read and verify checksum, which immediately follows the bytes consumed
+            long actualChecksum = checkSumInputStream.getChecksum();
+            long checksum = new DataInputStream(blockInputStream).readLong();
+            if (actualChecksum != checksum) {
+                throw blockCorruptedException();
+            }
+        }
+    }
+}
@@ -42,9 +42,16 @@ abstract class AbstractTaskPlanExecutor implements TaskPlanExecutor {
 
         public void run() {
             long busy = 0;
+            long waiting = 0;
             long start = System.currentTimeMillis();
             TaskInfo task;
-            while ((task = taskExecutionPlan.getTaskToExecute()) != null) {
+            while (true) {
+                long startWait = System.currentTimeMillis();
+                task = taskExecutionPlan.getTaskToExecute();
+                waiting += System.currentTimeMillis() - startWait;
+                if (task == null) {
+                    break;
+                }
                 final String taskPath = task.getTask().getPath();
                 LOGGER.info("{} ({}) started.", taskPath, Thread.currentThread());
                 long startTask = System.currentTimeMillis();
@@ -55,7 +62,7 @@ abstract class AbstractTaskPlanExecutor implements TaskPlanExecutor {
             }
             long total = System.currentTimeMillis() - start;
             //TODO SF it would be nice to print one-line statement that concludes the utilisation of the worker threads
-            LOGGER.debug("Task worker [{}] finished, busy: {}, idle: {}", Thread.currentThread(), prettyTime(busy), prettyTime(total - busy));
+            LOGGER.debug("Task worker [{}] finished, busy: {}, idle: {}, waiting for scheduler: {}", Thread.currentThread(), prettyTime(busy), prettyTime(total - busy), prettyTime(waiting));
         }
 
         protected void processTask(TaskInfo taskInfo) {
@@ -23,6 +23,8 @@ import com.google.common.collect.*;
 import org.gradle.api.*;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.tasks.CachingTaskDependencyResolveContext;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
 import org.gradle.api.tasks.ParallelizableTask;
@@ -45,11 +47,23 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import static org.gradle.util.Clock.prettyTime;
+
 /**
  * A reusable implementation of TaskExecutionPlan. The {@link #addToTaskGraph(java.util.Collection)} and {@link #clear()} methods are NOT threadsafe, and callers must synchronize access to these
  * methods.
+ *
+ * <p>When the ready queue is enabled, the plan keeps track of the tasks which may be ready to run, so that selecting the next task to execute does not require scanning the entire plan.
+ * A task is added to the ready queue when the plan starts executing, when one of its dependencies completes, or when it is enforced as a finalizer. Tasks are always selected in
+ * plan order, so the resulting schedule is the same as when scanning the plan.</p>
+ *
+ * <p>When task durations are provided using {@link #useTaskDurations(java.util.Map)}, the ready queue is used and tasks are instead selected by the estimated duration of the longest
+ * chain of tasks which depend on them, so that the tasks on the critical path of the build start as early as possible. Tasks with the same estimate are selected in plan order.</p>
  */
 class DefaultTaskExecutionPlan implements TaskExecutionPlan {
+    private static final Logger LOGGER = Logging.getLogger(DefaultTaskExecutionPlan.class);
+    public static final String READY_QUEUE_PROPERTY = "org.gradle.parallel.readyqueue";
+
     private final Lock lock = new ReentrantLock();
     private final Condition condition = lock.newCondition();
     private final Set<TaskInfo> tasksInUnknownState = new LinkedHashSet<TaskInfo>();
@@ -64,10 +78,37 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final Multiset<String> projectsWithRunningTasks = HashMultiset.create();
     private final Multiset<String> projectsWithRunningNonParallelizableTasks = HashMultiset.create();
     private final Set<String> canonicalizedOutputsOfRunningTasks = Sets.newHashSet();
+    private final Multiset<String> sharedResourcesOfRunningTasks = HashMultiset.create();
+    private final Map<TaskInfo, ResourceWait> tasksWaitingForResources = new HashMap<TaskInfo, ResourceWait>();
+    private long resourceWaitTime;
     private boolean tasksCancelled;
 
+    private final boolean useReadyQueue;
+    private final Map<TaskInfo, Integer> planPositions = new HashMap<TaskInfo, Integer>();
+    private final SetMultimap<TaskInfo, TaskInfo> mustPredecessors = HashMultimap.create();
+    private final Map<TaskInfo, Long> remainingDurations = new HashMap<TaskInfo, Long>();
+    private final TreeSet<TaskInfo> readyQueue = new TreeSet<TaskInfo>(new Comparator<TaskInfo>() {
+        public int compare(TaskInfo o1, TaskInfo o2) {
+            if (!remainingDurations.isEmpty()) {
+                int diff = remainingDurations.get(o2).compareTo(remainingDurations.get(o1));
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return planPositions.get(o1).compareTo(planPositions.get(o2));
+        }
+    });
+    private Map<String, Long> taskDurations;
+    private boolean readyQueueInitialized;
+    private int runningTasks;
+
     public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken) {
+        this(cancellationToken, "true".equalsIgnoreCase(System.getProperty(READY_QUEUE_PROPERTY)));
+    }
+
+    DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, boolean useReadyQueue) {
         this.cancellationToken = cancellationToken;
+        this.useReadyQueue = useReadyQueue;
     }
 
     public void addToTaskGraph(Collection<? extends Task> tasks) {
@@ -402,6 +443,10 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             failures.clear();
             projectsWithRunningTasks.clear();
             projectsWithRunningNonParallelizableTasks.clear();
+            sharedResourcesOfRunningTasks.clear();
+            tasksWaitingForResources.clear();
+            resourceWaitTime = 0;
+            clearReadyQueue();
         } finally {
             lock.unlock();
         }
@@ -419,7 +464,14 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         this.failureHandler = handler;
     }
 
+    public void useTaskDurations(Map<String, Long> estimatedDurations) {
+        this.taskDurations = estimatedDurations;
+    }
+
     public TaskInfo getTaskToExecute() {
+        if (isReadyQueueEnabled()) {
+            return getTaskToExecuteFromReadyQueue();
+        }
         lock.lock();
         try {
             while (true) {
@@ -432,7 +484,7 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 boolean allTasksComplete = true;
                 for (TaskInfo taskInfo : executionPlan.values()) {
                     allTasksComplete = allTasksComplete && taskInfo.isComplete();
-                    if (taskInfo.isReady() && taskInfo.allDependenciesComplete() && canRunWithWithCurrentlyExecutedTasks(taskInfo.getTask())) {
+                    if (taskInfo.isReady() && taskInfo.allDependenciesComplete() && canRunWithWithCurrentlyExecutedTasks(taskInfo)) {
                         nextMatching = taskInfo;
                         break;
                     }
@@ -449,7 +501,7 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 } else {
                     if (nextMatching.allDependenciesSuccessful()) {
                         nextMatching.startExecution();
-                        recordTaskStarted(nextMatching.getTask());
+                        recordTaskStarted(nextMatching);
                         return nextMatching;
                     } else {
                         nextMatching.skipExecution();
@@ -462,12 +514,180 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
     }
 
-    private boolean canRunWithWithCurrentlyExecutedTasks(TaskInternal task) {
+    private TaskInfo getTaskToExecuteFromReadyQueue() {
+        lock.lock();
+        try {
+            maybeInitializeReadyQueue();
+            while (true) {
+                if (cancellationToken.isCancellationRequested()) {
+                    if (abortExecution()) {
+                        tasksCancelled = true;
+                    }
+                }
+                TaskInfo nextMatching = null;
+                Iterator<TaskInfo> candidates = readyQueue.iterator();
+                while (candidates.hasNext()) {
+                    TaskInfo taskInfo = candidates.next();
+                    if (!taskInfo.isReady() || !taskInfo.allDependenciesComplete()) {
+                        // Will be queued again when its state or one of its dependencies changes
+                        candidates.remove();
+                    } else if (canRunWithWithCurrentlyExecutedTasks(taskInfo)) {
+                        candidates.remove();
+                        nextMatching = taskInfo;
+                        break;
+                    }
+                }
+                if (nextMatching == null) {
+                    if (runningTasks == 0) {
+                        if (allTasksComplete()) {
+                            return null;
+                        }
+                        if (seedReadyQueue()) {
+                            continue;
+                        }
+                    }
+                    try {
+                        condition.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                } else {
+                    if (nextMatching.allDependenciesSuccessful()) {
+                        nextMatching.startExecution();
+                        recordTaskStarted(nextMatching);
+                        runningTasks++;
+                        return nextMatching;
+                    } else {
+                        nextMatching.skipExecution();
+                        queueDependents(nextMatching);
+                        condition.signalAll();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void maybeInitializeReadyQueue() {
+        if (readyQueueInitialized) {
+            return;
+        }
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            planPositions.put(taskInfo, planPositions.size());
+        }
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            for (TaskInfo mustSuccessor : taskInfo.getMustSuccessors()) {
+                mustPredecessors.put(mustSuccessor, taskInfo);
+            }
+        }
+        if (taskDurations != null) {
+            calculateRemainingDurations();
+        }
+        seedReadyQueue();
+        readyQueueInitialized = true;
+    }
+
+    /**
+     * Calculates, for each task in the plan, the estimated duration of the task plus the longest chain of tasks which depend on it. Tasks with no recorded duration are
+     * assumed to take the average duration of the tasks which do have one.
+     */
+    private void calculateRemainingDurations() {
+        long totalDuration = 0;
+        int knownDurations = 0;
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            Long duration = taskDurations.get(taskInfo.getTask().getPath());
+            if (duration != null) {
+                totalDuration += duration;
+                knownDurations++;
+            }
+        }
+        long defaultDuration = knownDurations == 0 ? 1 : Math.max(1, totalDuration / knownDurations);
+
+        // Dependents always appear later in the plan than their dependencies, so visit the plan in reverse order
+        List<TaskInfo> plan = new ArrayList<TaskInfo>(executionPlan.values());
+        for (int i = plan.size() - 1; i >= 0; i--) {
+            TaskInfo taskInfo = plan.get(i);
+            long longestDependentChain = 0;
+            for (TaskInfo dependent : taskInfo.getDependencyPredecessors()) {
+                Long remaining = remainingDurations.get(dependent);
+                if (remaining != null) {
+                    longestDependentChain = Math.max(longestDependentChain, remaining);
+                }
+            }
+            Long duration = taskDurations.get(taskInfo.getTask().getPath());
+            remainingDurations.put(taskInfo, (duration == null ? defaultDuration : duration) + longestDependentChain);
+        }
+    }
+
+    /**
+     * Queues every task in the plan which is ready to run. Returns true if any task was queued.
+     */
+    private boolean seedReadyQueue() {
+        boolean queued = false;
+        for (TaskInfo taskInfo : executionPlan.values()) {
+            if (taskInfo.isReady() && taskInfo.allDependenciesComplete()) {
+                queued |= readyQueue.add(taskInfo);
+            }
+        }
+        return queued;
+    }
+
+    private void queueDependents(TaskInfo taskInfo) {
+        for (TaskInfo dependent : Iterables.concat(taskInfo.getDependencyPredecessors(), mustPredecessors.get(taskInfo))) {
+            maybeQueue(dependent);
+        }
+    }
+
+    private void maybeQueue(TaskInfo taskInfo) {
+        if (isReadyQueueEnabled() && readyQueueInitialized && planPositions.containsKey(taskInfo) && taskInfo.isReady()) {
+            readyQueue.add(taskInfo);
+        }
+    }
+
+    private boolean isReadyQueueEnabled() {
+        return useReadyQueue || taskDurations != null;
+    }
+
+    private void clearReadyQueue() {
+        readyQueue.clear();
+        remainingDurations.clear();
+        taskDurations = null;
+        planPositions.clear();
+        mustPredecessors.clear();
+        readyQueueInitialized = false;
+        runningTasks = 0;
+    }
+
+    private boolean canRunWithWithCurrentlyExecutedTasks(TaskInfo taskInfo) {
+        String conflict = conflictWithCurrentlyExecutedTasks(taskInfo.getTask());
+        if (conflict == null) {
+            return true;
+        }
+        if (!tasksWaitingForResources.containsKey(taskInfo)) {
+            tasksWaitingForResources.put(taskInfo, new ResourceWait(conflict, System.currentTimeMillis()));
+        }
+        return false;
+    }
+
+    /**
+     * Returns a description of the resource held by a currently executing task which prevents the given task from executing, or null if the task can execute.
+     */
+    private String conflictWithCurrentlyExecutedTasks(TaskInternal task) {
         String projectPath = task.getProject().getPath();
-        boolean canRun = !projectsWithRunningTasks.contains(projectPath);
-        canRun = canRun || (isParallelizable(task) && !projectsWithRunningNonParallelizableTasks.contains(projectPath));
-        canRun = canRun && noOverlapWithRunningTasksOutputs(task);
-        return canRun;
+        if (projectsWithRunningTasks.contains(projectPath) && (!isParallelizable(task) || projectsWithRunningNonParallelizableTasks.contains(projectPath))) {
+            return String.format("the lock on %s", task.getProject());
+        }
+        for (String resource : task.getSharedResources()) {
+            if (sharedResourcesOfRunningTasks.contains(resource)) {
+                return String.format("shared resource '%s'", resource);
+            }
+        }
+        String overlappingOutput = overlapWithRunningTasksOutputs(task);
+        if (overlappingOutput != null) {
+            return String.format("overlapping output '%s'", overlappingOutput);
+        }
+        return null;
     }
 
     private String canonicalizedPath(File file) {
@@ -480,19 +700,19 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return path;
     }
 
-    private boolean noOverlapWithRunningTasksOutputs(TaskInternal task) {
+    private String overlapWithRunningTasksOutputs(TaskInternal task) {
         if (canonicalizedOutputsOfRunningTasks.isEmpty()) {
-            return true;
+            return null;
         }
         for (File output : task.getOutputs().getFiles()) {
             String path = canonicalizedPath(output);
             for (String runningTaskOutputPath : canonicalizedOutputsOfRunningTasks) {
                 if (pathsOverlap(path, runningTaskOutputPath)) {
-                    return false;
+                    return runningTaskOutputPath;
                 }
             }
         }
-        return true;
+        return null;
     }
 
     private boolean pathsOverlap(String firstPath, String secondPath) {
@@ -513,18 +733,29 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     boolean isParallelizable(TaskInternal task) {
+        if (task.isSharedResourcesDeclared()) {
+            return true;
+        }
         return task.getClass().isAnnotationPresent(ParallelizableTask.class) && !task.isHasCustomActions();
     }
 
-    private void recordTaskStarted(TaskInternal task) {
+    private void recordTaskStarted(TaskInfo taskInfo) {
+        TaskInternal task = taskInfo.getTask();
         String projectPath = task.getProject().getPath();
         if (!isParallelizable(task)) {
             projectsWithRunningNonParallelizableTasks.add(projectPath);
         }
         projectsWithRunningTasks.add(projectPath);
+        sharedResourcesOfRunningTasks.addAll(task.getSharedResources());
         for (File output : task.getOutputs().getFiles()) {
             canonicalizedOutputsOfRunningTasks.add(canonicalizedPath(output));
         }
+        ResourceWait wait = tasksWaitingForResources.remove(taskInfo);
+        if (wait != null) {
+            long waitTime = System.currentTimeMillis() - wait.since;
+            resourceWaitTime += waitTime;
+            LOGGER.debug("{} waited {} for {}.", task, prettyTime(waitTime), wait.resource);
+        }
     }
 
     private void recordTaskCompleted(TaskInternal task) {
@@ -533,6 +764,9 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             projectsWithRunningNonParallelizableTasks.remove(projectPath);
         }
         projectsWithRunningTasks.remove(projectPath);
+        for (String resource : task.getSharedResources()) {
+            sharedResourcesOfRunningTasks.remove(resource);
+        }
         for (File output : task.getOutputs().getFiles()) {
             canonicalizedOutputsOfRunningTasks.remove(canonicalizedPath(output));
         }
@@ -548,6 +782,10 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
             taskInfo.finishExecution();
             recordTaskCompleted(taskInfo.getTask());
+            if (isReadyQueueEnabled()) {
+                runningTasks--;
+                queueDependents(taskInfo);
+            }
             condition.signalAll();
         } finally {
             lock.unlock();
@@ -568,6 +806,7 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
         if (node.isMustNotRun() || node.isRequired()) {
             node.enforceRun();
+            maybeQueue(node);
         }
     }
 
@@ -600,6 +839,10 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 aborted = true;
             }
         }
+        if (aborted && isReadyQueueEnabled() && readyQueueInitialized) {
+            // Skipped tasks may allow any of the remaining tasks to run
+            seedReadyQueue();
+        }
         return aborted;
     }
 
@@ -613,6 +856,9 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                     throw new RuntimeException(e);
                 }
             }
+            if (resourceWaitTime > 0) {
+                LOGGER.info("Tasks waited a total of {} for project locks, shared resources or overlapping outputs held by other tasks.", prettyTime(resourceWaitTime));
+            }
             rethrowFailures();
         } finally {
             lock.unlock();
@@ -668,4 +914,14 @@ class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             task.getState().rethrowFailure();
         }
     }
+
+    private static class ResourceWait {
+        private final String resource;
+        private final long since;
+
+        private ResourceWait(String resource, long since) {
+            this.resource = resource;
+            this.since = since;
+        }
+    }
 }
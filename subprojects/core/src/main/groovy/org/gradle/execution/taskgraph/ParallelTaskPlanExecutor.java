@@ -16,21 +16,34 @@
 
 package org.gradle.execution.taskgraph;
 
+import org.gradle.api.Task;
 import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.StoppableExecutor;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
 
 class ParallelTaskPlanExecutor extends AbstractTaskPlanExecutor {
     private static final Logger LOGGER = Logging.getLogger(ParallelTaskPlanExecutor.class);
     private final int executorCount;
     private final ExecutorFactory executorFactory;
+    private final TaskDurationRepository taskDurationRepository;
 
     public ParallelTaskPlanExecutor(int numberOfParallelExecutors, ExecutorFactory executorFactory) {
+        this(numberOfParallelExecutors, executorFactory, null);
+    }
+
+    /**
+     * @param taskDurationRepository the durations to use to prioritise tasks on the critical path, or null to run tasks in plan order.
+     */
+    public ParallelTaskPlanExecutor(int numberOfParallelExecutors, ExecutorFactory executorFactory, TaskDurationRepository taskDurationRepository) {
         this.executorFactory = executorFactory;
+        this.taskDurationRepository = taskDurationRepository;
         if (numberOfParallelExecutors < 1) {
             throw new IllegalArgumentException("Not a valid number of parallel executors: " + numberOfParallelExecutors);
         }
@@ -39,6 +52,25 @@ class ParallelTaskPlanExecutor extends AbstractTaskPlanExecutor {
     }
 
     public void process(final TaskExecutionPlan taskExecutionPlan, final TaskExecutionListener taskListener) {
+        if (taskDurationRepository == null) {
+            execute(taskExecutionPlan, taskListener);
+            return;
+        }
+
+        List<String> taskPaths = new ArrayList<String>();
+        for (Task task : taskExecutionPlan.getTasks()) {
+            taskPaths.add(task.getPath());
+        }
+        taskExecutionPlan.useTaskDurations(taskDurationRepository.getDurations(taskPaths));
+        TaskDurationRecorder durationRecorder = new TaskDurationRecorder(taskListener);
+        try {
+            execute(taskExecutionPlan, durationRecorder);
+        } finally {
+            taskDurationRepository.recordDurations(durationRecorder.getDurations());
+        }
+    }
+
+    private void execute(TaskExecutionPlan taskExecutionPlan, TaskExecutionListener taskListener) {
         StoppableExecutor executor = executorFactory.create("Task worker");
         try {
             startAdditionalWorkers(taskExecutionPlan, taskListener, executor);
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.Task;
+import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.tasks.TaskState;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records how long each task takes to execute, and forwards notifications to another listener. Only tasks which actually execute their actions are recorded, as
+ * these are the durations which are interesting when scheduling a build.
+ */
+class TaskDurationRecorder implements TaskExecutionListener {
+    private final TaskExecutionListener delegate;
+    private final Map<Task, Long> startTimes = new HashMap<Task, Long>();
+    private final Map<String, Long> durations = new HashMap<String, Long>();
+
+    TaskDurationRecorder(TaskExecutionListener delegate) {
+        this.delegate = delegate;
+    }
+
+    public void beforeExecute(Task task) {
+        synchronized (startTimes) {
+            startTimes.put(task, System.currentTimeMillis());
+        }
+        delegate.beforeExecute(task);
+    }
+
+    public void afterExecute(Task task, TaskState state) {
+        try {
+            delegate.afterExecute(task, state);
+        } finally {
+            synchronized (startTimes) {
+                Long startTime = startTimes.remove(task);
+                if (startTime != null && state.getExecuted() && !state.getSkipped() && state.getFailure() == null) {
+                    durations.put(task.getPath(), System.currentTimeMillis() - startTime);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the duration in milliseconds of each task which has executed, keyed by task path.
+     */
+    Map<String, Long> getDurations() {
+        synchronized (startTimes) {
+            return new HashMap<String, Long>(durations);
+        }
+    }
+}
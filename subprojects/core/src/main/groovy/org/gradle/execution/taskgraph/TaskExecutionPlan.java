@@ -19,6 +19,7 @@ package org.gradle.execution.taskgraph;
 import org.gradle.api.Task;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a graph of dependent tasks, returned in execution order.
@@ -47,4 +48,11 @@ public interface TaskExecutionPlan {
      * @return The task, or null if no matching tasks remain.
      */
     TaskInfo getTaskToExecute();
+
+    /**
+     * Provides the estimated durations of tasks, so that the plan can start the tasks on the longest chain of dependent tasks first.
+     * Must be called before the first task is executed.
+     * @param estimatedDurations the estimated duration in milliseconds of each task, keyed by task path.
+     */
+    void useTaskDurations(Map<String, Long> estimatedDurations);
 }
@@ -16,21 +16,31 @@
 
 package org.gradle.execution.taskgraph;
 
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
 import org.gradle.internal.Factory;
 import org.gradle.internal.concurrent.ExecutorFactory;
 
 public class TaskPlanExecutorFactory implements Factory<TaskPlanExecutor> {
     private final int parallelThreads;
     private final ExecutorFactory executorFactory;
+    private final TaskDurationRepository taskDurationRepository;
 
     public TaskPlanExecutorFactory(int parallelThreads, ExecutorFactory executorFactory) {
+        this(parallelThreads, executorFactory, null);
+    }
+
+    /**
+     * @param taskDurationRepository the durations to use to prioritise tasks on the critical path when executing in parallel, or null to run tasks in plan order.
+     */
+    public TaskPlanExecutorFactory(int parallelThreads, ExecutorFactory executorFactory, TaskDurationRepository taskDurationRepository) {
         this.parallelThreads = parallelThreads;
         this.executorFactory = executorFactory;
+        this.taskDurationRepository = taskDurationRepository;
     }
 
     public TaskPlanExecutor create() {
         if (executeProjectsInParallel()) {
-            return new ParallelTaskPlanExecutor(numberOfParallelThreads(), executorFactory);
+            return new ParallelTaskPlanExecutor(numberOfParallelThreads(), executorFactory, taskDurationRepository);
         }
         return new DefaultTaskPlanExecutor();
     }
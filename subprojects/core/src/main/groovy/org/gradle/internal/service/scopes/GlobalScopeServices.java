@@ -18,6 +18,8 @@ package org.gradle.internal.service.scopes;
 
 import org.gradle.StartParameter;
 import org.gradle.api.internal.*;
+import org.gradle.api.internal.changedetection.state.FileStateCache;
+import org.gradle.api.internal.changedetection.state.FileStateCacheFactory;
 import org.gradle.api.internal.changedetection.state.InMemoryTaskArtifactCache;
 import org.gradle.api.internal.classpath.DefaultModuleRegistry;
 import org.gradle.api.internal.classpath.DefaultPluginModuleRegistry;
@@ -50,6 +52,7 @@ import org.gradle.listener.ListenerManager;
 import org.gradle.messaging.remote.MessagingServer;
 import org.gradle.messaging.remote.internal.MessagingServices;
 import org.gradle.messaging.remote.internal.inet.InetAddressFactory;
+import org.gradle.process.internal.WorkerProcessPool;
 
 import java.util.List;
 
@@ -158,6 +161,10 @@ public class GlobalScopeServices {
         return new InMemoryTaskArtifactCache();
     }
 
+    FileStateCache createFileStateCache() {
+        return new FileStateCacheFactory(environment).create();
+    }
+
     DefaultFileLockContentionHandler createFileLockContentionHandler(ExecutorFactory executorFactory, MessagingServices messagingServices) {
         return new DefaultFileLockContentionHandler(
                 executorFactory,
@@ -177,4 +184,8 @@ public class GlobalScopeServices {
         return new ClassLoaderCacheFactory();
     }
 
+    WorkerProcessPool createWorkerProcessPool() {
+        return new WorkerProcessPool();
+    }
+
 }
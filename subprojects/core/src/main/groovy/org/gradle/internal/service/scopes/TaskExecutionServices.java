@@ -16,12 +16,13 @@
 package org.gradle.internal.service.scopes;
 
 import org.gradle.StartParameter;
+import org.gradle.api.Task;
 import org.gradle.api.execution.TaskActionListener;
 import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.changes.DefaultTaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.changes.ShortCircuitTaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.state.*;
-import org.gradle.api.internal.hash.DefaultHasher;
+import org.gradle.api.internal.hash.HasherFactory;
 import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.api.internal.tasks.execution.*;
 import org.gradle.api.invocation.Gradle;
@@ -38,6 +39,16 @@ import org.gradle.messaging.serialize.DefaultSerializerRegistry;
 import org.gradle.messaging.serialize.SerializerRegistry;
 
 public class TaskExecutionServices {
+    /**
+     * The number of threads to use to snapshot task inputs and outputs. 0 snapshots serially, -1 uses one thread per available processor.
+     */
+    public static final String PARALLEL_SNAPSHOT_THREADS_PROPERTY = "org.gradle.snapshot.threads";
+
+    /**
+     * When true, parallel execution records task durations and starts the tasks on the longest chain of dependent tasks first.
+     */
+    public static final String CRITICAL_PATH_SCHEDULING_PROPERTY = "org.gradle.parallel.criticalpath";
+
     TaskExecuter createTaskExecuter(TaskArtifactStateRepository repository, ListenerManager listenerManager) {
         return new ExecuteAtMostOnceTaskExecuter(
                 new SkipOnlyIfTaskExecuter(
@@ -61,13 +72,25 @@ public class TaskExecutionServices {
         return new DefaultTaskArtifactStateCacheAccess(gradle, cacheRepository, decorator);
     }
 
-    FileSnapshotter createFileSnapshotter(TaskArtifactStateCacheAccess cacheAccess) {
-        return new CachingFileSnapshotter(new DefaultHasher(), cacheAccess);
+    CachingFileSnapshotter createFileSnapshotter(TaskArtifactStateCacheAccess cacheAccess, final FileStateCache fileStateCache, ListenerManager listenerManager) {
+        // Discard the cached state of the outputs of each task that executes, as a file can be rewritten without changing its length or timestamp
+        listenerManager.addListener(new TaskActionListener() {
+            public void beforeActions(Task task) {
+            }
+
+            public void afterActions(Task task) {
+                fileStateCache.invalidate(task.getOutputs().getFiles());
+            }
+        });
+        return new CachingFileSnapshotter(new HasherFactory().create(), cacheAccess, fileStateCache);
     }
 
-    TaskArtifactStateRepository createTaskArtifactStateRepository(Instantiator instantiator, TaskArtifactStateCacheAccess cacheAccess, StartParameter startParameter, FileSnapshotter fileSnapshotter) {
-        FileCollectionSnapshotter fileCollectionSnapshotter = new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess);
+    FileCollectionSnapshotter createFileCollectionSnapshotter(TaskArtifactStateCacheAccess cacheAccess, CachingFileSnapshotter fileSnapshotter, ExecutorFactory executorFactory) {
+        return new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess, createParallelFileSnapshotter(fileSnapshotter, cacheAccess, executorFactory));
+    }
 
+    TaskArtifactStateRepository createTaskArtifactStateRepository(Instantiator instantiator, TaskArtifactStateCacheAccess cacheAccess, StartParameter startParameter,
+                                                                  FileCollectionSnapshotter fileCollectionSnapshotter) {
         FileCollectionSnapshotter outputFilesSnapshotter = new OutputFilesCollectionSnapshotter(fileCollectionSnapshotter, new RandomLongIdGenerator(), cacheAccess);
 
         SerializerRegistry<FileCollectionSnapshot> serializerRegistry = new DefaultSerializerRegistry<FileCollectionSnapshot>();
@@ -91,7 +114,22 @@ public class TaskExecutionServices {
         );
     }
 
-    TaskPlanExecutor createTaskExecutorFactory(StartParameter startParameter, ExecutorFactory executorFactory) {
-        return new TaskPlanExecutorFactory(startParameter.getParallelThreadCount(), executorFactory).create();
+    private ParallelFileSnapshotter createParallelFileSnapshotter(CachingFileSnapshotter fileSnapshotter, TaskArtifactStateCacheAccess cacheAccess, ExecutorFactory executorFactory) {
+        int snapshotThreads = Integer.getInteger(PARALLEL_SNAPSHOT_THREADS_PROPERTY, 0);
+        if (snapshotThreads == 0) {
+            return null;
+        }
+        if (snapshotThreads < 0) {
+            snapshotThreads = Runtime.getRuntime().availableProcessors();
+        }
+        return new ParallelFileSnapshotter(fileSnapshotter, cacheAccess, executorFactory, snapshotThreads);
+    }
+
+    TaskPlanExecutor createTaskExecutorFactory(StartParameter startParameter, ExecutorFactory executorFactory, TaskArtifactStateCacheAccess cacheAccess) {
+        TaskDurationRepository taskDurationRepository = null;
+        if (Boolean.getBoolean(CRITICAL_PATH_SCHEDULING_PROPERTY)) {
+            taskDurationRepository = new CacheBackedTaskDurationRepository(cacheAccess);
+        }
+        return new TaskPlanExecutorFactory(startParameter.getParallelThreadCount(), executorFactory, taskDurationRepository).create();
     }
 }
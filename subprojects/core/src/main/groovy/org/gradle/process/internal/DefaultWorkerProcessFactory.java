@@ -21,6 +21,7 @@ import org.gradle.api.internal.ClassPathRegistry;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.classloader.ClasspathUtil;
 import org.gradle.internal.id.IdGenerator;
 import org.gradle.messaging.remote.Address;
@@ -31,12 +32,15 @@ import org.gradle.process.internal.child.ApplicationClassesInIsolatedClassLoader
 import org.gradle.process.internal.child.ApplicationClassesInSystemClassLoaderWorkerFactory;
 import org.gradle.process.internal.child.EncodedStream;
 import org.gradle.process.internal.child.WorkerFactory;
+import org.gradle.process.internal.launcher.GradleWorkerMain;
 import org.gradle.util.GUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.List;
@@ -49,15 +53,26 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
     private final ClassPathRegistry classPathRegistry;
     private final FileResolver resolver;
     private final IdGenerator<?> idGenerator;
+    private final WorkerProcessPool workerProcessPool;
 
     public DefaultWorkerProcessFactory(LogLevel workerLogLevel, MessagingServer server,
                                        ClassPathRegistry classPathRegistry, FileResolver resolver,
                                        IdGenerator<?> idGenerator) {
+        this(workerLogLevel, server, classPathRegistry, resolver, idGenerator, null);
+    }
+
+    /**
+     * @param workerProcessPool The pool to run reusable worker processes in. When null, reusable worker processes are not reused.
+     */
+    public DefaultWorkerProcessFactory(LogLevel workerLogLevel, MessagingServer server,
+                                       ClassPathRegistry classPathRegistry, FileResolver resolver,
+                                       IdGenerator<?> idGenerator, WorkerProcessPool workerProcessPool) {
         this.workerLogLevel = workerLogLevel;
         this.server = server;
         this.classPathRegistry = classPathRegistry;
         this.resolver = resolver;
         this.idGenerator = idGenerator;
+        this.workerProcessPool = workerProcessPool;
     }
 
     public WorkerProcessBuilder create() {
@@ -75,6 +90,9 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
             if (getWorker() == null) {
                 throw new IllegalStateException("No worker action specified for this worker process.");
             }
+            if (isReusable() && workerProcessPool != null) {
+                return buildPooled();
+            }
 
             final DefaultWorkerProcess workerProcess = new DefaultWorkerProcess(120, TimeUnit.SECONDS);
             ConnectionAcceptor acceptor = server.accept(new Action<ObjectConnection>() {
@@ -115,6 +133,52 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
             return workerProcess;
         }
 
+        private WorkerProcess buildPooled() {
+            final PooledWorkerProcess workerProcess = new PooledWorkerProcess(workerProcessPool, 120, TimeUnit.SECONDS);
+            ConnectionAcceptor acceptor = server.accept(new Action<ObjectConnection>() {
+                public void execute(ObjectConnection connection) {
+                    workerProcess.onConnect(connection);
+                }
+            });
+            workerProcess.startAccepting(acceptor);
+            Address localAddress = acceptor.getAddress();
+
+            List<URL> implementationClassPath = ClasspathUtil.getClasspath(getWorker().getClass().getClassLoader());
+            Object id = idGenerator.generateId();
+            String displayName = getBaseName() + " " + id;
+
+            // The application classes are always loaded into an isolated ClassLoader, so that the next worker run in the same JVM can use a different classpath
+            WorkerFactory workerFactory = new ApplicationClassesInIsolatedClassLoaderWorkerFactory(id, displayName, this,
+                    implementationClassPath, localAddress, classPathRegistry);
+
+            LOGGER.debug("Creating {}", displayName);
+            LOGGER.debug("Using application classpath {}", getApplicationClasspath());
+            LOGGER.debug("Using implementation classpath {}", implementationClassPath);
+
+            JavaExecHandleBuilder javaCommand = getJavaCommand();
+            javaCommand.systemProperty(GradleWorkerMain.REUSABLE_PROPERTY, "true");
+            workerFactory.prepareJavaCommand(javaCommand);
+            javaCommand.setDisplayName(getBaseName());
+            javaCommand.args("'" + getBaseName() + "'");
+            workerProcess.setCommand(javaCommand, encodeSession(workerFactory));
+
+            return workerProcess;
+        }
+
+        private byte[] encodeSession(WorkerFactory workerFactory) {
+            byte[] content = GUtil.serialize(workerFactory.create());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream encoded = new DataOutputStream(new EncodedStream.EncodedOutput(bytes));
+            try {
+                encoded.writeInt(content.length);
+                encoded.write(content);
+                encoded.flush();
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+            return bytes.toByteArray();
+        }
+
         private void attachStdInContent(WorkerFactory workerFactory, JavaExecHandleBuilder javaCommand) {
             ByteArrayOutputStream bytes = new ByteArrayOutputStream();
             OutputStream encoded = new EncodedStream.EncodedOutput(bytes);
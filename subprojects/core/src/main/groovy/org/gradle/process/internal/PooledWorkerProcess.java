@@ -0,0 +1,301 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal;
+
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.messaging.remote.ConnectionAcceptor;
+import org.gradle.messaging.remote.ObjectConnection;
+import org.gradle.messaging.serialize.kryo.StatefulSerializer;
+import org.gradle.process.ExecResult;
+import org.gradle.process.internal.child.WorkerSessionListener;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.String.format;
+
+/**
+ * A {@link WorkerProcess} which runs its worker action in a JVM from a {@link WorkerProcessPool}, starting a new JVM only when the pool has no idle JVM with the same
+ * options. The JVM is returned to the pool when the worker action completes successfully. Otherwise, the JVM is discarded and its exit value is reported in the
+ * same way as for a {@link DefaultWorkerProcess}.
+ */
+public class PooledWorkerProcess implements WorkerProcess {
+    private final static Logger LOGGER = Logging.getLogger(PooledWorkerProcess.class);
+    private final Lock lock = new ReentrantLock();
+    private final Condition condition = lock.newCondition();
+    private final WorkerProcessPool pool;
+    private final long connectTimeout;
+    private final SessionListener sessionListener = new SessionListener();
+    private final ExecHandleListener processListener = new ExecHandleListener() {
+        public void executionStarted(ExecHandle execHandle) {
+        }
+
+        public void executionFinished(ExecHandle execHandle, ExecResult execResult) {
+            onProcessStop();
+        }
+    };
+    private JavaExecHandleBuilder javaCommand;
+    private byte[] action;
+    private ConnectionAcceptor acceptor;
+    private ObjectConnection connection;
+    private WorkerProcessPool.PooledJvm jvm;
+    private boolean running;
+    private WorkerProcessPool.Statistics statistics;
+
+    public PooledWorkerProcess(WorkerProcessPool pool, int connectTimeoutValue, TimeUnit connectTimeoutUnits) {
+        this.pool = pool;
+        this.connectTimeout = connectTimeoutUnits.toMillis(connectTimeoutValue);
+    }
+
+    /**
+     * Sets the command to use to start a JVM, if required, and the encoded worker action to send to the JVM.
+     */
+    public void setCommand(JavaExecHandleBuilder javaCommand, byte[] action) {
+        this.javaCommand = javaCommand;
+        this.action = action;
+    }
+
+    public void startAccepting(ConnectionAcceptor acceptor) {
+        lock.lock();
+        try {
+            this.acceptor = acceptor;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onConnect(ObjectConnection connection) {
+        ConnectionAcceptor stoppable;
+
+        lock.lock();
+        try {
+            LOGGER.debug("Received connection {} from {}", connection, jvm);
+            this.connection = new SessionTrackingConnection(connection);
+            condition.signalAll();
+            stoppable = acceptor;
+        } finally {
+            lock.unlock();
+        }
+
+        stoppable.requestStop();
+    }
+
+    private void onProcessStop() {
+        lock.lock();
+        try {
+            running = false;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ObjectConnection getConnection() {
+        return connection;
+    }
+
+    public void start() {
+        try {
+            doStart();
+        } catch (Throwable t) {
+            if (jvm != null) {
+                pool.discard(jvm);
+                jvm.execHandle.abort();
+            }
+            cleanup();
+            throw UncheckedException.throwAsUncheckedException(t);
+        }
+    }
+
+    private void doStart() {
+        String key = WorkerProcessPool.keyFor(javaCommand);
+        WorkerProcessPool.PooledJvm jvm = pool.acquire(key);
+        boolean reused = jvm != null;
+        if (!reused) {
+            jvm = pool.start(key, javaCommand);
+        } else {
+            LOGGER.info("Reusing {} for {}.", jvm.execHandle, javaCommand.getDisplayName());
+        }
+
+        lock.lock();
+        try {
+            this.jvm = jvm;
+            running = true;
+        } finally {
+            lock.unlock();
+        }
+
+        long startTime = System.currentTimeMillis();
+        jvm.execHandle.addListener(processListener);
+        if (jvm.execHandle.getState() != ExecHandleState.STARTED) {
+            onProcessStop();
+        }
+        jvm.send(action);
+        action = null;
+
+        Date connectExpiry = new Date(startTime + connectTimeout);
+        lock.lock();
+        try {
+            while (connection == null && running) {
+                try {
+                    if (!condition.awaitUntil(connectExpiry)) {
+                        throw new ExecException(format("Unable to connect to the child process '%s'.\n"
+                                + "It is likely that the child process have crashed - please find the stack trace in the build log.\n"
+                                + "This exception might occur when the build machine is extremely loaded.\n"
+                                + "The connection attempt hit a timeout after %.1f seconds (last known process state: %s, running: %s).", jvm.execHandle, ((double) connectTimeout) / 1000, jvm.execHandle.getState(), running));
+                    }
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            if (connection == null) {
+                jvm.execHandle.waitForFinish().rethrowFailure().assertNormalExitValue();
+                throw new ExecException(format("Never received a connection from %s.", jvm.execHandle));
+            }
+        } finally {
+            lock.unlock();
+        }
+        long saved = pool.connected(jvm, System.currentTimeMillis() - startTime);
+        statistics = reused ? new WorkerProcessPool.Statistics(0, 1, saved) : new WorkerProcessPool.Statistics(1, 0, 0);
+    }
+
+    /**
+     * Returns whether this worker process started a new JVM or reused one from the pool. Returns null until the worker process has started.
+     */
+    public WorkerProcessPool.Statistics getStatistics() {
+        return statistics;
+    }
+
+    public ExecResult waitForStop() {
+        WorkerProcessPool.PooledJvm jvm = this.jvm;
+        boolean completed = false;
+        try {
+            // Wait for the worker to close its end of the connection, so that the session listener has received all messages
+            cleanup();
+            completed = sessionListener.isCompleted();
+        } finally {
+            jvm.execHandle.removeListener(processListener);
+            if (!completed) {
+                pool.discard(jvm);
+            }
+        }
+        if (completed) {
+            pool.release(jvm);
+            return new CompletedSessionResult();
+        }
+        return jvm.execHandle.waitForFinish().assertNormalExitValue();
+    }
+
+    private void cleanup() {
+        CompositeStoppable stoppable;
+        lock.lock();
+        try {
+            stoppable = CompositeStoppable.stoppable(acceptor, connection);
+        } finally {
+            this.connection = null;
+            this.acceptor = null;
+            lock.unlock();
+        }
+        stoppable.stop();
+    }
+
+    @Override
+    public String toString() {
+        return "PooledWorkerProcess{"
+                + "running=" + running
+                + ", execHandle=" + (jvm == null ? null : jvm.execHandle)
+                + '}';
+    }
+
+    private static class SessionListener implements WorkerSessionListener {
+        private volatile boolean completed;
+
+        public void sessionCompleted() {
+            completed = true;
+        }
+
+        boolean isCompleted() {
+            return completed;
+        }
+    }
+
+    /**
+     * Registers the session listener when the connection is connected. The listener is registered last so that the connection uses the class loader of the
+     * types registered by the worker process' owner to deserialize messages.
+     */
+    private class SessionTrackingConnection implements ObjectConnection {
+        private final ObjectConnection delegate;
+
+        SessionTrackingConnection(ObjectConnection delegate) {
+            this.delegate = delegate;
+        }
+
+        public <T> T addOutgoing(Class<T> type) {
+            return delegate.addOutgoing(type);
+        }
+
+        public <T> void addIncoming(Class<T> type, T instance) {
+            delegate.addIncoming(type, instance);
+        }
+
+        public void useParameterSerializer(StatefulSerializer<Object[]> serializer) {
+            delegate.useParameterSerializer(serializer);
+        }
+
+        public void useDefaultSerialization(ClassLoader methodParamClassLoader) {
+            delegate.useDefaultSerialization(methodParamClassLoader);
+        }
+
+        public void connect() {
+            delegate.addIncoming(WorkerSessionListener.class, sessionListener);
+            delegate.connect();
+        }
+
+        public void requestStop() {
+            delegate.requestStop();
+        }
+
+        public void stop() {
+            delegate.stop();
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    private static class CompletedSessionResult implements ExecResult {
+        public int getExitValue() {
+            return 0;
+        }
+
+        public ExecResult assertNormalExitValue() throws ExecException {
+            return this;
+        }
+
+        public ExecResult rethrowFailure() throws ExecException {
+            return this;
+        }
+    }
+}
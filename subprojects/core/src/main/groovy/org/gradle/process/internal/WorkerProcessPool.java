@@ -0,0 +1,405 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal;
+
+import org.gradle.api.Action;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.process.ExecResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the JVMs of reusable worker processes alive once their worker action has completed, so that later worker processes with the same JVM options can run in
+ * them rather than starting a new JVM. Idle JVMs are matched on their executable, working directory, environment and complete command-line, and are stopped by a
+ * timer once they have been idle for the maximum idle time, or when the pool is stopped.
+ *
+ * <p>Each JVM runs {@link org.gradle.process.internal.launcher.GradleWorkerMain} in reusable mode, and receives the worker actions to run on its standard input.</p>
+ */
+public class WorkerProcessPool implements Stoppable {
+    public static final long DEFAULT_MAX_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final Lock lock = new ReentrantLock();
+    private final Map<String, LinkedList<PooledJvm>> idle = new HashMap<String, LinkedList<PooledJvm>>();
+    private final long maxIdleMillis;
+    private int started;
+    private int reused;
+    private long savedStartupMillis;
+    private boolean stopped;
+    private Timer expiryTimer;
+
+    public WorkerProcessPool() {
+        this(DEFAULT_MAX_IDLE_MILLIS);
+    }
+
+    public WorkerProcessPool(long maxIdleMillis) {
+        this.maxIdleMillis = maxIdleMillis;
+    }
+
+    /**
+     * Returns the key under which a JVM started by the given command is pooled.
+     */
+    static String keyFor(JavaExecHandleBuilder javaCommand) {
+        StringBuilder key = new StringBuilder();
+        key.append(javaCommand.getExecutable()).append('\n');
+        key.append(javaCommand.getWorkingDir()).append('\n');
+        key.append(new TreeMap<String, String>(javaCommand.getActualEnvironment())).append('\n');
+        for (String argument : javaCommand.getAllArguments()) {
+            key.append(argument).append('\n');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Takes an idle JVM with the given key from this pool. Returns null when there is no such JVM.
+     */
+    PooledJvm acquire(String key) {
+        lock.lock();
+        try {
+            expireIdle();
+            LinkedList<PooledJvm> candidates = idle.get(key);
+            while (candidates != null && !candidates.isEmpty()) {
+                // Prefer the most recently used JVM, as it is the most likely to be warmed up
+                PooledJvm jvm = candidates.removeLast();
+                if (candidates.isEmpty()) {
+                    idle.remove(key);
+                }
+                if (jvm.execHandle.getState() == ExecHandleState.STARTED) {
+                    return jvm;
+                }
+                jvm.input.close();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new JVM with the given key, using the given command. Actions are sent to the JVM using {@link PooledJvm#send(byte[])}.
+     */
+    PooledJvm start(String key, JavaExecHandleBuilder javaCommand) {
+        WorkerInput input = new WorkerInput();
+        javaCommand.setStandardInput(input);
+        final PooledJvm jvm = new PooledJvm(key, javaCommand.build(), input);
+        jvm.execHandle.addListener(new ExecHandleListener() {
+            public void executionStarted(ExecHandle execHandle) {
+            }
+
+            public void executionFinished(ExecHandle execHandle, ExecResult execResult) {
+                discard(jvm);
+            }
+        });
+        lock.lock();
+        try {
+            started++;
+        } finally {
+            lock.unlock();
+        }
+        jvm.execHandle.start();
+        return jvm;
+    }
+
+    /**
+     * Records how long it took for a worker action to connect after being sent to the given JVM.
+     *
+     * @return An estimate of the time saved by reusing the JVM, or 0 when the JVM was started for this worker action.
+     */
+    long connected(PooledJvm jvm, long connectMillis) {
+        lock.lock();
+        try {
+            long saved = 0;
+            if (jvm.sessions == 0) {
+                jvm.startupMillis = connectMillis;
+            } else {
+                reused++;
+                saved = Math.max(0, jvm.startupMillis - connectMillis);
+                savedStartupMillis += saved;
+            }
+            jvm.sessions++;
+            return saved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the given JVM to this pool, once its worker action has completed successfully.
+     */
+    void release(PooledJvm jvm) {
+        lock.lock();
+        try {
+            if (stopped || jvm.execHandle.getState() != ExecHandleState.STARTED) {
+                jvm.input.close();
+                return;
+            }
+            jvm.releasedAt = System.currentTimeMillis();
+            LinkedList<PooledJvm> candidates = idle.get(jvm.key);
+            if (candidates == null) {
+                candidates = new LinkedList<PooledJvm>();
+                idle.put(jvm.key, candidates);
+            }
+            candidates.add(jvm);
+            expireIdle();
+            scheduleExpiry();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scheduleExpiry() {
+        if (expiryTimer == null) {
+            expiryTimer = new Timer("Worker process pool expiry", true);
+        }
+        expiryTimer.schedule(new TimerTask() {
+            public void run() {
+                lock.lock();
+                try {
+                    expireIdle();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }, maxIdleMillis);
+    }
+
+    /**
+     * Removes the given JVM from this pool. The JVM exits once it has finished its current worker action, if any.
+     */
+    void discard(PooledJvm jvm) {
+        lock.lock();
+        try {
+            LinkedList<PooledJvm> candidates = idle.get(jvm.key);
+            if (candidates != null && candidates.remove(jvm) && candidates.isEmpty()) {
+                idle.remove(jvm.key);
+            }
+        } finally {
+            lock.unlock();
+        }
+        jvm.input.close();
+    }
+
+    private void expireIdle() {
+        long expiry = System.currentTimeMillis() - maxIdleMillis;
+        Iterator<LinkedList<PooledJvm>> iterator = idle.values().iterator();
+        while (iterator.hasNext()) {
+            LinkedList<PooledJvm> candidates = iterator.next();
+            while (!candidates.isEmpty() && candidates.getFirst().releasedAt <= expiry) {
+                candidates.removeFirst().input.close();
+            }
+            if (candidates.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public Statistics getStatistics() {
+        lock.lock();
+        try {
+            return new Statistics(started, reused, savedStartupMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops all idle JVMs. JVMs which are running a worker action are stopped once the action has completed.
+     */
+    public void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            if (expiryTimer != null) {
+                expiryTimer.cancel();
+                expiryTimer = null;
+            }
+            for (LinkedList<PooledJvm> candidates : idle.values()) {
+                for (PooledJvm jvm : candidates) {
+                    jvm.input.close();
+                }
+            }
+            idle.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The number of JVMs started and reused by a pool, or by a set of worker processes.
+     */
+    public static class Statistics {
+        private final int started;
+        private final int reused;
+        private final long savedStartupMillis;
+
+        public Statistics(int started, int reused, long savedStartupMillis) {
+            this.started = started;
+            this.reused = reused;
+            this.savedStartupMillis = savedStartupMillis;
+        }
+
+        public int getStarted() {
+            return started;
+        }
+
+        public int getReused() {
+            return reused;
+        }
+
+        /**
+         * An estimate of the time saved by reusing JVMs rather than starting new ones.
+         */
+        public long getSavedStartupMillis() {
+            return savedStartupMillis;
+        }
+
+        /**
+         * Returns the JVMs started and reused since the given statistics were taken.
+         */
+        public Statistics since(Statistics previous) {
+            return new Statistics(started - previous.started, reused - previous.reused, savedStartupMillis - previous.savedStartupMillis);
+        }
+
+        /**
+         * Returns the JVMs started and reused by either these statistics or the given statistics.
+         */
+        public Statistics plus(Statistics other) {
+            return new Statistics(started + other.started, reused + other.reused, savedStartupMillis + other.savedStartupMillis);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d started, %d reused, saving about %.1f seconds of JVM start-up time", started, reused, savedStartupMillis / 1000.0);
+        }
+    }
+
+    /**
+     * Adds up the statistics of a set of worker processes, such as those of a single task. May be used concurrently.
+     */
+    public static class StatisticsCollector implements Action<Statistics> {
+        private Statistics total = new Statistics(0, 0, 0);
+
+        public synchronized void execute(Statistics statistics) {
+            total = total.plus(statistics);
+        }
+
+        public synchronized Statistics getTotal() {
+            return total;
+        }
+    }
+
+    static class PooledJvm {
+        final String key;
+        final ExecHandle execHandle;
+        final WorkerInput input;
+        long startupMillis;
+        int sessions;
+        long releasedAt;
+
+        PooledJvm(String key, ExecHandle execHandle, WorkerInput input) {
+            this.key = key;
+            this.execHandle = execHandle;
+            this.input = input;
+        }
+
+        /**
+         * Sends the given encoded worker action to the JVM.
+         */
+        void send(byte[] action) {
+            input.send(action);
+        }
+    }
+
+    /**
+     * The standard input of a pooled JVM. Blocks until more content is sent or the input is closed.
+     */
+    static class WorkerInput extends InputStream {
+        private final Lock lock = new ReentrantLock();
+        private final Condition condition = lock.newCondition();
+        private final LinkedList<byte[]> chunks = new LinkedList<byte[]>();
+        private int pos;
+        private boolean closed;
+
+        void send(byte[] content) {
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new IllegalStateException("Cannot send content to a closed worker input.");
+                }
+                chunks.add(content);
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int nread = read(buffer, 0, 1);
+            return nread < 0 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            lock.lock();
+            try {
+                while (chunks.isEmpty() && !closed) {
+                    try {
+                        condition.await();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                }
+                if (chunks.isEmpty()) {
+                    return -1;
+                }
+                byte[] chunk = chunks.getFirst();
+                int count = Math.min(length, chunk.length - pos);
+                System.arraycopy(chunk, pos, buffer, offset, count);
+                pos += count;
+                if (pos == chunk.length) {
+                    chunks.removeFirst();
+                    pos = 0;
+                }
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                closed = true;
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -21,6 +21,7 @@ import org.gradle.messaging.remote.Address;
 import org.gradle.messaging.remote.MessagingClient;
 import org.gradle.messaging.remote.ObjectConnection;
 import org.gradle.messaging.remote.internal.MessagingServices;
+import org.gradle.messaging.serialize.kryo.StatefulSerializer;
 import org.gradle.process.internal.WorkerProcessContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,13 +39,24 @@ public class ActionExecutionWorker implements Action<WorkerContext>, Serializabl
     private final Object workerId;
     private final String displayName;
     private final Address serverAddress;
+    private final boolean reusable;
 
     public ActionExecutionWorker(Action<? super WorkerProcessContext> action, Object workerId, String displayName,
                                  Address serverAddress) {
+        this(action, workerId, displayName, serverAddress, false);
+    }
+
+    /**
+     * @param reusable When true, notifies the server using a {@link WorkerSessionListener} once the action has completed successfully, so that the process can
+     * be reused.
+     */
+    public ActionExecutionWorker(Action<? super WorkerProcessContext> action, Object workerId, String displayName,
+                                 Address serverAddress, boolean reusable) {
         this.action = action;
         this.workerId = workerId;
         this.displayName = displayName;
         this.serverAddress = serverAddress;
+        this.reusable = reusable;
     }
 
     public void execute(final WorkerContext workerContext) {
@@ -52,11 +64,12 @@ public class ActionExecutionWorker implements Action<WorkerContext>, Serializabl
         try {
             final MessagingClient client = messagingServices.get(MessagingClient.class);
             final ObjectConnection clientConnection = client.getConnection(serverAddress);
+            final SessionConnection sessionConnection = reusable ? new SessionConnection(clientConnection) : null;
             try {
                 LOGGER.debug("Starting {}.", displayName);
                 WorkerProcessContext context = new WorkerProcessContext() {
                     public ObjectConnection getServerConnection() {
-                        return clientConnection;
+                        return sessionConnection != null ? sessionConnection : clientConnection;
                     }
 
                     public ClassLoader getApplicationClassLoader() {
@@ -80,6 +93,9 @@ public class ActionExecutionWorker implements Action<WorkerContext>, Serializabl
                     Thread.currentThread().setContextClassLoader(contextClassLoader);
                 }
                 LOGGER.debug("Completed {}.", displayName);
+                if (sessionConnection != null) {
+                    sessionConnection.sessionCompleted();
+                }
             } finally {
                 clientConnection.stop();
             }
@@ -92,4 +108,53 @@ public class ActionExecutionWorker implements Action<WorkerContext>, Serializabl
     MessagingServices createClient() {
         return new MessagingServices(getClass().getClassLoader());
     }
+
+    /**
+     * Tracks whether the worker action has connected the connection, so that the connection can be used to notify the server when the action has completed.
+     */
+    private static class SessionConnection implements ObjectConnection {
+        private final ObjectConnection delegate;
+        private boolean connected;
+
+        SessionConnection(ObjectConnection delegate) {
+            this.delegate = delegate;
+        }
+
+        void sessionCompleted() {
+            WorkerSessionListener sessionListener = delegate.addOutgoing(WorkerSessionListener.class);
+            if (!connected) {
+                delegate.connect();
+            }
+            sessionListener.sessionCompleted();
+        }
+
+        public <T> T addOutgoing(Class<T> type) {
+            return delegate.addOutgoing(type);
+        }
+
+        public <T> void addIncoming(Class<T> type, T instance) {
+            delegate.addIncoming(type, instance);
+        }
+
+        public void useParameterSerializer(StatefulSerializer<Object[]> serializer) {
+            delegate.useParameterSerializer(serializer);
+        }
+
+        public void useDefaultSerialization(ClassLoader methodParamClassLoader) {
+            delegate.useDefaultSerialization(methodParamClassLoader);
+        }
+
+        public void connect() {
+            connected = true;
+            delegate.connect();
+        }
+
+        public void requestStop() {
+            delegate.requestStop();
+        }
+
+        public void stop() {
+            delegate.stop();
+        }
+    }
 }
@@ -77,7 +77,7 @@ public class ApplicationClassesInIsolatedClassLoaderWorkerFactory implements Wor
     public Callable<?> create() {
         Collection<URI> applicationClassPath = new DefaultClassPath(processBuilder.getApplicationClasspath()).getAsURIs();
         ActionExecutionWorker injectedWorker = new ActionExecutionWorker(processBuilder.getWorker(), workerId,
-                displayName, serverAddress);
+                displayName, serverAddress, processBuilder.isReusable());
         ImplementationClassLoaderWorker worker = new ImplementationClassLoaderWorker(processBuilder.getLogLevel(),
                 processBuilder.getSharedPackages(), implementationClassPath, injectedWorker);
         return new IsolatedApplicationClassLoaderWorker(applicationClassPath, worker);
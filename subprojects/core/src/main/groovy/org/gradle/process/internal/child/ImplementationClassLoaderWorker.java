@@ -56,7 +56,15 @@ public class ImplementationClassLoaderWorker implements Action<WorkerContext>, S
     public void execute(WorkerContext workerContext) {
         LoggingManagerInternal loggingManager = createLoggingManager();
         loggingManager.setLevel(logLevel).start();
+        try {
+            executeAction(workerContext);
+        } finally {
+            // Restore the original logging configuration, in case the process is reused for another worker
+            loggingManager.stop();
+        }
+    }
 
+    private void executeAction(WorkerContext workerContext) {
         FilteringClassLoader filteredWorkerClassLoader = new FilteringClassLoader(getClass().getClassLoader());
         filteredWorkerClassLoader.allowPackage("org.slf4j");
         filteredWorkerClassLoader.allowClass(Action.class);
@@ -18,20 +18,56 @@ package org.gradle.process.internal.launcher;
 
 import org.gradle.process.internal.child.EncodedStream;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.ObjectInputStream;
+import java.util.Properties;
 import java.util.concurrent.Callable;
 
 /**
  * The main entry point for a worker process. Reads a serialized Callable from stdin, and executes it.
+ *
+ * <p>When the {@value #REUSABLE_PROPERTY} system property is set, reads a sequence of serialized Callables from stdin instead, each preceded by its length, and
+ * executes them one after the other until the end of stdin is reached. The system properties are restored after each Callable.</p>
  */
 public class GradleWorkerMain {
+    public static final String REUSABLE_PROPERTY = "org.gradle.worker.reusable";
+
     public void run() throws Exception {
+        if (Boolean.getBoolean(REUSABLE_PROPERTY)) {
+            runAll();
+            return;
+        }
+
         // Read the main action from stdin and execute it
         ObjectInputStream instr = new ObjectInputStream(new EncodedStream.EncodedInput(System.in));
         Callable<?> main = (Callable<?>) instr.readObject();
         main.call();
     }
 
+    private void runAll() throws Exception {
+        DataInputStream input = new DataInputStream(new EncodedStream.EncodedInput(System.in));
+        while (true) {
+            byte[] action;
+            try {
+                action = new byte[input.readInt()];
+            } catch (EOFException e) {
+                return;
+            }
+            input.readFully(action);
+
+            Properties systemProperties = (Properties) System.getProperties().clone();
+            try {
+                ObjectInputStream instr = new ObjectInputStream(new ByteArrayInputStream(action));
+                Callable<?> main = (Callable<?>) instr.readObject();
+                main.call();
+            } finally {
+                System.setProperties(systemProperties);
+            }
+        }
+    }
+
     public static void main(String[] args) {
         try {
             new GradleWorkerMain().run();
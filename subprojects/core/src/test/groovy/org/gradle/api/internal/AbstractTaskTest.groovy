@@ -81,4 +81,27 @@ class AbstractTaskTest extends Specification {
         then:
         task.hasCustomActions
     }
+
+    def "can declare shared resources"() {
+        when:
+        def task = createTask("task")
+
+        then:
+        !task.sharedResourcesDeclared
+        task.sharedResources.empty
+
+        when:
+        task.usesSharedResources()
+
+        then:
+        task.sharedResourcesDeclared
+        task.sharedResources.empty
+
+        when:
+        task.usesSharedResources("database", "server")
+        task.usesSharedResources("database")
+
+        then:
+        task.sharedResources == ["database", "server"] as Set
+    }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.internal.Factory
+import spock.lang.Specification
+
+class CacheBackedTaskDurationRepositoryTest extends Specification {
+    final TaskArtifactStateCacheAccess cacheAccess = Mock()
+    final PersistentIndexedCache<String, Long> indexedCache = Mock()
+    TaskDurationRepository repository
+
+    def setup() {
+        1 * cacheAccess.createCache("taskDurations", String, _) >> indexedCache
+        repository = new CacheBackedTaskDurationRepository(cacheAccess)
+    }
+
+    def "loads durations of tasks which have a recorded duration"() {
+        when:
+        def durations = repository.getDurations([":a", ":b"])
+
+        then:
+        durations == [":a": 12L]
+        1 * cacheAccess.useCache(_, _ as Factory) >> { String name, Factory action -> action.create() }
+        1 * indexedCache.get(":a") >> 12L
+        1 * indexedCache.get(":b") >> null
+        0 * _._
+    }
+
+    def "stores duration of task with no previous duration"() {
+        when:
+        repository.recordDurations([":a": 12L])
+
+        then:
+        1 * cacheAccess.useCache(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+        1 * indexedCache.get(":a") >> null
+        1 * indexedCache.put(":a", 12L)
+        0 * _._
+    }
+
+    def "stores average of previous and new duration"() {
+        when:
+        repository.recordDurations([":a": 12L])
+
+        then:
+        1 * cacheAccess.useCache(_, _ as Runnable) >> { String name, Runnable action -> action.run() }
+        1 * indexedCache.get(":a") >> 20L
+        1 * indexedCache.put(":a", 16L)
+        0 * _._
+    }
+
+    def "does not use cache when there are no durations to record"() {
+        when:
+        repository.recordDurations([:])
+
+        then:
+        0 * _._
+    }
+}
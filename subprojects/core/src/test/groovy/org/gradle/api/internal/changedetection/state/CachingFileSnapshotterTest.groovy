@@ -34,6 +34,7 @@ class CachingFileSnapshotterTest extends Specification {
 
     def setup() {
         file.write("some-content")
+        _ * target.algorithm >> "ALG"
         1 * cacheAccess.createCache("fileHashes", _, _) >> cache
         hasher = new CachingFileSnapshotter(target, cacheAccess);
     }
@@ -64,7 +65,7 @@ class CachingFileSnapshotterTest extends Specification {
         result.hash == hash
 
         and:
-        1 * cache.get(file) >> new CachingFileSnapshotter.FileInfo(hash, 1024, file.lastModified())
+        1 * cache.get(file) >> new CachingFileSnapshotter.FileInfo(hash, 1024, file.lastModified(), "ALG")
         1 * target.hash(file) >> hash
         1 * cache.put(file, _) >> { File key, CachingFileSnapshotter.FileInfo fileInfo ->
             fileInfo.hash == hash
@@ -82,7 +83,7 @@ class CachingFileSnapshotterTest extends Specification {
         result.hash == hash
 
         and:
-        1 * cache.get(file) >> new CachingFileSnapshotter.FileInfo(hash, file.length(), 124)
+        1 * cache.get(file) >> new CachingFileSnapshotter.FileInfo(hash, file.length(), 124, "ALG")
         1 * target.hash(file) >> hash
         1 * cache.put(file, _) >> { File key, CachingFileSnapshotter.FileInfo fileInfo ->
             fileInfo.hash == hash
@@ -92,6 +93,23 @@ class CachingFileSnapshotterTest extends Specification {
         0 * _._
     }
 
+    def hashesFileWhenHashAlgorithmHasChanged() {
+        when:
+        def result = hasher.snapshot(file)
+
+        then:
+        result.hash == hash
+
+        and:
+        1 * cache.get(file) >> new CachingFileSnapshotter.FileInfo("other".bytes, file.length(), file.lastModified(), "OTHER")
+        1 * target.hash(file) >> hash
+        1 * cache.put(file, _) >> { File key, CachingFileSnapshotter.FileInfo fileInfo ->
+            fileInfo.hash == hash
+            fileInfo.algorithm == "ALG"
+        }
+        0 * _._
+    }
+
     def doesNotHashFileWhenTimestampAndLengthHaveNotChanged() {
         when:
         def result = hasher.snapshot(file)
@@ -100,7 +118,7 @@ class CachingFileSnapshotterTest extends Specification {
         result.hash == hash
 
         and:
-        1 * cache.get(file) >> new CachingFileSnapshotter.FileInfo(hash, file.length(), file.lastModified())
+        1 * cache.get(file) >> new CachingFileSnapshotter.FileInfo(hash, file.length(), file.lastModified(), "ALG")
         0 * _._
     }
 }
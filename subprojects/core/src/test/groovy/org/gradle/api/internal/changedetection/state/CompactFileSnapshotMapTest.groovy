@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.internal.changedetection.state.DefaultFileCollectionSnapshotter.DirSnapshot
+import org.gradle.api.internal.changedetection.state.DefaultFileCollectionSnapshotter.FileHashSnapshot
+import org.gradle.api.internal.changedetection.state.DefaultFileCollectionSnapshotter.MissingFileSnapshot
+import spock.lang.Specification
+
+class CompactFileSnapshotMapTest extends Specification {
+    def snapshots = [
+            "/a/b/file2": new FileHashSnapshot([1, 2, 3] as byte[]),
+            "/a/b": DirSnapshot.INSTANCE,
+            "/a/b/file1": new FileHashSnapshot([4, 5] as byte[]),
+            "/a/c/missing": MissingFileSnapshot.INSTANCE,
+            "/a/b-file": new FileHashSnapshot([6] as byte[])
+    ]
+
+    def "contains the same entries as the source map, ordered by path"() {
+        when:
+        def map = CompactFileSnapshotMap.of(snapshots)
+
+        then:
+        map.size() == 5
+        map.keySet() as List == ["/a/b", "/a/b-file", "/a/b/file1", "/a/b/file2", "/a/c/missing"]
+        map.every { path, snapshot -> snapshot.isUpToDate(snapshots[path]) }
+    }
+
+    def "looks up entries by path"() {
+        def map = CompactFileSnapshotMap.of(snapshots)
+
+        expect:
+        map.get("/a/b") == DirSnapshot.INSTANCE
+        map.get("/a/c/missing") == MissingFileSnapshot.INSTANCE
+        map.get("/a/b/file1").hash == [4, 5] as byte[]
+        map.get("/a/b/file2").hash == [1, 2, 3] as byte[]
+        map.get("/a/b-file").hash == [6] as byte[]
+        map.containsKey("/a/b/file1")
+
+        and:
+        map.get("/a") == null
+        map.get("/a/b/") == null
+        map.get("/a/b/file") == null
+        map.get("/a/b/file10") == null
+        map.get("/z") == null
+        map.get("") == null
+        !map.containsKey("/a/c")
+    }
+
+    def "stores each parent directory once"() {
+        when:
+        def map = CompactFileSnapshotMap.of(snapshots)
+
+        then:
+        map.getDirectories() as List == ["/a/", "/a/b/", "/a/c/"]
+        map.getDirectoryIndex(2) == map.getDirectoryIndex(3)
+        map.getName(2) == "file1"
+    }
+
+    def "can create empty map"() {
+        when:
+        def map = CompactFileSnapshotMap.of([:])
+
+        then:
+        map.isEmpty()
+        map.get("/a") == null
+        !map.entrySet().iterator().hasNext()
+    }
+
+    def "returns the given map when it is already compact"() {
+        def map = CompactFileSnapshotMap.of(snapshots)
+
+        expect:
+        CompactFileSnapshotMap.of(map).is(map)
+    }
+
+    def "is immutable"() {
+        def map = CompactFileSnapshotMap.of(snapshots)
+
+        when:
+        map.put("/a/d", DirSnapshot.INSTANCE)
+
+        then:
+        thrown(UnsupportedOperationException)
+    }
+}
@@ -213,6 +213,30 @@ public class DefaultFileCollectionSnapshotterTest extends Specification {
         1 * listener.added(file.path)
     }
 
+    def notifiesListenerOfChangesInPathOrder() {
+        given:
+        TestFile unchanged = tmpDir.createFile('a/1')
+        TestFile removed = tmpDir.createFile('a/2')
+        TestFile changed = tmpDir.createFile('a/3')
+        TestFile addedBeside = tmpDir.createFile('a-b')
+        TestFile addedBelow = tmpDir.createFile('b/c/4')
+        def changes = []
+        def recorder = [
+                added: { changes << "added " + it },
+                removed: { changes << "removed " + it },
+                changed: { changes << "changed " + it }] as ChangeListener<String>
+
+        when:
+        FileCollectionSnapshot snapshot = snapshotter.snapshot(files(unchanged, removed, changed))
+        changed.write('new content')
+        def iterator = snapshotter.snapshot(files(addedBelow, changed, unchanged, addedBeside)).iterateChangesSince(snapshot)
+        while (iterator.next(recorder)) {
+        }
+
+        then:
+        changes == ["added ${addedBeside.path}", "removed ${removed.path}", "changed ${changed.path}", "added ${addedBelow.path}"]*.toString()
+    }
+
     def diffAddsAddedFilesToSnapshot() {
         TestFile file = tmpDir.createFile('file')
 
@@ -25,8 +25,8 @@ class DefaultFileSnapshotterSerializerTest extends SerializerSpec {
     def "reads and writes the snapshot"() {
         when:
         DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl out = serialize(new DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl([
-                "1": new DefaultFileCollectionSnapshotter.DirSnapshot(),
-                "2": new DefaultFileCollectionSnapshotter.MissingFileSnapshot(),
+                "1": DefaultFileCollectionSnapshotter.DirSnapshot.INSTANCE,
+                "2": DefaultFileCollectionSnapshotter.MissingFileSnapshot.INSTANCE,
                 "3": new DefaultFileCollectionSnapshotter.FileHashSnapshot("foo".bytes)]), serializer)
 
         then:
@@ -35,4 +35,30 @@ class DefaultFileSnapshotterSerializerTest extends SerializerSpec {
         out.snapshots['2'] instanceof DefaultFileCollectionSnapshotter.MissingFileSnapshot
         ((DefaultFileCollectionSnapshotter.FileHashSnapshot) out.snapshots['3']).hash == "foo".bytes
     }
+
+    def "reads and writes snapshot of files in nested directories"() {
+        def snapshots = [
+                "/root/a/b/c/1": new DefaultFileCollectionSnapshotter.FileHashSnapshot("one".bytes),
+                "/root/a/b/c": DefaultFileCollectionSnapshotter.DirSnapshot.INSTANCE,
+                "/root/a/b/d/2": new DefaultFileCollectionSnapshotter.FileHashSnapshot("two".bytes),
+                "/root/a/b/d/3": DefaultFileCollectionSnapshotter.MissingFileSnapshot.INSTANCE,
+                "/root/a/e/4": new DefaultFileCollectionSnapshotter.FileHashSnapshot("four".bytes),
+                "C:\\dir\\5": new DefaultFileCollectionSnapshotter.FileHashSnapshot("five".bytes)]
+
+        when:
+        DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl out = serialize(new DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl(snapshots), serializer)
+
+        then:
+        out.snapshots.keySet() as List == snapshots.keySet().sort()
+        out.snapshots.every { path, snapshot -> snapshot.isUpToDate(snapshots[path]) }
+        out.snapshots.getDirectories() as List == ["/root/a/b/", "/root/a/b/c/", "/root/a/b/d/", "/root/a/e/", "C:\\dir\\"]
+    }
+
+    def "reads and writes empty snapshot"() {
+        when:
+        DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl out = serialize(new DefaultFileCollectionSnapshotter.FileCollectionSnapshotImpl([:]), serializer)
+
+        then:
+        out.snapshots.isEmpty()
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.file.FileCollection
+import org.gradle.api.internal.hash.Hasher
+import spock.lang.Specification
+
+class FileCollectionSnapshotHasherTest extends Specification {
+    def snapshotter = Mock(FileCollectionSnapshotter)
+    def files = Mock(FileCollection)
+    def hasher = Mock(Hasher)
+    def snapshot = Mock(FileCollectionSnapshot)
+    def snapshotSet = Mock(FilesSnapshotSet)
+    def snapshotHasher = new FileCollectionSnapshotHasher(snapshotter, files, hasher)
+
+    def "takes hash of file from snapshot of the file collection"() {
+        def file = new File("a.class")
+        def hash = [1, 2] as byte[]
+
+        when:
+        def result = snapshotHasher.hash(file)
+
+        then:
+        result == hash
+        1 * snapshotter.snapshot(files) >> snapshot
+        1 * snapshot.getSnapshot() >> snapshotSet
+        1 * snapshotSet.findSnapshot(file) >> Stub(FileSnapshot) { getHash() >> hash }
+        0 * hasher._
+    }
+
+    def "hashes file which is not in the file collection"() {
+        def file = new File("a.class")
+        def hash = [1, 2] as byte[]
+        snapshotter.snapshot(files) >> snapshot
+        snapshot.getSnapshot() >> snapshotSet
+
+        when:
+        def result = snapshotHasher.hash(file)
+
+        then:
+        result == hash
+        1 * snapshotSet.findSnapshot(file) >> null
+        1 * hasher.hash(file) >> hash
+    }
+
+    def "snapshots the file collection only once"() {
+        snapshotSet.findSnapshot(_) >> Stub(FileSnapshot)
+
+        when:
+        snapshotHasher.hash(new File("a.class"))
+        snapshotHasher.hash(new File("b.class"))
+
+        then:
+        1 * snapshotter.snapshot(files) >> snapshot
+        1 * snapshot.getSnapshot() >> snapshotSet
+    }
+
+    def "uses algorithm of the given hasher"() {
+        hasher.getAlgorithm() >> "ALG"
+
+        expect:
+        snapshotHasher.algorithm == "ALG"
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class InMemoryFileStateCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def cache = new InMemoryFileStateCache(3)
+
+    def "returns snapshot of file"() {
+        given:
+        def file = tmpDir.file("file")
+        def info = snapshot()
+
+        when:
+        cache.put(file, info)
+
+        then:
+        cache.get(file).is(info)
+        cache.get(tmpDir.file("other")) == null
+    }
+
+    def "discards snapshots of files beneath invalidated directory"() {
+        given:
+        def file1 = tmpDir.file("dir/sub/file1")
+        def file2 = tmpDir.file("dir/file2")
+        def other = tmpDir.file("dir2/file")
+        [file1, file2, other].each { cache.put(it, snapshot()) }
+
+        when:
+        cache.invalidate([tmpDir.file("dir")])
+
+        then:
+        cache.get(file1) == null
+        cache.get(file2) == null
+        cache.get(other) != null
+    }
+
+    def "discards all snapshots when cache is full"() {
+        given:
+        def files = (1..4).collect { tmpDir.file("file$it") }
+
+        when:
+        files.each { cache.put(it, snapshot()) }
+
+        then:
+        files.findAll { cache.get(it) != null } == [files[3]]
+    }
+
+    def "replaces snapshot of file when cache is full"() {
+        given:
+        def files = (1..3).collect { tmpDir.file("file$it") }
+        files.each { cache.put(it, snapshot()) }
+        def info = snapshot()
+
+        when:
+        cache.put(files[0], info)
+
+        then:
+        cache.get(files[0]).is(info)
+        files.every { cache.get(it) != null }
+    }
+
+    private static CachingFileSnapshotter.FileInfo snapshot() {
+        return new CachingFileSnapshotter.FileInfo(new byte[0], 0, 0, "MD5")
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.api.file.FileCollection
+import org.gradle.api.file.FileTree
+import org.gradle.api.internal.hash.DefaultHasher
+import org.gradle.api.internal.hash.Hasher
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.ChangeListener
+import org.junit.Rule
+import spock.lang.Specification
+
+class ParallelFileSnapshotterTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def executorFactory = new DefaultExecutorFactory()
+    def cache = new InMemoryCache()
+    def cacheAccess = Stub(TaskArtifactStateCacheAccess) {
+        createCache("fileHashes", _, _) >> cache
+        useCache(_, _) >> { String name, Runnable action -> action.run() }
+    }
+    def fileSnapshotter = new CachingFileSnapshotter(new DefaultHasher(), cacheAccess)
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "produces the same snapshot as the serial snapshotter"() {
+        given:
+        def files = []
+        200.times { files << tmpDir.createFile("file${it}.txt").write("content ${it}") }
+        files << tmpDir.createDir("dir")
+        files << tmpDir.file("missing")
+        def serial = new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess)
+        def parallel = new DefaultFileCollectionSnapshotter(fileSnapshotter, cacheAccess, new ParallelFileSnapshotter(fileSnapshotter, cacheAccess, executorFactory, 4))
+
+        when:
+        def serialSnapshot = serial.snapshot(fileCollection(files))
+        cache.entries.clear()
+        def parallelSnapshot = parallel.snapshot(fileCollection(files))
+
+        then:
+        parallelSnapshot.snapshots.keySet() == serialSnapshot.snapshots.keySet()
+        parallelSnapshot.snapshots.every { path, snapshot -> snapshot.isUpToDate(serialSnapshot.snapshots[path]) }
+        !parallelSnapshot.iterateChangesSince(serialSnapshot).next(Mock(ChangeListener))
+    }
+
+    def "stores hashes of new and changed files in the cache"() {
+        given:
+        def file1 = tmpDir.createFile("file1").write("content")
+        def file2 = tmpDir.createFile("file2").write("content")
+        def snapshotter = new ParallelFileSnapshotter(fileSnapshotter, cacheAccess, executorFactory, 2)
+
+        when:
+        snapshotter.snapshot([file1, file2])
+
+        then:
+        cache.entries.keySet() == [file1, file2] as Set
+
+        when:
+        def hash = cache.entries[file1].hash
+        file1.write("changed content")
+        file1.setLastModified(file1.lastModified() - 2000)
+        snapshotter.snapshot([file1, file2])
+
+        then:
+        cache.entries[file1].hash != hash
+    }
+
+    def "reuses cached hashes of unchanged files"() {
+        given:
+        def file = tmpDir.createFile("file").write("content")
+        def cached = new CachingFileSnapshotter.FileInfo("hash".bytes, file.length(), file.lastModified(), "MD5")
+        cache.entries[file] = cached
+        def snapshotter = new ParallelFileSnapshotter(fileSnapshotter, cacheAccess, executorFactory, 2)
+
+        when:
+        def snapshots = snapshotter.snapshot([file])
+
+        then:
+        snapshots[file.absolutePath].hash == "hash".bytes
+        cache.entries[file].is(cached)
+    }
+
+    def "uses the same executor for every snapshot"() {
+        given:
+        def factory = Mock(ExecutorFactory)
+        def snapshotter = new ParallelFileSnapshotter(fileSnapshotter, cacheAccess, factory, 2)
+        def files = (1..4).collect { tmpDir.createFile("file${it}").write("content ${it}") }
+
+        when:
+        snapshotter.snapshot(files)
+        files.each { it.write("changed ${it.name}"); it.setLastModified(it.lastModified() - 2000) }
+        snapshotter.snapshot(files)
+
+        then:
+        1 * factory.create(_) >> executorFactory.create("test")
+        0 * factory._
+    }
+
+    def "propagates failure to hash a file"() {
+        given:
+        def failingHasher = Stub(Hasher) {
+            hash(_) >> { throw new RuntimeException("broken") }
+        }
+        def snapshotter = new ParallelFileSnapshotter(new CachingFileSnapshotter(failingHasher, cacheAccess), cacheAccess, executorFactory, 2)
+
+        when:
+        snapshotter.snapshot([tmpDir.createFile("file1"), tmpDir.createFile("file2")])
+
+        then:
+        RuntimeException e = thrown()
+        e.message == "broken"
+    }
+
+    def fileCollection(List<File> files) {
+        return Stub(FileCollection) {
+            getAsFileTree() >> Stub(FileTree) {
+                getFiles() >> new LinkedHashSet<File>(files)
+            }
+        }
+    }
+
+    static class InMemoryCache implements PersistentIndexedCache<File, CachingFileSnapshotter.FileInfo> {
+        final Map<File, CachingFileSnapshotter.FileInfo> entries = [:]
+
+        CachingFileSnapshotter.FileInfo get(File key) {
+            return entries[key]
+        }
+
+        void put(File key, CachingFileSnapshotter.FileInfo value) {
+            entries[key] = value
+        }
+
+        void remove(File key) {
+            entries.remove(key)
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.hash
+
+import com.google.common.hash.Hashing
+import org.gradle.api.UncheckedIOException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class Murmur3HasherTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def hasher = new Murmur3Hasher()
+
+    @Unroll
+    def "creates same hash as Guava for file of #size bytes"() {
+        given:
+        def content = new byte[size]
+        new Random(size).nextBytes(content)
+        def file = tmpDir.file("file")
+        file.bytes = content
+
+        expect:
+        hasher.hash(file) == Hashing.murmur3_128().hashBytes(content).asBytes()
+
+        where:
+        size << [0, 1, 8, 9, 15, 16, 17, 4095, 256 * 1024 - 1, 256 * 1024, 1024 * 1024 + 7]
+    }
+
+    def "creates different hashes for different content"() {
+        given:
+        def file1 = tmpDir.file("file1").write("content")
+        def file2 = tmpDir.file("file2").write("other content")
+
+        expect:
+        hasher.hash(file1) != hasher.hash(file2)
+    }
+
+    def "fails when file does not exist"() {
+        given:
+        def file = tmpDir.file("missing")
+
+        when:
+        hasher.hash(file)
+
+        then:
+        UncheckedIOException e = thrown()
+        e.message == "Failed to create MURMUR3-128 hash for file ${file.absolutePath}."
+    }
+}
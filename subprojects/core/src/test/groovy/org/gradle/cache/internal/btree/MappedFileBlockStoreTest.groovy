@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedFileBlockStoreTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def cacheFile = tmpDir.file("cache.bin")
+    def factory = { new TestPayload() } as BlockStore.Factory
+    // Use tiny regions, so that many blocks span more than one region
+    def store = new MappedFileBlockStore(cacheFile, 64, 256)
+
+    def cleanup() {
+        store.close()
+    }
+
+    def "reads blocks which have been written"() {
+        given:
+        store.open({} as Runnable, factory)
+        def positions = writeBlocks(store, 100)
+
+        expect:
+        positions.eachWithIndex { pos, i ->
+            assert store.read(pos, TestPayload).value == "value ${i}"
+        }
+    }
+
+    def "calls init action when file is empty"() {
+        def action = Mock(Runnable)
+
+        when:
+        store.open(action, factory)
+
+        then:
+        1 * action.run()
+    }
+
+    def "can read blocks written by and written to a file backed store"() {
+        given:
+        def fileStore = new FileBackedBlockStore(cacheFile)
+        fileStore.open({} as Runnable, factory)
+        def positions = writeBlocks(fileStore, 50)
+        fileStore.close()
+
+        when:
+        store.open({} as Runnable, factory)
+        positions += writeBlocks(store, 50, 50)
+        store.close()
+
+        fileStore = new FileBackedBlockStore(cacheFile)
+        fileStore.open({} as Runnable, factory)
+
+        then:
+        positions.eachWithIndex { pos, i ->
+            assert fileStore.read(pos, TestPayload).value == "value ${i}"
+        }
+
+        cleanup:
+        fileStore.close()
+    }
+
+    def "sees blocks appended after a region has been mapped"() {
+        given:
+        store.open({} as Runnable, factory)
+        def first = writeBlocks(store, 1)
+        store.read(first[0], TestPayload)
+        def second = writeBlocks(store, 1, 1)
+
+        expect:
+        store.read(second[0], TestPayload).value == "value 1"
+    }
+
+    def "detects corrupted block"() {
+        given:
+        store.open({} as Runnable, factory)
+        def positions = writeBlocks(store, 2)
+
+        when:
+        store.read(new BlockPointer(positions[1].pos + 1), TestPayload)
+
+        then:
+        thrown(CorruptedCacheException)
+    }
+
+    def "detects block with incorrect checksum"() {
+        given:
+        store.open({} as Runnable, factory)
+        def positions = writeBlocks(store, 1)
+        store.close()
+        def file = new RandomAccessFile(cacheFile, "rw")
+        file.seek(positions[0].pos + 8)
+        file.write(0x77) // value "value 0" becomes "walue 0"
+        file.close()
+        store = new MappedFileBlockStore(cacheFile, 64, 256)
+        store.open({} as Runnable, factory)
+
+        when:
+        store.read(positions[0], TestPayload)
+
+        then:
+        thrown(CorruptedCacheException)
+    }
+
+    def "can write blocks after clear"() {
+        given:
+        store.open({} as Runnable, factory)
+        writeBlocks(store, 20)
+
+        when:
+        store.clear()
+        def positions = writeBlocks(store, 2)
+
+        then:
+        positions[0].pos == 0
+        store.read(positions[1], TestPayload).value == "value 1"
+    }
+
+    private static List<BlockPointer> writeBlocks(BlockStore store, int count, int start = 0) {
+        return (start..<(start + count)).collect { i ->
+            def payload = new TestPayload(value: "value ${i}")
+            store.attach(payload)
+            store.write(payload)
+            payload.pos
+        }
+    }
+
+    static class TestPayload extends BlockPayload {
+        String value = ""
+
+        @Override
+        protected int getSize() {
+            return 2 + value.length()
+        }
+
+        @Override
+        protected int getType() {
+            return 0x55
+        }
+
+        @Override
+        protected void read(DataInputStream inputStream) {
+            value = inputStream.readUTF()
+        }
+
+        @Override
+        protected void write(DataOutputStream outputStream) {
+            outputStream.writeUTF(value)
+        }
+    }
+}
@@ -174,6 +174,65 @@ class DefaultTaskExecutionPlanParallelTaskHandlingTest extends Specification {
         noMoreTasksCurrentlyAvailableForExecution()
     }
 
+    def "tasks with custom actions that declare their shared resources are run in parallel"() {
+        given:
+        Task a = root.task("a", type: Delete).doLast {}
+        Task b = root.task("b").doLast {}
+        a.usesSharedResources("database")
+        b.usesSharedResources()
+
+        when:
+        addToGraphAndPopulate(a, b)
+
+        then:
+        startTasks(2)
+    }
+
+    def "tasks that use the same shared resource are not run in parallel"() {
+        given:
+        Task a = root.task("a").usesSharedResources("database", "server")
+        Task b = root.task("b").usesSharedResources("server")
+
+        when:
+        addToGraphAndPopulate(a, b)
+        startTasks(1)
+
+        then:
+        noMoreTasksCurrentlyAvailableForExecution()
+
+        when:
+        completeAllStartedTasks()
+
+        then:
+        requestedTasksBecomeAvailableForExecution()
+    }
+
+    def "tasks in different projects that use the same shared resource are not run in parallel"() {
+        given:
+        Task a = createChildProject(root, "a").task("a").usesSharedResources("database")
+        Task b = createChildProject(root, "b").task("b").usesSharedResources("database")
+
+        when:
+        addToGraphAndPopulate(a, b)
+        startTasks(1)
+
+        then:
+        noMoreTasksCurrentlyAvailableForExecution()
+    }
+
+    def "a task that declares its shared resources is not run in parallel with a task that is not parallelizable"() {
+        given:
+        Task a = root.task("a", type: Delete)
+        Task b = root.task("b").usesSharedResources()
+
+        when:
+        addToGraphAndPopulate(a, b)
+        startTasks(1)
+
+        then:
+        noMoreTasksCurrentlyAvailableForExecution()
+    }
+
     def "DefaultTask is parallelizable"() {
         given:
         Task a = root.task("a")
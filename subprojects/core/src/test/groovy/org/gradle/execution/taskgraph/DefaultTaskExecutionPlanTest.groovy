@@ -865,6 +865,36 @@ public class DefaultTaskExecutionPlanTest extends Specification {
         t3.task.project != t4.task.project
     }
 
+    def "starts tasks on the longest chain of dependent tasks first when task durations are provided"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c")
+        Task d = task("d", dependsOn: [c])
+        Task e = task("e", dependsOn: [d])
+        addToGraphAndPopulate([a, b, e])
+
+        when:
+        executionPlan.useTaskDurations([":a": 10L, ":b": 20L, ":c": 5L, ":d": 5L, ":e": 5L])
+
+        then:
+        executedTasks == [b, c, a, d, e]
+    }
+
+    def "uses average duration for tasks with no recorded duration"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        addToGraphAndPopulate([a, c])
+
+        when:
+        executionPlan.useTaskDurations([":a": 25L, ":b": 10L])
+
+        then:
+        executedTasks == [b, a, c]
+    }
+
     void executes(Task... expectedTasks) {
         assert executionPlan.tasks == expectedTasks as List
         assert expectedTasks == expectedTasks as List
@@ -962,6 +992,7 @@ public class DefaultTaskExecutionPlanTest extends Specification {
             return name.compareTo(taskInternal.getName());
         }
         task.getOutputs() >> emptyTaskOutputs()
+        task.getSharedResources() >> ([] as Set)
         return task;
     }
 }
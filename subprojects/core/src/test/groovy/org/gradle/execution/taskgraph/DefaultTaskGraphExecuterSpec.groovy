@@ -95,6 +95,7 @@ class DefaultTaskGraphExecuterSpec extends Specification {
         _ * mock.finalizedBy >> Stub(TaskDependency)
         _ * mock.mustRunAfter >> Stub(TaskDependency)
         _ * mock.shouldRunAfter >> Stub(TaskDependency)
+        _ * mock.sharedResources >> ([] as Set)
         _ * mock.compareTo(_) >> { Task t -> name.compareTo(t.name) }
         _ * mock.outputs >> Stub(TaskOutputsInternal) {
             getFiles() >> project.files()
@@ -48,6 +48,7 @@ import org.gradle.messaging.remote.MessagingServer
 import org.gradle.plugin.use.internal.PluginRequestApplicator
 import org.gradle.process.internal.DefaultWorkerProcessFactory
 import org.gradle.process.internal.WorkerProcessBuilder
+import org.gradle.process.internal.WorkerProcessPool
 import org.gradle.profile.ProfileEventAdapter
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
@@ -215,6 +216,7 @@ public class BuildScopeServicesTest extends Specification {
     def providesAWorkerProcessFactory() {
         setup:
         expectParentServiceLocated(MessagingServer)
+        expectParentServiceLocated(WorkerProcessPool)
 
         expect:
         assertThat(registry.getFactory(WorkerProcessBuilder), instanceOf(DefaultWorkerProcessFactory))
@@ -17,6 +17,8 @@
 package org.gradle.internal.service.scopes;
 
 import org.gradle.api.internal.*;
+import org.gradle.api.internal.changedetection.state.FileStateCache;
+import org.gradle.api.internal.changedetection.state.NoOpFileStateCache;
 import org.gradle.api.internal.classpath.DefaultModuleRegistry;
 import org.gradle.api.internal.classpath.DefaultPluginModuleRegistry;
 import org.gradle.api.internal.classpath.ModuleRegistry;
@@ -48,6 +50,7 @@ import org.gradle.logging.ProgressLoggerFactory;
 import org.gradle.logging.internal.DefaultLoggingManagerFactory;
 import org.gradle.logging.internal.DefaultProgressLoggerFactory;
 import org.gradle.messaging.remote.MessagingServer;
+import org.gradle.process.internal.WorkerProcessPool;
 import org.junit.Test;
 import spock.lang.Shared;
 
@@ -169,4 +172,14 @@ public class GlobalScopeServicesTest {
     public void providesADocumentationRegistry() throws Exception {
         assertThat(registry.get(DocumentationRegistry.class), instanceOf(DocumentationRegistry.class));
     }
+
+    @Test
+    public void providesANoOpFileStateCacheWhenNotRunningInALongLivingProcess() {
+        assertThat(registry.get(FileStateCache.class), instanceOf(NoOpFileStateCache.class));
+    }
+
+    @Test
+    public void providesAWorkerProcessPool() {
+        assertThat(registry.get(WorkerProcessPool.class), instanceOf(WorkerProcessPool.class));
+    }
 }
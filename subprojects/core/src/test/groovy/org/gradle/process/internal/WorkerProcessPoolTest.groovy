@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal
+
+import org.gradle.api.internal.file.TestFiles
+import spock.lang.Specification
+import spock.lang.Timeout
+
+class WorkerProcessPoolTest extends Specification {
+    def pool = new WorkerProcessPool()
+
+    def "starts JVM using given command"() {
+        def javaCommand = Mock(JavaExecHandleBuilder)
+        def execHandle = Mock(ExecHandle)
+
+        when:
+        def jvm = pool.start("key", javaCommand)
+
+        then:
+        1 * javaCommand.setStandardInput({ it instanceof WorkerProcessPool.WorkerInput })
+        1 * javaCommand.build() >> execHandle
+        1 * execHandle.addListener(_)
+        1 * execHandle.start()
+        jvm.execHandle == execHandle
+        pool.statistics.started == 1
+    }
+
+    def "reuses released JVM with the same key"() {
+        def jvm = jvm("key")
+
+        when:
+        def saved = pool.connected(jvm, 1000)
+        pool.release(jvm)
+
+        then:
+        pool.acquire("other") == null
+        pool.acquire("key") == jvm
+        pool.acquire("key") == null
+
+        saved == 0
+
+        when:
+        saved = pool.connected(jvm, 100)
+
+        then:
+        saved == 900
+        pool.statistics.reused == 1
+        pool.statistics.savedStartupMillis == 900
+    }
+
+    def "does not reuse JVM which has exited"() {
+        def jvm = jvm("key")
+        pool.release(jvm)
+
+        when:
+        def result = pool.acquire("key")
+
+        then:
+        _ * jvm.execHandle.getState() >> ExecHandleState.SUCCEEDED
+        result == null
+        jvm.input.read() == -1
+    }
+
+    def "discarded JVM is not reused"() {
+        def jvm = jvm("key")
+        pool.release(jvm)
+
+        when:
+        pool.discard(jvm)
+
+        then:
+        pool.acquire("key") == null
+        jvm.input.read() == -1
+    }
+
+    def "stops JVMs which have been idle for too long"() {
+        def idlePool = new WorkerProcessPool(0)
+        def jvm = jvm("key")
+
+        when:
+        idlePool.release(jvm)
+
+        then:
+        idlePool.acquire("key") == null
+        jvm.input.read() == -1
+    }
+
+    @Timeout(10)
+    def "stops idle JVM once idle for too long without further use of the pool"() {
+        def idlePool = new WorkerProcessPool(100)
+        def jvm = jvm("key")
+        idlePool.release(jvm)
+
+        expect:
+        jvm.input.read() == -1
+        idlePool.acquire("key") == null
+
+        cleanup:
+        idlePool.stop()
+    }
+
+    def "stops idle JVMs when stopped"() {
+        def jvm = jvm("key")
+        pool.release(jvm)
+
+        when:
+        pool.stop()
+
+        then:
+        jvm.input.read() == -1
+
+        when:
+        def other = jvm("key")
+        pool.release(other)
+
+        then:
+        pool.acquire("key") == null
+        other.input.read() == -1
+    }
+
+    def "collects statistics of worker processes"() {
+        def collector = new WorkerProcessPool.StatisticsCollector()
+
+        when:
+        collector.execute(new WorkerProcessPool.Statistics(1, 0, 0))
+        collector.execute(new WorkerProcessPool.Statistics(0, 1, 300))
+        collector.execute(new WorkerProcessPool.Statistics(0, 1, 200))
+
+        then:
+        collector.total.started == 1
+        collector.total.reused == 2
+        collector.total.savedStartupMillis == 500
+    }
+
+    def "worker input provides the content sent to it, until closed"() {
+        def input = new WorkerProcessPool.WorkerInput()
+        def buffer = new byte[4]
+
+        when:
+        input.send([1, 2, 3] as byte[])
+        input.send([4, 5] as byte[])
+
+        then:
+        input.read(buffer, 0, 2) == 2
+        buffer[0..1] == [1, 2]
+        input.read(buffer, 0, 4) == 1
+        buffer[0] == 3
+        input.read() == 4
+        input.read() == 5
+
+        when:
+        def thread = Thread.start { input.send([6] as byte[]) }
+        def next = input.read()
+        thread.join()
+
+        then:
+        next == 6
+
+        when:
+        input.close()
+
+        then:
+        input.read() == -1
+    }
+
+    def "computes key from command"() {
+        def command = { jvmArgs ->
+            def builder = new JavaExecHandleBuilder(TestFiles.resolver())
+            builder.main = "Main"
+            builder.jvmArgs(jvmArgs)
+            WorkerProcessPool.keyFor(builder)
+        }
+
+        expect:
+        command(["-Xmx64m"]) == command(["-Xmx64m"])
+        command(["-Xmx64m"]) != command(["-Xmx128m"])
+    }
+
+    private WorkerProcessPool.PooledJvm jvm(String key) {
+        def execHandle = Stub(ExecHandle) {
+            getState() >> ExecHandleState.STARTED
+        }
+        return new WorkerProcessPool.PooledJvm(key, execHandle, new WorkerProcessPool.WorkerInput())
+    }
+}
@@ -110,4 +110,38 @@ public class ActionExecutionWorkerTest {
             assertThat(e, sameInstance(failure));
         }
     }
+
+    @Test
+    public void notifiesServerWhenReusableWorkerActionCompletes() throws Exception {
+        final WorkerSessionListener sessionListener = context.mock(WorkerSessionListener.class);
+        ActionExecutionWorker reusableMain = new ActionExecutionWorker(action, 12, "<display name>", serverAddress, true) {
+            @Override
+            MessagingServices createClient() {
+                return messagingServices;
+            }
+        };
+
+        context.checking(new Expectations() {{
+            allowing(messagingServices).get(MessagingClient.class);
+            will(returnValue(client));
+
+            one(client).getConnection(serverAddress);
+            will(returnValue(connection));
+
+            one(action).execute(with(notNullValue(WorkerProcessContext.class)));
+
+            one(connection).addOutgoing(WorkerSessionListener.class);
+            will(returnValue(sessionListener));
+
+            one(connection).connect();
+
+            one(sessionListener).sessionCompleted();
+
+            one(connection).stop();
+
+            one(messagingServices).stop();
+        }});
+
+        reusableMain.execute(workerContext);
+    }
 }
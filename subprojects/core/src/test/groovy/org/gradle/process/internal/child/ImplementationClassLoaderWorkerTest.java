@@ -57,6 +57,7 @@ public class ImplementationClassLoaderWorkerTest {
             allowing(workerContext).getApplicationClassLoader();
             will(returnValue(applicationClassLoader));
             one(action).execute(workerContext);
+            one(loggingManager).stop();
         }});
 
 
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.integtests.resolve.http
+
+import org.gradle.integtests.fixtures.AbstractHttpDependencyResolutionTest
+
+import java.util.concurrent.CyclicBarrier
+
+class ConcurrentArtifactDownloadIntegrationTest extends AbstractHttpDependencyResolutionTest {
+    def "downloads the artifacts of a configuration concurrently when download threads are enabled"() {
+        given:
+        def projectA = mavenHttpRepo.module("group", "projectA", "1.0").publish()
+        def projectB = mavenHttpRepo.module("group", "projectB", "1.0").publish()
+        def projectC = mavenHttpRepo.module("group", "projectC", "1.0").publish()
+
+        buildFile << """
+repositories {
+    maven { url "${mavenHttpRepo.uri}" }
+}
+configurations { compile }
+dependencies {
+    compile "group:projectA:1.0", "group:projectB:1.0", "group:projectC:1.0"
+}
+task retrieve(type: Sync) {
+    into 'libs'
+    from configurations.compile
+}
+"""
+
+        when:
+        projectA.pom.expectGet()
+        projectB.pom.expectGet()
+        projectC.pom.expectGet()
+
+        def barrier = new CyclicBarrier(3)
+        projectA.artifact.expectGetBlocking(barrier)
+        projectB.artifact.expectGetBlocking(barrier)
+        projectC.artifact.expectGetBlocking(barrier)
+
+        executer.withArgument("-Dorg.gradle.dependency.downloadThreads=3")
+        run 'retrieve'
+
+        then:
+        file('libs').assertHasDescendants('projectA-1.0.jar', 'projectB-1.0.jar', 'projectC-1.0.jar')
+        file('libs/projectA-1.0.jar').assertIsCopyOf(projectA.artifact.file)
+        file('libs/projectB-1.0.jar').assertIsCopyOf(projectB.artifact.file)
+        file('libs/projectC-1.0.jar').assertIsCopyOf(projectC.artifact.file)
+    }
+
+    def "downloads the artifacts of a configuration one at a time by default"() {
+        given:
+        def projectA = mavenHttpRepo.module("group", "projectA", "1.0").publish()
+        def projectB = mavenHttpRepo.module("group", "projectB", "1.0").publish()
+
+        buildFile << """
+repositories {
+    maven { url "${mavenHttpRepo.uri}" }
+}
+configurations { compile }
+dependencies {
+    compile "group:projectA:1.0", "group:projectB:1.0"
+}
+task retrieve(type: Sync) {
+    into 'libs'
+    from configurations.compile
+}
+"""
+
+        when:
+        projectA.pom.expectGet()
+        projectB.pom.expectGet()
+        projectA.artifact.expectGet()
+        projectB.artifact.expectGet()
+
+        run 'retrieve'
+
+        then:
+        file('libs').assertHasDescendants('projectA-1.0.jar', 'projectB-1.0.jar')
+    }
+}
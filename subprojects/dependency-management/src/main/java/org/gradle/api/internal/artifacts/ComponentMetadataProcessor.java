@@ -19,4 +19,9 @@ import org.gradle.internal.component.external.model.MutableModuleComponentResolv
 
 public interface ComponentMetadataProcessor {
     void processMetadata(MutableModuleComponentResolveMetaData metadata);
+
+    /**
+     * @return true if any rules have been added that may modify component meta-data
+     */
+    boolean hasRules();
 }
@@ -35,7 +35,8 @@ public class DefaultModuleVersionIdentifier implements ModuleVersionIdentifier {
     }
 
     public DefaultModuleVersionIdentifier(ModuleIdentifier id, String version) {
-        this.id = new DefaultModuleIdentifier(id.getGroup(), id.getName());
+        // The module identifier is immutable, so can be shared
+        this.id = id instanceof DefaultModuleIdentifier ? (DefaultModuleIdentifier) id : new DefaultModuleIdentifier(id.getGroup(), id.getName());
         this.version = version;
     }
 
@@ -39,6 +39,7 @@ import org.gradle.api.internal.artifacts.ivyservice.projectmodule.DefaultProject
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectPublicationRegistry;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.DefaultDependencyResolver;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache;
 import org.gradle.api.internal.artifacts.mvnsettings.*;
 import org.gradle.api.internal.artifacts.repositories.transport.RepositoryTransportFactory;
 import org.gradle.api.internal.file.FileLookup;
@@ -54,12 +55,14 @@ import org.gradle.cache.CacheRepository;
 import org.gradle.initialization.ProjectAccessListener;
 import org.gradle.internal.SystemProperties;
 import org.gradle.internal.component.external.model.ModuleComponentArtifactMetaData;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.internal.resource.cached.ByUrlCachedExternalResourceIndex;
 import org.gradle.internal.resource.cached.ivy.ArtifactAtRepositoryCachedArtifactIndex;
 import org.gradle.internal.resource.local.LocallyAvailableResourceFinder;
 import org.gradle.internal.resource.local.UniquePathKeyFileStore;
 import org.gradle.internal.resource.local.ivy.LocallyAvailableResourceFinderFactory;
+import org.gradle.internal.resource.transport.http.HttpConnectionPool;
 import org.gradle.internal.resource.transport.sftp.SftpClientFactory;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.logging.ProgressLoggerFactory;
@@ -175,11 +178,16 @@ class DependencyManagementBuildScopeServices {
         return new SftpClientFactory();
     }
 
+    HttpConnectionPool createHttpConnectionPool() {
+        return new HttpConnectionPool();
+    }
+
     RepositoryTransportFactory createRepositoryTransportFactory(ProgressLoggerFactory progressLoggerFactory,
                                                                 TemporaryFileProvider temporaryFileProvider,
                                                                 ByUrlCachedExternalResourceIndex externalResourceIndex,
                                                                 BuildCommencedTimeProvider buildCommencedTimeProvider,
                                                                 SftpClientFactory sftpClientFactory,
+                                                                HttpConnectionPool httpConnectionPool,
                                                                 CacheLockingManager cacheLockingManager) {
         return new RepositoryTransportFactory(
                 progressLoggerFactory,
@@ -187,6 +195,7 @@ class DependencyManagementBuildScopeServices {
                 externalResourceIndex,
                 buildCommencedTimeProvider,
                 sftpClientFactory,
+                httpConnectionPool,
                 cacheLockingManager
         );
     }
@@ -211,7 +220,13 @@ class DependencyManagementBuildScopeServices {
 
     ArtifactDependencyResolver createArtifactDependencyResolver(ResolveIvyFactory resolveIvyFactory, LocalComponentFactory publishModuleDescriptorConverter, DependencyDescriptorFactory dependencyDescriptorFactory,
                                                                 CacheLockingManager cacheLockingManager, IvyContextManager ivyContextManager, ResolutionResultsStoreFactory resolutionResultsStoreFactory,
-                                                                VersionComparator versionComparator, ProjectRegistry<ProjectInternal> projectRegistry, ComponentIdentifierFactory componentIdentifierFactory) {
+                                                                VersionComparator versionComparator, ProjectRegistry<ProjectInternal> projectRegistry, ComponentIdentifierFactory componentIdentifierFactory,
+                                                                ExecutorFactory executorFactory, StartParameter startParameter, VersionSelectorScheme versionSelectorScheme,
+                                                                ModuleIdentifierInterner moduleIdentifierInterner) {
+        ResolvedGraphCache resolvedGraphCache = null;
+        if (ResolvedGraphCache.isEnabled()) {
+            resolvedGraphCache = new ResolvedGraphCache(cacheLockingManager, versionSelectorScheme, startParameter.isRefreshDependencies());
+        }
         ArtifactDependencyResolver resolver = new DefaultDependencyResolver(
                 resolveIvyFactory,
                 publishModuleDescriptorConverter,
@@ -222,7 +237,10 @@ class DependencyManagementBuildScopeServices {
                 cacheLockingManager,
                 ivyContextManager,
                 resolutionResultsStoreFactory,
-                versionComparator
+                versionComparator,
+                executorFactory,
+                resolvedGraphCache,
+                moduleIdentifierInterner
         );
         return new ErrorHandlingArtifactDependencyResolver(
                 new ShortcircuitEmptyConfigsArtifactDependencyResolver(
@@ -233,6 +251,10 @@ class DependencyManagementBuildScopeServices {
                         componentIdentifierFactory));
     }
 
+    ModuleIdentifierInterner createModuleIdentifierInterner() {
+        return new ModuleIdentifierInterner();
+    }
+
     ResolutionResultsStoreFactory createResolutionResultsStoreFactory(TemporaryFileProvider temporaryFileProvider) {
         return new ResolutionResultsStoreFactory(temporaryFileProvider);
     }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts;
+
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hands out a single shared instance for each distinct module and module version identifier, so that the dependency graphs and results of all the
+ * configurations resolved in a build refer to the same identifier objects rather than each holding their own copies. Thread-safe.
+ */
+public class ModuleIdentifierInterner {
+    private final ConcurrentMap<String, ConcurrentMap<String, ModuleIdentifier>> modules = new ConcurrentHashMap<String, ConcurrentMap<String, ModuleIdentifier>>();
+    private final ConcurrentMap<ModuleVersionIdentifier, ModuleVersionIdentifier> versions = new ConcurrentHashMap<ModuleVersionIdentifier, ModuleVersionIdentifier>();
+
+    /**
+     * Returns the shared identifier for the given module. Does not allocate when the module has been seen before.
+     */
+    public ModuleIdentifier module(String group, String name) {
+        ConcurrentMap<String, ModuleIdentifier> byName = modules.get(group);
+        if (byName == null) {
+            byName = new ConcurrentHashMap<String, ModuleIdentifier>();
+            ConcurrentMap<String, ModuleIdentifier> existing = modules.putIfAbsent(group, byName);
+            if (existing != null) {
+                byName = existing;
+            }
+        }
+        ModuleIdentifier id = byName.get(name);
+        if (id == null) {
+            id = new DefaultModuleIdentifier(group, name);
+            ModuleIdentifier existing = byName.putIfAbsent(name, id);
+            if (existing != null) {
+                id = existing;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Returns the shared instance equal to the given identifier. Identifiers of other implementations are returned unchanged.
+     */
+    public ModuleIdentifier intern(ModuleIdentifier id) {
+        if (!(id instanceof DefaultModuleIdentifier)) {
+            return id;
+        }
+        return module(id.getGroup(), id.getName());
+    }
+
+    /**
+     * Returns the shared instance equal to the given identifier. Identifiers of other implementations are returned unchanged.
+     */
+    public ModuleVersionIdentifier intern(ModuleVersionIdentifier id) {
+        if (!(id instanceof DefaultModuleVersionIdentifier)) {
+            return id;
+        }
+        ModuleVersionIdentifier interned = versions.get(id);
+        if (interned == null) {
+            interned = new DefaultModuleVersionIdentifier(module(id.getGroup(), id.getName()), id.getVersion());
+            ModuleVersionIdentifier existing = versions.putIfAbsent(interned, interned);
+            if (existing != null) {
+                interned = existing;
+            }
+        }
+        return interned;
+    }
+}
@@ -50,6 +50,11 @@ public interface ResolutionStrategyInternal extends ResolutionStrategy {
      */
     Action<DependencyResolveDetailsInternal> getDependencyResolveRule();
 
+    /**
+     * @return true if any dependency resolve rules have been added, other than those that force module versions
+     */
+    boolean hasDependencyResolveRules();
+
     /**
      * @return the version selection rules object
      */
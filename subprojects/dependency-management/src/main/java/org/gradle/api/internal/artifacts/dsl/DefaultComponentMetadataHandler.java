@@ -130,6 +130,10 @@ public class DefaultComponentMetadataHandler implements ComponentMetadataHandler
         }
     }
 
+    public boolean hasRules() {
+        return !rules.isEmpty();
+    }
+
     public void eachComponent(Action<? super ComponentMetadataDetails> rule) {
         warnDeprecated();
         all(rule);
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.apache.ivy.Ivy;
+import org.gradle.api.Action;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Resolves the files of a set of artifacts on a bounded pool of threads, so that artifacts are downloaded concurrently. Each artifact is resolved with the
+ * artifact cache locked and an Ivy context in place, in the same way as {@link ContextualComponentMetaDataResolver}.
+ */
+public class ArtifactFilePrefetcher {
+    /**
+     * The number of threads to use to download the artifacts of a resolved configuration. 0 downloads artifacts one at a time. Defaults to 0.
+     */
+    public static final String THREADS_PROPERTY = "org.gradle.dependency.downloadThreads";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactFilePrefetcher.class);
+
+    private final ExecutorFactory executorFactory;
+    private final CacheLockingManager cacheLockingManager;
+    private final IvyContextManager ivyContextManager;
+    private final int maxThreads;
+
+    public ArtifactFilePrefetcher(ExecutorFactory executorFactory, CacheLockingManager cacheLockingManager, IvyContextManager ivyContextManager, int maxThreads) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("Not a valid number of download threads: " + maxThreads);
+        }
+        this.executorFactory = executorFactory;
+        this.cacheLockingManager = cacheLockingManager;
+        this.ivyContextManager = ivyContextManager;
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Creates a prefetcher as configured by the {@value #THREADS_PROPERTY} system property. Returns null when concurrent download is disabled.
+     */
+    public static ArtifactFilePrefetcher create(ExecutorFactory executorFactory, CacheLockingManager cacheLockingManager, IvyContextManager ivyContextManager) {
+        int threads = Integer.getInteger(THREADS_PROPERTY, 0);
+        return threads > 0 ? new ArtifactFilePrefetcher(executorFactory, cacheLockingManager, ivyContextManager, threads) : null;
+    }
+
+    /**
+     * Resolves the file of each of the given artifacts, and blocks until they have all been resolved. Failures are discarded, and are reported when
+     * the file of the artifact is next requested.
+     */
+    public void prefetch(Collection<? extends ResolvedArtifact> artifacts) {
+        if (artifacts.size() < 2) {
+            return;
+        }
+        final Queue<ResolvedArtifact> queue = new ConcurrentLinkedQueue<ResolvedArtifact>(artifacts);
+        final int workers = Math.min(maxThreads, artifacts.size());
+        cacheLockingManager.longRunningOperation(String.format("Download %s artifacts", artifacts.size()), new Runnable() {
+            public void run() {
+                StoppableExecutor executor = executorFactory.create("Artifact download");
+                try {
+                    for (int i = 0; i < workers; i++) {
+                        executor.execute(new Worker(queue));
+                    }
+                } finally {
+                    executor.stop();
+                }
+            }
+        });
+    }
+
+    private void fetch(final ResolvedArtifact artifact) {
+        cacheLockingManager.useCache(String.format("Download %s", artifact), new Runnable() {
+            public void run() {
+                ivyContextManager.withIvy(new Action<Ivy>() {
+                    public void execute(Ivy ivy) {
+                        artifact.getFile();
+                    }
+                });
+            }
+        });
+    }
+
+    private class Worker implements Runnable {
+        private final Queue<ResolvedArtifact> queue;
+
+        Worker(Queue<ResolvedArtifact> queue) {
+            this.queue = queue;
+        }
+
+        public void run() {
+            ResolvedArtifact artifact;
+            while ((artifact = queue.poll()) != null) {
+                try {
+                    fetch(artifact);
+                } catch (Throwable e) {
+                    LOGGER.debug(String.format("Could not download %s.", artifact), e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.apache.ivy.Ivy;
+import org.gradle.api.Action;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.internal.component.model.DependencyMetaData;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+
+/**
+ * Resolves component meta-data with the artifact cache locked and an Ivy context in place, so that it can be used from any thread.
+ */
+public class ContextualComponentMetaDataResolver implements ComponentMetaDataResolver {
+    private final CacheLockingManager lockingManager;
+    private final IvyContextManager ivyContextManager;
+    private final ComponentMetaDataResolver delegate;
+
+    public ContextualComponentMetaDataResolver(CacheLockingManager lockingManager, IvyContextManager ivyContextManager, ComponentMetaDataResolver delegate) {
+        this.lockingManager = lockingManager;
+        this.ivyContextManager = ivyContextManager;
+        this.delegate = delegate;
+    }
+
+    public void resolve(final DependencyMetaData dependency, final ComponentIdentifier identifier, final BuildableComponentResolveResult result) {
+        lockingManager.useCache(String.format("Resolve %s", identifier), new Runnable() {
+            public void run() {
+                ivyContextManager.withIvy(new Action<Ivy>() {
+                    public void execute(Ivy ivy) {
+                        delegate.resolve(dependency, identifier, result);
+                    }
+                });
+            }
+        });
+    }
+}
@@ -32,11 +32,17 @@ public class DefaultLenientConfiguration implements LenientConfiguration {
     private CacheLockingManager cacheLockingManager;
     private final Configuration configuration;
     private ResolvedConfigurationResults results;
+    private final ArtifactFilePrefetcher filePrefetcher;
 
     public DefaultLenientConfiguration(Configuration configuration, ResolvedConfigurationResults results, CacheLockingManager cacheLockingManager) {
+        this(configuration, results, cacheLockingManager, null);
+    }
+
+    public DefaultLenientConfiguration(Configuration configuration, ResolvedConfigurationResults results, CacheLockingManager cacheLockingManager, ArtifactFilePrefetcher filePrefetcher) {
         this.configuration = configuration;
         this.results = results;
         this.cacheLockingManager = cacheLockingManager;
+        this.filePrefetcher = filePrefetcher;
     }
 
     public boolean hasError() {
@@ -88,6 +94,7 @@ public class DefaultLenientConfiguration implements LenientConfiguration {
      */
     public Set<ResolvedArtifact> getArtifacts(Spec<? super Dependency> dependencySpec) {
         final Set<ResolvedArtifact> allArtifacts = getAllArtifacts(dependencySpec);
+        prefetchFiles(allArtifacts);
         return cacheLockingManager.useCache("retrieve artifacts from " + configuration, new Factory<Set<ResolvedArtifact>>() {
             public Set<ResolvedArtifact> create() {
                 return CollectionUtils.filter(allArtifacts, new Spec<ResolvedArtifact>() {
@@ -105,6 +112,7 @@ public class DefaultLenientConfiguration implements LenientConfiguration {
     }
 
     private Set<File> getFiles(final Set<ResolvedArtifact> artifacts) {
+        prefetchFiles(artifacts);
         final Set<File> files = new LinkedHashSet<File>();
         cacheLockingManager.useCache("resolve files from " + configuration, new Runnable() {
             public void run() {
@@ -119,6 +127,12 @@ public class DefaultLenientConfiguration implements LenientConfiguration {
         return files;
     }
 
+    private void prefetchFiles(Set<ResolvedArtifact> artifacts) {
+        if (filePrefetcher != null) {
+            filePrefetcher.prefetch(artifacts);
+        }
+    }
+
     /**
      * Recursive, includes unsuccessfully resolved artifacts
      *
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.gradle.messaging.serialize.Decoder;
+import org.gradle.messaging.serialize.Encoder;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the content of an ivy.xml file, as seen by the ivy.xml parser, in a compact binary form. The recorded content can later be replayed into a
+ * parser, so that the module descriptor can be rebuilt without parsing the XML again.
+ *
+ * <p>Only the parts of the content that the parser uses are recorded: attributes are replayed with their qualified name and value only. Names and values
+ * are written once and then referenced by index, as the same handful of values are repeated throughout a descriptor.</p>
+ */
+public class IvyXmlEventRecorder {
+    private static final byte END_DOCUMENT = 0;
+    private static final byte START_ELEMENT = 1;
+    private static final byte END_ELEMENT = 2;
+    private static final byte CHARACTERS = 3;
+
+    private final Encoder encoder;
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    public IvyXmlEventRecorder(Encoder encoder) {
+        this.encoder = encoder;
+    }
+
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws IOException {
+        encoder.writeByte(START_ELEMENT);
+        writeString(uri);
+        writeString(localName);
+        writeString(qName);
+        encoder.writeSmallInt(attributes.getLength());
+        for (int i = 0; i < attributes.getLength(); i++) {
+            writeString(attributes.getQName(i));
+            writeString(attributes.getValue(i));
+        }
+    }
+
+    public void endElement(String uri, String localName, String qName) throws IOException {
+        encoder.writeByte(END_ELEMENT);
+        writeString(uri);
+        writeString(localName);
+        writeString(qName);
+    }
+
+    public void characters(char[] ch, int start, int length) throws IOException {
+        encoder.writeByte(CHARACTERS);
+        encoder.writeString(new String(ch, start, length));
+    }
+
+    public void endDocument() throws IOException {
+        encoder.writeByte(END_DOCUMENT);
+    }
+
+    private void writeString(String value) throws IOException {
+        Integer index = strings.get(value);
+        if (index != null) {
+            encoder.writeSmallInt(index + 1);
+        } else {
+            strings.put(value, strings.size());
+            encoder.writeSmallInt(0);
+            encoder.writeString(value);
+        }
+    }
+
+    /**
+     * Replays content previously recorded by a {@link IvyXmlEventRecorder} into the given handler.
+     */
+    public static void replay(Decoder decoder, ContentHandler handler) throws IOException, SAXException {
+        List<String> strings = new ArrayList<String>();
+        AttributesImpl attributes = new AttributesImpl();
+        while (true) {
+            byte event = decoder.readByte();
+            switch (event) {
+                case START_ELEMENT:
+                    String uri = readString(decoder, strings);
+                    String localName = readString(decoder, strings);
+                    String qName = readString(decoder, strings);
+                    attributes.clear();
+                    int count = decoder.readSmallInt();
+                    for (int i = 0; i < count; i++) {
+                        String attributeName = readString(decoder, strings);
+                        attributes.addAttribute("", attributeName, attributeName, "CDATA", readString(decoder, strings));
+                    }
+                    handler.startElement(uri, localName, qName, attributes);
+                    break;
+                case END_ELEMENT:
+                    handler.endElement(readString(decoder, strings), readString(decoder, strings), readString(decoder, strings));
+                    break;
+                case CHARACTERS:
+                    char[] chars = decoder.readString().toCharArray();
+                    handler.characters(chars, 0, chars.length);
+                    break;
+                case END_DOCUMENT:
+                    return;
+                default:
+                    throw new IOException(String.format("Unexpected event %s in recorded ivy.xml content.", event));
+            }
+        }
+    }
+
+    private static String readString(Decoder decoder, List<String> strings) throws IOException {
+        int index = decoder.readSmallInt();
+        if (index > 0) {
+            return strings.get(index - 1);
+        }
+        String value = decoder.readString();
+        strings.add(value);
+        return value;
+    }
+}
@@ -43,9 +43,12 @@ import org.gradle.internal.component.external.model.MutableModuleComponentResolv
 import org.gradle.api.internal.component.ArtifactType;
 import org.gradle.internal.component.model.DefaultIvyArtifactName;
 import org.gradle.internal.component.model.IvyArtifactName;
+import org.gradle.internal.resource.DefaultLocallyAvailableExternalResource;
 import org.gradle.internal.resource.ExternalResource;
 import org.gradle.internal.resource.LocallyAvailableExternalResource;
 import org.gradle.internal.resource.UrlExternalResource;
+import org.gradle.internal.resource.local.DefaultLocallyAvailableResource;
+import org.gradle.messaging.serialize.Decoder;
 import org.gradle.util.CollectionUtils;
 import org.gradle.util.TextUtil;
 import org.slf4j.Logger;
@@ -95,6 +98,45 @@ public class IvyXmlModuleDescriptorParser extends AbstractModuleDescriptorParser
         return new Parser(parseContext, resource, resource.getLocalResource().getFile().toURI().toURL(), properties, resolverStrategy);
     }
 
+    /**
+     * Parses the given descriptor file without validation, passing its content to the given recorder so that the descriptor can later be rebuilt using
+     * {@link #parseMetaData(DescriptorParseContext, File, Decoder)}.
+     */
+    public MutableModuleComponentResolveMetaData parseMetaData(DescriptorParseContext parseContext, File descriptorFile, IvyXmlEventRecorder recorder) throws MetaDataParseException {
+        LocallyAvailableExternalResource resource = toResource(descriptorFile);
+        try {
+            Parser parser = createParser(parseContext, resource, populateProperties(), resolverStrategy);
+            parser.recorder = recorder;
+            MutableModuleComponentResolveMetaData metaData = doParseDescriptorWithProvidedParser(parser, false);
+            recorder.endDocument();
+            return metaData;
+        } catch (MetaDataParseException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MetaDataParseException(getTypeName(), resource, e);
+        }
+    }
+
+    /**
+     * Rebuilds the descriptor for the given descriptor file from content previously recorded by a {@link IvyXmlEventRecorder}, without parsing the file.
+     */
+    public MutableModuleComponentResolveMetaData parseMetaData(DescriptorParseContext parseContext, File descriptorFile, Decoder recordedContent) throws MetaDataParseException {
+        LocallyAvailableExternalResource resource = toResource(descriptorFile);
+        try {
+            Parser parser = createParser(parseContext, resource, populateProperties(), resolverStrategy);
+            parser.recordedContent = recordedContent;
+            return doParseDescriptorWithProvidedParser(parser, false);
+        } catch (MetaDataParseException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MetaDataParseException(getTypeName(), resource, e);
+        }
+    }
+
+    private static LocallyAvailableExternalResource toResource(File descriptorFile) {
+        return new DefaultLocallyAvailableExternalResource(descriptorFile.toURI(), new DefaultLocallyAvailableResource(descriptorFile));
+    }
+
     private MutableModuleComponentResolveMetaData doParseDescriptorWithProvidedParser(Parser parser, boolean validate) throws IOException, ParseException {
         parser.setValidate(validate);
         parser.parse();
@@ -453,6 +495,8 @@ public class IvyXmlModuleDescriptorParser extends AbstractModuleDescriptorParser
         private StringBuffer buffer;
         private String descriptorVersion;
         private String[] publicationsDefaultConf;
+        private IvyXmlEventRecorder recorder;
+        private Decoder recordedContent;
         final Map<String, String> properties;
         final ResolverStrategy resolverStrategy;
 
@@ -483,6 +527,28 @@ public class IvyXmlModuleDescriptorParser extends AbstractModuleDescriptorParser
         }
 
         public void parse() throws ParseException, IOException {
+            if (recordedContent != null) {
+                try {
+                    IvyXmlEventRecorder.replay(recordedContent, this);
+                } catch (SAXException e) {
+                    throw new MetaDataParseException("Ivy file", getResource(), e);
+                }
+            } else {
+                parseXml();
+            }
+            checkErrors();
+            checkConfigurations();
+            replaceConfigurationWildcards();
+            if (!artifactsDeclared) {
+                IvyArtifactName implicitArtifact = new DefaultIvyArtifactName(getMd().getModuleRevisionId().getName(), "jar", "jar");
+                Set<String> configurationNames = Sets.newHashSet(getMd().getConfigurationsNames());
+                metaData.addArtifact(implicitArtifact, configurationNames);
+            }
+            checkErrors();
+            getMd().check();
+        }
+
+        private void parseXml() throws IOException {
             getResource().withContent(new Action<InputStream>() {
                 public void execute(InputStream inputStream) {
                     URL schemaURL = validate ? getSchemaURL() : null;
@@ -495,21 +561,14 @@ public class IvyXmlModuleDescriptorParser extends AbstractModuleDescriptorParser
                     }
                 }
             });
-            checkErrors();
-            checkConfigurations();
-            replaceConfigurationWildcards();
-            if (!artifactsDeclared) {
-                IvyArtifactName implicitArtifact = new DefaultIvyArtifactName(getMd().getModuleRevisionId().getName(), "jar", "jar");
-                Set<String> configurationNames = Sets.newHashSet(getMd().getConfigurationsNames());
-                metaData.addArtifact(implicitArtifact, configurationNames);
-            }
-            checkErrors();
-            getMd().check();
         }
 
         public void startElement(String uri, String localName, String qName, Attributes attributes)
                 throws SAXException {
             try {
+                if (recorder != null) {
+                    recorder.startElement(uri, localName, qName, attributes);
+                }
                 if (state == State.DESCRIPTION) {
                     // make sure we don't interpret any tag while in description tag
                     descriptionStarted(qName, attributes);
@@ -1091,10 +1150,24 @@ public class IvyXmlModuleDescriptorParser extends AbstractModuleDescriptorParser
         public void characters(char[] ch, int start, int length) throws SAXException {
             if (buffer != null) {
                 buffer.append(ch, start, length);
+                if (recorder != null) {
+                    try {
+                        recorder.characters(ch, start, length);
+                    } catch (IOException e) {
+                        throw new SAXException(e);
+                    }
+                }
             }
         }
 
         public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (recorder != null) {
+                try {
+                    recorder.endElement(uri, localName, qName);
+                } catch (IOException e) {
+                    throw new SAXException(e);
+                }
+            }
             if (state == State.PUB && "artifact".equals(qName)) {
                 if (artifact.getConfigurations().isEmpty()) {
                     String[] confs = publicationsDefaultConf == null ? getMd().getConfigurationsNames() : publicationsDefaultConf;
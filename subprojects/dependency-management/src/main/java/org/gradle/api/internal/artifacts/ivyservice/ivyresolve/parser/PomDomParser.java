@@ -16,39 +16,119 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
 
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.*;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 public final class PomDomParser {
-    private PomDomParser() {}
+    /**
+     * Elements of the project and of its profiles that are never read when building module meta-data. These are streamed past without being retained.
+     */
+    private static final Set<String> IGNORED_ELEMENTS = new HashSet<String>(Arrays.asList(
+            "build", "reporting", "developers", "contributors", "mailingLists", "scm", "issueManagement", "ciManagement",
+            "repositories", "pluginRepositories", "organization"));
+    private static final String PROFILE = "profile";
+
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+            factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+            factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+            factory.setXMLResolver(new XMLResolver() {
+                public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace) {
+                    if ((systemID != null) && systemID.endsWith("m2-entities.ent")) {
+                        return org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent");
+                    }
+                    return null;
+                }
+            });
+            return factory;
+        }
+    };
 
-    public static String getTextContent(Element element) {
-        StringBuilder result = new StringBuilder();
+    private PomDomParser() {}
 
-        NodeList childNodes = element.getChildNodes();
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node child = childNodes.item(i);
+    /**
+     * Parses the given POM content using a streaming parser, retaining only those elements that are used to build module meta-data.
+     *
+     * @return the root element of the POM.
+     */
+    public static PomElement parse(InputStream stream, String systemId) throws IOException, XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(systemId, new AddDTDFilterInputStream(stream));
+        try {
+            return parse(reader);
+        } finally {
+            reader.close();
+        }
+    }
 
-            switch (child.getNodeType()) {
-                case Node.CDATA_SECTION_NODE:
-                case Node.TEXT_NODE:
-                    result.append(child.getNodeValue());
+    private static PomElement parse(XMLStreamReader reader) throws XMLStreamException {
+        LinkedList<ElementBuilder> stack = new LinkedList<ElementBuilder>();
+        PomElement root = null;
+        int ignoredDepth = 0;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (ignoredDepth > 0) {
+                        ignoredDepth++;
+                        break;
+                    }
+                    String name = getName(reader);
+                    ElementBuilder parent = stack.peek();
+                    if (parent != null && IGNORED_ELEMENTS.contains(name) && (stack.size() == 1 || PROFILE.equals(parent.name))) {
+                        ignoredDepth = 1;
+                        break;
+                    }
+                    stack.push(new ElementBuilder(name));
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (ignoredDepth > 0) {
+                        ignoredDepth--;
+                        break;
+                    }
+                    PomElement element = stack.pop().build();
+                    if (stack.isEmpty()) {
+                        root = element;
+                    } else {
+                        stack.peek().children.add(element);
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (ignoredDepth == 0 && !stack.isEmpty()) {
+                        stack.peek().append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
                     break;
                 default:
                     break;
             }
         }
+        return root;
+    }
 
-        return result.toString();
+    private static String getName(XMLStreamReader reader) {
+        String prefix = reader.getPrefix();
+        String localName = reader.getLocalName();
+        if (prefix == null || prefix.length() == 0) {
+            return localName;
+        }
+        return prefix + ":" + localName;
     }
 
-    public static String getFirstChildText(Element parentElem, String name) {
-        Element node = getFirstChildElement(parentElem, name);
+    public static String getTextContent(PomElement element) {
+        return element.getText();
+    }
+
+    public static String getFirstChildText(PomElement parentElem, String name) {
+        PomElement node = getFirstChildElement(parentElem, name);
         if (node != null) {
             return getTextContent(node);
         } else {
@@ -56,32 +136,51 @@ public final class PomDomParser {
         }
     }
 
-    public static Element getFirstChildElement(Element parentElem, String name) {
+    public static PomElement getFirstChildElement(PomElement parentElem, String name) {
         if (parentElem == null) {
             return null;
         }
-        NodeList childs = parentElem.getChildNodes();
-        for (int i = 0; i < childs.getLength(); i++) {
-            Node node = childs.item(i);
-            if (node instanceof Element && name.equals(node.getNodeName())) {
-                return (Element) node;
+        for (PomElement child : parentElem.getChildren()) {
+            if (name.equals(child.getName())) {
+                return child;
             }
         }
         return null;
     }
 
-    public static List<Element> getAllChilds(Element parent) {
-        List<Element> r = new LinkedList<Element>();
-        if (parent != null) {
-            NodeList childs = parent.getChildNodes();
-            for (int i = 0; i < childs.getLength(); i++) {
-                Node node = childs.item(i);
-                if (node instanceof Element) {
-                    r.add((Element) node);
+    public static List<PomElement> getAllChilds(PomElement parent) {
+        if (parent == null) {
+            return Collections.emptyList();
+        }
+        return parent.getChildren();
+    }
+
+    private static class ElementBuilder {
+        private final String name;
+        private final List<PomElement> children = new ArrayList<PomElement>(4);
+        private StringBuilder text;
+        private String firstText;
+
+        ElementBuilder(String name) {
+            this.name = name;
+        }
+
+        void append(char[] chars, int start, int length) {
+            if (firstText == null && text == null) {
+                firstText = new String(chars, start, length);
+            } else {
+                if (text == null) {
+                    text = new StringBuilder(firstText);
+                    firstText = null;
                 }
+                text.append(chars, start, length);
             }
         }
-        return r;
+
+        PomElement build() {
+            String content = text != null ? text.toString() : firstText != null ? firstText : "";
+            return new PomElement(name, content, children);
+        }
     }
 
     public static final class AddDTDFilterInputStream extends FilterInputStream {
@@ -22,37 +22,74 @@ import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.internal.artifacts.ivyservice.IvyModuleDescriptorWriter;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleComponentRepository;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.DescriptorParseContext;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.IvyXmlEventRecorder;
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.IvyXmlModuleDescriptorParser;
+import org.gradle.api.UncheckedIOException;
 import org.gradle.internal.resource.local.PathKeyFileStore;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.resource.local.LocallyAvailableResource;
+import org.gradle.messaging.serialize.kryo.KryoBackedDecoder;
+import org.gradle.messaging.serialize.kryo.KryoBackedEncoder;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.File;
+import java.io.*;
 
 public class ModuleDescriptorStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModuleDescriptorStore.class);
 
+    /**
+     * When set to true, the parsed content of each cached ivy.xml file is also stored in a binary file alongside it, and is used in preference to parsing the
+     * ivy.xml file.
+     */
+    public static final String BINARY_DESCRIPTORS_PROPERTY = "org.gradle.dependency.binaryDescriptors";
     public static final String FILE_PATH_PATTERN = "%s/%s/%s/%s/ivy.xml";
+    public static final String BINARY_FILE_PATH_PATTERN = "%s/%s/%s/%s/ivy.bin";
+    private static final int BINARY_FORMAT_VERSION = 1;
     private final IvyXmlModuleDescriptorParser descriptorParser;
     private final PathKeyFileStore metaDataStore;
     private final IvyModuleDescriptorWriter descriptorWriter;
+    private final boolean useBinaryDescriptors;
 
     public ModuleDescriptorStore(PathKeyFileStore metaDataStore, IvyModuleDescriptorWriter descriptorWriter, IvyXmlModuleDescriptorParser ivyXmlModuleDescriptorParser) {
+        this(metaDataStore, descriptorWriter, ivyXmlModuleDescriptorParser, false);
+    }
+
+    public ModuleDescriptorStore(PathKeyFileStore metaDataStore, IvyModuleDescriptorWriter descriptorWriter, IvyXmlModuleDescriptorParser ivyXmlModuleDescriptorParser, boolean useBinaryDescriptors) {
         this.metaDataStore = metaDataStore;
         this.descriptorWriter = descriptorWriter;
         this.descriptorParser = ivyXmlModuleDescriptorParser;
+        this.useBinaryDescriptors = useBinaryDescriptors;
+    }
+
+    public static boolean isBinaryDescriptorsEnabled() {
+        return Boolean.getBoolean(BINARY_DESCRIPTORS_PROPERTY);
     }
 
     public ModuleDescriptor getModuleDescriptor(ModuleComponentRepository repository, ModuleComponentIdentifier moduleComponentIdentifier) {
-        String filePath = getFilePath(repository, moduleComponentIdentifier);
+        String filePath = getFilePath(FILE_PATH_PATTERN, repository, moduleComponentIdentifier);
         final LocallyAvailableResource resource = metaDataStore.get(filePath);
-        if (resource != null) {
+        if (resource == null) {
+            return null;
+        }
+        if (!useBinaryDescriptors) {
             return parseModuleDescriptorFile(resource.getFile());
         }
-        return null;
+        String binaryFilePath = getFilePath(BINARY_FILE_PATH_PATTERN, repository, moduleComponentIdentifier);
+        ModuleDescriptor descriptor = readBinaryModuleDescriptor(resource.getFile(), metaDataStore.get(binaryFilePath));
+        if (descriptor == null) {
+            descriptor = parseAndStoreBinaryModuleDescriptor(resource.getFile(), binaryFilePath);
+        }
+        return descriptor;
     }
 
     public LocallyAvailableResource putModuleDescriptor(ModuleComponentRepository repository, final ModuleDescriptor moduleDescriptor) {
-        String filePath = getFilePath(repository, moduleDescriptor.getModuleRevisionId());
+        String filePath = getFilePath(FILE_PATH_PATTERN, repository, moduleDescriptor.getModuleRevisionId());
+        LocallyAvailableResource binaryResource = metaDataStore.get(getFilePath(BINARY_FILE_PATH_PATTERN, repository, moduleDescriptor.getModuleRevisionId()));
+        if (binaryResource != null) {
+            GFileUtils.forceDelete(binaryResource.getFile());
+        }
         return metaDataStore.add(filePath, new Action<File>() {
             public void execute(File moduleDescriptorFile) {
                 try {
@@ -69,11 +106,65 @@ public class ModuleDescriptorStore {
         return descriptorParser.parseMetaData(parserSettings, moduleDescriptorFile, false).getDescriptor();
     }
 
-    private String getFilePath(ModuleComponentRepository repository, ModuleRevisionId moduleRevisionId) {
-        return String.format(FILE_PATH_PATTERN, moduleRevisionId.getOrganisation(), moduleRevisionId.getName(), moduleRevisionId.getRevision(), repository.getId());
+    /**
+     * Rebuilds the descriptor from the given binary file, or returns null when there is no usable binary file for the given descriptor file.
+     */
+    private ModuleDescriptor readBinaryModuleDescriptor(File moduleDescriptorFile, LocallyAvailableResource binaryResource) {
+        if (binaryResource == null) {
+            return null;
+        }
+        try {
+            KryoBackedDecoder decoder = new KryoBackedDecoder(new FileInputStream(binaryResource.getFile()));
+            try {
+                if (decoder.readSmallInt() != BINARY_FORMAT_VERSION || decoder.readLong() != moduleDescriptorFile.length() || decoder.readLong() != moduleDescriptorFile.lastModified()) {
+                    return null;
+                }
+                return descriptorParser.parseMetaData(new CachedModuleDescriptorParseContext(), moduleDescriptorFile, decoder).getDescriptor();
+            } finally {
+                decoder.close();
+            }
+        } catch (Exception e) {
+            // The descriptor file is the source of truth, so fall back to parsing it
+            LOGGER.debug("Could not read binary module descriptor {}. Parsing {} instead.", binaryResource.getFile(), moduleDescriptorFile, e);
+            return null;
+        }
+    }
+
+    private ModuleDescriptor parseAndStoreBinaryModuleDescriptor(File moduleDescriptorFile, String binaryFilePath) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(content);
+        try {
+            encoder.writeSmallInt(BINARY_FORMAT_VERSION);
+            encoder.writeLong(moduleDescriptorFile.length());
+            encoder.writeLong(moduleDescriptorFile.lastModified());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ModuleDescriptor descriptor = descriptorParser.parseMetaData(new CachedModuleDescriptorParseContext(), moduleDescriptorFile, new IvyXmlEventRecorder(encoder)).getDescriptor();
+        encoder.close();
+        final byte[] bytes = content.toByteArray();
+        metaDataStore.add(binaryFilePath, new Action<File>() {
+            public void execute(File binaryFile) {
+                try {
+                    OutputStream outputStream = new FileOutputStream(binaryFile);
+                    try {
+                        outputStream.write(bytes);
+                    } finally {
+                        outputStream.close();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        return descriptor;
+    }
+
+    private String getFilePath(String pattern, ModuleComponentRepository repository, ModuleRevisionId moduleRevisionId) {
+        return String.format(pattern, moduleRevisionId.getOrganisation(), moduleRevisionId.getName(), moduleRevisionId.getRevision(), repository.getId());
     }
 
-    private String getFilePath(ModuleComponentRepository repository, ModuleComponentIdentifier moduleComponentIdentifier) {
-        return String.format(FILE_PATH_PATTERN, moduleComponentIdentifier.getGroup(), moduleComponentIdentifier.getModule(), moduleComponentIdentifier.getVersion(), repository.getId());
+    private String getFilePath(String pattern, ModuleComponentRepository repository, ModuleComponentIdentifier moduleComponentIdentifier) {
+        return String.format(pattern, moduleComponentIdentifier.getGroup(), moduleComponentIdentifier.getModule(), moduleComponentIdentifier.getVersion(), repository.getId());
     }
 }
\ No newline at end of file
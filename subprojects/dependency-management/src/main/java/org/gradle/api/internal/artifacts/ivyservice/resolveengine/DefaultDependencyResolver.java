@@ -17,10 +17,12 @@ package org.gradle.api.internal.artifacts.ivyservice.resolveengine;
 
 import org.apache.ivy.Ivy;
 import org.gradle.api.Action;
+import org.gradle.api.Nullable;
 import org.gradle.api.artifacts.ResolveException;
 import org.gradle.api.artifacts.result.ResolvedComponentResult;
 import org.gradle.api.internal.artifacts.ArtifactDependencyResolver;
 import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.ModuleIdentifierInterner;
 import org.gradle.api.internal.artifacts.ResolverResults;
 import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
 import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
@@ -35,19 +37,25 @@ import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectArtifac
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectComponentRegistry;
 import org.gradle.api.internal.artifacts.ivyservice.projectmodule.ProjectDependencyResolver;
 import org.gradle.api.internal.artifacts.ivyservice.resolutionstrategy.StrictConflictResolution;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ComponentMetaDataPrefetcher;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.ConflictHandler;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultConflictHandler;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.DefaultResolvedConfigurationBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.ResolvedConfigurationBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.TransientConfigurationResults;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.TransientConfigurationResultsBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphRecorder;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.StoreSet;
 import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
 import org.gradle.api.internal.cache.BinaryStore;
 import org.gradle.api.internal.cache.Store;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.resolve.resolver.ArtifactResolver;
 import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
 import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver;
@@ -66,10 +74,14 @@ public class DefaultDependencyResolver implements ArtifactDependencyResolver {
     private final IvyContextManager ivyContextManager;
     private final ResolutionResultsStoreFactory storeFactory;
     private final VersionComparator versionComparator;
+    private final ExecutorFactory executorFactory;
+    private final ResolvedGraphCache resolvedGraphCache;
+    private final ModuleIdentifierInterner moduleIdentifierInterner;
 
     public DefaultDependencyResolver(ResolveIvyFactory ivyFactory, LocalComponentFactory localComponentFactory, DependencyDescriptorFactory dependencyDescriptorFactory,
                                      ProjectComponentRegistry projectComponentRegistry, CacheLockingManager cacheLockingManager, IvyContextManager ivyContextManager,
-                                     ResolutionResultsStoreFactory storeFactory, VersionComparator versionComparator) {
+                                     ResolutionResultsStoreFactory storeFactory, VersionComparator versionComparator, ExecutorFactory executorFactory,
+                                     @Nullable ResolvedGraphCache resolvedGraphCache, ModuleIdentifierInterner moduleIdentifierInterner) {
         this.ivyFactory = ivyFactory;
         this.localComponentFactory = localComponentFactory;
         this.dependencyDescriptorFactory = dependencyDescriptorFactory;
@@ -78,6 +90,9 @@ public class DefaultDependencyResolver implements ArtifactDependencyResolver {
         this.ivyContextManager = ivyContextManager;
         this.storeFactory = storeFactory;
         this.versionComparator = versionComparator;
+        this.executorFactory = executorFactory;
+        this.resolvedGraphCache = resolvedGraphCache;
+        this.moduleIdentifierInterner = moduleIdentifierInterner;
     }
 
     public void resolve(final ConfigurationInternal configuration,
@@ -87,27 +102,10 @@ public class DefaultDependencyResolver implements ArtifactDependencyResolver {
         LOGGER.debug("Resolving {}", configuration);
         ivyContextManager.withIvy(new Action<Ivy>() {
             public void execute(Ivy ivy) {
+                String graphCacheKey = resolvedGraphCache == null ? null : resolvedGraphCache.createKey(configuration, repositories, metadataHandler);
                 RepositoryChain repositoryChain = ivyFactory.create(configuration, repositories, metadataHandler.getComponentMetadataProcessor());
-
-                ComponentMetaDataResolver metaDataResolver = new ClientModuleResolver(repositoryChain.getComponentMetaDataResolver(), dependencyDescriptorFactory);
-
-                ProjectDependencyResolver projectDependencyResolver = new ProjectDependencyResolver(projectComponentRegistry, localComponentFactory, repositoryChain.getComponentIdResolver());
-                ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
-                DependencyToComponentIdResolver idResolver = new VersionForcingDependencyToModuleResolver(projectDependencyResolver, resolutionStrategy.getDependencyResolveRule());
-
                 ArtifactResolver artifactResolver = createArtifactResolver(repositoryChain);
 
-                ModuleConflictResolver conflictResolver;
-                if (resolutionStrategy.getConflictResolution() instanceof StrictConflictResolution) {
-                    conflictResolver = new StrictConflictResolver();
-                } else {
-                    conflictResolver = new LatestModuleConflictResolver(versionComparator);
-                }
-                conflictResolver = new VersionSelectionReasonResolver(conflictResolver);
-                ConflictHandler conflictHandler = new DefaultConflictHandler(conflictResolver, metadataHandler.getModuleMetadataProcessor().getModuleReplacements());
-
-                DependencyGraphBuilder builder = new DependencyGraphBuilder(idResolver, metaDataResolver, projectDependencyResolver, artifactResolver, conflictHandler, new DefaultDependencyToConfigurationResolver());
-
                 StoreSet stores = storeFactory.createStoreSet();
 
                 BinaryStore newModelStore = stores.nextBinaryStore();
@@ -119,13 +117,53 @@ public class DefaultDependencyResolver implements ArtifactDependencyResolver {
                 TransientConfigurationResultsBuilder oldTransientModelBuilder = new TransientConfigurationResultsBuilder(oldModelStore, oldModelCache);
                 DefaultResolvedConfigurationBuilder oldModelBuilder = new DefaultResolvedConfigurationBuilder(oldTransientModelBuilder);
 
-                builder.resolve(configuration, newModelBuilder, oldModelBuilder);
-                DefaultLenientConfiguration result = new DefaultLenientConfiguration(configuration, oldModelBuilder, cacheLockingManager);
+                if (graphCacheKey == null) {
+                    resolveGraph(configuration, metadataHandler, repositoryChain, artifactResolver, newModelBuilder, oldModelBuilder, null);
+                } else if (!resolvedGraphCache.load(graphCacheKey, configuration, newModelBuilder, oldModelBuilder, artifactResolver)) {
+                    ResolvedGraphRecorder recorder = resolvedGraphCache.createRecorder(configuration);
+                    resolveGraph(configuration, metadataHandler, repositoryChain, artifactResolver, recorder.record(newModelBuilder), recorder.record(oldModelBuilder), recorder);
+                    resolvedGraphCache.store(graphCacheKey, configuration, recorder);
+                }
+
+                ArtifactFilePrefetcher filePrefetcher = ArtifactFilePrefetcher.create(executorFactory, cacheLockingManager, ivyContextManager);
+                DefaultLenientConfiguration result = new DefaultLenientConfiguration(configuration, oldModelBuilder, cacheLockingManager, filePrefetcher);
                 results.resolved(new DefaultResolvedConfiguration(result), newModelBuilder.complete());
             }
         });
     }
 
+    private void resolveGraph(ConfigurationInternal configuration, GlobalDependencyResolutionRules metadataHandler, RepositoryChain repositoryChain, ArtifactResolver artifactResolver,
+                              ResolutionResultBuilder newModelBuilder, ResolvedConfigurationBuilder oldModelBuilder, @Nullable ResolvedGraphRecorder recorder) {
+        ComponentMetaDataResolver metaDataResolver = new ClientModuleResolver(repositoryChain.getComponentMetaDataResolver(), dependencyDescriptorFactory);
+        if (recorder != null) {
+            metaDataResolver = recorder.record(metaDataResolver);
+        }
+
+        ProjectDependencyResolver projectDependencyResolver = new ProjectDependencyResolver(projectComponentRegistry, localComponentFactory, repositoryChain.getComponentIdResolver());
+        ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+        DependencyToComponentIdResolver idResolver = new VersionForcingDependencyToModuleResolver(projectDependencyResolver, resolutionStrategy.getDependencyResolveRule());
+
+        ModuleConflictResolver conflictResolver;
+        if (resolutionStrategy.getConflictResolution() instanceof StrictConflictResolution) {
+            conflictResolver = new StrictConflictResolver();
+        } else {
+            conflictResolver = new LatestModuleConflictResolver(versionComparator);
+        }
+        conflictResolver = new VersionSelectionReasonResolver(conflictResolver);
+        ConflictHandler conflictHandler = new DefaultConflictHandler(conflictResolver, metadataHandler.getModuleMetadataProcessor().getModuleReplacements());
+
+        ComponentMetaDataPrefetcher prefetcher = ComponentMetaDataPrefetcher.create(new ContextualComponentMetaDataResolver(cacheLockingManager, ivyContextManager, metaDataResolver),
+                cacheLockingManager, executorFactory);
+        DependencyGraphBuilder builder = new DependencyGraphBuilder(idResolver, metaDataResolver, projectDependencyResolver, artifactResolver, conflictHandler, new DefaultDependencyToConfigurationResolver(), prefetcher,
+                moduleIdentifierInterner);
+
+        try {
+            builder.resolve(configuration, newModelBuilder, oldModelBuilder);
+        } finally {
+            CompositeStoppable.stoppable(prefetcher).stop();
+        }
+    }
+
     private ArtifactResolver createArtifactResolver(RepositoryChain repositoryChain) {
         ArtifactResolver artifactResolver = repositoryChain.getArtifactResolver();
         artifactResolver = new ProjectArtifactResolver(artifactResolver);
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph;
+
+import java.util.*;
+
+/**
+ * A set which iterates in insertion order. The elements are held in a list while there are only a few of them, as is the case for most nodes and modules of a
+ * dependency graph. Once the set grows past a few elements, for example for the incoming edges of a module that many other modules depend on, they are
+ * moved to a hash set, so that adding and removing elements does not scan all of them.
+ */
+class CompactSet<T> extends AbstractCollection<T> {
+    static final int MAX_LIST_SIZE = 8;
+
+    private Collection<T> elements;
+    private boolean hashed;
+
+    CompactSet(int initialCapacity) {
+        elements = new ArrayList<T>(initialCapacity);
+    }
+
+    @Override
+    public boolean add(T element) {
+        if (hashed) {
+            return elements.add(element);
+        }
+        if (elements.contains(element)) {
+            return false;
+        }
+        if (elements.size() == MAX_LIST_SIZE) {
+            elements = new LinkedHashSet<T>(elements);
+            hashed = true;
+        }
+        return elements.add(element);
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return elements.contains(element);
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        return elements.remove(element);
+    }
+
+    @Override
+    public void clear() {
+        elements.clear();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return elements.isEmpty();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return elements.iterator();
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph;
+
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.cache.CacheAccess;
+import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.model.DependencyMetaData;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.ComponentResolveResult;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Resolves the meta-data of components on a bounded pool of threads, ahead of the graph traversal that uses it. The traversal itself remains single
+ * threaded, and takes the prefetched results in the order it would otherwise have resolved them.
+ *
+ * <p>The given resolver is called from the pool threads, so must take care of any locking and context that it requires. The given cache is released while
+ * the traversal waits for a result, so that the pool threads can use it.</p>
+ */
+public class ComponentMetaDataPrefetcher implements Stoppable {
+    /**
+     * The number of threads to use to prefetch component meta-data during dependency resolution. 0 resolves component meta-data only when it is needed.
+     * Defaults to 0.
+     */
+    public static final String THREADS_PROPERTY = "org.gradle.dependency.prefetchThreads";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComponentMetaDataPrefetcher.class);
+
+    private final ComponentMetaDataResolver resolver;
+    private final CacheAccess cacheAccess;
+    private final ExecutorFactory executorFactory;
+    private final int maxThreads;
+    private final Object lock = new Object();
+    private final Map<ComponentIdentifier, Prefetch> prefetches = new HashMap<ComponentIdentifier, Prefetch>();
+    private final LinkedList<Prefetch> queue = new LinkedList<Prefetch>();
+    private StoppableExecutor executor;
+    private int activeWorkers;
+    private boolean stopped;
+
+    public ComponentMetaDataPrefetcher(ComponentMetaDataResolver resolver, CacheAccess cacheAccess, ExecutorFactory executorFactory, int maxThreads) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("Not a valid number of prefetch threads: " + maxThreads);
+        }
+        this.resolver = resolver;
+        this.cacheAccess = cacheAccess;
+        this.executorFactory = executorFactory;
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Creates a prefetcher as configured by the {@value #THREADS_PROPERTY} system property. Returns null when prefetching is disabled.
+     */
+    public static ComponentMetaDataPrefetcher create(ComponentMetaDataResolver resolver, CacheAccess cacheAccess, ExecutorFactory executorFactory) {
+        int threads = Integer.getInteger(THREADS_PROPERTY, 0);
+        return threads > 0 ? new ComponentMetaDataPrefetcher(resolver, cacheAccess, executorFactory, threads) : null;
+    }
+
+    /**
+     * Starts resolving the meta-data for the given component in the background, unless this has already been started.
+     */
+    public void prefetch(DependencyMetaData dependency, ComponentIdentifier identifier) {
+        synchronized (lock) {
+            if (stopped || prefetches.containsKey(identifier)) {
+                return;
+            }
+            Prefetch prefetch = new Prefetch(dependency, identifier);
+            prefetches.put(identifier, prefetch);
+            queue.add(prefetch);
+            if (activeWorkers < maxThreads) {
+                if (executor == null) {
+                    executor = executorFactory.create("Component meta-data prefetch");
+                }
+                activeWorkers++;
+                executor.execute(new Worker());
+            }
+        }
+    }
+
+    /**
+     * Returns the prefetched meta-data for the given component, waiting for it to be resolved if required. Returns null when the meta-data has not been
+     * prefetched for the given dependency, in which case the caller should resolve it.
+     */
+    public ComponentResolveResult take(DependencyMetaData dependency, ComponentIdentifier identifier) {
+        final Prefetch prefetch;
+        synchronized (lock) {
+            prefetch = prefetches.get(identifier);
+            if (prefetch == null || prefetch.dependency != dependency) {
+                return null;
+            }
+            if (queue.remove(prefetch)) {
+                // Not started yet, so resolve it on the calling thread rather than wait for a worker
+                prefetches.remove(identifier);
+                return null;
+            }
+            if (prefetch.done) {
+                return prefetch.result;
+            }
+        }
+        return cacheAccess.longRunningOperation(String.format("Wait for meta-data of %s", identifier), new Factory<ComponentResolveResult>() {
+            public ComponentResolveResult create() {
+                synchronized (lock) {
+                    while (!prefetch.done) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            throw UncheckedException.throwAsUncheckedException(e);
+                        }
+                    }
+                    return prefetch.result;
+                }
+            }
+        });
+    }
+
+    /**
+     * Discards any meta-data that has not been taken, and waits for the resolves in progress to complete.
+     */
+    public void stop() {
+        final StoppableExecutor executor;
+        synchronized (lock) {
+            stopped = true;
+            queue.clear();
+            prefetches.clear();
+            executor = this.executor;
+            this.executor = null;
+        }
+        if (executor != null) {
+            cacheAccess.longRunningOperation("Wait for meta-data prefetch to complete", new Runnable() {
+                public void run() {
+                    executor.stop();
+                }
+            });
+        }
+    }
+
+    private static class Prefetch {
+        final DependencyMetaData dependency;
+        final ComponentIdentifier identifier;
+        ComponentResolveResult result;
+        boolean done;
+
+        Prefetch(DependencyMetaData dependency, ComponentIdentifier identifier) {
+            this.dependency = dependency;
+            this.identifier = identifier;
+        }
+    }
+
+    private class Worker implements Runnable {
+        public void run() {
+            while (true) {
+                Prefetch prefetch;
+                synchronized (lock) {
+                    if (queue.isEmpty()) {
+                        activeWorkers--;
+                        return;
+                    }
+                    prefetch = queue.removeFirst();
+                }
+                ComponentResolveResult result = null;
+                try {
+                    DefaultBuildableComponentResolveResult resolveResult = new DefaultBuildableComponentResolveResult();
+                    resolver.resolve(prefetch.dependency, prefetch.identifier, resolveResult);
+                    result = resolveResult;
+                } catch (Throwable e) {
+                    // Leave it to the traversal to resolve the meta-data again and report the failure
+                    LOGGER.debug(String.format("Could not prefetch meta-data for %s.", prefetch.identifier), e);
+                }
+                synchronized (lock) {
+                    prefetch.result = result;
+                    prefetch.done = true;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -21,7 +21,7 @@ import org.gradle.api.artifacts.*;
 import org.gradle.api.artifacts.component.ComponentIdentifier;
 import org.gradle.api.artifacts.component.ComponentSelector;
 import org.gradle.api.artifacts.result.ComponentSelectionReason;
-import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.ModuleIdentifierInterner;
 import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
 import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.*;
@@ -55,6 +55,8 @@ public class DependencyGraphBuilder {
     private final ArtifactResolver artifactResolver;
     private final DependencyToComponentIdResolver idResolver;
     private final ComponentMetaDataResolver metaDataResolver;
+    private final ComponentMetaDataPrefetcher prefetcher;
+    private final ModuleIdentifierInterner moduleIdentifiers;
 
     public DependencyGraphBuilder(DependencyToComponentIdResolver idResolver,
                                   ComponentMetaDataResolver metaDataResolver,
@@ -62,12 +64,42 @@ public class DependencyGraphBuilder {
                                   ArtifactResolver artifactResolver,
                                   ConflictHandler conflictHandler,
                                   DependencyToConfigurationResolver dependencyToConfigurationResolver) {
+        this(idResolver, metaDataResolver, moduleResolver, artifactResolver, conflictHandler, dependencyToConfigurationResolver, null);
+    }
+
+    /**
+     * @param prefetcher Used to resolve the meta-data of the targets of each configuration's dependencies ahead of time. May be null.
+     */
+    public DependencyGraphBuilder(DependencyToComponentIdResolver idResolver,
+                                  ComponentMetaDataResolver metaDataResolver,
+                                  ModuleToComponentResolver moduleResolver,
+                                  ArtifactResolver artifactResolver,
+                                  ConflictHandler conflictHandler,
+                                  DependencyToConfigurationResolver dependencyToConfigurationResolver,
+                                  ComponentMetaDataPrefetcher prefetcher) {
+        this(idResolver, metaDataResolver, moduleResolver, artifactResolver, conflictHandler, dependencyToConfigurationResolver, prefetcher, new ModuleIdentifierInterner());
+    }
+
+    /**
+     * @param prefetcher Used to resolve the meta-data of the targets of each configuration's dependencies ahead of time. May be null.
+     * @param moduleIdentifiers Provides the module identifiers used by the graph, so that they can be shared with the graphs of other configurations.
+     */
+    public DependencyGraphBuilder(DependencyToComponentIdResolver idResolver,
+                                  ComponentMetaDataResolver metaDataResolver,
+                                  ModuleToComponentResolver moduleResolver,
+                                  ArtifactResolver artifactResolver,
+                                  ConflictHandler conflictHandler,
+                                  DependencyToConfigurationResolver dependencyToConfigurationResolver,
+                                  ComponentMetaDataPrefetcher prefetcher,
+                                  ModuleIdentifierInterner moduleIdentifiers) {
         this.idResolver = idResolver;
         this.metaDataResolver = metaDataResolver;
         this.moduleResolver = moduleResolver;
         this.artifactResolver = artifactResolver;
         this.conflictHandler = conflictHandler;
         this.dependencyToConfigurationResolver = dependencyToConfigurationResolver;
+        this.prefetcher = prefetcher;
+        this.moduleIdentifiers = moduleIdentifiers;
     }
 
     public void resolve(ConfigurationInternal configuration,
@@ -84,7 +116,7 @@ public class DependencyGraphBuilder {
         DefaultBuildableComponentResolveResult rootModule = new DefaultBuildableComponentResolveResult();
         moduleResolver.resolve(configuration.getModule(), configuration.getAll(), rootModule);
 
-        ResolveState resolveState = new ResolveState(rootModule, configuration.getName(), idResolver, metaDataResolver, dependencyToConfigurationResolver, artifactResolver);
+        ResolveState resolveState = new ResolveState(rootModule, configuration.getName(), idResolver, metaDataResolver, dependencyToConfigurationResolver, artifactResolver, prefetcher, moduleIdentifiers);
         conflictHandler.registerResolver(new DirectDependencyForcingResolver(resolveState.root.moduleRevision));
 
         traverseGraph(resolveState, conflictHandler);
@@ -107,6 +139,7 @@ public class DependencyGraphBuilder {
                 // Calculate the outgoing edges of this configuration
                 dependencies.clear();
                 node.visitOutgoingDependencies(dependencies);
+                resolveState.prefetchMetaData(dependencies);
 
                 for (DependencyEdge dependency : dependencies) {
                     LOGGER.debug("Visiting dependency {}", dependency);
@@ -203,7 +236,7 @@ public class DependencyGraphBuilder {
         private final DependencyDescriptor dependencyDescriptor;
         private final ResolveState resolveState;
         private final ModuleResolutionFilter resolutionFilter;
-        private final Set<ConfigurationNode> targetConfigurations = new LinkedHashSet<ConfigurationNode>();
+        private final List<ConfigurationNode> targetConfigurations = new ArrayList<ConfigurationNode>(1);
         private ModuleVersionResolveState targetModuleRevision;
 
         public DependencyEdge(ConfigurationNode from, DependencyMetaData dependencyMetaData, ModuleResolutionFilter resolutionFilter, ResolveState resolveState) {
@@ -274,7 +307,9 @@ public class DependencyGraphBuilder {
             Set<ConfigurationMetaData> targetConfigurations = resolveState.dependencyToConfigurationResolver.resolveTargetConfigurations(dependencyMetaData, from.metaData, targetModuleVersion);
             for (ConfigurationMetaData targetConfiguration : targetConfigurations) {
                 ConfigurationNode targetConfigurationNode = resolveState.getConfigurationNode(targetModuleRevision, targetConfiguration.getName());
-                this.targetConfigurations.add(targetConfigurationNode);
+                if (!this.targetConfigurations.contains(targetConfigurationNode)) {
+                    this.targetConfigurations.add(targetConfigurationNode);
+                }
             }
         }
 
@@ -315,39 +350,44 @@ public class DependencyGraphBuilder {
     }
 
     /**
-     * Global resolution state.
+     * Global resolution state. Configuration nodes are held in a list in creation order, and are looked up via the module version they belong to, rather than
+     * through a global map. Module and module version identifiers are interned as they enter the graph.
      */
     private static class ResolveState {
         private final Map<ModuleIdentifier, ModuleResolveState> modules = new LinkedHashMap<ModuleIdentifier, ModuleResolveState>();
-        private final Map<ResolvedConfigurationIdentifier, ConfigurationNode> nodes = new LinkedHashMap<ResolvedConfigurationIdentifier, ConfigurationNode>();
+        private final List<ConfigurationNode> nodes = new ArrayList<ConfigurationNode>();
         private final Map<ModuleVersionSelector, ModuleVersionSelectorResolveState> selectors = new LinkedHashMap<ModuleVersionSelector, ModuleVersionSelectorResolveState>();
         private final RootConfigurationNode root;
         private final DependencyToComponentIdResolver idResolver;
         private final ComponentMetaDataResolver metaDataResolver;
         private final DependencyToConfigurationResolver dependencyToConfigurationResolver;
         private final ArtifactResolver artifactResolver;
-        private final Set<ConfigurationNode> queued = new HashSet<ConfigurationNode>();
-        private final LinkedList<ConfigurationNode> queue = new LinkedList<ConfigurationNode>();
+        private final ComponentMetaDataPrefetcher prefetcher;
+        private final ModuleIdentifierInterner moduleIdentifiers;
+        private final ArrayDeque<ConfigurationNode> queue = new ArrayDeque<ConfigurationNode>();
 
         public ResolveState(ComponentResolveResult rootResult, String rootConfigurationName, DependencyToComponentIdResolver idResolver,
                             ComponentMetaDataResolver metaDataResolver, DependencyToConfigurationResolver dependencyToConfigurationResolver,
-                            ArtifactResolver artifactResolver) {
+                            ArtifactResolver artifactResolver, ComponentMetaDataPrefetcher prefetcher, ModuleIdentifierInterner moduleIdentifiers) {
             this.idResolver = idResolver;
             this.metaDataResolver = metaDataResolver;
             this.dependencyToConfigurationResolver = dependencyToConfigurationResolver;
             this.artifactResolver = artifactResolver;
+            this.prefetcher = prefetcher;
+            this.moduleIdentifiers = moduleIdentifiers;
             ModuleVersionResolveState rootVersion = getRevision(rootResult.getId());
             rootVersion.setMetaData(rootResult.getMetaData());
             root = new RootConfigurationNode(rootVersion, new ResolvedConfigurationIdentifier(rootVersion.id, rootConfigurationName), this);
-            nodes.put(root.id, root);
+            nodes.add(root);
             root.moduleRevision.module.select(root.moduleRevision);
         }
 
         public ModuleResolveState getModule(ModuleIdentifier id) {
             ModuleResolveState module = modules.get(id);
             if (module == null) {
-                module = new ModuleResolveState(id, this, metaDataResolver);
-                modules.put(id, module);
+                ModuleIdentifier internedId = moduleIdentifiers.intern(id);
+                module = new ModuleResolveState(internedId, this, metaDataResolver);
+                modules.put(internedId, module);
             }
             return module;
         }
@@ -357,16 +397,17 @@ public class DependencyGraphBuilder {
         }
 
         public Collection<ConfigurationNode> getConfigurationNodes() {
-            return nodes.values();
+            return nodes;
         }
 
         public ConfigurationNode getConfigurationNode(ModuleVersionResolveState module, String configurationName) {
-            ResolvedConfigurationIdentifier id = new ResolvedConfigurationIdentifier(module.id, configurationName);
-            ConfigurationNode configuration = nodes.get(id);
-            if (configuration == null) {
-                configuration = new ConfigurationNode(module, id, this);
-                nodes.put(id, configuration);
+            for (ConfigurationNode configuration : module.configurations) {
+                if (configuration.id.getConfiguration().equals(configurationName)) {
+                    return configuration;
+                }
             }
+            ConfigurationNode configuration = new ConfigurationNode(module, new ResolvedConfigurationIdentifier(module.id, configurationName), this);
+            nodes.add(configuration);
             return configuration;
         }
 
@@ -380,13 +421,34 @@ public class DependencyGraphBuilder {
             return resolveState;
         }
 
+        /**
+         * Starts resolving the meta-data of the target of each of the given dependencies, when not already known. Resolves the selector of each dependency,
+         * but does not otherwise change the graph.
+         */
+        public void prefetchMetaData(Collection<DependencyEdge> dependencies) {
+            if (prefetcher == null) {
+                return;
+            }
+            for (DependencyEdge dependency : dependencies) {
+                ComponentIdResolveResult idResolveResult = dependency.selector.resolveComponentId();
+                if (idResolveResult.getFailure() != null || idResolveResult.getMetaData() != null) {
+                    continue;
+                }
+                ModuleResolveState module = modules.get(idResolveResult.getModuleVersionId().getModule());
+                ModuleVersionResolveState moduleRevision = module == null ? null : module.versions.get(idResolveResult.getModuleVersionId());
+                if (moduleRevision == null || !moduleRevision.isResolved()) {
+                    prefetcher.prefetch(dependency.selector.dependencyMetaData, idResolveResult.getId());
+                }
+            }
+        }
+
         public ConfigurationNode peek() {
-            return queue.isEmpty() ? null : queue.getFirst();
+            return queue.peekFirst();
         }
 
         public ConfigurationNode pop() {
             ConfigurationNode next = queue.removeFirst();
-            queued.remove(next);
+            next.queued = false;
             return next;
         }
 
@@ -396,7 +458,8 @@ public class DependencyGraphBuilder {
         public void onMoreSelected(ConfigurationNode configuration) {
             // Add to the end of the queue, so that we traverse the graph in breadth-wise order to pick up as many conflicts as
             // possible before attempting to resolve them
-            if (queued.add(configuration)) {
+            if (!configuration.queued) {
+                configuration.queued = true;
                 queue.addLast(configuration);
             }
         }
@@ -406,7 +469,8 @@ public class DependencyGraphBuilder {
          */
         public void onFewerSelected(ConfigurationNode configuration) {
             // Add to the front of the queue, to flush out configurations that are no longer required.
-            if (queued.add(configuration)) {
+            if (!configuration.queued) {
+                configuration.queued = true;
                 queue.addFirst(configuration);
             }
         }
@@ -425,9 +489,9 @@ public class DependencyGraphBuilder {
     private static class ModuleResolveState implements CandidateModule {
         final ComponentMetaDataResolver metaDataResolver;
         final ModuleIdentifier id;
-        final Set<DependencyEdge> unattachedDependencies = new LinkedHashSet<DependencyEdge>();
-        final Map<ModuleVersionIdentifier, ModuleVersionResolveState> versions = new LinkedHashMap<ModuleVersionIdentifier, ModuleVersionResolveState>();
-        final Set<ModuleVersionSelectorResolveState> selectors = new HashSet<ModuleVersionSelectorResolveState>();
+        final Collection<DependencyEdge> unattachedDependencies = new CompactSet<DependencyEdge>(1);
+        final Map<ModuleVersionIdentifier, ModuleVersionResolveState> versions = new LinkedHashMap<ModuleVersionIdentifier, ModuleVersionResolveState>(2);
+        final Collection<ModuleVersionSelectorResolveState> selectors = new CompactSet<ModuleVersionSelectorResolveState>(1);
         final ResolveState resolveState;
         ModuleVersionResolveState selected;
 
@@ -493,8 +557,9 @@ public class DependencyGraphBuilder {
         public ModuleVersionResolveState getVersion(ModuleVersionIdentifier id) {
             ModuleVersionResolveState moduleRevision = versions.get(id);
             if (moduleRevision == null) {
-                moduleRevision = new ModuleVersionResolveState(this, id, metaDataResolver);
-                versions.put(id, moduleRevision);
+                ModuleVersionIdentifier internedId = resolveState.moduleIdentifiers.intern(id);
+                moduleRevision = new ModuleVersionResolveState(this, internedId, metaDataResolver);
+                versions.put(internedId, moduleRevision);
             }
 
             return moduleRevision;
@@ -511,7 +576,7 @@ public class DependencyGraphBuilder {
     static class ModuleVersionResolveState implements ModuleRevisionResolveState, ModuleVersionSelection {
         public final ModuleVersionIdentifier id;
         private final ComponentMetaDataResolver resolver;
-        private final Set<ConfigurationNode> configurations = new LinkedHashSet<ConfigurationNode>();
+        private final List<ConfigurationNode> configurations = new ArrayList<ConfigurationNode>(1);
         private final ModuleResolveState module;
         private ComponentResolveMetaData metaData;
         private ModuleState state = ModuleState.New;
@@ -569,8 +634,12 @@ public class DependencyGraphBuilder {
                 return;
             }
 
-            DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
-            resolver.resolve(firstReference.dependencyMetaData, idResolveResult.getId(), result);
+            ComponentResolveResult result = module.resolveState.prefetcher == null ? null : module.resolveState.prefetcher.take(firstReference.dependencyMetaData, idResolveResult.getId());
+            if (result == null) {
+                DefaultBuildableComponentResolveResult resolveResult = new DefaultBuildableComponentResolveResult();
+                resolver.resolve(firstReference.dependencyMetaData, idResolveResult.getId(), resolveResult);
+                result = resolveResult;
+            }
             if (result.getFailure() != null) {
                 failure = result.getFailure();
                 return;
@@ -578,6 +647,10 @@ public class DependencyGraphBuilder {
             metaData = result.getMetaData();
         }
 
+        public boolean isResolved() {
+            return metaData != null || failure != null;
+        }
+
         public ComponentResolveMetaData getMetaData() {
             if (metaData == null) {
                 resolve();
@@ -618,16 +691,18 @@ public class DependencyGraphBuilder {
     }
 
     /**
-     * Represents a node in the dependency graph.
+     * Represents a node in the dependency graph. The outgoing edges of a node are held in a list. The incoming edges are held in a {@link CompactSet}, which is a
+     * list for most nodes, as they have only a few, and a hash set for nodes which many other nodes depend on.
      */
     static class ConfigurationNode {
         public final ModuleVersionResolveState moduleRevision;
         public final ConfigurationMetaData metaData;
-        public final Set<DependencyEdge> incomingEdges = new LinkedHashSet<DependencyEdge>();
-        public final Set<DependencyEdge> outgoingEdges = new LinkedHashSet<DependencyEdge>();
+        public final Collection<DependencyEdge> incomingEdges = new CompactSet<DependencyEdge>(2);
+        public final List<DependencyEdge> outgoingEdges = new ArrayList<DependencyEdge>();
         public final ResolvedConfigurationIdentifier id;
 
         private final ResolveState resolveState;
+        private boolean queued;
         private ModuleResolutionFilter previousTraversal;
         private Set<ResolvedArtifact> artifacts;
         private boolean requiresArtifactResolution = true;
@@ -720,7 +795,7 @@ public class DependencyGraphBuilder {
             }
 
             for (DependencyMetaData dependency : metaData.getDependencies()) {
-                ModuleIdentifier targetModuleId = DefaultModuleIdentifier.newId(dependency.getRequested().getGroup(), dependency.getRequested().getName());
+                ModuleIdentifier targetModuleId = resolveState.moduleIdentifiers.module(dependency.getRequested().getGroup(), dependency.getRequested().getName());
                 if (isExcluded(resolutionFilter, targetModuleId)) {
                     continue;
                 }
@@ -842,7 +917,7 @@ public class DependencyGraphBuilder {
             this.dependencyMetaData = dependencyMetaData;
             this.resolver = resolver;
             this.resolveState = resolveState;
-            targetModule = resolveState.getModule(new DefaultModuleIdentifier(dependencyMetaData.getRequested().getGroup(), dependencyMetaData.getRequested().getName()));
+            targetModule = resolveState.getModule(resolveState.moduleIdentifiers.module(dependencyMetaData.getRequested().getGroup(), dependencyMetaData.getRequested().getName()));
         }
 
         @Override
@@ -877,8 +952,7 @@ public class DependencyGraphBuilder {
                 return null;
             }
 
-            idResolveResult = new DefaultBuildableComponentIdResolveResult();
-            resolver.resolve(dependencyMetaData, idResolveResult);
+            resolveComponentId();
             if (idResolveResult.getFailure() != null) {
                 failure = idResolveResult.getFailure();
                 return null;
@@ -893,6 +967,17 @@ public class DependencyGraphBuilder {
             return targetModuleRevision;
         }
 
+        /**
+         * Resolves this selector to a component id, without changing the graph.
+         */
+        public ComponentIdResolveResult resolveComponentId() {
+            if (idResolveResult == null) {
+                idResolveResult = new DefaultBuildableComponentIdResolveResult();
+                resolver.resolve(dependencyMetaData, idResolveResult);
+            }
+            return idResolveResult;
+        }
+
         public void restart(ModuleVersionResolveState moduleRevision) {
             this.targetModuleRevision = moduleRevision;
             this.targetModule = moduleRevision.module;
@@ -29,7 +29,7 @@ import static org.gradle.internal.UncheckedException.throwAsUncheckedException;
 class DefaultBinaryStore implements BinaryStore, Closeable {
     private File file;
     private KryoBackedEncoder encoder;
-    private int offset = -1;
+    private long offset = -1;
 
     public DefaultBinaryStore(File file) {
         this.file = file;
@@ -45,10 +45,6 @@ class DefaultBinaryStore implements BinaryStore, Closeable {
         }
         if (offset == -1) {
             offset = encoder.getWritePosition();
-            if (offset == Integer.MAX_VALUE) {
-                throw new IllegalStateException("Unable to write to binary store. "
-                        + "The bytes offset has reached a point where using it is unsafe. Please report this error.");
-            }
         }
         try {
             write.write(encoder);
@@ -97,14 +93,14 @@ class DefaultBinaryStore implements BinaryStore, Closeable {
     }
 
     private static class SimpleBinaryData implements BinaryStore.BinaryData {
-        private final int offset;
+        private final long offset;
         private final File inputFile;
         private final String sourceDescription;
 
         private Decoder decoder;
         private CompositeStoppable resources;
 
-        public SimpleBinaryData(File inputFile, int offset, String sourceDescription) {
+        public SimpleBinaryData(File inputFile, long offset, String sourceDescription) {
             this.inputFile = inputFile;
             this.offset = offset;
             this.sourceDescription = sourceDescription;
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.api.artifacts.*;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.ModuleInternal;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ConfiguredModuleComponentRepository;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.DefaultResolvedConfigurationBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultBuilder;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.internal.artifacts.repositories.resolver.ExternalResourceResolver;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.hash.HashUtil;
+import org.gradle.internal.resolve.resolver.ArtifactResolver;
+import org.gradle.util.GradleVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.gradle.messaging.serialize.BaseSerializerFactory.BYTE_ARRAY_SERIALIZER;
+import static org.gradle.messaging.serialize.BaseSerializerFactory.STRING_SERIALIZER;
+
+/**
+ * A persistent cache of resolved dependency graphs, keyed by the inputs to resolution. Allows the results of resolving a configuration whose declared
+ * dependencies, resolution strategy and repositories have not changed to be rebuilt without traversing the dependency graph.
+ *
+ * <p>Only configurations that depend on external modules with fixed versions from remote repositories are cached. Configurations with project dependencies,
+ * client modules, dependency resolve rules, component selection or meta-data rules, module replacements or local repositories are always resolved, as
+ * are configurations whose graph turns out to contain dynamic versions, changing modules or failures.
+ *
+ * <p>Disabled by default. Enable using the {@value #ENABLED_PROPERTY} system property. The cache must be used while holding the artifact cache lock.
+ */
+public class ResolvedGraphCache {
+    public static final String ENABLED_PROPERTY = "org.gradle.dependency.graphCache";
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResolvedGraphCache.class);
+    private static final int FORMAT_VERSION = 1;
+
+    private final CacheLockingManager cacheLockingManager;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final boolean refresh;
+    private PersistentIndexedCache<String, byte[]> cache;
+
+    /**
+     * @param refresh when true, cached graphs are never used, but graphs are still added to the cache.
+     */
+    public ResolvedGraphCache(CacheLockingManager cacheLockingManager, VersionSelectorScheme versionSelectorScheme, boolean refresh) {
+        this.cacheLockingManager = cacheLockingManager;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.refresh = refresh;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    private PersistentIndexedCache<String, byte[]> getCache() {
+        if (cache == null) {
+            cache = cacheLockingManager.createCache("resolved-graphs", STRING_SERIALIZER, BYTE_ARRAY_SERIALIZER);
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the module dependencies declared by the given configuration and its super configurations, in a stable order. Other dependencies, such as
+     * file dependencies, are not part of the graph or the cache key, so are left out to keep the position of each module dependency the same when they
+     * change.
+     */
+    public static List<ModuleDependency> getDeclaredModuleDependencies(ConfigurationInternal configuration) {
+        List<ModuleDependency> dependencies = new ArrayList<ModuleDependency>();
+        for (Configuration c : configuration.getHierarchy()) {
+            for (Dependency dependency : c.getDependencies()) {
+                if (dependency instanceof ModuleDependency) {
+                    dependencies.add((ModuleDependency) dependency);
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * Calculates the cache key for resolving the given configuration.
+     *
+     * @return the key, or null when the results of resolving the configuration cannot be cached.
+     */
+    public String createKey(ConfigurationInternal configuration, Collection<? extends ResolutionAwareRepository> repositories, GlobalDependencyResolutionRules rules) {
+        ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+        if (resolutionStrategy.hasDependencyResolveRules()
+                || !resolutionStrategy.getComponentSelection().getRules().isEmpty()
+                || rules.getComponentMetadataProcessor().hasRules()
+                || rules.getModuleMetadataProcessor().getModuleReplacements().hasReplacements()) {
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder();
+        key.append(FORMAT_VERSION).append(';').append(GradleVersion.current().getVersion()).append(';');
+        key.append(configuration.getPath()).append(';');
+        ModuleInternal module = configuration.getModule();
+        key.append(module.getGroup()).append(':').append(module.getName()).append(':').append(module.getVersion()).append(':').append(module.getStatus()).append(';');
+
+        for (Configuration c : configuration.getHierarchy()) {
+            key.append("conf:").append(c.getName()).append(':').append(c.isTransitive()).append(';');
+            appendExcludeRules(key, c.getExcludeRules());
+            for (Dependency dependency : c.getDependencies()) {
+                if (!appendDependency(key, dependency)) {
+                    return null;
+                }
+            }
+        }
+
+        TreeSet<String> forcedModules = new TreeSet<String>();
+        for (ModuleVersionSelector forcedModule : resolutionStrategy.getForcedModules()) {
+            if (versionSelectorScheme.parseSelector(forcedModule.getVersion()).isDynamic()) {
+                return null;
+            }
+            forcedModules.add(forcedModule.getGroup() + ":" + forcedModule.getName() + ":" + forcedModule.getVersion());
+        }
+        key.append("forced:").append(forcedModules).append(';');
+        key.append("conflicts:").append(resolutionStrategy.getConflictResolution().getClass().getName()).append(';');
+
+        for (ResolutionAwareRepository repository : repositories) {
+            ConfiguredModuleComponentRepository resolver = repository.createResolver();
+            if (!(resolver instanceof ExternalResourceResolver) || resolver.isLocal()) {
+                return null;
+            }
+            key.append("repo:").append(resolver.getId()).append(';');
+        }
+
+        return HashUtil.createHash(key.toString(), "SHA1").asHexString();
+    }
+
+    private boolean appendDependency(StringBuilder key, Dependency dependency) {
+        if (dependency instanceof ClientModule || dependency instanceof ProjectDependency) {
+            return false;
+        }
+        if (dependency instanceof ExternalModuleDependency) {
+            ExternalModuleDependency moduleDependency = (ExternalModuleDependency) dependency;
+            if (moduleDependency.isChanging() || moduleDependency.getVersion() == null || versionSelectorScheme.parseSelector(moduleDependency.getVersion()).isDynamic()) {
+                return false;
+            }
+            key.append("dep:").append(moduleDependency.getGroup()).append(':').append(moduleDependency.getName()).append(':').append(moduleDependency.getVersion());
+            key.append(':').append(moduleDependency.getConfiguration()).append(':').append(moduleDependency.isTransitive()).append(':').append(moduleDependency.isForce()).append(';');
+            appendExcludeRules(key, moduleDependency.getExcludeRules());
+            for (DependencyArtifact artifact : moduleDependency.getArtifacts()) {
+                key.append("artifact:").append(artifact.getName()).append(':').append(artifact.getType()).append(':').append(artifact.getExtension());
+                key.append(':').append(artifact.getClassifier()).append(':').append(artifact.getUrl()).append(';');
+            }
+            return true;
+        }
+        // Other dependencies are not part of the graph
+        return dependency instanceof SelfResolvingDependency;
+    }
+
+    private void appendExcludeRules(StringBuilder key, Collection<ExcludeRule> excludeRules) {
+        for (ExcludeRule excludeRule : excludeRules) {
+            key.append("exclude:").append(excludeRule.getGroup()).append(':').append(excludeRule.getModule()).append(';');
+        }
+    }
+
+    /**
+     * Rebuilds the results for the given key into the given builders, if present in the cache.
+     *
+     * @return true if the results were rebuilt, false if the results need to be resolved.
+     */
+    public boolean load(String key, ConfigurationInternal configuration, ResolutionResultBuilder newModelBuilder, DefaultResolvedConfigurationBuilder oldModelBuilder, ArtifactResolver artifactResolver) {
+        if (refresh) {
+            return false;
+        }
+        byte[] events = getCache().get(key);
+        if (events == null) {
+            return false;
+        }
+        LOGGER.debug("Using cached dependency graph for {}", configuration);
+        ResolvedGraphRecorder.replay(events, getDeclaredModuleDependencies(configuration), newModelBuilder, oldModelBuilder, artifactResolver);
+        return true;
+    }
+
+    public ResolvedGraphRecorder createRecorder(ConfigurationInternal configuration) {
+        return new ResolvedGraphRecorder(getDeclaredModuleDependencies(configuration), versionSelectorScheme);
+    }
+
+    /**
+     * Adds the results recorded by the given recorder to the cache, if they are reusable.
+     */
+    public void store(String key, ConfigurationInternal configuration, ResolvedGraphRecorder recorder) {
+        if (!recorder.isReusable()) {
+            LOGGER.debug("Not caching dependency graph for {}, as it {}", configuration, recorder.getNotReusableReason());
+            return;
+        }
+        getCache().put(key, recorder.toByteArray());
+    }
+}
@@ -0,0 +1,451 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.api.artifacts.ModuleDependency;
+import org.gradle.api.artifacts.ModuleVersionIdentifier;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.UnresolvedDependency;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.internal.artifacts.DefaultResolvedArtifact;
+import org.gradle.api.internal.artifacts.ModuleVersionIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.DefaultResolvedConfigurationBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.ResolvedConfigurationBuilder;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.InternalDependencyResult;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.InternalDependencyResultSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ModuleVersionSelection;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ModuleVersionSelectionSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultBuilder;
+import org.gradle.api.internal.artifacts.metadata.ModuleVersionArtifactIdentifierSerializer;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactIdentifier;
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactMetaData;
+import org.gradle.internal.component.external.model.ModuleComponentArtifactMetaData;
+import org.gradle.internal.component.model.ComponentArtifactMetaData;
+import org.gradle.internal.component.model.ComponentResolveMetaData;
+import org.gradle.internal.component.model.DependencyMetaData;
+import org.gradle.internal.component.model.ModuleSource;
+import org.gradle.internal.resolve.ModuleVersionResolveException;
+import org.gradle.internal.resolve.resolver.ArtifactResolver;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.messaging.serialize.DefaultSerializer;
+import org.gradle.messaging.serialize.kryo.KryoBackedDecoder;
+import org.gradle.messaging.serialize.kryo.KryoBackedEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+/**
+ * Records the events that build the results of resolving a configuration, in a compact binary form, so that the results can later be rebuilt without
+ * traversing the dependency graph. Also tracks whether the results can be reused at all: results that contain failures, dynamic versions, changing
+ * components or project components are never reused.
+ *
+ * <p>The builders and resolvers returned by this recorder must be used from a single thread, except for {@link #record(ComponentMetaDataResolver)}.
+ */
+public class ResolvedGraphRecorder {
+    private static final byte START = 1;
+    private static final byte MODULE_VERSION = 2;
+    private static final byte DEPENDENCIES = 3;
+    private static final byte NEW_DEPENDENCY = 4;
+    private static final byte CHILD = 5;
+    private static final byte FIRST_LEVEL = 6;
+    private static final byte ARTIFACT = 7;
+    private static final byte PARENT_ARTIFACTS = 8;
+    private static final byte DONE = 9;
+    private static final byte END = 10;
+
+    private static final ModuleVersionIdentifierSerializer ID_SERIALIZER = new ModuleVersionIdentifierSerializer();
+    private static final ComponentIdentifierSerializer COMPONENT_ID_SERIALIZER = new ComponentIdentifierSerializer();
+    private static final ModuleVersionSelectionSerializer SELECTION_SERIALIZER = new ModuleVersionSelectionSerializer();
+    private static final InternalDependencyResultSerializer DEPENDENCY_RESULT_SERIALIZER = new InternalDependencyResultSerializer();
+    private static final ResolvedConfigurationIdentifierSerializer CONFIGURATION_ID_SERIALIZER = new ResolvedConfigurationIdentifierSerializer();
+    private static final ModuleVersionArtifactIdentifierSerializer ARTIFACT_ID_SERIALIZER = new ModuleVersionArtifactIdentifierSerializer();
+    private static final DefaultSerializer<ModuleSource> MODULE_SOURCE_SERIALIZER = new DefaultSerializer<ModuleSource>(ModuleSource.class.getClassLoader());
+
+    private final List<? extends ModuleDependency> declaredDependencies;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final KryoBackedEncoder encoder = new KryoBackedEncoder(bytes);
+    private ComponentIdentifier rootId;
+    private volatile String notReusableReason;
+
+    /**
+     * @param declaredDependencies the module dependencies declared by the configuration being resolved, in the order passed to {@link #replay}.
+     */
+    public ResolvedGraphRecorder(List<? extends ModuleDependency> declaredDependencies, VersionSelectorScheme versionSelectorScheme) {
+        this.declaredDependencies = declaredDependencies;
+        this.versionSelectorScheme = versionSelectorScheme;
+    }
+
+    public ResolutionResultBuilder record(ResolutionResultBuilder delegate) {
+        return new RecordingResolutionResultBuilder(delegate);
+    }
+
+    public ResolvedConfigurationBuilder record(ResolvedConfigurationBuilder delegate) {
+        return new RecordingResolvedConfigurationBuilder(delegate);
+    }
+
+    /**
+     * Returns a resolver that notes any changing component that is resolved. This resolver may be used concurrently.
+     */
+    public ComponentMetaDataResolver record(ComponentMetaDataResolver delegate) {
+        return new ChangingComponentDetector(delegate);
+    }
+
+    public boolean isReusable() {
+        return notReusableReason == null;
+    }
+
+    /**
+     * Returns the reason why the recorded results cannot be reused, or null if they can be reused.
+     */
+    public String getNotReusableReason() {
+        return notReusableReason;
+    }
+
+    /**
+     * Returns the recorded events. Should only be called when the results are reusable.
+     */
+    public byte[] toByteArray() {
+        encoder.writeByte(END);
+        encoder.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Rebuilds the results from the given recorded events.
+     */
+    public static void replay(byte[] events, List<? extends ModuleDependency> declaredDependencies, ResolutionResultBuilder newModelBuilder,
+                              DefaultResolvedConfigurationBuilder oldModelBuilder, ArtifactResolver artifactResolver) {
+        KryoBackedDecoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(events));
+        Map<Long, ResolvedArtifact> artifacts = new HashMap<Long, ResolvedArtifact>();
+        Map<ComponentSelector, ModuleVersionResolveException> failures = Collections.emptyMap();
+        try {
+            while (true) {
+                byte type = decoder.readByte();
+                switch (type) {
+                    case START:
+                        ModuleVersionIdentifier root = ID_SERIALIZER.read(decoder);
+                        newModelBuilder.start(root, COMPONENT_ID_SERIALIZER.read(decoder));
+                        break;
+                    case MODULE_VERSION:
+                        newModelBuilder.resolvedModuleVersion(SELECTION_SERIALIZER.read(decoder));
+                        break;
+                    case DEPENDENCIES:
+                        ModuleVersionIdentifier from = ID_SERIALIZER.read(decoder);
+                        int count = decoder.readSmallInt();
+                        List<InternalDependencyResult> dependencies = new ArrayList<InternalDependencyResult>(count);
+                        for (int i = 0; i < count; i++) {
+                            dependencies.add(DEPENDENCY_RESULT_SERIALIZER.read(decoder, failures));
+                        }
+                        newModelBuilder.resolvedConfiguration(from, dependencies);
+                        break;
+                    case NEW_DEPENDENCY:
+                        oldModelBuilder.newResolvedDependency(CONFIGURATION_ID_SERIALIZER.read(decoder));
+                        break;
+                    case CHILD:
+                        ResolvedConfigurationIdentifier parent = CONFIGURATION_ID_SERIALIZER.read(decoder);
+                        oldModelBuilder.addChild(parent, CONFIGURATION_ID_SERIALIZER.read(decoder));
+                        break;
+                    case FIRST_LEVEL:
+                        ModuleDependency moduleDependency = declaredDependencies.get(decoder.readSmallInt());
+                        oldModelBuilder.addFirstLevelDependency(moduleDependency, CONFIGURATION_ID_SERIALIZER.read(decoder));
+                        break;
+                    case ARTIFACT:
+                        ResolvedConfigurationIdentifier owner = CONFIGURATION_ID_SERIALIZER.read(decoder);
+                        ComponentArtifactMetaData artifact = new DefaultModuleComponentArtifactMetaData(ARTIFACT_ID_SERIALIZER.read(decoder));
+                        ModuleSource moduleSource = decoder.readBoolean() ? MODULE_SOURCE_SERIALIZER.read(decoder) : null;
+                        long recordedId = decoder.readLong();
+                        artifacts.put(recordedId, oldModelBuilder.newArtifact(owner, moduleSource, artifact, artifactResolver));
+                        break;
+                    case PARENT_ARTIFACTS:
+                        ResolvedConfigurationIdentifier child = CONFIGURATION_ID_SERIALIZER.read(decoder);
+                        ResolvedConfigurationIdentifier childParent = CONFIGURATION_ID_SERIALIZER.read(decoder);
+                        int artifactCount = decoder.readSmallInt();
+                        Set<ResolvedArtifact> parentArtifacts = new LinkedHashSet<ResolvedArtifact>();
+                        for (int i = 0; i < artifactCount; i++) {
+                            parentArtifacts.add(artifacts.get(decoder.readLong()));
+                        }
+                        oldModelBuilder.addParentSpecificArtifacts(child, childParent, parentArtifacts);
+                        break;
+                    case DONE:
+                        oldModelBuilder.done(CONFIGURATION_ID_SERIALIZER.read(decoder));
+                        break;
+                    case END:
+                        return;
+                    default:
+                        throw new IllegalArgumentException("Unknown event type: " + type);
+                }
+            }
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private void notReusable(String reason) {
+        if (notReusableReason == null) {
+            notReusableReason = reason;
+        }
+    }
+
+    private boolean recording() {
+        return notReusableReason == null;
+    }
+
+    private void writeStart(ModuleVersionIdentifier root, ComponentIdentifier componentIdentifier) throws Exception {
+        rootId = componentIdentifier;
+        encoder.writeByte(START);
+        ID_SERIALIZER.write(encoder, root);
+        COMPONENT_ID_SERIALIZER.write(encoder, componentIdentifier);
+    }
+
+    private void writeModuleVersion(ModuleVersionSelection moduleVersion) throws Exception {
+        if (!moduleVersion.getComponentId().equals(rootId) && !(moduleVersion.getComponentId() instanceof ModuleComponentIdentifier)) {
+            notReusable("depends on " + moduleVersion.getComponentId().getDisplayName());
+            return;
+        }
+        encoder.writeByte(MODULE_VERSION);
+        SELECTION_SERIALIZER.write(encoder, moduleVersion);
+    }
+
+    private void writeDependencies(ModuleVersionIdentifier id, Collection<? extends InternalDependencyResult> dependencies) throws Exception {
+        for (InternalDependencyResult dependency : dependencies) {
+            if (dependency.getFailure() != null) {
+                notReusable("could not resolve " + dependency.getRequested().getDisplayName());
+                return;
+            }
+            if (dependency.getRequested() instanceof ModuleComponentSelector) {
+                String version = ((ModuleComponentSelector) dependency.getRequested()).getVersion();
+                if (versionSelectorScheme.parseSelector(version).isDynamic()) {
+                    notReusable("uses dynamic version " + dependency.getRequested().getDisplayName());
+                    return;
+                }
+            }
+        }
+        encoder.writeByte(DEPENDENCIES);
+        ID_SERIALIZER.write(encoder, id);
+        encoder.writeSmallInt(dependencies.size());
+        for (InternalDependencyResult dependency : dependencies) {
+            DEPENDENCY_RESULT_SERIALIZER.write(encoder, dependency);
+        }
+    }
+
+    private void writeFirstLevel(ModuleDependency moduleDependency, ResolvedConfigurationIdentifier dependency) throws Exception {
+        int index = indexOf(moduleDependency);
+        if (index < 0) {
+            notReusable("uses undeclared dependency " + moduleDependency);
+            return;
+        }
+        encoder.writeByte(FIRST_LEVEL);
+        encoder.writeSmallInt(index);
+        CONFIGURATION_ID_SERIALIZER.write(encoder, dependency);
+    }
+
+    private int indexOf(ModuleDependency moduleDependency) {
+        for (int i = 0; i < declaredDependencies.size(); i++) {
+            if (declaredDependencies.get(i) == moduleDependency) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void writeArtifact(ResolvedConfigurationIdentifier owner, ComponentResolveMetaData component, ComponentArtifactMetaData artifact, ResolvedArtifact resolvedArtifact) throws Exception {
+        if (component.isChanging()) {
+            notReusable("uses changing module " + component.getComponentId().getDisplayName());
+            return;
+        }
+        if (!(artifact instanceof ModuleComponentArtifactMetaData) || !(artifact.getId() instanceof DefaultModuleComponentArtifactIdentifier)) {
+            notReusable("uses artifact " + artifact);
+            return;
+        }
+        encoder.writeByte(ARTIFACT);
+        CONFIGURATION_ID_SERIALIZER.write(encoder, owner);
+        ARTIFACT_ID_SERIALIZER.write(encoder, ((ModuleComponentArtifactMetaData) artifact).getId());
+        ModuleSource moduleSource = component.getSource();
+        encoder.writeBoolean(moduleSource != null);
+        if (moduleSource != null) {
+            MODULE_SOURCE_SERIALIZER.write(encoder, moduleSource);
+        }
+        encoder.writeLong(((DefaultResolvedArtifact) resolvedArtifact).getId());
+    }
+
+    private void writeParentArtifacts(ResolvedConfigurationIdentifier child, ResolvedConfigurationIdentifier parent, Set<ResolvedArtifact> artifacts) throws Exception {
+        encoder.writeByte(PARENT_ARTIFACTS);
+        CONFIGURATION_ID_SERIALIZER.write(encoder, child);
+        CONFIGURATION_ID_SERIALIZER.write(encoder, parent);
+        encoder.writeSmallInt(artifacts.size());
+        for (ResolvedArtifact artifact : artifacts) {
+            encoder.writeLong(((DefaultResolvedArtifact) artifact).getId());
+        }
+    }
+
+    private void writeConfigurationId(byte type, ResolvedConfigurationIdentifier id) throws Exception {
+        encoder.writeByte(type);
+        CONFIGURATION_ID_SERIALIZER.write(encoder, id);
+    }
+
+    private class RecordingResolutionResultBuilder implements ResolutionResultBuilder {
+        private final ResolutionResultBuilder delegate;
+
+        public RecordingResolutionResultBuilder(ResolutionResultBuilder delegate) {
+            this.delegate = delegate;
+        }
+
+        public ResolutionResultBuilder start(ModuleVersionIdentifier root, ComponentIdentifier componentIdentifier) {
+            delegate.start(root, componentIdentifier);
+            try {
+                writeStart(root, componentIdentifier);
+            } catch (Exception e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+            return this;
+        }
+
+        public void resolvedModuleVersion(ModuleVersionSelection moduleVersion) {
+            delegate.resolvedModuleVersion(moduleVersion);
+            if (recording()) {
+                try {
+                    writeModuleVersion(moduleVersion);
+                } catch (Exception e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
+
+        public void resolvedConfiguration(ModuleVersionIdentifier id, Collection<? extends InternalDependencyResult> dependencies) {
+            delegate.resolvedConfiguration(id, dependencies);
+            if (recording()) {
+                try {
+                    writeDependencies(id, dependencies);
+                } catch (Exception e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
+
+        public ResolutionResult complete() {
+            return delegate.complete();
+        }
+    }
+
+    private class RecordingResolvedConfigurationBuilder implements ResolvedConfigurationBuilder {
+        private final ResolvedConfigurationBuilder delegate;
+
+        public RecordingResolvedConfigurationBuilder(ResolvedConfigurationBuilder delegate) {
+            this.delegate = delegate;
+        }
+
+        public void addFirstLevelDependency(ModuleDependency moduleDependency, ResolvedConfigurationIdentifier dependency) {
+            delegate.addFirstLevelDependency(moduleDependency, dependency);
+            if (recording()) {
+                try {
+                    writeFirstLevel(moduleDependency, dependency);
+                } catch (Exception e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
+
+        public void addUnresolvedDependency(UnresolvedDependency unresolvedDependency) {
+            delegate.addUnresolvedDependency(unresolvedDependency);
+            notReusable("could not resolve " + unresolvedDependency.getSelector());
+        }
+
+        public void addChild(ResolvedConfigurationIdentifier parent, ResolvedConfigurationIdentifier child) {
+            delegate.addChild(parent, child);
+            if (recording()) {
+                try {
+                    encoder.writeByte(CHILD);
+                    CONFIGURATION_ID_SERIALIZER.write(encoder, parent);
+                    CONFIGURATION_ID_SERIALIZER.write(encoder, child);
+                } catch (Exception e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
+
+        public void done(ResolvedConfigurationIdentifier root) {
+            delegate.done(root);
+            if (recording()) {
+                try {
+                    writeConfigurationId(DONE, root);
+                } catch (Exception e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
+
+        public void addParentSpecificArtifacts(ResolvedConfigurationIdentifier child, ResolvedConfigurationIdentifier parent, Set<ResolvedArtifact> artifacts) {
+            delegate.addParentSpecificArtifacts(child, parent, artifacts);
+            if (recording()) {
+                try {
+                    writeParentArtifacts(child, parent, artifacts);
+                } catch (Exception e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
+
+        public void newResolvedDependency(ResolvedConfigurationIdentifier id) {
+            delegate.newResolvedDependency(id);
+            if (recording()) {
+                try {
+                    writeConfigurationId(NEW_DEPENDENCY, id);
+                } catch (Exception e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+        }
+
+        public ResolvedArtifact newArtifact(ResolvedConfigurationIdentifier owner, ComponentResolveMetaData component, ComponentArtifactMetaData artifact, ArtifactResolver artifactResolver) {
+            ResolvedArtifact resolvedArtifact = delegate.newArtifact(owner, component, artifact, artifactResolver);
+            if (recording()) {
+                try {
+                    writeArtifact(owner, component, artifact, resolvedArtifact);
+                } catch (Exception e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            return resolvedArtifact;
+        }
+    }
+
+    private class ChangingComponentDetector implements ComponentMetaDataResolver {
+        private final ComponentMetaDataResolver delegate;
+
+        public ChangingComponentDetector(ComponentMetaDataResolver delegate) {
+            this.delegate = delegate;
+        }
+
+        public void resolve(DependencyMetaData dependency, ComponentIdentifier identifier, BuildableComponentResolveResult result) {
+            delegate.resolve(dependency, identifier, result);
+            if (result.getFailure() == null && result.getMetaData().isChanging()) {
+                notReusable("uses changing module " + identifier.getDisplayName());
+            }
+        }
+    }
+}
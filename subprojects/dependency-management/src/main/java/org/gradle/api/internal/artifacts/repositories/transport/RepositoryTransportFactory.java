@@ -20,6 +20,7 @@ import org.gradle.api.artifacts.repositories.PasswordCredentials;
 import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
 import org.gradle.internal.resource.cached.CachedExternalResourceIndex;
 import org.gradle.internal.resource.transport.file.FileTransport;
+import org.gradle.internal.resource.transport.http.HttpConnectionPool;
 import org.gradle.internal.resource.transport.http.HttpTransport;
 import org.gradle.internal.resource.transport.sftp.SftpClientFactory;
 import org.gradle.internal.resource.transport.sftp.SftpTransport;
@@ -37,6 +38,7 @@ public class RepositoryTransportFactory {
     private final ProgressLoggerFactory progressLoggerFactory;
     private final BuildCommencedTimeProvider timeProvider;
     private final SftpClientFactory sftpClientFactory;
+    private final HttpConnectionPool httpConnectionPool;
     private final CacheLockingManager cacheLockingManager;
 
     public RepositoryTransportFactory(ProgressLoggerFactory progressLoggerFactory,
@@ -44,17 +46,19 @@ public class RepositoryTransportFactory {
                                       CachedExternalResourceIndex<String> cachedExternalResourceIndex,
                                       BuildCommencedTimeProvider timeProvider,
                                       SftpClientFactory sftpClientFactory,
+                                      HttpConnectionPool httpConnectionPool,
                                       CacheLockingManager cacheLockingManager) {
         this.progressLoggerFactory = progressLoggerFactory;
         this.temporaryFileProvider = temporaryFileProvider;
         this.cachedExternalResourceIndex = cachedExternalResourceIndex;
         this.timeProvider = timeProvider;
         this.sftpClientFactory = sftpClientFactory;
+        this.httpConnectionPool = httpConnectionPool;
         this.cacheLockingManager = cacheLockingManager;
     }
 
     private RepositoryTransport createHttpTransport(String name, PasswordCredentials credentials) {
-        return new HttpTransport(name, convertPasswordCredentials(credentials), progressLoggerFactory, temporaryFileProvider, cachedExternalResourceIndex, timeProvider, cacheLockingManager);
+        return new HttpTransport(name, convertPasswordCredentials(credentials), progressLoggerFactory, temporaryFileProvider, cachedExternalResourceIndex, timeProvider, httpConnectionPool, cacheLockingManager);
     }
 
     private RepositoryTransport createFileTransport(String name) {
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts
+
+import org.gradle.api.artifacts.ModuleVersionIdentifier
+import spock.lang.Specification
+
+class ModuleIdentifierInternerTest extends Specification {
+    def interner = new ModuleIdentifierInterner()
+
+    def "returns the same module identifier for the same group and name"() {
+        expect:
+        def id = interner.module("group", "module")
+        id == new DefaultModuleIdentifier("group", "module")
+        interner.module("group", "module").is(id)
+        interner.intern(new DefaultModuleIdentifier("group", "module")).is(id)
+        !interner.module("group", "other").is(id)
+        !interner.module("other", "module").is(id)
+    }
+
+    def "returns the same module version identifier for equal identifiers"() {
+        expect:
+        def id = interner.intern(new DefaultModuleVersionIdentifier("group", "module", "1.0"))
+        id == new DefaultModuleVersionIdentifier("group", "module", "1.0")
+        interner.intern(new DefaultModuleVersionIdentifier("group", "module", "1.0")).is(id)
+        !interner.intern(new DefaultModuleVersionIdentifier("group", "module", "1.1")).is(id)
+    }
+
+    def "versions of a module share the module identifier"() {
+        expect:
+        def id1 = interner.intern(new DefaultModuleVersionIdentifier("group", "module", "1.0"))
+        def id2 = interner.intern(new DefaultModuleVersionIdentifier("group", "module", "1.1"))
+        id1.module.is(id2.module)
+        id1.module.is(interner.module("group", "module"))
+    }
+
+    def "does not intern identifiers of other types"() {
+        def id = Stub(ModuleVersionIdentifier)
+
+        expect:
+        interner.intern(id).is(id)
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.apache.ivy.Ivy
+import org.gradle.api.Action
+import org.gradle.api.artifacts.ResolvedArtifact
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+
+class ArtifactFilePrefetcherTest extends ConcurrentSpec {
+    def cacheLockingManager = Mock(CacheLockingManager)
+    def ivyContextManager = Mock(IvyContextManager)
+    def prefetcher = new ArtifactFilePrefetcher(executorFactory, cacheLockingManager, ivyContextManager, 2)
+
+    def setup() {
+        _ * cacheLockingManager.useCache(_, _ as Runnable) >> { String operation, Runnable action -> action.run() }
+        _ * ivyContextManager.withIvy(_ as Action) >> { Action action -> action.execute(Stub(Ivy)) }
+    }
+
+    def "resolves the files of artifacts concurrently while the cache lock is released"() {
+        def artifact1 = Mock(ResolvedArtifact)
+        def artifact2 = Mock(ResolvedArtifact)
+
+        when:
+        prefetcher.prefetch([artifact1, artifact2])
+
+        then:
+        1 * cacheLockingManager.longRunningOperation(_, _ as Runnable) >> { String operation, Runnable action -> action.run() }
+        1 * artifact1.getFile() >> {
+            instant.file1Started
+            thread.blockUntil.file2Started
+            new File("1")
+        }
+        1 * artifact2.getFile() >> {
+            instant.file2Started
+            thread.blockUntil.file1Started
+            new File("2")
+        }
+    }
+
+    def "resolves the file of each artifact with the cache locked and an Ivy context in place"() {
+        def artifact1 = Mock(ResolvedArtifact)
+        def artifact2 = Mock(ResolvedArtifact)
+        def ivy = Stub(Ivy)
+        def inContext = false
+        def prefetcher = new ArtifactFilePrefetcher(executorFactory, cacheLockingManager, ivyContextManager, 1)
+
+        when:
+        prefetcher.prefetch([artifact1, artifact2])
+
+        then:
+        1 * cacheLockingManager.longRunningOperation(_, _ as Runnable) >> { String operation, Runnable action -> action.run() }
+        2 * cacheLockingManager.useCache({ it.startsWith("Download ") }, _ as Runnable) >> { String operation, Runnable action -> action.run() }
+        2 * ivyContextManager.withIvy(_ as Action) >> { Action action ->
+            inContext = true
+            try {
+                action.execute(ivy)
+            } finally {
+                inContext = false
+            }
+        }
+        1 * artifact1.getFile() >> {
+            assert inContext
+            new File("1")
+        }
+        1 * artifact2.getFile() >> {
+            assert inContext
+            new File("2")
+        }
+    }
+
+    def "ignores failure to resolve the file of an artifact"() {
+        def artifact1 = Mock(ResolvedArtifact)
+        def artifact2 = Mock(ResolvedArtifact)
+        def artifact3 = Mock(ResolvedArtifact)
+
+        when:
+        prefetcher.prefetch([artifact1, artifact2, artifact3])
+
+        then:
+        1 * cacheLockingManager.longRunningOperation(_, _ as Runnable) >> { String operation, Runnable action -> action.run() }
+        1 * artifact1.getFile() >> { throw new RuntimeException("broken") }
+        1 * artifact2.getFile() >> new File("2")
+        1 * artifact3.getFile() >> new File("3")
+    }
+
+    def "does nothing for a single artifact"() {
+        def artifact = Mock(ResolvedArtifact)
+
+        when:
+        prefetcher.prefetch([artifact])
+
+        then:
+        0 * _
+    }
+}
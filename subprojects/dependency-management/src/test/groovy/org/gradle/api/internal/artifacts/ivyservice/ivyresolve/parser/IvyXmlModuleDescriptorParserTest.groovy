@@ -21,10 +21,13 @@ import org.apache.ivy.plugins.matcher.ExactPatternMatcher
 import org.apache.ivy.plugins.matcher.GlobPatternMatcher
 import org.apache.ivy.plugins.matcher.PatternMatcher
 import org.apache.ivy.plugins.matcher.RegexpPatternMatcher
+import org.gradle.api.internal.artifacts.ivyservice.IvyXmlModuleDescriptorWriter
 import org.gradle.api.internal.artifacts.ivyservice.NamespaceId
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.ResolverStrategy
 import org.gradle.internal.resource.DefaultLocallyAvailableExternalResource
 import org.gradle.internal.resource.local.DefaultLocallyAvailableResource
+import org.gradle.messaging.serialize.kryo.KryoBackedDecoder
+import org.gradle.messaging.serialize.kryo.KryoBackedEncoder
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.Resources
 import org.junit.Rule
@@ -697,6 +700,34 @@ class IvyXmlModuleDescriptorParserTest extends Specification {
         descriptor.extraInfo[new NamespaceId("namespace-c", "a")] == "info 2"
     }
 
+    def "rebuilds descriptor from recorded content without parsing the descriptor file"() {
+        given:
+        def file = temporaryFolder.file("ivy.xml")
+        file.text = resources.getResource("test-full.xml").text
+        def content = new ByteArrayOutputStream()
+        def encoder = new KryoBackedEncoder(content)
+
+        when:
+        ModuleDescriptor recorded = parser.parseMetaData(parseContext, file, new IvyXmlEventRecorder(encoder)).descriptor
+        encoder.flush()
+        file.text = "not an ivy file"
+        ModuleDescriptor replayed = parser.parseMetaData(parseContext, file, new KryoBackedDecoder(new ByteArrayInputStream(content.toByteArray()))).descriptor
+
+        then:
+        write(replayed) == write(recorded)
+        replayed.description == recorded.description
+        replayed.extraInfo == recorded.extraInfo
+        replayed.configurationsNames.each { conf ->
+            assert replayed.getArtifacts(conf)*.toString() == recorded.getArtifacts(conf)*.toString()
+        }
+    }
+
+    private String write(ModuleDescriptor descriptor) {
+        def file = temporaryFolder.file("written.xml")
+        new IvyXmlModuleDescriptorWriter().write(descriptor, file)
+        return file.text
+    }
+
     def verifyFullDependencies(DependencyDescriptor[] dependencies) {
         // no conf def => equivalent to *->*
         DependencyDescriptor dd = getDependency(dependencies, "mymodule2")
@@ -103,6 +103,73 @@ class PomReaderTest extends AbstractPomReaderTest {
         pomReader.relocation == null
     }
 
+    def "parse POM with entities and CDATA sections"() {
+        when:
+        pomFile << """
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>artifact-one</artifactId>
+    <version>version-one</version>
+    <description>Copyright &copy; 2014 &amp; <![CDATA[<b>CDATA</b>]]></description>
+    <properties>
+        <some.property>a&nbsp;b</some.property>
+    </properties>
+</project>
+"""
+        pomReader = new PomReader(locallyAvailableExternalResource)
+
+        then:
+        pomReader.description == 'Copyright \u00a9 2014 & <b>CDATA</b>'
+        pomReader.pomProperties['some.property'] == 'a\u00a0b'
+    }
+
+    def "ignores dependencies declared in build and reporting sections"() {
+        when:
+        pomFile << """
+<project>
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>artifact-one</artifactId>
+    <version>version-one</version>
+    <build>
+        <plugins>
+            <plugin>
+                <artifactId>plugin-one</artifactId>
+                <dependencies>
+                    <dependency>
+                        <groupId>group-two</groupId>
+                        <artifactId>artifact-two</artifactId>
+                        <version>version-two</version>
+                    </dependency>
+                </dependencies>
+            </plugin>
+        </plugins>
+    </build>
+    <reporting>
+        <plugins>
+            <plugin>
+                <artifactId>plugin-two</artifactId>
+            </plugin>
+        </plugins>
+    </reporting>
+    <dependencies>
+        <dependency>
+            <groupId>group-three</groupId>
+            <artifactId>artifact-three</artifactId>
+            <version>version-three</version>
+        </dependency>
+    </dependencies>
+</project>
+"""
+        pomReader = new PomReader(locallyAvailableExternalResource)
+
+        then:
+        MavenDependencyKey key = new MavenDependencyKey('group-three', 'artifact-three', 'jar', null)
+        pomReader.dependencies.size() == 1
+        assertResolvedPomDependency(key, 'version-three')
+    }
+
     def "use custom properties in POM project coordinates"() {
         when:
         pomFile << """
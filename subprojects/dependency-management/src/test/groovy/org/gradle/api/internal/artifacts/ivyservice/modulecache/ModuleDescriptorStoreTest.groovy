@@ -21,10 +21,15 @@ import org.apache.ivy.core.module.id.ModuleRevisionId
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier
 import org.gradle.internal.resolve.resolver.DependencyToComponentResolver
 import org.gradle.api.internal.artifacts.ivyservice.IvyModuleDescriptorWriter
+import org.gradle.api.internal.artifacts.ivyservice.IvyXmlModuleDescriptorWriter
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ModuleComponentRepository
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.IvyXmlEventRecorder
 import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser.IvyXmlModuleDescriptorParser
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.ResolverStrategy
 import org.gradle.internal.resource.local.PathKeyFileStore
 import org.gradle.internal.resource.local.LocallyAvailableResource
+import org.gradle.messaging.serialize.Decoder
+import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
 import spock.lang.Specification
@@ -80,4 +85,71 @@ class ModuleDescriptorStoreTest extends Specification {
         };
         1 * ivyModuleDescriptorWriter.write(moduleDescriptor, descriptorFile)
     }
-}
\ No newline at end of file
+
+    def "stores binary descriptor alongside descriptor file and uses it when descriptor file has not changed"() {
+        given:
+        def ivyFile = writeDescriptor()
+        def parser = Spy(IvyXmlModuleDescriptorParser, constructorArgs: [Stub(ResolverStrategy)])
+        store = new ModuleDescriptorStore(new PathKeyFileStore(temporaryFolder.file("store")), new IvyXmlModuleDescriptorWriter(), parser, true)
+
+        when:
+        def first = store.getModuleDescriptor(repository, moduleComponentIdentifier)
+
+        then:
+        1 * parser.parseMetaData(_, ivyFile, _ as IvyXmlEventRecorder)
+        temporaryFolder.file("store/org.test/testArtifact/1.0/repositoryId/ivy.bin").file
+
+        when:
+        def second = store.getModuleDescriptor(repository, moduleComponentIdentifier)
+
+        then:
+        1 * parser.parseMetaData(_, ivyFile, _ as Decoder)
+        0 * parser.parseMetaData(_, _, _ as IvyXmlEventRecorder)
+        second.moduleRevisionId == first.moduleRevisionId
+        second.configurationsNames == first.configurationsNames
+        second.getArtifacts("default")*.name == ["testArtifact"]
+    }
+
+    def "ignores binary descriptor when descriptor file has changed"() {
+        given:
+        def ivyFile = writeDescriptor()
+        store = new ModuleDescriptorStore(new PathKeyFileStore(temporaryFolder.file("store")), new IvyXmlModuleDescriptorWriter(), new IvyXmlModuleDescriptorParser(Stub(ResolverStrategy)), true)
+        store.getModuleDescriptor(repository, moduleComponentIdentifier)
+
+        when:
+        ivyFile.text = ivyFile.text.replace('status="integration"', 'status="release"')
+        def descriptor = store.getModuleDescriptor(repository, moduleComponentIdentifier)
+
+        then:
+        descriptor.status == "release"
+    }
+
+    def "putModuleDescriptor removes stale binary descriptor"() {
+        given:
+        writeDescriptor()
+        store = new ModuleDescriptorStore(new PathKeyFileStore(temporaryFolder.file("store")), new IvyXmlModuleDescriptorWriter(), new IvyXmlModuleDescriptorParser(Stub(ResolverStrategy)), true)
+        def descriptor = store.getModuleDescriptor(repository, moduleComponentIdentifier)
+        def binaryFile = temporaryFolder.file("store/org.test/testArtifact/1.0/repositoryId/ivy.bin")
+        assert binaryFile.file
+
+        when:
+        store.putModuleDescriptor(repository, descriptor)
+
+        then:
+        !binaryFile.exists()
+    }
+
+    private TestFile writeDescriptor() {
+        return temporaryFolder.file("store/org.test/testArtifact/1.0/repositoryId/ivy.xml") << """
+<ivy-module version="1.0">
+    <info organisation="org.test" module="testArtifact" revision="1.0" status="integration"/>
+    <configurations>
+        <conf name="default"/>
+    </configurations>
+    <publications>
+        <artifact name="testArtifact" type="jar" ext="jar" conf="default"/>
+    </publications>
+</ivy-module>
+"""
+    }
+}
@@ -32,6 +32,7 @@ import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
 import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData
 import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager
 import org.gradle.api.internal.artifacts.ivyservice.DefaultLenientConfiguration
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.ComponentMetaDataPrefetcher
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.DependencyGraphBuilder
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.conflicts.DefaultConflictHandler
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.DefaultResolvedConfigurationBuilder
@@ -40,12 +41,15 @@ import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DummyBi
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DummyStore
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultBuilder
 import org.gradle.api.specs.Spec
+import org.gradle.cache.CacheAccess
+import org.gradle.internal.Factory
 import org.gradle.internal.component.external.model.BuildableIvyModuleResolveMetaData
 import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
 import org.gradle.internal.component.external.model.ModuleComponentResolveMetaData
 import org.gradle.internal.component.local.model.DefaultDslOriginDependencyMetaData
 import org.gradle.internal.component.model.ComponentUsage
 import org.gradle.internal.component.model.DependencyMetaData
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.resolve.ModuleVersionNotFoundException
 import org.gradle.internal.resolve.ModuleVersionResolveException
 import org.gradle.internal.resolve.resolver.ArtifactResolver
@@ -109,6 +113,38 @@ class DependencyGraphBuilderTest extends Specification {
         modules(result) == ids(a, b, c)
     }
 
+    def "resolves the same graph when component meta-data is prefetched"() {
+        given:
+        def executorFactory = new DefaultExecutorFactory()
+        def cacheAccess = Stub(CacheAccess) {
+            longRunningOperation(_, _ as Factory) >> { String operation, Factory action -> action.create() }
+            longRunningOperation(_, _ as Runnable) >> { String operation, Runnable action -> action.run() }
+        }
+        def prefetcher = new ComponentMetaDataPrefetcher(metaDataResolver, cacheAccess, executorFactory, 2)
+        builder = new DependencyGraphBuilder(idResolver, metaDataResolver, moduleResolver, artifactResolver, new DefaultConflictHandler(conflictResolver, moduleReplacements), dependencyToConfigurationResolver, prefetcher)
+
+        def a = revision("a")
+        def b = revision("b")
+        def c = revision("c")
+        def d = revision("d")
+        traverses root, a
+        traverses root, b
+        traverses a, c
+        traverses b, d
+        doesNotResolve c, d
+
+        when:
+        def result = resolve()
+        result.rethrowFailure()
+
+        then:
+        modules(result) == ids(a, b, c, d)
+
+        cleanup:
+        prefetcher.stop()
+        executorFactory.stop()
+    }
+
     def "correctly notifies the resolution result builder"() {
         given:
         def a = revision("a")
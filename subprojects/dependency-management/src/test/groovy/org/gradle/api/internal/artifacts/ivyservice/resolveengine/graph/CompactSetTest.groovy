@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph
+
+import spock.lang.Specification
+
+class CompactSetTest extends Specification {
+    def "does not add an element twice"() {
+        def set = new CompactSet<String>(1)
+
+        expect:
+        set.add("a")
+        set.add("b")
+        !set.add("a")
+        set as List == ["a", "b"]
+    }
+
+    def "keeps insertion order and ignores duplicates once the set grows past a few elements"() {
+        def set = new CompactSet<Integer>(1)
+        def count = CompactSet.MAX_LIST_SIZE * 3
+
+        when:
+        count.times { set.add(it) }
+        count.times { set.add(it) }
+
+        then:
+        set.size() == count
+        set as List == (0..<count).toList()
+        set.contains(count - 1)
+        !set.contains(count)
+
+        when:
+        set.remove(2)
+        set.remove(count - 1)
+
+        then:
+        set.size() == count - 2
+        !set.contains(2)
+        set as List == (0..<count).toList() - [2, count - 1]
+
+        when:
+        set.clear()
+
+        then:
+        set.isEmpty()
+        set.add(2)
+        set as List == [2]
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph
+
+import org.gradle.api.artifacts.component.ComponentIdentifier
+import org.gradle.cache.CacheAccess
+import org.gradle.internal.Factory
+import org.gradle.internal.component.model.ComponentResolveMetaData
+import org.gradle.internal.component.model.DependencyMetaData
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult
+import org.gradle.internal.resolve.result.ComponentResolveResult
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+
+class ComponentMetaDataPrefetcherTest extends ConcurrentSpec {
+    def resolver = Mock(ComponentMetaDataResolver)
+    def cacheAccess = Mock(CacheAccess)
+    def dependency = Stub(DependencyMetaData)
+    def id = Stub(ComponentIdentifier)
+    def prefetcher = new ComponentMetaDataPrefetcher(resolver, cacheAccess, executorFactory, 2)
+
+    def setup() {
+        _ * cacheAccess.longRunningOperation(_, _ as Factory) >> { String operation, Factory action -> action.create() }
+        _ * cacheAccess.longRunningOperation(_, _ as Runnable) >> { String operation, Runnable action -> action.run() }
+    }
+
+    def cleanup() {
+        prefetcher.stop()
+    }
+
+    def "takes meta-data resolved in the background"() {
+        def metaData = Stub(ComponentResolveMetaData)
+        ComponentResolveResult result
+
+        when:
+        prefetcher.prefetch(dependency, id)
+        result = prefetcher.take(dependency, id)
+
+        then:
+        1 * resolver.resolve(dependency, id, _) >> { DependencyMetaData d, ComponentIdentifier i, BuildableComponentResolveResult r ->
+            r.resolved(metaData)
+        }
+        result.metaData == metaData
+    }
+
+    def "resolves each component only once"() {
+        when:
+        prefetcher.prefetch(dependency, id)
+        prefetcher.prefetch(dependency, id)
+        prefetcher.take(dependency, id)
+
+        then:
+        1 * resolver.resolve(dependency, id, _)
+    }
+
+    def "returns null when the component has not been prefetched for the given dependency"() {
+        def other = Stub(DependencyMetaData)
+
+        expect:
+        prefetcher.take(dependency, id) == null
+
+        when:
+        prefetcher.prefetch(dependency, id)
+
+        then:
+        prefetcher.take(other, id) == null
+    }
+
+    def "returns null when the meta-data could not be resolved in the background"() {
+        when:
+        prefetcher.prefetch(dependency, id)
+        def result = prefetcher.take(dependency, id)
+
+        then:
+        1 * resolver.resolve(dependency, id, _) >> { throw new RuntimeException("broken") }
+        result == null
+    }
+
+    def "waits for a resolve in progress without holding the cache lock"() {
+        def prefetcher = new ComponentMetaDataPrefetcher(resolver, cacheAccess, executorFactory, 1)
+        ComponentResolveResult result
+
+        when:
+        async {
+            prefetcher.prefetch(dependency, id)
+            thread.blockUntil.resolving
+            start {
+                thread.block()
+                instant.released
+            }
+            result = prefetcher.take(dependency, id)
+        }
+
+        then:
+        1 * resolver.resolve(dependency, id, _) >> {
+            instant.resolving
+            thread.blockUntil.released
+        }
+        1 * cacheAccess.longRunningOperation(_, _ as Factory) >> { String operation, Factory action -> action.create() }
+        result != null
+
+        cleanup:
+        prefetcher.stop()
+    }
+
+    def "does not wait for a component whose resolve has not started"() {
+        def prefetcher = new ComponentMetaDataPrefetcher(resolver, cacheAccess, executorFactory, 1)
+        def other = Stub(ComponentIdentifier)
+        ComponentResolveResult result
+
+        when:
+        async {
+            prefetcher.prefetch(dependency, id)
+            thread.blockUntil.resolving
+            prefetcher.prefetch(dependency, other)
+            result = prefetcher.take(dependency, other)
+            instant.taken
+        }
+
+        then:
+        1 * resolver.resolve(dependency, id, _) >> {
+            instant.resolving
+            thread.blockUntil.taken
+        }
+        0 * resolver.resolve(dependency, other, _)
+        result == null
+
+        cleanup:
+        prefetcher.stop()
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store
+
+import org.gradle.api.artifacts.Configuration
+import org.gradle.api.artifacts.Dependency
+import org.gradle.api.artifacts.DependencySet
+import org.gradle.api.artifacts.FileCollectionDependency
+import org.gradle.api.artifacts.ModuleDependency
+import org.gradle.api.artifacts.UnresolvedDependency
+import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.DefaultResolvedConfigurationBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.oldresult.TransientConfigurationResultsBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultInternalDependencyResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultModuleVersionSelection
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DummyBinaryStore
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DummyStore
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactMetaData
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.local.model.DefaultProjectComponentIdentifier
+import org.gradle.internal.component.model.ComponentResolveMetaData
+import org.gradle.internal.component.model.DefaultIvyArtifactName
+import org.gradle.internal.resolve.ModuleVersionResolveException
+import org.gradle.internal.resolve.resolver.ArtifactResolver
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionSelector.newSelector
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultPrinter.printGraph
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.VersionSelectionReasons.REQUESTED
+
+class ResolvedGraphRecorderTest extends Specification {
+    def dependency = Stub(ModuleDependency)
+    def declaredDependencies = [Stub(ModuleDependency), dependency]
+    def artifactResolver = Stub(ArtifactResolver)
+    def recorder = new ResolvedGraphRecorder(declaredDependencies, new DefaultVersionSelectorScheme())
+    def root = new ResolvedConfigurationIdentifier(newId("org", "root", "1.0"), "default")
+    def dep1 = new ResolvedConfigurationIdentifier(newId("org", "dep1", "2.0"), "default")
+    def dep2 = new ResolvedConfigurationIdentifier(newId("org", "dep2", "3.0"), "default")
+
+    def "replays recorded results"() {
+        def newModel = newModelBuilder()
+        def oldModel = oldModelBuilder()
+        def recordingNewModel = recorder.record(newModel)
+        def recordingOldModel = recorder.record(oldModel)
+
+        when:
+        recordingNewModel.start(newId("org", "root", "1.0"), new DefaultModuleComponentIdentifier("org", "root", "1.0"))
+        recordingNewModel.resolvedModuleVersion(selection("dep1", "2.0"))
+        recordingNewModel.resolvedModuleVersion(selection("dep2", "3.0"))
+        recordingNewModel.resolvedConfiguration(newId("org", "root", "1.0"), [dependencyResult("dep1", "2.0")])
+        recordingNewModel.resolvedConfiguration(newId("org", "dep1", "2.0"), [dependencyResult("dep2", "3.0")])
+
+        recordingOldModel.newResolvedDependency(root)
+        recordingOldModel.newResolvedDependency(dep1)
+        recordingOldModel.newResolvedDependency(dep2)
+        recordingOldModel.addChild(root, dep1)
+        recordingOldModel.addFirstLevelDependency(dependency, dep1)
+        recordingOldModel.addChild(dep1, dep2)
+        def artifact1 = recordingOldModel.newArtifact(dep1, component(), artifact("dep1", "2.0"), artifactResolver)
+        recordingOldModel.addParentSpecificArtifacts(dep1, root, [artifact1] as Set)
+        def artifact2 = recordingOldModel.newArtifact(dep2, component(), artifact("dep2", "3.0"), artifactResolver)
+        recordingOldModel.addParentSpecificArtifacts(dep2, dep1, [artifact2] as Set)
+        recordingOldModel.done(root)
+
+        then:
+        recorder.reusable
+
+        when:
+        def replayedNewModel = newModelBuilder()
+        def replayedOldModel = oldModelBuilder()
+        ResolvedGraphRecorder.replay(recorder.toByteArray(), declaredDependencies, replayedNewModel, replayedOldModel, artifactResolver)
+
+        then:
+        printGraph(replayedNewModel.complete().root) == printGraph(newModel.complete().root)
+        printGraph(replayedNewModel.complete().root) == """org:root:1.0
+  org:dep1:2.0 [root]
+    org:dep2:3.0 [dep1]
+"""
+
+        and:
+        replayedOldModel.artifacts*.name == ["dep1", "dep2"]
+        def results = replayedOldModel.more()
+        results.root.children*.moduleName == ["dep1"]
+        def firstLevel = results.firstLevelDependencies[dependency]
+        firstLevel.moduleName == "dep1"
+        firstLevel.getParentArtifacts(results.root)*.name == ["dep1"]
+        firstLevel.children*.moduleName == ["dep2"]
+        firstLevel.children.iterator().next().getParentArtifacts(firstLevel)*.name == ["dep2"]
+    }
+
+    def "replays first level dependencies when file dependencies are added between builds"() {
+        def other = Stub(ModuleDependency)
+        def recorder = new ResolvedGraphRecorder(ResolvedGraphCache.getDeclaredModuleDependencies(configuration(other, dependency)), new DefaultVersionSelectorScheme())
+        def recordingOldModel = recorder.record(oldModelBuilder())
+
+        when:
+        recordingOldModel.newResolvedDependency(root)
+        recordingOldModel.newResolvedDependency(dep1)
+        recordingOldModel.addChild(root, dep1)
+        recordingOldModel.addFirstLevelDependency(dependency, dep1)
+        recordingOldModel.done(root)
+
+        then:
+        recorder.reusable
+
+        when:
+        def replayedOldModel = oldModelBuilder()
+        def declared = ResolvedGraphCache.getDeclaredModuleDependencies(configuration(Stub(FileCollectionDependency), other, Stub(FileCollectionDependency), dependency))
+        ResolvedGraphRecorder.replay(recorder.toByteArray(), declared, newModelBuilder(), replayedOldModel, artifactResolver)
+
+        then:
+        def results = replayedOldModel.more()
+        results.firstLevelDependencies.keySet() == [dependency] as Set
+        results.firstLevelDependencies[dependency].moduleName == "dep1"
+    }
+
+    def "results are not reusable when a dependency cannot be resolved"() {
+        def newModel = recorder.record(newModelBuilder())
+        def failure = new ModuleVersionResolveException(newSelector("org", "dep1", "2.0"), new RuntimeException())
+
+        when:
+        newModel.start(newId("org", "root", "1.0"), new DefaultModuleComponentIdentifier("org", "root", "1.0"))
+        newModel.resolvedConfiguration(newId("org", "root", "1.0"), [new DefaultInternalDependencyResult(DefaultModuleComponentSelector.newSelector("org", "dep1", "2.0"), null, REQUESTED, failure)])
+
+        then:
+        !recorder.reusable
+    }
+
+    def "results are not reusable when a dependency is unresolved"() {
+        when:
+        recorder.record(oldModelBuilder()).addUnresolvedDependency(Stub(UnresolvedDependency))
+
+        then:
+        !recorder.reusable
+    }
+
+    def "results are not reusable when a dynamic version is requested"() {
+        def newModel = recorder.record(newModelBuilder())
+
+        when:
+        newModel.start(newId("org", "root", "1.0"), new DefaultModuleComponentIdentifier("org", "root", "1.0"))
+        newModel.resolvedModuleVersion(selection("dep1", "2.1"))
+        newModel.resolvedConfiguration(newId("org", "root", "1.0"), [
+                new DefaultInternalDependencyResult(DefaultModuleComponentSelector.newSelector("org", "dep1", "2.+"), newId("org", "dep1", "2.1"), REQUESTED, null)])
+
+        then:
+        !recorder.reusable
+    }
+
+    def "results are not reusable when a changing module is resolved"() {
+        def delegate = Stub(ComponentMetaDataResolver) {
+            resolve(_, _, _) >> { dependencyMetaData, id, result -> result.resolved(Stub(ComponentResolveMetaData) { isChanging() >> true }) }
+        }
+
+        when:
+        recorder.record(delegate).resolve(null, new DefaultModuleComponentIdentifier("org", "dep1", "2.0"), new DefaultBuildableComponentResolveResult())
+
+        then:
+        !recorder.reusable
+    }
+
+    def "results are not reusable when the graph contains a project component"() {
+        def newModel = recorder.record(newModelBuilder())
+
+        when:
+        newModel.start(newId("org", "root", "1.0"), new DefaultModuleComponentIdentifier("org", "root", "1.0"))
+        newModel.resolvedModuleVersion(new DefaultModuleVersionSelection(newId("org", "lib", "1.0"), REQUESTED, DefaultProjectComponentIdentifier.newId(":lib")))
+
+        then:
+        !recorder.reusable
+    }
+
+    def newModelBuilder() {
+        return new StreamingResolutionResultBuilder(new DummyBinaryStore(), new DummyStore())
+    }
+
+    def oldModelBuilder() {
+        return new DefaultResolvedConfigurationBuilder(new TransientConfigurationResultsBuilder(new DummyBinaryStore(), new DummyStore()))
+    }
+
+    def selection(String name, String version) {
+        return new DefaultModuleVersionSelection(newId("org", name, version), REQUESTED, new DefaultModuleComponentIdentifier("org", name, version))
+    }
+
+    def dependencyResult(String name, String version) {
+        return new DefaultInternalDependencyResult(DefaultModuleComponentSelector.newSelector("org", name, version), newId("org", name, version), REQUESTED, null)
+    }
+
+    def component() {
+        return Stub(ComponentResolveMetaData)
+    }
+
+    def artifact(String name, String version) {
+        return new DefaultModuleComponentArtifactMetaData(new DefaultModuleComponentIdentifier("org", name, version), new DefaultIvyArtifactName(name, "jar", "jar"))
+    }
+
+    def configuration(Dependency... dependencies) {
+        def dependencySet = Stub(DependencySet) {
+            iterator() >> { (dependencies as List).iterator() }
+        }
+        def configuration = Stub(ConfigurationInternal)
+        configuration.hierarchy >> ([Stub(Configuration) { getDependencies() >> dependencySet }] as Set)
+        return configuration
+    }
+}
@@ -19,6 +19,8 @@ package org.gradle.test.fixtures.server.http
 import org.gradle.api.artifacts.repositories.PasswordCredentials
 import org.gradle.test.fixtures.file.TestFile
 
+import java.util.concurrent.CyclicBarrier
+
 abstract class HttpResource {
 
     protected HttpServer server
@@ -39,6 +41,10 @@ abstract class HttpResource {
         server.expectGet(getPath(), file)
     }
 
+    void expectGetBlocking(CyclicBarrier barrier) {
+        server.expectGetBlocking(getPath(), file, barrier)
+    }
+
     void allowGetOrHead(String userName, String password) {
         server.allowGetOrHead(getPath(), userName, password, file)
     }
@@ -38,6 +38,8 @@ import org.slf4j.LoggerFactory
 import javax.servlet.http.HttpServletRequest
 import javax.servlet.http.HttpServletResponse
 import java.security.Principal
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.TimeUnit
 import java.util.zip.GZIPOutputStream
 
 class HttpServer extends ServerWithExpectations {
@@ -333,6 +335,25 @@ class HttpServer extends ServerWithExpectations {
         return expect(path, false, ['GET'], withAuthentication(path, username, password, fileHandler(path, srcFile)))
     }
 
+    /**
+     * Expects one GET request for the given URL, which does not respond until all parties of the given barrier have arrived. Responds with a 500 status
+     * code when the other requests are not received in time. Reads the request content from the given file.
+     */
+    HttpResourceInteraction expectGetBlocking(String path, File srcFile, CyclicBarrier barrier) {
+        def sendFile = fileHandler(path, srcFile)
+        return expect(path, false, ['GET'], new ActionSupport("return contents of $srcFile.name once ${barrier.parties} requests are in progress") {
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                try {
+                    barrier.await(20, TimeUnit.SECONDS)
+                } catch (Exception e) {
+                    response.sendError(500, "Timeout waiting for ${barrier.parties} concurrent requests")
+                    return
+                }
+                sendFile.handle(request, response)
+            }
+        })
+    }
+
     /**
      * Expects one GET request for the given URL, with the response being GZip encoded.
      */
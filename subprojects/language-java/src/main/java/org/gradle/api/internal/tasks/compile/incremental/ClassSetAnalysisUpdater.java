@@ -20,6 +20,7 @@ import org.gradle.api.file.FileTree;
 import org.gradle.api.internal.cache.Stash;
 import org.gradle.api.internal.file.FileOperations;
 import org.gradle.api.internal.tasks.compile.JavaCompileSpec;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.AnalysisWorkers;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassFilesAnalyzer;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
@@ -34,20 +35,29 @@ public class ClassSetAnalysisUpdater {
     private final Stash<ClassSetAnalysisData> stash;
     private final FileOperations fileOperations;
     private ClassDependenciesAnalyzer analyzer;
+    private final AnalysisWorkers workers;
 
     public ClassSetAnalysisUpdater(Stash<ClassSetAnalysisData> stash, FileOperations fileOperations, ClassDependenciesAnalyzer analyzer) {
+        this(stash, fileOperations, analyzer, AnalysisWorkers.serial());
+    }
+
+    public ClassSetAnalysisUpdater(Stash<ClassSetAnalysisData> stash, FileOperations fileOperations, ClassDependenciesAnalyzer analyzer, AnalysisWorkers workers) {
         this.stash = stash;
         this.fileOperations = fileOperations;
         this.analyzer = analyzer;
+        this.workers = workers;
     }
 
     public void updateAnalysis(JavaCompileSpec spec) {
         Clock clock = new Clock();
         FileTree tree = fileOperations.fileTree(spec.getDestinationDir());
-        ClassFilesAnalyzer analyzer = new ClassFilesAnalyzer(this.analyzer);
+        ClassFilesAnalyzer analyzer = new ClassFilesAnalyzer(this.analyzer, workers);
         tree.visit(analyzer);
         ClassSetAnalysisData data = analyzer.getAnalysis();
+        String analysisTime = clock.getTime();
+        clock.reset();
         stash.put(data);
-        LOG.info("Class dependency analysis for incremental compilation took {}.", clock.getTime());
+        LOG.info("Class dependency analysis of {} classes for incremental compilation took {} using {} workers. Storing the analysis took {}.",
+                analyzer.getClassCount(), analysisTime, workers.getWorkerCount(), clock.getTime());
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental.analyzer;
+
+import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the analysis of class files and jars for incremental Java compilation using a bounded pool of workers. The calling thread acts as one of the workers.
+ * Results are always returned in the order of the work items, regardless of the order in which they complete, so that the analysis data is deterministic.
+ *
+ * <p>The worker threads are created on first use and are shared by all later runs, until these workers are stopped.</p>
+ */
+public class AnalysisWorkers implements Stoppable {
+    /**
+     * The number of threads to use to analyse classes and jars. 0 analyses serially, -1 uses one thread per available processor. Defaults to 0.
+     */
+    public static final String THREADS_PROPERTY = "org.gradle.compile.analysis.threads";
+
+    private static final AnalysisWorkers SERIAL = new AnalysisWorkers(null, 1);
+
+    private final ExecutorFactory executorFactory;
+    private final int workerCount;
+    private StoppableExecutor executor;
+
+    public AnalysisWorkers(ExecutorFactory executorFactory, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Not a valid number of analysis workers: " + workerCount);
+        }
+        this.executorFactory = executorFactory;
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Creates the workers to use, as configured by the {@value #THREADS_PROPERTY} system property.
+     */
+    public static AnalysisWorkers create(ExecutorFactory executorFactory) {
+        int threads = Integer.getInteger(THREADS_PROPERTY, 0);
+        if (threads < 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        return threads <= 1 ? SERIAL : new AnalysisWorkers(executorFactory, threads);
+    }
+
+    /**
+     * Returns workers that run all work on the calling thread.
+     */
+    public static AnalysisWorkers serial() {
+        return SERIAL;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Runs the given work items, and returns their results in the same order as the work items. Fails with the first failure of any item.
+     *
+     * @param displayName The name to give the worker threads while they run the given work items.
+     */
+    public <T> List<T> run(final String displayName, final List<? extends Factory<? extends T>> work) {
+        final List<T> results = new ArrayList<T>(Collections.<T>nCopies(work.size(), null));
+        final AtomicInteger nextIndex = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Runnable worker = new Runnable() {
+            public void run() {
+                try {
+                    while (failure.get() == null) {
+                        int index = nextIndex.getAndIncrement();
+                        if (index >= results.size()) {
+                            return;
+                        }
+                        results.set(index, work.get(index).create());
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }
+        };
+
+        int workers = Math.min(workerCount, results.size());
+        if (workers <= 1) {
+            worker.run();
+        } else {
+            // Each worker sets distinct elements only. Waiting for the workers to finish makes these writes visible to the calling thread
+            final CountDownLatch finished = new CountDownLatch(workers - 1);
+            StoppableExecutor executor = getExecutor();
+            for (int i = 1; i < workers; i++) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        Thread thread = Thread.currentThread();
+                        String threadName = thread.getName();
+                        thread.setName(displayName);
+                        try {
+                            worker.run();
+                        } finally {
+                            thread.setName(threadName);
+                            finished.countDown();
+                        }
+                    }
+                });
+            }
+            worker.run();
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+        if (failure.get() != null) {
+            throw UncheckedException.throwAsUncheckedException(failure.get());
+        }
+        return results;
+    }
+
+    private synchronized StoppableExecutor getExecutor() {
+        if (executor == null) {
+            executor = executorFactory.create("Analysis worker");
+        }
+        return executor;
+    }
+
+    /**
+     * Stops the worker threads, once they have finished any work in progress.
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.stop();
+            executor = null;
+        }
+    }
+}
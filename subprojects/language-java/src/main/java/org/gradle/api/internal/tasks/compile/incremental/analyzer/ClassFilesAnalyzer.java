@@ -20,42 +20,89 @@ import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
+import org.gradle.internal.Factory;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Analyses the class files of a file tree. When created with {@link AnalysisWorkers}, the class files found while visiting the tree are analysed by
+ * the workers when {@link #getAnalysis()} is called, and are added to the analysis in the order they were visited. Otherwise each class file is
+ * analysed as it is visited.
+ */
 public class ClassFilesAnalyzer implements FileVisitor {
 
     private final ClassDependenciesAnalyzer analyzer;
     private final String packagePrefix;
     private final ClassDependentsAccumulator accumulator;
+    private final AnalysisWorkers workers;
+    private final List<String> pendingClassNames = new ArrayList<String>();
+    private final List<Factory<ClassAnalysis>> pendingAnalyses = new ArrayList<Factory<ClassAnalysis>>();
+    private int classCount;
 
     public ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer) {
-        this(analyzer, "", new ClassDependentsAccumulator(""));
+        this(analyzer, "", new ClassDependentsAccumulator(""), null);
+    }
+
+    public ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, AnalysisWorkers workers) {
+        this(analyzer, "", new ClassDependentsAccumulator(""), workers);
     }
 
     ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, String packagePrefix, ClassDependentsAccumulator accumulator) {
+        this(analyzer, packagePrefix, accumulator, null);
+    }
+
+    ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, String packagePrefix, ClassDependentsAccumulator accumulator, AnalysisWorkers workers) {
         this.analyzer = analyzer;
         this.packagePrefix = packagePrefix;
         this.accumulator = accumulator;
+        this.workers = workers;
     }
 
     public void visitDir(FileVisitDetails dirDetails) {}
 
     public void visitFile(FileVisitDetails fileDetails) {
-        File file = fileDetails.getFile();
+        final File file = fileDetails.getFile();
         if (!file.getName().endsWith(".class")) {
             return;
         }
-        String className = fileDetails.getPath().replaceAll("/", ".").replaceAll("\\.class$", "");
+        final String className = fileDetails.getPath().replaceAll("/", ".").replaceAll("\\.class$", "");
         if (!className.startsWith(packagePrefix)) {
             return;
         }
 
-        ClassAnalysis analysis = analyzer.getClassAnalysis(className, file);
-        accumulator.addClass(className, analysis.isDependencyToAll(), analysis.getClassDependencies());
+        classCount++;
+        if (workers == null) {
+            ClassAnalysis analysis = analyzer.getClassAnalysis(className, file);
+            accumulator.addClass(className, analysis.isDependencyToAll(), analysis.getClassDependencies());
+            return;
+        }
+        pendingClassNames.add(className);
+        pendingAnalyses.add(new Factory<ClassAnalysis>() {
+            public ClassAnalysis create() {
+                return analyzer.getClassAnalysis(className, file);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of class files analysed.
+     */
+    public int getClassCount() {
+        return classCount;
     }
 
     public ClassSetAnalysisData getAnalysis() {
+        if (!pendingAnalyses.isEmpty()) {
+            List<ClassAnalysis> analyses = workers.run("Class analysis worker", pendingAnalyses);
+            for (int i = 0; i < analyses.size(); i++) {
+                ClassAnalysis analysis = analyses.get(i);
+                accumulator.addClass(pendingClassNames.get(i), analysis.isDependencyToAll(), analysis.getClassDependencies());
+            }
+            pendingClassNames.clear();
+            pendingAnalyses.clear();
+        }
         return new ClassSetAnalysisData(accumulator.getDependentsMap());
     }
 }
\ No newline at end of file
@@ -16,28 +16,48 @@
 
 package org.gradle.api.internal.tasks.compile.incremental.jar;
 
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.AnalysisWorkers;
+import org.gradle.internal.Factory;
+
 import java.io.File;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 public class JarClasspathSnapshotFactory {
 
     private final JarSnapshotter jarSnapshotter;
+    private final AnalysisWorkers workers;
 
     public JarClasspathSnapshotFactory(JarSnapshotter jarSnapshotter) {
+        this(jarSnapshotter, AnalysisWorkers.serial());
+    }
+
+    public JarClasspathSnapshotFactory(JarSnapshotter jarSnapshotter, AnalysisWorkers workers) {
         this.jarSnapshotter = jarSnapshotter;
+        this.workers = workers;
     }
 
     JarClasspathSnapshot createSnapshot(Iterable<JarArchive> jarArchives) {
+        List<JarArchive> jars = new ArrayList<JarArchive>();
+        List<Factory<JarSnapshot>> snapshotActions = new ArrayList<Factory<JarSnapshot>>();
+        for (final JarArchive jar : jarArchives) {
+            jars.add(jar);
+            snapshotActions.add(new Factory<JarSnapshot>() {
+                public JarSnapshot create() {
+                    return jarSnapshotter.createSnapshot(jar);
+                }
+            });
+        }
+        // Jars are snapshotted in parallel, but combined in classpath order so that the duplicate classes are always the same
+        List<JarSnapshot> snapshots = workers.run("Jar snapshot worker", snapshotActions);
+
         Map<File, JarSnapshot> jarSnapshots = new HashMap<File, JarSnapshot>();
         Map<File, byte[]> jarHashes = new HashMap<File, byte[]>();
         Set<String> allClasses = new HashSet<String>();
         Set<String> duplicateClasses = new HashSet<String>();
 
-        for (JarArchive jar : jarArchives) {
-            JarSnapshot snapshot = jarSnapshotter.createSnapshot(jar);
+        for (int i = 0; i < jars.size(); i++) {
+            JarArchive jar = jars.get(i);
+            JarSnapshot snapshot = snapshots.get(i);
             jarSnapshots.put(jar.file, snapshot);
             jarHashes.put(jar.file, snapshot.getHash());
             for (String c : snapshot.getClasses()) {
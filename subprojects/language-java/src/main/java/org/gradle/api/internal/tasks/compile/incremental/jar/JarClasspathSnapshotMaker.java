@@ -58,9 +58,10 @@ public class JarClasspathSnapshotMaker implements JarClasspathSnapshotProvider,
         Iterable<JarArchive> jarArchives = classpathJarFinder.findJarArchives(classpath);
 
         jarClasspathSnapshot = classpathSnapshotFactory.createSnapshot(jarArchives);
+        int jarCount = jarClasspathSnapshot.getData().getJarHashes().size();
         int duplicatesCount = jarClasspathSnapshot.getData().getDuplicateClasses().size();
         String duplicateClassesMessage = duplicatesCount == 0? "" : ". " + duplicatesCount + " duplicate classes found in classpath (see all with --debug)";
-        LOG.info("Created jar classpath snapshot for incremental compilation in {}{}.", clock.getTime(), duplicateClassesMessage);
+        LOG.info("Created jar classpath snapshot of {} jars for incremental compilation in {}{}.", jarCount, clock.getTime(), duplicateClassesMessage);
         LOG.debug("While calculating jar classpath snapshot {} duplicate classes were found: {}.", duplicatesCount, jarClasspathSnapshot.getData().getDuplicateClasses());
     }
 }
\ No newline at end of file
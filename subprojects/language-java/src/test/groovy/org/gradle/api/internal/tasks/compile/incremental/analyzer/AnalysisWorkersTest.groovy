@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental.analyzer
+
+import org.gradle.internal.Factory
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.StoppableExecutor
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.CopyOnWriteArraySet
+
+class AnalysisWorkersTest extends Specification {
+    @Rule SetSystemProperties systemProperties = new SetSystemProperties()
+    def executorFactory = new DefaultExecutorFactory()
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "returns results in order of the work items"() {
+        def workers = new AnalysisWorkers(executorFactory, 4)
+        def threads = new CopyOnWriteArraySet()
+        def work = (0..<100).collect { i ->
+            { ->
+                threads << Thread.currentThread()
+                Thread.sleep(i % 3)
+                "result ${i}".toString()
+            } as Factory
+        }
+
+        when:
+        def results = workers.run("test", work)
+
+        then:
+        results == (0..<100).collect { "result ${it}".toString() }
+        threads.contains(Thread.currentThread())
+    }
+
+    def "propagates failure of a work item"() {
+        def workers = new AnalysisWorkers(executorFactory, 4)
+        def failure = new RuntimeException("broken")
+        def work = (0..<10).collect { i -> { -> if (i == 5) { throw failure }; i } as Factory }
+
+        when:
+        workers.run("test", work)
+
+        then:
+        def e = thrown(RuntimeException)
+        e == failure || e.cause == failure
+    }
+
+    def "starts worker threads once and stops them when stopped"() {
+        def threads = executorFactory.create("test")
+        def factory = Mock(ExecutorFactory)
+        def executor = Mock(StoppableExecutor)
+        def workers = new AnalysisWorkers(factory, 4)
+        def work = (0..<10).collect { i -> { -> i } as Factory }
+
+        when:
+        def first = workers.run("test", work)
+        def second = workers.run("test", work)
+
+        then:
+        first == 0..<10
+        second == 0..<10
+        1 * factory.create(_) >> executor
+        6 * executor.execute(_) >> { Runnable runnable -> threads.execute(runnable) }
+        0 * executor.stop()
+
+        when:
+        workers.stop()
+
+        then:
+        1 * executor.stop()
+    }
+
+    def "serial workers run work on the calling thread"() {
+        def workers = AnalysisWorkers.serial()
+        def threads = []
+        def work = (0..<3).collect { i -> { -> threads << Thread.currentThread(); i } as Factory }
+
+        expect:
+        workers.workerCount == 1
+        workers.run("test", work) == [0, 1, 2]
+        threads == [Thread.currentThread()] * 3
+    }
+
+    def "analyses serially unless parallel analysis is enabled"() {
+        when:
+        System.clearProperty(AnalysisWorkers.THREADS_PROPERTY)
+
+        then:
+        AnalysisWorkers.create(executorFactory).is(AnalysisWorkers.serial())
+
+        when:
+        System.setProperty(AnalysisWorkers.THREADS_PROPERTY, "4")
+
+        then:
+        AnalysisWorkers.create(executorFactory).workerCount == 4
+    }
+
+    def "can run empty work"() {
+        expect:
+        new AnalysisWorkers(executorFactory, 4).run("test", []) == []
+    }
+
+    def "does not accept an invalid number of workers"() {
+        when:
+        new AnalysisWorkers(executorFactory, 0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
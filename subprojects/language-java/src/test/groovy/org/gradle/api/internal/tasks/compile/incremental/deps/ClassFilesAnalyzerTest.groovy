@@ -19,9 +19,11 @@
 package org.gradle.api.internal.tasks.compile.incremental.deps
 
 import org.gradle.api.file.FileVisitDetails
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.AnalysisWorkers
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassAnalysis
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassFilesAnalyzer
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import spock.lang.Specification
 import spock.lang.Subject
 
@@ -59,4 +61,36 @@ class ClassFilesAnalyzerTest extends Specification {
         1 * accumulator.addClass("org.foo.Foo", true, new HashSet(["A"]))
         0 * _
     }
+
+    def "analyses classes using workers and accumulates them in visit order"() {
+        def executorFactory = new DefaultExecutorFactory()
+        def parallelAnalyzer = new ClassFilesAnalyzer(classAnalyzer, "org.foo", accumulator, new AnalysisWorkers(executorFactory, 4))
+        def classes = (0..<20).collect { "org.foo.Foo${it}".toString() }
+        def accumulated = []
+
+        when:
+        classes.each { name ->
+            parallelAnalyzer.visitFile(Stub(FileVisitDetails) {
+                getPath() >> name.replace('.', '/') + ".class"
+                getFile() >> new File(name + ".class")
+            })
+        }
+
+        then:
+        0 * _
+
+        when:
+        parallelAnalyzer.getAnalysis()
+
+        then:
+        20 * classAnalyzer.getClassAnalysis(_, _) >> { String name, File file -> new ClassAnalysis(new HashSet([name]), false) }
+        20 * accumulator.addClass(_, false, _) >> { String name, boolean precompiled, Set deps -> accumulated << [name, deps] }
+        1 * accumulator.getDependentsMap() >> [:]
+        0 * _
+        accumulated == classes.collect { [it, [it] as Set] }
+        parallelAnalyzer.classCount == 20
+
+        cleanup:
+        executorFactory?.stop()
+    }
 }
@@ -17,6 +17,8 @@
 package org.gradle.api.internal.tasks.compile.incremental.jar
 
 import org.gradle.api.file.FileTree
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.AnalysisWorkers
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import spock.lang.Specification
 import spock.lang.Subject
 
@@ -62,4 +64,29 @@ class JarClasspathSnapshotFactoryTest extends Specification {
         s.data.jarHashes[new File("f1")] == new byte[1]
         s.data.jarHashes[new File("f2")] == new byte[2]
     }
+
+    def "creates the same snapshot when jars are snapshotted in parallel"() {
+        def executorFactory = new DefaultExecutorFactory()
+        def parallelFactory = new JarClasspathSnapshotFactory(snapshotter, new AnalysisWorkers(executorFactory, 4))
+        def jars = (0..<10).collect { new JarArchive(new File("f${it}"), Stub(FileTree)) }
+
+        when:
+        def s = parallelFactory.createSnapshot(jars)
+
+        then:
+        10 * snapshotter.createSnapshot(_) >> { JarArchive jar ->
+            def index = jar.file.name.substring(1) as int
+            Stub(JarSnapshot) {
+                getHash() >> ([index] as byte[])
+                getClasses() >> ["C${index}", "Shared${index % 3}"]
+            }
+        }
+
+        s.data.jarHashes.keySet() == jars*.file as Set
+        s.data.jarHashes[new File("f7")] == [7] as byte[]
+        s.data.duplicateClasses == ["Shared0", "Shared1", "Shared2"] as Set
+
+        cleanup:
+        executorFactory?.stop()
+    }
 }
@@ -20,6 +20,7 @@ import org.gradle.api.Action;
 import org.gradle.internal.concurrent.CompositeStoppable;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.concurrent.ThreadSafe;
+import org.gradle.messaging.dispatch.Dispatch;
 import org.gradle.messaging.dispatch.MethodInvocation;
 import org.gradle.messaging.dispatch.ProxyDispatchAdapter;
 import org.gradle.messaging.dispatch.ReflectionDispatch;
@@ -55,7 +56,12 @@ public class MessageHubBackedObjectConnection implements ObjectConnection {
         if (methodParamClassLoader == null) {
             methodParamClassLoader = type.getClassLoader();
         }
-        hub.addHandler(type.getName(), new ReflectionDispatch(instance));
+        Dispatch<MethodInvocation> dispatch = new ReflectionDispatch(instance);
+        if (instance instanceof HubStateListener) {
+            // Let the handler know when the peer disconnects, for example when the peer process crashes
+            dispatch = new StateListenerBackedDispatch(dispatch, (HubStateListener) instance);
+        }
+        hub.addHandler(type.getName(), dispatch);
     }
 
     public <T> T addOutgoing(Class<T> type) {
@@ -102,4 +108,26 @@ public class MessageHubBackedObjectConnection implements ObjectConnection {
         // TODO:ADAM - need to cleanup completion too, if not used
         CompositeStoppable.stoppable(hub, connection).stop();
     }
+
+    private static class StateListenerBackedDispatch implements Dispatch<MethodInvocation>, HubStateListener {
+        private final Dispatch<MethodInvocation> dispatch;
+        private final HubStateListener stateListener;
+
+        public StateListenerBackedDispatch(Dispatch<MethodInvocation> dispatch, HubStateListener stateListener) {
+            this.dispatch = dispatch;
+            this.stateListener = stateListener;
+        }
+
+        public void dispatch(MethodInvocation message) {
+            dispatch.dispatch(message);
+        }
+
+        public void onConnect() {
+            stateListener.onConnect();
+        }
+
+        public void onDisconnect() {
+            stateListener.onDisconnect();
+        }
+    }
 }
@@ -22,17 +22,21 @@ import org.gradle.messaging.serialize.AbstractEncoder;
 import org.gradle.messaging.serialize.FlushableEncoder;
 
 import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 
 public class KryoBackedEncoder extends AbstractEncoder implements FlushableEncoder, Closeable {
     private final Output output;
+    private final CountingOutputStream outputStream;
 
     public KryoBackedEncoder(OutputStream outputStream) {
         this(outputStream, 4096);
     }
 
     public KryoBackedEncoder(OutputStream outputStream, int bufferSize) {
-        output = new Output(outputStream, bufferSize);
+        this.outputStream = new CountingOutputStream(outputStream);
+        output = new Output(this.outputStream, bufferSize);
     }
 
     public void writeByte(byte value) {
@@ -75,10 +79,11 @@ public class KryoBackedEncoder extends AbstractEncoder implements FlushableEncod
     }
 
     /**
-     * Returns the total number of bytes written by this encoder, some of which is may still be buffered.
+     * Returns the total number of bytes written by this encoder, some of which is may still be buffered. Unlike the total of the underlying output, this does
+     * not overflow once more than 2GB has been written.
      */
-    public int getWritePosition() {
-        return output.total();
+    public long getWritePosition() {
+        return outputStream.count + output.position();
     }
 
     public void flush() {
@@ -88,4 +93,24 @@ public class KryoBackedEncoder extends AbstractEncoder implements FlushableEncod
     public void close() {
         output.close();
     }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
 }
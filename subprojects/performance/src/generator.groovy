@@ -109,6 +109,7 @@ class ProjectGeneratorTask extends DefaultTask {
                 .withArtifacts(dependencyGraph.size)
                 .withDepth(dependencyGraph.depth)
                 .withSnapshotVersions(dependencyGraph.useSnapshotVersions)
+                .withHub(dependencyGraph.hub)
                 .create()
         return repo;
     }
@@ -239,6 +240,8 @@ class DependencyGraph {
     int size = 0
     int depth = 1
     boolean useSnapshotVersions = false
+    // Adds a module which every other module depends on
+    boolean hub = false
     boolean isEmpty(){
         size==0
     }
@@ -467,6 +470,7 @@ class RepositoryBuilder {
     private int numberOfArtifacts = 0
     private File targetDir
     boolean withSnapshotVersions = false
+    boolean withHub = false
 
     public RepositoryBuilder(File targetDir) {
         this.targetDir = targetDir;
@@ -487,6 +491,11 @@ class RepositoryBuilder {
         return this;
     }
 
+    RepositoryBuilder withHub(boolean withHub) {
+        this.withHub = withHub
+        return this;
+    }
+
     MavenRepository create() {
         if(numberOfArtifacts==0){
             return null;
@@ -502,6 +511,11 @@ class RepositoryBuilder {
         }
 
         transformGraphToDepth(repo.modules, depth)
+        if (withHub) {
+            def others = new ArrayList(repo.modules)
+            def hub = repo.addModule('group', "artifact$numberOfArtifacts", withSnapshotVersions ? "1.0-SNAPSHOT" : "1.0")
+            others.each { it.dependsOn(hub.groupId, hub.artifactId, hub.version) }
+        }
         repo.setDepth(depth)
         repo.publish()
         repo
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.performance
+
+import org.gradle.integtests.fixtures.executer.GradleDistribution
+import org.gradle.integtests.fixtures.executer.GradleExecuter
+import org.gradle.integtests.fixtures.executer.UnderDevelopmentGradleDistribution
+import org.gradle.test.fixtures.ConcurrentTestUtil
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import org.junit.rules.ExternalResource
+import org.mortbay.jetty.Server
+import org.mortbay.jetty.bio.SocketConnector
+import org.mortbay.jetty.handler.AbstractHandler
+import spock.lang.Specification
+
+import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+/**
+ * Resolves a deep graph of modules from a slow repository with meta-data prefetching enabled, in several builds at once which share the artifact cache.
+ */
+class MetaDataPrefetchStressTest extends Specification {
+    static final int MODULES = 40
+
+    @Rule TestNameTestDirectoryProvider workspace = new TestNameTestDirectoryProvider()
+    GradleDistribution distribution = new UnderDevelopmentGradleDistribution()
+    @Rule SlowModuleServer server = new SlowModuleServer()
+    @Rule ConcurrentTestUtil concurrent = new ConcurrentTestUtil()
+
+    def setup() {
+        concurrent.shortTimeout = 180000
+    }
+
+    def "resolves the same graph when meta-data is prefetched by concurrent builds"() {
+        def expected = ((0..<MODULES).collect { "module$it-1.0.jar" } + ["common-2.0.jar"]).sort()
+
+        expect:
+        4.times { count ->
+            concurrent.start {
+                def buildDir = workspace.file(count)
+                buildDir.file('build.gradle') << """
+repositories {
+    ivy { url '${server.uri}' }
+}
+
+configurations {
+    compile
+}
+
+dependencies {
+    compile 'org.test:module0:1.0'
+}
+
+task check << {
+    def files = configurations.compile.files*.name.sort()
+    println "THREAD $count -> resolved \${files.size()} files"
+    assert files == ${expected.inspect()}
+}
+"""
+
+                GradleExecuter executer = distribution.executer(workspace).
+                        requireGradleHome().
+                        withGradleUserHomeDir(workspace.file("user-home"))
+                5.times { run ->
+                    // Alternate between prefetching and resolving meta-data only when needed
+                    def threads = run % 2 == 0 ? 8 : 0
+                    executer.inDirectory(buildDir)
+                            .withArgument("--refresh-dependencies")
+                            .withArgument("-Dorg.gradle.dependency.prefetchThreads=$threads")
+                            .withTasks('check').run()
+                }
+            }
+        }
+        concurrent.finished()
+    }
+
+    /**
+     * Serves module0 to module39, where each module depends on the next two, and every fourth module also depends on a version of a common module.
+     * Each ivy.xml is served after a short delay, so that meta-data is fetched concurrently while the graph is traversed.
+     */
+    static class SlowModuleServer extends ExternalResource {
+        final Server server = new Server(0)
+        final byte[] jar = createJar()
+
+        @Override
+        protected void before() {
+            server.addConnector(new SocketConnector())
+            server.addHandler(new AbstractHandler() {
+                void handle(String target, HttpServletRequest request, HttpServletResponse response, int dispatch) {
+                    def ivy = request.pathInfo =~ /^\/org.test\/(\w+)\/(\d\.\d)\/ivy-\d\.\d\.xml$/
+                    def artifact = request.pathInfo =~ /^\/org.test\/(\w+)\/(\d\.\d)\/\w+-\d\.\d\.jar$/
+                    if (ivy.matches()) {
+                        Thread.sleep(50)
+                        respond(request, response, "text/xml", ivyFile(ivy.group(1), ivy.group(2)).getBytes("UTF-8"))
+                    } else if (artifact.matches()) {
+                        respond(request, response, "application/java-archive", jar)
+                    }
+                }
+            })
+            server.start()
+        }
+
+        private static void respond(HttpServletRequest request, HttpServletResponse response, String contentType, byte[] content) {
+            response.setContentLength(content.length)
+            response.setContentType(contentType)
+            if (request.method == 'GET') {
+                response.outputStream.write(content)
+            }
+            request.handled = true
+        }
+
+        private static String ivyFile(String module, String revision) {
+            def dependencies = new StringBuilder()
+            if (module.startsWith("module")) {
+                int index = module.substring("module".length()) as int
+                for (int next = index + 1; next <= index + 2 && next < MODULES; next++) {
+                    dependencies << """<dependency org="org.test" name="module$next" rev="1.0"/>"""
+                }
+                if (index % 4 == 0) {
+                    dependencies << """<dependency org="org.test" name="common" rev="${index % 8 == 0 ? '1.0' : '2.0'}"/>"""
+                }
+            }
+            return """<ivy-module version="1.0">
+    <info organisation="org.test" module="$module" revision="$revision"/>
+    <dependencies>$dependencies</dependencies>
+</ivy-module>
+"""
+        }
+
+        private static byte[] createJar() {
+            def bytes = new ByteArrayOutputStream()
+            def zipStream = new ZipOutputStream(bytes)
+            zipStream.putNextEntry(new ZipEntry("a"))
+            zipStream.write("content".bytes)
+            zipStream.finish()
+            return bytes.toByteArray()
+        }
+
+        @Override
+        protected void after() {
+            server.stop()
+        }
+
+        URI getUri() {
+            return new URI("http://localhost:${server.connectors[0].localPort}/")
+        }
+    }
+}
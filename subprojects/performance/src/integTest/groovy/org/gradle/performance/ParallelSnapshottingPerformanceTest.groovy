@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.performance
+
+import spock.lang.Unroll
+
+import static org.gradle.performance.measure.Duration.millis
+
+class ParallelSnapshottingPerformanceTest extends AbstractPerformanceTest {
+    @Unroll("Project '#testProject' up-to-date build with parallel snapshotting")
+    def "up-to-date build"() {
+        given:
+        runner.testId = "parallel snapshotting up-to-date build $testProject"
+        runner.testProject = testProject
+        runner.tasksToRun = ['build']
+        runner.gradleOpts = ["-Dorg.gradle.snapshot.threads=-1"]
+        runner.maxExecutionTimeRegression = maxExecutionTimeRegression
+        runner.targetVersions = ['last']
+
+        when:
+        def result = runner.run()
+
+        then:
+        result.assertCurrentVersionHasNotRegressed()
+
+        where:
+        testProject  | maxExecutionTimeRegression
+        "inputs10k"  | millis(1000)
+        "inputs100k" | millis(5000)
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.performance
+
+import org.gradle.performance.measure.DataAmount
+import spock.lang.Unroll
+
+import static org.gradle.performance.measure.Duration.millis
+
+class TaskHistoryPerformanceTest extends AbstractPerformanceTest {
+    @Unroll("Project '#testProject' #scenario build heap usage for task history")
+    def "task history"() {
+        given:
+        runner.testId = "task history $scenario build $testProject"
+        runner.testProject = testProject
+        runner.tasksToRun = tasks
+        runner.maxExecutionTimeRegression = maxExecutionTimeRegression
+        runner.maxMemoryRegression = DataAmount.mbytes(0)
+        runner.targetVersions = ['last']
+
+        when:
+        def result = runner.run()
+
+        then:
+        result.assertCurrentVersionHasNotRegressed()
+
+        where:
+        testProject  | scenario     | tasks              | maxExecutionTimeRegression
+        "inputs10k"  | "clean"      | ['clean', 'build'] | millis(1000)
+        "inputs10k"  | "up-to-date" | ['build']          | millis(1000)
+        "inputs100k" | "clean"      | ['clean', 'build'] | millis(5000)
+        "inputs100k" | "up-to-date" | ['build']          | millis(5000)
+    }
+}
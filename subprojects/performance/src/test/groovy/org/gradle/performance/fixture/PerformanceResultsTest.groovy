@@ -266,6 +266,57 @@ class PerformanceResultsTest extends ResultSpecification {
         e.message.contains("Memory ${result.displayName}: we need more memory than 1.2.")
     }
 
+    def "does not check heap allocation when no maximum allocation regression is specified"() {
+        given:
+        result.baseline("1.0").results << operation(totalHeapUsage: 1000)
+        result.baseline("1.0").results << operation(totalHeapUsage: 1000)
+
+        and:
+        result.current << operation(totalHeapUsage: 5000)
+        result.current << operation(totalHeapUsage: 5000)
+
+        expect:
+        result.assertCurrentVersionHasNotRegressed()
+    }
+
+    def "passes when average heap allocation for current release is within specified range of average heap allocation for previous releases"() {
+        given:
+        result.baseline("1.0").maxAllocationRegression = DataAmount.bytes(100)
+        result.baseline("1.0").results << operation(totalHeapUsage: 1000)
+        result.baseline("1.0").results << operation(totalHeapUsage: 1000)
+
+        and:
+        result.current << operation(totalHeapUsage: 1100)
+        result.current << operation(totalHeapUsage: 1050)
+
+        expect:
+        result.assertCurrentVersionHasNotRegressed()
+    }
+
+    def "fails when average heap allocation for current release is larger than average heap allocation for previous releases"() {
+        given:
+        result.baseline("1.0").maxAllocationRegression = DataAmount.bytes(100)
+        result.baseline("1.0").results << operation(totalHeapUsage: 1000)
+        result.baseline("1.0").results << operation(totalHeapUsage: 1000)
+
+        result.baseline("1.2").maxAllocationRegression = DataAmount.bytes(100)
+        result.baseline("1.2").results << operation(totalHeapUsage: 1100)
+        result.baseline("1.2").results << operation(totalHeapUsage: 1100)
+
+        and:
+        result.current << operation(totalHeapUsage: 1101)
+        result.current << operation(totalHeapUsage: 1101)
+
+        when:
+        result.assertCurrentVersionHasNotRegressed()
+
+        then:
+        AssertionError e = thrown()
+        e.message.startsWith("Allocation ${result.displayName}: we allocate more heap than 1.0.")
+        e.message.contains('Difference: 101 B more (101 B), 10.10%')
+        !e.message.contains('1.2')
+    }
+
     def "can lookup the results for a baseline version"() {
         expect:
         def baseline = result.baseline("1.0")
@@ -28,6 +28,8 @@ class BaselineVersion implements VersionResults {
     final MeasuredOperationList results = new MeasuredOperationList()
     Amount<Duration> maxExecutionTimeRegression = Duration.millis(0)
     Amount<DataAmount> maxMemoryRegression = DataAmount.bytes(0)
+    /** The maximum increase in the total amount of heap allocated by the build. Allocation is not checked when null. */
+    Amount<DataAmount> maxAllocationRegression
 
     BaselineVersion(String version) {
         this.version = version
@@ -75,6 +77,28 @@ class BaselineVersion implements VersionResults {
         sb.toString()
     }
 
+    String getAllocationStatsAgainst(String displayName, MeasuredOperationList current) {
+        def sb = new StringBuilder()
+        def currentVersionAverage = current.totalHeapUsage.average
+        def thisVersionAverage = results.totalHeapUsage.average
+        if (currentVersionAverage > thisVersionAverage) {
+            sb.append("Allocation $displayName: we allocate more heap than $version.\n")
+        } else {
+            sb.append("Allocation $displayName: AWESOME! we allocate less heap than $version :D\n")
+        }
+        def diff = currentVersionAverage - thisVersionAverage
+        def desc = diff > DataAmount.bytes(0) ? "more" : "less"
+        sb.append("Difference: ${diff.abs().format()} $desc (${toBytes(diff.abs())}), ${PrettyCalculator.percentChange(currentVersionAverage, thisVersionAverage)}%, max regression: ${maxAllocationRegression.format()}\n")
+        sb.append(current.allocationStats)
+        sb.append(results.allocationStats)
+        sb.append("\n")
+        sb.toString()
+    }
+
+    boolean allocatesLessThan(MeasuredOperationList current) {
+        maxAllocationRegression != null && current.totalHeapUsage.average - results.totalHeapUsage.average > maxAllocationRegression
+    }
+
     boolean usesLessMemoryThan(MeasuredOperationList current) {
         current.totalMemoryUsed.average - results.totalMemoryUsed.average > maxMemoryRegression
     }
@@ -53,6 +53,10 @@ public class MeasuredOperationList extends LinkedList<MeasuredOperation> {
         format(totalMemoryUsed)
     }
 
+    String getAllocationStats() {
+        format(totalHeapUsage)
+    }
+
     private String format(DataSeries<?> measurement) {
         """  ${name} avg: ${measurement.average.format()} ${measurement.collect { it.format() }}
   > min: ${measurement.min.format()}, max: ${measurement.max.format()}
@@ -93,15 +93,11 @@ public class PerformanceResults {
     void assertCurrentVersionHasNotRegressed() {
         def slower = checkBaselineVersion({ it.fasterThan(current) }, { it.getSpeedStatsAgainst(displayName, current) })
         def larger = checkBaselineVersion({ it.usesLessMemoryThan(current) }, { it.getMemoryStatsAgainst(displayName, current) })
+        def allocatesMore = checkBaselineVersion({ it.allocatesLessThan(current) }, { it.maxAllocationRegression == null ? null : it.getAllocationStatsAgainst(displayName, current) })
         assertEveryBuildSucceeds()
-        if (slower && larger) {
-            throw new AssertionError("$slower\n$larger")
-        }
-        if (slower) {
-            throw new AssertionError(slower)
-        }
-        if (larger) {
-            throw new AssertionError(larger)
+        def regressions = [slower, larger, allocatesMore].findAll { it }
+        if (regressions) {
+            throw new AssertionError(regressions.join("\n"))
         }
     }
 
@@ -110,6 +106,9 @@ public class PerformanceResults {
         def failure = new StringBuilder()
         baselineVersions.values().each {
             String message = provideMessage(it)
+            if (message == null) {
+                return
+            }
             if (fails(it)) {
                 failed = true
                 failure.append message
@@ -56,6 +56,7 @@ public class PerformanceTestRunner {
     List<String> targetVersions = []
     Amount<Duration> maxExecutionTimeRegression = Duration.millis(0)
     Amount<DataAmount> maxMemoryRegression = DataAmount.bytes(0)
+    Amount<DataAmount> maxAllocationRegression
 
     PerformanceResults results
     GradleExecuterProvider executerProvider = new GradleExecuterProvider()
@@ -97,6 +98,7 @@ public class PerformanceTestRunner {
             def baselineVersion = results.baseline(it)
             baselineVersion.maxExecutionTimeRegression = maxExecutionTimeRegression
             baselineVersion.maxMemoryRegression = maxMemoryRegression
+            baselineVersion.maxAllocationRegression = maxAllocationRegression
         }
 
         println "Running performance tests for test project '$testProject', no. of runs: $runs"
@@ -17,6 +17,7 @@
 package org.gradle.api.internal.tasks;
 
 import org.gradle.api.internal.tasks.compile.daemon.InProcessCompilerDaemonFactory;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.AnalysisWorkers;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassAnalysisCache;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.DefaultClassAnalysisCache;
 import org.gradle.api.internal.tasks.compile.incremental.cache.*;
@@ -24,6 +25,7 @@ import org.gradle.api.internal.tasks.compile.incremental.jar.DefaultJarSnapshotC
 import org.gradle.api.internal.tasks.compile.incremental.jar.JarSnapshotCache;
 import org.gradle.cache.CacheRepository;
 import org.gradle.initialization.JdkToolsInitializer;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.service.scopes.PluginServiceRegistry;
 
@@ -59,5 +61,9 @@ public class CompileServices implements PluginServiceRegistry {
         JarSnapshotCache createJarSnapshotCache(CacheRepository cacheRepository) {
             return new DefaultJarSnapshotCache(cacheRepository);
         }
+
+        AnalysisWorkers createAnalysisWorkers(ExecutorFactory executorFactory) {
+            return AnalysisWorkers.create(executorFactory);
+        }
     }
 }
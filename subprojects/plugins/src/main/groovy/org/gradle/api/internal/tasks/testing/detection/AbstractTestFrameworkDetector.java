@@ -20,8 +20,11 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.gradle.api.GradleException;
 import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.hash.Hasher;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.internal.Factory;
+import org.gradle.internal.hash.HashValue;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
 
@@ -43,6 +46,8 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
 
     private File testClassesDirectory;
     private FileCollection testClasspath;
+    private TestClassDetectionCache detectionCache;
+    private Hasher hasher;
 
     protected AbstractTestFrameworkDetector(ClassFileExtractionManager classFileExtractionManager) {
         assert classFileExtractionManager != null;
@@ -107,6 +112,32 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         this.testClasspath = testClasspath;
     }
 
+    public void setDetectionCache(TestClassDetectionCache detectionCache, Hasher hasher) {
+        this.detectionCache = detectionCache;
+        this.hasher = hasher;
+    }
+
+    /**
+     * Returns the facts of the given class file. When a detection cache is available, the class file is only parsed when no other class file with the same
+     * content has been parsed by this kind of detector before.
+     */
+    protected DetectedClassInfo classInfo(final File testClassFile) {
+        if (detectionCache == null) {
+            return readClassInfo(testClassFile);
+        }
+        String key = getClass().getName() + ":" + hasher.getAlgorithm() + ":" + new HashValue(hasher.hash(testClassFile)).asCompactString();
+        return detectionCache.get(key, new Factory<DetectedClassInfo>() {
+            public DetectedClassInfo create() {
+                return readClassInfo(testClassFile);
+            }
+        });
+    }
+
+    private DetectedClassInfo readClassInfo(File testClassFile) {
+        TestClassVisitor classVisitor = classVisitor(testClassFile);
+        return new DetectedClassInfo(classVisitor.getClassName(), classVisitor.getSuperClassName(), classVisitor.isTest(), classVisitor.isAbstract());
+    }
+
     protected TestClassVisitor classVisitor(final File testClassFile) {
         final TestClassVisitor classVisitor = createClassVisitor();
 
@@ -150,9 +181,9 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
      * In none super class mode a test class is published when the class is a test and it is not abstract. In super class mode it must not publish the class otherwise it will get published multiple
      * times (for each extending class).
      */
-    protected void publishTestClass(boolean isTest, TestClassVisitor classVisitor, boolean superClass) {
-        if (isTest && !classVisitor.isAbstract() && !superClass) {
-            String className = Type.getObjectType(classVisitor.getClassName()).getClassName();
+    protected void publishTestClass(boolean isTest, DetectedClassInfo classInfo, boolean superClass) {
+        if (isTest && !classInfo.isAbstract() && !superClass) {
+            String className = Type.getObjectType(classInfo.getClassName()).getClassName();
             testClassProcessor.processTestClass(new DefaultTestClassRunInfo(className));
         }
     }
@@ -16,31 +16,83 @@
 
 package org.gradle.api.internal.tasks.testing.detection;
 
+import org.gradle.api.Action;
 import org.gradle.api.file.FileTree;
+import org.gradle.api.internal.hash.DefaultHasher;
+import org.gradle.api.internal.hash.Hasher;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.api.internal.tasks.testing.processors.FailFastTestResultProcessor;
 import org.gradle.api.internal.tasks.testing.processors.MaxNParallelTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.RestartEveryNTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.TestMainAction;
+import org.gradle.api.internal.tasks.testing.selection.SelectingTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.selection.TestClassSelection;
+import org.gradle.api.internal.tasks.testing.sharding.ShardingTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.sharding.TestShardAssignment;
 import org.gradle.api.internal.tasks.testing.worker.ForkingTestClassProcessor;
 import org.gradle.api.tasks.testing.Test;
 import org.gradle.internal.Factory;
 import org.gradle.internal.TrueTimeProvider;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.messaging.actor.ActorFactory;
 import org.gradle.process.internal.WorkerProcessBuilder;
+import org.gradle.process.internal.WorkerProcessPool;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * The default test class scanner factory.
  */
 public class DefaultTestExecuter implements TestExecuter {
+    /**
+     * The number of test failures after which no further test classes are started. 0 runs all test classes regardless of failures. Defaults to 0.
+     */
+    public static final String MAX_FAILURES_PROPERTY = "org.gradle.test.maxFailures";
+
     private final Factory<WorkerProcessBuilder> workerFactory;
     private final ActorFactory actorFactor;
+    private final ExecutorFactory executorFactory;
+    private final Map<String, Long> previousDurations;
+    private final Set<String> previouslyFailed;
+    private final TestClassDetectionCache detectionCache;
+    private final Hasher classFileHasher;
+    private final TestClassSelection selection;
+    private final TestShardAssignment shardAssignment;
+    private final Action<? super WorkerProcessPool.Statistics> workerStatisticsListener;
+
+    public DefaultTestExecuter(Factory<WorkerProcessBuilder> workerFactory, ActorFactory actorFactor, ExecutorFactory executorFactory, Map<String, Long> previousDurations,
+                               TestClassDetectionCache detectionCache) {
+        this(workerFactory, actorFactor, executorFactory, previousDurations, Collections.<String>emptySet(), detectionCache, new DefaultHasher(), null, null, null);
+    }
 
-    public DefaultTestExecuter(Factory<WorkerProcessBuilder> workerFactory, ActorFactory actorFactor) {
+    /**
+     * @param previousDurations The duration in milliseconds of each test class in the previous run, keyed by test class name. Used to start the longest
+     * test classes first.
+     * @param previouslyFailed The names of the test classes that failed in the previous run. Used to start these test classes before all others.
+     * @param detectionCache The cache to use when scanning for test classes. May be null.
+     * @param classFileHasher The hasher to use to look up class files in the detection cache.
+     * @param selection The test classes to run. May be null to run all test classes.
+     * @param shardAssignment The test classes assigned to the shard to run. May be null when the test classes are not sharded.
+     * @param workerStatisticsListener Receives the JVMs started and reused by each reusable test worker. May be null.
+     */
+    public DefaultTestExecuter(Factory<WorkerProcessBuilder> workerFactory, ActorFactory actorFactor, ExecutorFactory executorFactory, Map<String, Long> previousDurations,
+                               Set<String> previouslyFailed, TestClassDetectionCache detectionCache, Hasher classFileHasher, TestClassSelection selection,
+                               TestShardAssignment shardAssignment, Action<? super WorkerProcessPool.Statistics> workerStatisticsListener) {
         this.workerFactory = workerFactory;
         this.actorFactor = actorFactor;
+        this.executorFactory = executorFactory;
+        this.previousDurations = previousDurations;
+        this.previouslyFailed = previouslyFailed;
+        this.detectionCache = detectionCache;
+        this.classFileHasher = classFileHasher;
+        this.selection = selection;
+        this.shardAssignment = shardAssignment;
+        this.workerStatisticsListener = workerStatisticsListener;
     }
 
     public void execute(final Test testTask, TestResultProcessor testResultProcessor) {
@@ -49,7 +101,7 @@ public class DefaultTestExecuter implements TestExecuter {
         final Factory<TestClassProcessor> forkingProcessorFactory = new Factory<TestClassProcessor>() {
             public TestClassProcessor create() {
                 return new ForkingTestClassProcessor(workerFactory, testInstanceFactory, testTask,
-                        testTask.getClasspath(), testFramework.getWorkerConfigurationAction());
+                        testTask.getClasspath(), testFramework.getWorkerConfigurationAction(), workerStatisticsListener);
             }
         };
         Factory<TestClassProcessor> reforkingProcessorFactory = new Factory<TestClassProcessor>() {
@@ -58,20 +110,35 @@ public class DefaultTestExecuter implements TestExecuter {
             }
         };
 
-        TestClassProcessor processor = new MaxNParallelTestClassProcessor(testTask.getMaxParallelForks(),
-                reforkingProcessorFactory, actorFactor);
+        final MaxNParallelTestClassProcessor processor = new MaxNParallelTestClassProcessor(testTask.getMaxParallelForks(),
+                reforkingProcessorFactory, actorFactor, executorFactory, new TrueTimeProvider(), previousDurations, previouslyFailed);
+
+        TestResultProcessor resultProcessor = testResultProcessor;
+        int maxFailures = Integer.getInteger(MAX_FAILURES_PROPERTY, 0);
+        if (maxFailures > 0) {
+            resultProcessor = new FailFastTestResultProcessor(testResultProcessor, maxFailures, new Runnable() {
+                public void run() {
+                    processor.cancel();
+                }
+            });
+        }
 
         final FileTree testClassFiles = testTask.getCandidateClassFiles();
+        TestClassProcessor detectedClassProcessor = selection == null || selection.isAll() ? processor : new SelectingTestClassProcessor(processor, selection);
+        if (shardAssignment != null) {
+            detectedClassProcessor = new ShardingTestClassProcessor(detectedClassProcessor, shardAssignment);
+        }
 
         Runnable detector;
         if (testTask.isScanForTestClasses()) {
             TestFrameworkDetector testFrameworkDetector = testTask.getTestFramework().getDetector();
             testFrameworkDetector.setTestClassesDirectory(testTask.getTestClassesDir());
             testFrameworkDetector.setTestClasspath(testTask.getClasspath());
-            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor);
+            testFrameworkDetector.setDetectionCache(detectionCache, classFileHasher);
+            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, detectedClassProcessor);
         } else {
-            detector = new DefaultTestClassScanner(testClassFiles, null, processor);
+            detector = new DefaultTestClassScanner(testClassFiles, null, detectedClassProcessor);
         }
-        new TestMainAction(detector, processor, testResultProcessor, new TrueTimeProvider()).run();
+        new TestMainAction(detector, processor, resultProcessor, new TrueTimeProvider()).run();
     }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection;
+
+/**
+ * The facts that a test framework detector extracts from a single class file. Does not include the facts of the super classes.
+ */
+public class DetectedClassInfo {
+    private final String className;
+    private final String superClassName;
+    private final boolean test;
+    private final boolean abstractClass;
+
+    public DetectedClassInfo(String className, String superClassName, boolean test, boolean abstractClass) {
+        this.className = className;
+        this.superClassName = superClassName;
+        this.test = test;
+        this.abstractClass = abstractClass;
+    }
+
+    /**
+     * Returns the internal name of the class, for example {@code org/gradle/SomeTest}.
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Returns the internal name of the super class, or null for {@code java.lang.Object}.
+     */
+    public String getSuperClassName() {
+        return superClassName;
+    }
+
+    /**
+     * Returns true when the class itself is marked as a test, for example by its annotations or those of its methods.
+     */
+    public boolean isTest() {
+        return test;
+    }
+
+    public boolean isAbstract() {
+        return abstractClass;
+    }
+}
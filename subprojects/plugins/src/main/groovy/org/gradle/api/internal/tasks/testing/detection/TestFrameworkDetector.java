@@ -16,6 +16,7 @@
 package org.gradle.api.internal.tasks.testing.detection;
 
 import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.hash.Hasher;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 
 import java.io.File;
@@ -28,4 +29,10 @@ public interface TestFrameworkDetector {
     void setTestClassesDirectory(File testClassesDir);
 
     void setTestClasspath(FileCollection classpath);
+
+    /**
+     * Sets the cache to use for the facts of the class files which are scanned, and the hasher used to find the cached facts of a class file. The cache may
+     * be null, in which case every class file is parsed.
+     */
+    void setDetectionCache(TestClassDetectionCache detectionCache, Hasher hasher);
 }
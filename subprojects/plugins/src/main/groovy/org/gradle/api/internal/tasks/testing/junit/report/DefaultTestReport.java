@@ -20,6 +20,7 @@ import org.gradle.api.GradleException;
 import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult;
 import org.gradle.api.internal.tasks.testing.junit.result.TestFailure;
 import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult;
+import org.gradle.api.internal.tasks.testing.junit.result.TestReportWorkers;
 import org.gradle.api.internal.tasks.testing.junit.result.TestResultsProvider;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
@@ -30,64 +31,118 @@ import org.gradle.util.Clock;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.gradle.api.tasks.testing.TestResult.ResultType.SKIPPED;
 
 public class DefaultTestReport implements TestReporter {
     private final static Logger LOG = Logging.getLogger(DefaultTestReport.class);
+    // The number of tests whose failures are held in memory at once, waiting for their class pages to be rendered
+    private static final int MAX_BATCH_TESTS = 10000;
+    private final TestReportWorkers workers;
+
+    public DefaultTestReport() {
+        this(TestReportWorkers.serial());
+    }
+
+    public DefaultTestReport(TestReportWorkers workers) {
+        this.workers = workers;
+    }
 
     public void generateReport(TestResultsProvider resultsProvider, File reportDir) {
         LOG.info("Generating HTML test report...");
 
         Clock clock = new Clock();
-        AllTestResults model = loadModelFromProvider(resultsProvider);
-        generateFiles(model, resultsProvider, reportDir);
+        generateFiles(resultsProvider, reportDir);
         LOG.info("Finished generating test html results ({}) into: {}", clock.getTime(), reportDir);
     }
 
-    private AllTestResults loadModelFromProvider(TestResultsProvider resultsProvider) {
-        final AllTestResults model = new AllTestResults();
-        resultsProvider.visitClasses(new Action<TestClassResult>() {
-            public void execute(TestClassResult classResult) {
-                model.addTestClass(classResult.getId(), classResult.getClassName());
-                List<TestMethodResult> collectedResults = classResult.getResults();
-                for (TestMethodResult collectedResult : collectedResults) {
-                    final TestResult testResult = model.addTest(classResult.getId(), classResult.getClassName(), collectedResult.getName(), collectedResult.getDuration());
-                    if (collectedResult.getResultType() == SKIPPED) {
-                        testResult.setIgnored();
-                    } else {
-                        List<TestFailure> failures = collectedResult.getFailures();
-                        for (TestFailure failure : failures) {
-                            testResult.addFailure(failure);
-                        }
-                    }
+    private ClassTestResults addClass(AllTestResults model, TestClassResult classResult) {
+        ClassTestResults classResults = model.addTestClass(classResult.getId(), classResult.getClassName());
+        List<TestMethodResult> collectedResults = classResult.getResults();
+        for (TestMethodResult collectedResult : collectedResults) {
+            final TestResult testResult = model.addTest(classResult.getId(), classResult.getClassName(), collectedResult.getName(), collectedResult.getDuration());
+            if (collectedResult.getResultType() == SKIPPED) {
+                testResult.setIgnored();
+            } else {
+                List<TestFailure> failures = collectedResult.getFailures();
+                for (TestFailure failure : failures) {
+                    testResult.addFailure(failure);
                 }
             }
-        });
-        return model;
+        }
+        return classResults;
     }
 
-    private void generateFiles(AllTestResults model, final TestResultsProvider resultsProvider, File reportDir) {
+    private void generateFiles(final TestResultsProvider resultsProvider, final File reportDir) {
         try {
             HtmlReportRenderer htmlRenderer = new HtmlReportRenderer();
-            htmlRenderer.render(model, new ReportRenderer<AllTestResults, HtmlReportBuilder>() {
+            final ReportFingerprints fingerprints = ReportFingerprints.load(reportDir);
+            final AtomicInteger skipped = new AtomicInteger();
+            htmlRenderer.render(new AllTestResults(), new ReportRenderer<AllTestResults, HtmlReportBuilder>() {
                 @Override
-                public void render(AllTestResults model, HtmlReportBuilder output) throws IOException {
-                    PackagePageRenderer packagePageRenderer = new PackagePageRenderer();
-                    ClassPageRenderer classPageRenderer = new ClassPageRenderer(resultsProvider);
-
-                    output.renderHtmlPage("index.html", model, new OverviewPageRenderer());
-                    for (PackageTestResults packageResults : model.getPackages()) {
-                        output.renderHtmlPage(packageResults.getBaseUrl(), packageResults, packagePageRenderer);
-                        for (ClassTestResults classResults : packageResults.getClasses()) {
-                            output.renderHtmlPage(classResults.getBaseUrl(), classResults, classPageRenderer);
+                public void render(final AllTestResults model, final HtmlReportBuilder output) throws IOException {
+                    // Class pages are rendered in batches as the results are read, after which only the summary of each test is kept in the model
+                    final List<ClassTestResults> batch = new ArrayList<ClassTestResults>();
+                    final int[] batchTests = new int[1];
+                    resultsProvider.visitClasses(new Action<TestClassResult>() {
+                        public void execute(TestClassResult classResult) {
+                            batch.add(addClass(model, classResult));
+                            batchTests[0] += classResult.getResults().size();
+                            if (batchTests[0] >= MAX_BATCH_TESTS) {
+                                renderClassPages(batch, resultsProvider, fingerprints, skipped, output);
+                                batch.clear();
+                                batchTests[0] = 0;
+                            }
                         }
+                    });
+                    renderClassPages(batch, resultsProvider, fingerprints, skipped, output);
+
+                    // Package pages after all class pages, as the fingerprint of each package page is calculated from those of its classes
+                    List<Runnable> packagePages = new ArrayList<Runnable>();
+                    for (final PackageTestResults packageResults : model.getPackages()) {
+                        packagePages.add(new Runnable() {
+                            public void run() {
+                                if (fingerprints.packagePageChanged(packageResults)) {
+                                    output.renderHtmlPage(packageResults.getBaseUrl(), packageResults, new PackagePageRenderer());
+                                } else {
+                                    skipped.incrementAndGet();
+                                }
+                            }
+                        });
                     }
+                    workers.run("Test report package page renderer", packagePages);
+                    output.renderHtmlPage("index.html", model, new OverviewPageRenderer());
                 }
             }, reportDir);
+            fingerprints.store();
+            LOG.info("Skipped {} unchanged test report pages.", skipped.get());
         } catch (Exception e) {
             throw new GradleException(String.format("Could not generate test report to '%s'.", reportDir), e);
         }
     }
+
+    private void renderClassPages(List<ClassTestResults> classes, final TestResultsProvider resultsProvider, final ReportFingerprints fingerprints,
+                                  final AtomicInteger skipped, final HtmlReportBuilder output) {
+        List<Runnable> classPages = new ArrayList<Runnable>();
+        for (final ClassTestResults classResults : classes) {
+            classPages.add(new Runnable() {
+                public void run() {
+                    if (fingerprints.classPageChanged(classResults, resultsProvider)) {
+                        output.renderHtmlPage(classResults.getBaseUrl(), classResults, new ClassPageRenderer(resultsProvider));
+                    } else {
+                        skipped.incrementAndGet();
+                    }
+                }
+            });
+        }
+        workers.run("Test report class page renderer", classPages);
+        for (ClassTestResults classResults : classes) {
+            for (TestResult testResult : classResults.getTestResults()) {
+                testResult.discardFailures();
+            }
+        }
+    }
 }
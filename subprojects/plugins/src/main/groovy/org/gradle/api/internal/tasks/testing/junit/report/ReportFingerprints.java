@@ -0,0 +1,221 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit.report;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.tasks.testing.junit.result.TestFailure;
+import org.gradle.api.internal.tasks.testing.junit.result.TestResultsProvider;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.hash.HashValue;
+import org.gradle.util.GradleVersion;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The fingerprints of the pages of an HTML test report. A page whose fingerprint has not changed since the report was last generated, and which still exists,
+ * does not need to be rendered again.
+ *
+ * <p>The fingerprint of a class page covers the results and failures of the class, and the checksums of its output recorded in the output index, so
+ * that the output itself is not read. The fingerprint of a package page covers the fingerprints of its classes.</p>
+ */
+class ReportFingerprints {
+    static final String FILE_NAME = "report-fingerprints.bin";
+    private static final Logger LOGGER = Logging.getLogger(ReportFingerprints.class);
+
+    private final File reportDir;
+    private final Map<String, HashValue> previous;
+    private final Map<String, HashValue> current = new ConcurrentHashMap<String, HashValue>();
+
+    private ReportFingerprints(File reportDir, Map<String, HashValue> previous) {
+        this.reportDir = reportDir;
+        this.previous = previous;
+    }
+
+    /**
+     * Loads the fingerprints recorded when the report in the given directory was last generated.
+     */
+    static ReportFingerprints load(File reportDir) {
+        File file = new File(reportDir, FILE_NAME);
+        if (!file.isFile()) {
+            return new ReportFingerprints(reportDir, Collections.<String, HashValue>emptyMap());
+        }
+        Map<String, HashValue> fingerprints = new HashMap<String, HashValue>();
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                int count = input.readInt();
+                for (int i = 0; i < count; i++) {
+                    String page = input.readUTF();
+                    byte[] hash = new byte[input.readUnsignedByte()];
+                    input.readFully(hash);
+                    fingerprints.put(page, new HashValue(hash));
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            LOGGER.info("Could not read the test report fingerprints from {}. Rendering all pages.", file, e);
+            fingerprints.clear();
+        }
+        return new ReportFingerprints(reportDir, fingerprints);
+    }
+
+    /**
+     * Records the fingerprints of the pages which have been rendered, for use the next time the report is generated.
+     */
+    void store() {
+        File file = new File(reportDir, FILE_NAME);
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                output.writeInt(current.size());
+                for (Map.Entry<String, HashValue> entry : current.entrySet()) {
+                    byte[] hash = entry.getValue().asByteArray();
+                    output.writeUTF(entry.getKey());
+                    output.writeByte(hash.length);
+                    output.write(hash);
+                }
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Calculates the fingerprint of the given class page, and returns true when the page needs to be rendered.
+     */
+    boolean classPageChanged(ClassTestResults classResults, TestResultsProvider resultsProvider) {
+        Hasher hasher = new Hasher();
+        hasher.putString(classResults.getName());
+        for (TestResult test : classResults.getTestResults()) {
+            hasher.putString(test.getName());
+            hasher.putLong(test.getDuration());
+            hasher.putBoolean(test.isIgnored());
+            for (TestFailure failure : test.getFailures()) {
+                hasher.putString(failure.getExceptionType());
+                hasher.putString(failure.getMessage());
+                hasher.putString(failure.getStackTrace());
+            }
+        }
+        for (TestOutputEvent.Destination destination : TestOutputEvent.Destination.values()) {
+            hasher.putBoolean(resultsProvider.hasOutput(classResults.getId(), destination));
+            hasher.putLong(resultsProvider.getOutputChecksum(classResults.getId(), destination));
+        }
+        return changed(classResults.getBaseUrl(), hasher.hash());
+    }
+
+    /**
+     * Calculates the fingerprint of the given package page, and returns true when the page needs to be rendered. Must be called after the pages of all classes of the package.
+     */
+    boolean packagePageChanged(PackageTestResults packageResults) {
+        Hasher hasher = new Hasher();
+        hasher.putString(packageResults.getName());
+        for (ClassTestResults classResults : packageResults.getClasses()) {
+            hasher.putString(classResults.getName());
+            hasher.putBytes(current.get(classResults.getBaseUrl()).asByteArray());
+        }
+        return changed(packageResults.getBaseUrl(), hasher.hash());
+    }
+
+    private boolean changed(String page, HashValue fingerprint) {
+        current.put(page, fingerprint);
+        return !fingerprint.equals(previous.get(page)) || !new File(reportDir, page).isFile();
+    }
+
+    /**
+     * Accumulates a fingerprint. Characters written to this writer are added to the fingerprint.
+     */
+    private static class Hasher extends Writer {
+        private final MessageDigest digest;
+
+        Hasher() {
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+            // Pages differ between Gradle versions
+            putString(GradleVersion.current().getVersion());
+        }
+
+        void putBytes(byte[] bytes) {
+            digest.update(bytes);
+        }
+
+        void putBoolean(boolean value) {
+            digest.update((byte) (value ? 1 : 0));
+        }
+
+        void putLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                digest.update((byte) (value >>> shift));
+            }
+        }
+
+        void putString(String value) {
+            if (value == null) {
+                putLong(-1);
+                return;
+            }
+            putLong(value.length());
+            write(value, 0, value.length());
+        }
+
+        @Override
+        public void write(int c) {
+            digest.update((byte) (c >>> 8));
+            digest.update((byte) c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                write(str.charAt(i));
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        HashValue hash() {
+            return new HashValue(digest.digest());
+        }
+    }
+}
@@ -106,6 +106,20 @@ public class AggregateTestResultsProvider implements TestResultsProvider {
                 });
     }
 
+    public long getOutputChecksum(long id, TestOutputEvent.Destination destination) {
+        long checksum = 0;
+        for (DelegateProvider delegateProvider : classOutputProviders.get(id)) {
+            checksum = 31 * checksum + delegateProvider.provider.getOutputChecksum(delegateProvider.id, destination);
+        }
+        return checksum;
+    }
+
+    public void copyOutput(long id, TestOutputStore.Writer writer, long targetId, Map<Long, Long> testIds) {
+        for (DelegateProvider delegateProvider : classOutputProviders.get(id)) {
+            delegateProvider.provider.copyOutput(delegateProvider.id, writer, targetId, testIds);
+        }
+    }
+
     public void writeAllOutput(long id, TestOutputEvent.Destination destination, Writer writer) {
         for (DelegateProvider delegateProvider : classOutputProviders.get(id)) {
             delegateProvider.provider.writeAllOutput(delegateProvider.id, destination, writer);
@@ -22,7 +22,11 @@ import org.gradle.api.tasks.testing.TestOutputEvent;
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Map;
 
+/**
+ * Provides the test results stored in a results directory. The results are read from disk one test class at a time, when they are visited.
+ */
 public class BinaryResultBackedTestResultsProvider implements TestResultsProvider {
     private final TestOutputStore.Reader outputReader;
     private final TestResultSerializer resultSerializer;
@@ -36,6 +40,14 @@ public class BinaryResultBackedTestResultsProvider implements TestResultsProvide
         return outputReader.hasOutput(id, destination);
     }
 
+    public long getOutputChecksum(long id, TestOutputEvent.Destination destination) {
+        return outputReader.getOutputChecksum(id, destination);
+    }
+
+    public void copyOutput(long id, TestOutputStore.Writer writer, long targetId, Map<Long, Long> testIds) {
+        outputReader.copyOutput(id, writer, targetId, testIds);
+    }
+
     public void writeAllOutput(long id, TestOutputEvent.Destination destination, Writer writer) {
         outputReader.writeAllOutput(id, destination, writer);
     }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit.result;
+
+import org.gradle.api.Action;
+import org.gradle.internal.concurrent.CompositeStoppable;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the results and output of a {@link TestResultsProvider} to a binary results directory, for example to merge the results of several test runs
+ * into a single results directory. The classes and tests are given new ids. The output of each class is copied one message at a time, in its original order.
+ */
+public class BinaryTestResultsWriter {
+    private final File resultsDir;
+
+    public BinaryTestResultsWriter(File resultsDir) {
+        this.resultsDir = resultsDir;
+    }
+
+    public void write(final TestResultsProvider provider) {
+        final TestResultSerializer.Writer resultsWriter = new TestResultSerializer(resultsDir).writer();
+        final TestOutputStore.Writer outputWriter = new TestOutputStore(resultsDir).writer();
+        final AtomicLong idCounter = new AtomicLong(0L);
+        try {
+            provider.visitClasses(new Action<TestClassResult>() {
+                public void execute(TestClassResult classResult) {
+                    long classId = idCounter.incrementAndGet();
+                    resultsWriter.startClass(classId, classResult.getClassName(), classResult.getStartTime());
+                    Map<Long, Long> testIds = new HashMap<Long, Long>();
+                    for (TestMethodResult methodResult : classResult.getResults()) {
+                        long testId = idCounter.incrementAndGet();
+                        testIds.put(methodResult.getId(), testId);
+                        TestMethodResult copy = new TestMethodResult(testId, methodResult.getName(), methodResult.getResultType(), methodResult.getDuration(), methodResult.getEndTime());
+                        for (TestFailure failure : methodResult.getFailures()) {
+                            copy.addFailure(failure.getMessage(), failure.getStackTrace(), failure.getExceptionType());
+                        }
+                        resultsWriter.write(classResult.getClassName(), copy);
+                    }
+                    provider.copyOutput(classResult.getId(), outputWriter, classId, testIds);
+                }
+            });
+        } finally {
+            CompositeStoppable.stoppable(outputWriter, resultsWriter).stop();
+        }
+    }
+}
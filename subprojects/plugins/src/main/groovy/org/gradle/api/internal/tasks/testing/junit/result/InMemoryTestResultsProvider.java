@@ -21,6 +21,7 @@ import org.gradle.api.tasks.testing.TestOutputEvent;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Map;
 
 public class InMemoryTestResultsProvider implements TestResultsProvider {
     private final Iterable<TestClassResult> results;
@@ -35,6 +36,14 @@ public class InMemoryTestResultsProvider implements TestResultsProvider {
         return outputReader.hasOutput(id, destination);
     }
 
+    public long getOutputChecksum(long id, TestOutputEvent.Destination destination) {
+        return outputReader.getOutputChecksum(id, destination);
+    }
+
+    public void copyOutput(long id, TestOutputStore.Writer writer, long targetId, Map<Long, Long> testIds) {
+        outputReader.copyOutput(id, writer, targetId, testIds);
+    }
+
     public void writeAllOutput(long id, TestOutputEvent.Destination destination, Writer writer) {
         outputReader.writeAllOutput(id, destination, writer);
     }
@@ -18,27 +18,43 @@ package org.gradle.api.internal.tasks.testing.junit.result;
 
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
-import com.google.common.collect.ImmutableMap;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.tasks.testing.TestOutputEvent;
-import org.gradle.internal.io.RandomAccessFileInputStream;
 import org.gradle.internal.UncheckedException;
-import org.gradle.messaging.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.io.MappedByteBuffers;
 import org.gradle.messaging.serialize.kryo.KryoBackedEncoder;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.CRC32;
 
 public class TestOutputStore {
+    static final int DEFAULT_MAPPED_REGION_SIZE = 64 * 1024 * 1024;
 
     private final File resultsDir;
     private final Charset messageStorageCharset;
+    private final int mappedRegionSize;
 
     public TestOutputStore(File resultsDir) {
+        this(resultsDir, DEFAULT_MAPPED_REGION_SIZE);
+    }
+
+    TestOutputStore(File resultsDir, int mappedRegionSize) {
         this.resultsDir = resultsDir;
         this.messageStorageCharset = Charset.forName("UTF-8");
+        this.mappedRegionSize = mappedRegionSize;
     }
 
     File getOutputsFile() {
@@ -69,10 +85,19 @@ public class TestOutputStore {
         Region stdErrRegion = new Region();
     }
 
+    /**
+     * Checksums of all output of a test class, in the order it was written.
+     */
+    private static class ClassChecksums {
+        final CRC32 stdOut = new CRC32();
+        final CRC32 stdErr = new CRC32();
+    }
+
     public class Writer implements Closeable {
         private final KryoBackedEncoder output;
 
         private final Map<Long, Map<Long, TestCaseRegion>> index = new LinkedHashMap<Long, Map<Long, TestCaseRegion>>();
+        private final Map<Long, ClassChecksums> checksums = new LinkedHashMap<Long, ClassChecksums>();
 
         public Writer() {
             try {
@@ -93,20 +118,34 @@ public class TestOutputStore {
 
         public void onOutput(long classId, long testId, TestOutputEvent outputEvent) {
             boolean stdout = outputEvent.getDestination() == TestOutputEvent.Destination.StdOut;
-            mark(classId, testId, stdout);
-
-            output.writeBoolean(stdout);
-            output.writeSmallLong(classId);
-            output.writeSmallLong(testId);
-
             byte[] bytes;
             try {
                 bytes = outputEvent.getMessage().getBytes(messageStorageCharset.name());
             } catch (UnsupportedEncodingException e) {
                 throw UncheckedException.throwAsUncheckedException(e);
             }
+            write(classId, testId, stdout, bytes);
+        }
+
+        private void write(long classId, long testId, boolean stdout, byte[] bytes) {
+            mark(classId, testId, stdout);
+
+            output.writeBoolean(stdout);
+            output.writeSmallLong(classId);
+            output.writeSmallLong(testId);
             output.writeSmallInt(bytes.length);
             output.writeBytes(bytes, 0, bytes.length);
+
+            ClassChecksums classChecksums = checksums.get(classId);
+            if (classChecksums == null) {
+                classChecksums = new ClassChecksums();
+                checksums.put(classId, classChecksums);
+            }
+            CRC32 checksum = stdout ? classChecksums.stdOut : classChecksums.stdErr;
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                checksum.update((int) (testId >>> shift));
+            }
+            checksum.update(bytes, 0, bytes.length);
         }
 
         private void mark(long classId, long testId, boolean isStdout) {
@@ -124,7 +163,7 @@ public class TestOutputStore {
 
             Region streamRegion = isStdout ? region.stdOutRegion : region.stdErrRegion;
 
-            int total = output.getWritePosition();
+            long total = output.getWritePosition();
             if (streamRegion.start < 0) {
                 streamRegion.start = total;
             }
@@ -159,6 +198,10 @@ public class TestOutputStore {
                         indexOutput.writeLong(region.stdErrRegion.start);
                         indexOutput.writeLong(region.stdErrRegion.stop);
                     }
+
+                    ClassChecksums classChecksums = checksums.get(classId);
+                    indexOutput.writeLong(classChecksums.stdOut.getValue());
+                    indexOutput.writeLong(classChecksums.stdErr.getValue());
                 }
             } finally {
                 indexOutput.close();
@@ -170,55 +213,138 @@ public class TestOutputStore {
         return new Writer();
     }
 
+    /**
+     * The output regions of each test class and of each test within a class, held in sorted arrays rather than a map per class. Each region is held
+     * as 4 entries: the positions of the first and last stdout messages, then those of the first and last stderr messages, or -1 when there are none.
+     * The checksums of each class are held as 2 entries: the checksum of its stdout messages, then that of its stderr messages.
+     */
     private static class Index {
-        final ImmutableMap<Long, Index> children;
-        final Region stdOut;
-        final Region stdErr;
-
-        private Index(Region stdOut, Region stdErr) {
-            this.children = ImmutableMap.of();
-            this.stdOut = stdOut;
-            this.stdErr = stdErr;
-        }
-
-        private Index(ImmutableMap<Long, Index> children, Region stdOut, Region stdErr) {
-            this.children = children;
-            this.stdOut = stdOut;
-            this.stdErr = stdErr;
+        private static final int REGION_SIZE = 4;
+        private static final Index EMPTY = new Index(new long[0], new long[0], new long[0], new int[1], new long[0], new long[0]);
+
+        // Sorted by id
+        final long[] classIds;
+        final long[] classRegions;
+        final long[] classChecksums;
+        // The tests of class i are testIds[testOffsets[i]..testOffsets[i + 1]], sorted by id
+        final int[] testOffsets;
+        final long[] testIds;
+        final long[] testRegions;
+
+        private Index(long[] classIds, long[] classRegions, long[] classChecksums, int[] testOffsets, long[] testIds, long[] testRegions) {
+            this.classIds = classIds;
+            this.classRegions = classRegions;
+            this.classChecksums = classChecksums;
+            this.testOffsets = testOffsets;
+            this.testIds = testIds;
+            this.testRegions = testRegions;
         }
-    }
-
-    private static class IndexBuilder {
-        final Region stdOut = new Region();
-        final Region stdErr = new Region();
-
-        private final ImmutableMap.Builder<Long, Index> children = ImmutableMap.builder();
 
-        void add(long key, Index index) {
-            if (stdOut.start < 0) {
-                stdOut.start = index.stdOut.start;
-            }
-            if (stdErr.start < 0) {
-                stdErr.start = index.stdErr.start;
+        static Index read(Input input) {
+            int numClasses = input.readInt(true);
+            final long[] fileClassIds = new long[numClasses];
+            long[][] fileTestIds = new long[numClasses][];
+            long[][] fileTestRegions = new long[numClasses][];
+            long[] fileClassChecksums = new long[numClasses * 2];
+            int numTests = 0;
+            for (int classCounter = 0; classCounter < numClasses; ++classCounter) {
+                fileClassIds[classCounter] = input.readLong(true);
+                int numEntries = input.readInt(true);
+                long[] ids = new long[numEntries];
+                long[] regions = new long[numEntries * REGION_SIZE];
+                for (int entryCounter = 0; entryCounter < numEntries; ++entryCounter) {
+                    ids[entryCounter] = input.readLong(true);
+                    for (int i = 0; i < REGION_SIZE; i++) {
+                        regions[entryCounter * REGION_SIZE + i] = input.readLong();
+                    }
+                }
+                fileTestIds[classCounter] = ids;
+                fileTestRegions[classCounter] = regions;
+                fileClassChecksums[classCounter * 2] = input.readLong();
+                fileClassChecksums[classCounter * 2 + 1] = input.readLong();
+                numTests += numEntries;
             }
-            if (index.stdOut.stop > stdOut.stop) {
-                stdOut.stop = index.stdOut.stop;
+
+            Integer[] classOrder = sortedOrder(fileClassIds);
+            long[] classIds = new long[numClasses];
+            long[] classRegions = new long[numClasses * REGION_SIZE];
+            long[] classChecksums = new long[numClasses * 2];
+            int[] testOffsets = new int[numClasses + 1];
+            long[] testIds = new long[numTests];
+            long[] testRegions = new long[numTests * REGION_SIZE];
+            int nextTest = 0;
+            for (int i = 0; i < numClasses; i++) {
+                int fileIndex = classOrder[i];
+                classIds[i] = fileClassIds[fileIndex];
+                System.arraycopy(fileClassChecksums, fileIndex * 2, classChecksums, i * 2, 2);
+                testOffsets[i] = nextTest;
+                Arrays.fill(classRegions, i * REGION_SIZE, (i + 1) * REGION_SIZE, -1);
+
+                long[] ids = fileTestIds[fileIndex];
+                long[] regions = fileTestRegions[fileIndex];
+                for (int testIndex : sortedOrder(ids)) {
+                    testIds[nextTest] = ids[testIndex];
+                    System.arraycopy(regions, testIndex * REGION_SIZE, testRegions, nextTest * REGION_SIZE, REGION_SIZE);
+                    // The region of the class spans the regions of all its tests
+                    for (int stream = 0; stream < REGION_SIZE; stream += 2) {
+                        long start = regions[testIndex * REGION_SIZE + stream];
+                        long stop = regions[testIndex * REGION_SIZE + stream + 1];
+                        int classStart = i * REGION_SIZE + stream;
+                        if (start >= 0 && (classRegions[classStart] < 0 || start < classRegions[classStart])) {
+                            classRegions[classStart] = start;
+                        }
+                        if (stop > classRegions[classStart + 1]) {
+                            classRegions[classStart + 1] = stop;
+                        }
+                    }
+                    nextTest++;
+                }
             }
-            if (index.stdErr.stop > stdErr.stop) {
-                stdErr.stop = index.stdErr.stop;
+            testOffsets[numClasses] = nextTest;
+            return new Index(classIds, classRegions, classChecksums, testOffsets, testIds, testRegions);
+        }
+
+        private static Integer[] sortedOrder(final long[] ids) {
+            Integer[] order = new Integer[ids.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
             }
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer o1, Integer o2) {
+                    long id1 = ids[o1];
+                    long id2 = ids[o2];
+                    return id1 < id2 ? -1 : id1 == id2 ? 0 : 1;
+                }
+            });
+            return order;
+        }
 
-            children.put(key, index);
+        int findClass(long classId) {
+            return Arrays.binarySearch(classIds, classId);
         }
 
-        Index build() {
-            return new Index(children.build(), stdOut, stdErr);
+        int findTest(int classIndex, long testId) {
+            return Arrays.binarySearch(testIds, testOffsets[classIndex], testOffsets[classIndex + 1], testId);
         }
     }
 
+    /**
+     * Reads the output of tests from the memory-mapped outputs file. The file is mapped in fixed size regions, as each region is first read. Message headers are
+     * decoded directly from the mapped regions, and messages are decoded from the mapped regions straight into the target writer, without copying them onto the
+     * heap. A message which spans two regions is read using a positioned read instead.
+     *
+     * <p>A reader can be used concurrently by multiple threads. It must not be closed while any reads are in progress.</p>
+     */
     public class Reader implements Closeable {
+        private static final int CHAR_BUFFER_SIZE = 8192;
+        // Large enough for a boolean, two longs and an int, all variable length encoded
+        private static final int MAX_HEADER_SIZE = 1 + 9 + 9 + 5;
+
         private final Index index;
         private final RandomAccessFile dataFile;
+        private final FileChannel channel;
+        private final long dataSize;
+        private final AtomicReferenceArray<MappedByteBuffer> regions;
 
         public Reader() {
             File indexFile = getIndexFile();
@@ -236,63 +362,108 @@ public class TestOutputStore {
                     throw new UncheckedIOException(e);
                 }
 
-                IndexBuilder rootBuilder = null;
                 try {
-                    int numClasses = input.readInt(true);
-                    rootBuilder = new IndexBuilder();
-
-                    for (int classCounter = 0; classCounter < numClasses; ++classCounter) {
-                        long classId = input.readLong(true);
-                        IndexBuilder classBuilder = new IndexBuilder();
-
-                        int numEntries = input.readInt(true);
-                        for (int entryCounter = 0; entryCounter < numEntries; ++entryCounter) {
-                            long testId = input.readLong(true);
-                            Region stdOut = new Region(input.readLong(), input.readLong());
-                            Region stdErr = new Region(input.readLong(), input.readLong());
-                            classBuilder.add(testId, new Index(stdOut, stdErr));
-                        }
-
-                        rootBuilder.add(classId, classBuilder.build());
-                    }
+                    index = Index.read(input);
                 } finally {
                     input.close();
                 }
 
-                index = rootBuilder.build();
-
                 try {
                     dataFile = new RandomAccessFile(getOutputsFile(), "r");
-                } catch (FileNotFoundException e) {
+                    channel = dataFile.getChannel();
+                    dataSize = channel.size();
+                } catch (IOException e) {
                     throw new UncheckedIOException(e);
                 }
+                regions = new AtomicReferenceArray<MappedByteBuffer>((int) ((dataSize + mappedRegionSize - 1) / mappedRegionSize));
             } else { // no outputs file
                 if (indexFile.exists()) {
                     throw new IllegalStateException(String.format("Test outputs data file '%s' does not exist but the index file '%s' does", outputsFile, indexFile));
                 }
 
-                index = null;
+                index = Index.EMPTY;
                 dataFile = null;
+                channel = null;
+                dataSize = 0;
+                regions = new AtomicReferenceArray<MappedByteBuffer>(0);
             }
         }
 
         public void close() throws IOException {
             if (dataFile != null) {
+                for (int i = 0; i < regions.length(); i++) {
+                    MappedByteBuffers.unmap(regions.getAndSet(i, null));
+                }
                 dataFile.close();
             }
         }
 
         public boolean hasOutput(long classId, TestOutputEvent.Destination destination) {
-            if (dataFile == null) {
+            int classIndex = index.findClass(classId);
+            if (classIndex < 0) {
                 return false;
             }
+            int stream = destination == TestOutputEvent.Destination.StdOut ? 0 : 2;
+            return index.classRegions[classIndex * Index.REGION_SIZE + stream] >= 0;
+        }
 
-            Index classIndex = index.children.get(classId);
-            if (classIndex == null) {
-                return false;
-            } else {
-                Region region = destination == TestOutputEvent.Destination.StdOut ? classIndex.stdOut : classIndex.stdErr;
-                return region.start >= 0;
+        /**
+         * Returns a checksum of all output of the given test class, taken from the index. Does not read the output itself.
+         */
+        public long getOutputChecksum(long classId, TestOutputEvent.Destination destination) {
+            int classIndex = index.findClass(classId);
+            if (classIndex < 0) {
+                return 0;
+            }
+            int stream = destination == TestOutputEvent.Destination.StdOut ? 0 : 1;
+            return index.classChecksums[classIndex * 2 + stream];
+        }
+
+        /**
+         * Copies all output of the given test class to the given writer, one message at a time and in the order it was written. The messages are copied
+         * without decoding them.
+         */
+        public void copyOutput(long classId, Writer target, long targetClassId, Map<Long, Long> testIds) {
+            int classIndex = index.findClass(classId);
+            if (classIndex < 0) {
+                return;
+            }
+
+            // The output of the class spans the regions of both streams
+            long start = -1;
+            long stop = -1;
+            for (int stream = 0; stream < Index.REGION_SIZE; stream += 2) {
+                long streamStart = index.classRegions[classIndex * Index.REGION_SIZE + stream];
+                if (streamStart >= 0 && (start < 0 || streamStart < start)) {
+                    start = streamStart;
+                }
+                stop = Math.max(stop, index.classRegions[classIndex * Index.REGION_SIZE + stream + 1]);
+            }
+            if (start < 0) {
+                return;
+            }
+
+            try {
+                long pos = start;
+                while (pos <= stop) {
+                    ByteBuffer header = slice(pos, (int) Math.min(MAX_HEADER_SIZE, dataSize - pos));
+                    int headerStart = header.position();
+                    boolean readStdout = header.get() != 0;
+                    long readClassId = readVarLong(header);
+                    long readTestId = readVarLong(header);
+                    int readLength = (int) readVarLong(header);
+                    pos += header.position() - headerStart;
+
+                    Long targetTestId = readTestId == 0 ? Long.valueOf(0) : testIds.get(readTestId);
+                    if (readClassId == classId && targetTestId != null) {
+                        byte[] bytes = new byte[readLength];
+                        slice(pos, readLength).get(bytes);
+                        target.write(targetClassId, targetTestId, readStdout, bytes);
+                    }
+                    pos += readLength;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
 
@@ -309,23 +480,28 @@ public class TestOutputStore {
         }
 
         private void doRead(long classId, long testId, boolean allClassOutput, TestOutputEvent.Destination destination, java.io.Writer writer) {
-            if (dataFile == null) {
-                return;
-            }
-
-            Index targetIndex = index.children.get(classId);
-            if (targetIndex != null && testId != 0) {
-                targetIndex = targetIndex.children.get(testId);
-            }
-
-            if (targetIndex == null) {
+            int classIndex = index.findClass(classId);
+            if (classIndex < 0) {
                 return;
             }
 
             boolean stdout = destination == TestOutputEvent.Destination.StdOut;
-            Region region = stdout ? targetIndex.stdOut : targetIndex.stdErr;
+            int stream = stdout ? 0 : 2;
+            long start;
+            long stop;
+            if (testId == 0) {
+                start = index.classRegions[classIndex * Index.REGION_SIZE + stream];
+                stop = index.classRegions[classIndex * Index.REGION_SIZE + stream + 1];
+            } else {
+                int testIndex = index.findTest(classIndex, testId);
+                if (testIndex < 0) {
+                    return;
+                }
+                start = index.testRegions[testIndex * Index.REGION_SIZE + stream];
+                stop = index.testRegions[testIndex * Index.REGION_SIZE + stream + 1];
+            }
 
-            if (region.start < 0) {
+            if (start < 0) {
                 return;
             }
 
@@ -333,51 +509,105 @@ public class TestOutputStore {
             boolean ignoreTestLevel = !allClassOutput && testId == 0;
 
             try {
-                dataFile.seek(region.start);
-                long maxPos = region.stop - region.start;
-                KryoBackedDecoder decoder = new KryoBackedDecoder(new RandomAccessFileInputStream(dataFile));
-                while (decoder.getReadPosition() <= maxPos) {
-                    boolean readStdout = decoder.readBoolean();
-                    long readClassId = decoder.readSmallLong();
-                    long readTestId = decoder.readSmallLong();
-                    int readLength = decoder.readSmallInt();
+                CharsetDecoder messageDecoder = messageStorageCharset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                CharBuffer messageChars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+                long pos = start;
+                while (pos <= stop) {
+                    ByteBuffer header = slice(pos, (int) Math.min(MAX_HEADER_SIZE, dataSize - pos));
+                    int headerStart = header.position();
+                    boolean readStdout = header.get() != 0;
+                    long readClassId = readVarLong(header);
+                    long readTestId = readVarLong(header);
+                    int readLength = (int) readVarLong(header);
+                    pos += header.position() - headerStart;
 
                     boolean isClassLevel = readTestId == 0;
+                    boolean skip = stdout != readStdout || classId != readClassId
+                            || (ignoreClassLevel && isClassLevel)
+                            || (ignoreTestLevel && !isClassLevel)
+                            || (testId != 0 && testId != readTestId);
 
-                    if (stdout != readStdout || classId != readClassId) {
-                        decoder.skipBytes(readLength);
-                        continue;
+                    if (!skip) {
+                        writeMessage(slice(pos, readLength), messageDecoder, messageChars, writer);
                     }
+                    pos += readLength;
+                }
+            } catch (IOException e1) {
+                throw new UncheckedIOException(e1);
+            }
+        }
 
-                    if (ignoreClassLevel && isClassLevel) {
-                        decoder.skipBytes(readLength);
-                        continue;
-                    }
+        /**
+         * Decodes a variable length value, as written by {@link KryoBackedEncoder#writeSmallLong(long)} and {@link KryoBackedEncoder#writeSmallInt(int)}.
+         */
+        private long readVarLong(ByteBuffer buffer) {
+            long result = 0;
+            for (int shift = 0; shift < 56; shift += 7) {
+                int b = buffer.get();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            // The ninth byte holds 8 bits
+            return result | (long) (buffer.get() & 0xFF) << 56;
+        }
 
-                    if (ignoreTestLevel && !isClassLevel) {
-                        decoder.skipBytes(readLength);
-                        continue;
-                    }
+        private void writeMessage(ByteBuffer bytes, CharsetDecoder messageDecoder, CharBuffer messageChars, java.io.Writer writer) throws IOException {
+            messageDecoder.reset();
+            while (true) {
+                CoderResult result = messageDecoder.decode(bytes, messageChars, true);
+                flush(messageChars, writer);
+                if (result.isUnderflow()) {
+                    break;
+                }
+            }
+            while (messageDecoder.flush(messageChars).isOverflow()) {
+                flush(messageChars, writer);
+            }
+            flush(messageChars, writer);
+        }
 
-                    if (testId == 0 || testId == readTestId) {
-                        byte[] stringBytes = new byte[readLength];
-                        decoder.readBytes(stringBytes);
-                        String message;
-                        try {
-                            message = new String(stringBytes, messageStorageCharset.name());
-                        } catch (UnsupportedEncodingException e) {
-                            // shouldn't happen
-                            throw UncheckedException.throwAsUncheckedException(e);
-                        }
+        private void flush(CharBuffer chars, java.io.Writer writer) throws IOException {
+            chars.flip();
+            writer.write(chars.array(), 0, chars.limit());
+            chars.clear();
+        }
 
-                        writer.write(message);
-                    } else {
-                        decoder.skipBytes(readLength);
+        /**
+         * Returns a buffer containing the given range of the outputs file, positioned at the start of the range. Uses a mapped region when the range fits
+         * within a single region, otherwise reads the range onto the heap.
+         */
+        private ByteBuffer slice(long pos, int length) throws IOException {
+            int regionIndex = (int) (pos / mappedRegionSize);
+            long regionStart = (long) regionIndex * mappedRegionSize;
+            if (pos + length <= regionStart + mappedRegionSize) {
+                MappedByteBuffer region = regions.get(regionIndex);
+                if (region == null) {
+                    long mappedLength = Math.min(mappedRegionSize, dataSize - regionStart);
+                    region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, mappedLength);
+                    if (!regions.compareAndSet(regionIndex, null, region)) {
+                        // Mapped concurrently by another thread
+                        MappedByteBuffers.unmap(region);
+                        region = regions.get(regionIndex);
                     }
                 }
-            } catch (IOException e1) {
-                throw new UncheckedIOException(e1);
+                ByteBuffer buffer = region.duplicate();
+                int offset = (int) (pos - regionStart);
+                buffer.position(offset);
+                buffer.limit(offset + length);
+                return buffer;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, pos + buffer.position()) < 0) {
+                    throw new EOFException();
+                }
             }
+            buffer.flip();
+            return buffer;
         }
     }
 
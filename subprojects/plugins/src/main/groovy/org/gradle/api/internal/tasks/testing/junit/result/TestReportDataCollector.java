@@ -25,17 +25,18 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Collects the test results into memory and spools the test output to file during execution (to avoid holding it all in memory).
+ * Spools the test results and the test output to file during execution (to avoid holding them all in memory). Only the results of the tests which are
+ * currently executing are held in memory.
  */
 public class TestReportDataCollector implements TestListener, TestOutputListener {
 
-    private final Map<String, TestClassResult> results;
+    private final TestResultSerializer.Writer resultsWriter;
     private final TestOutputStore.Writer outputWriter;
     private final Map<TestDescriptor, TestMethodResult> currentTestMethods = new HashMap<TestDescriptor, TestMethodResult>();
     private long internalIdCounter = 1;
 
-    public TestReportDataCollector(Map<String, TestClassResult> results, TestOutputStore.Writer outputWriter) {
-        this.results = results;
+    public TestReportDataCollector(TestResultSerializer.Writer resultsWriter, TestOutputStore.Writer outputWriter) {
+        this.resultsWriter = resultsWriter;
         this.outputWriter = outputWriter;
     }
 
@@ -51,9 +52,8 @@ public class TestReportDataCollector implements TestListener, TestOutputListener
                 methodResult.addFailure(failureMessage(throwable), stackTrace(throwable), exceptionClassName(throwable));
             }
             methodResult.completed(result);
-            TestClassResult classResult = new TestClassResult(internalIdCounter++, suite.getName(), result.getStartTime());
-            classResult.add(methodResult);
-            results.put(suite.getName(), classResult);
+            resultsWriter.startClass(internalIdCounter++, suite.getName(), result.getStartTime());
+            resultsWriter.write(suite.getName(), methodResult);
         }
     }
 
@@ -68,15 +68,13 @@ public class TestReportDataCollector implements TestListener, TestOutputListener
         for (Throwable throwable : result.getExceptions()) {
             methodResult.addFailure(failureMessage(throwable), stackTrace(throwable), exceptionClassName(throwable));
         }
-        TestClassResult classResult = results.get(className);
-        if (classResult == null) {
-            classResult = new TestClassResult(internalIdCounter++, className, result.getStartTime());
-            results.put(className, classResult);
-        } else if (classResult.getStartTime() == 0) {
+        if (resultsWriter.getClassId(className) == null) {
+            resultsWriter.startClass(internalIdCounter++, className, result.getStartTime());
+        } else {
             //class results may be created earlier, where we don't yet have access to the start time
-            classResult.setStartTime(result.getStartTime());
+            resultsWriter.updateStartTime(className, result.getStartTime());
         }
-        classResult.add(methodResult);
+        resultsWriter.write(className, methodResult);
     }
 
     private String failureMessage(Throwable throwable) {
@@ -120,20 +118,20 @@ public class TestReportDataCollector implements TestListener, TestOutputListener
             //In short, the TestNG support could be better. See also TestNGOutputEventsIntegrationTest
             return;
         }
-        TestClassResult classResult = results.get(className);
-        if (classResult == null) {
+        Long classId = resultsWriter.getClassId(className);
+        if (classId == null) {
             //it's possible that we receive an output for a suite here
             //in this case we will create the test result for a suite that normally would not be created
             //feels like this scenario should modelled more explicitly
-            classResult = new TestClassResult(internalIdCounter++, className, 0);
-            results.put(className, classResult);
+            classId = internalIdCounter++;
+            resultsWriter.startClass(classId, className, 0);
         }
 
         TestMethodResult methodResult = currentTestMethods.get(testDescriptor);
         if (methodResult == null) {
-            outputWriter.onOutput(classResult.getId(), outputEvent);
+            outputWriter.onOutput(classId, outputEvent);
         } else {
-            outputWriter.onOutput(classResult.getId(), methodResult.getId(), outputEvent);
+            outputWriter.onOutput(classId, methodResult.getId(), outputEvent);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit.result;
+
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the files of a test report using a bounded pool of workers. The calling thread acts as one of the workers.
+ */
+public class TestReportWorkers {
+    /**
+     * The number of threads to use to generate test reports. 0 generates reports serially, -1 uses one thread per available processor. Defaults to 0.
+     */
+    public static final String THREADS_PROPERTY = "org.gradle.test.report.threads";
+
+    private static final TestReportWorkers SERIAL = new TestReportWorkers(null, 1);
+
+    private final ExecutorFactory executorFactory;
+    private final int workerCount;
+
+    public TestReportWorkers(ExecutorFactory executorFactory, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Not a valid number of report workers: " + workerCount);
+        }
+        this.executorFactory = executorFactory;
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Creates the workers to use, as configured by the {@value #THREADS_PROPERTY} system property.
+     */
+    public static TestReportWorkers create(ExecutorFactory executorFactory) {
+        int threads = Integer.getInteger(THREADS_PROPERTY, 0);
+        if (threads < 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        return threads <= 1 ? SERIAL : new TestReportWorkers(executorFactory, threads);
+    }
+
+    /**
+     * Returns workers that run all work on the calling thread.
+     */
+    public static TestReportWorkers serial() {
+        return SERIAL;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Runs the given work items, in no particular order. Fails with the first failure of any item.
+     */
+    public void run(String displayName, final List<? extends Runnable> work) {
+        final AtomicInteger nextIndex = new AtomicInteger();
+        Runnable worker = new Runnable() {
+            public void run() {
+                while (true) {
+                    int index = nextIndex.getAndIncrement();
+                    if (index >= work.size()) {
+                        return;
+                    }
+                    work.get(index).run();
+                }
+            }
+        };
+
+        int workers = Math.min(workerCount, work.size());
+        if (workers <= 1) {
+            worker.run();
+        } else {
+            StoppableExecutor executor = executorFactory.create(displayName);
+            try {
+                for (int i = 1; i < workers; i++) {
+                    executor.execute(worker);
+                }
+                worker.run();
+            } finally {
+                executor.stop();
+            }
+        }
+    }
+}
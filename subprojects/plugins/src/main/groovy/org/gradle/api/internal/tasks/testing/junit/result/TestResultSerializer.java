@@ -22,58 +22,177 @@ import org.gradle.api.tasks.testing.TestResult;
 import org.gradle.internal.UncheckedException;
 import org.gradle.messaging.serialize.Decoder;
 import org.gradle.messaging.serialize.Encoder;
-import org.gradle.messaging.serialize.FlushableEncoder;
 import org.gradle.messaging.serialize.kryo.KryoBackedDecoder;
 import org.gradle.messaging.serialize.kryo.KryoBackedEncoder;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Stores the test results in two files. The results of each test are appended to the results file as soon as the test completes, in the order the tests
+ * complete. The index file lists the test classes, and for each class its duration, whether it failed, and the positions of the results of its tests in the
+ * results file. Only the index is held in memory while writing, and only the results of a single class while reading.
+ */
 public class TestResultSerializer {
-    private static final int RESULT_VERSION = 3;
+    private static final int RESULT_VERSION = 6;
+    // Gaps of up to this size between the results of a class are skipped rather than seeked over
+    private static final int READ_BUFFER_SIZE = 4096;
 
     private final File resultsFile;
+    private final File indexFile;
 
     public TestResultSerializer(File resultsDir) {
         this.resultsFile = new File(resultsDir, "results.bin");
+        this.indexFile = new File(resultsDir, resultsFile.getName() + ".idx");
+    }
+
+    public Writer writer() {
+        return new Writer();
     }
 
     public void write(Collection<TestClassResult> results) {
+        Writer writer = writer();
         try {
-            OutputStream outputStream = new FileOutputStream(resultsFile);
-            try {
-                if (!results.isEmpty()) { // only write if we have results, otherwise truncate
-                    FlushableEncoder encoder = new KryoBackedEncoder(outputStream);
-                    encoder.writeSmallInt(RESULT_VERSION);
-                    write(results, encoder);
-                    encoder.flush();
+            for (TestClassResult classResult : results) {
+                writer.startClass(classResult.getId(), classResult.getClassName(), classResult.getStartTime());
+                for (TestMethodResult methodResult : classResult.getResults()) {
+                    writer.write(classResult.getClassName(), methodResult);
                 }
-            } finally {
-                outputStream.close();
             }
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+        } finally {
+            writer.close();
         }
     }
 
-    private void write(Collection<TestClassResult> results, Encoder encoder) throws IOException {
-        encoder.writeSmallInt(results.size());
-        for (TestClassResult result : results) {
-            write(result, encoder);
+    private static class ClassEntry {
+        final long id;
+        final String className;
+        long startTime;
+        long endTime;
+        boolean failed;
+        long[] positions = new long[4];
+        int count;
+
+        ClassEntry(long id, String className, long startTime) {
+            this.id = id;
+            this.className = className;
+            this.startTime = startTime;
+        }
+
+        void add(long position) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = position;
+        }
+
+        long getDuration() {
+            return Math.max(endTime, startTime) - startTime;
         }
     }
 
-    private void write(TestClassResult classResult, Encoder encoder) throws IOException {
-        encoder.writeSmallLong(classResult.getId());
-        encoder.writeString(classResult.getClassName());
-        encoder.writeLong(classResult.getStartTime());
-        encoder.writeSmallInt(classResult.getResults().size());
-        for (TestMethodResult methodResult : classResult.getResults()) {
-            write(methodResult, encoder);
+    /**
+     * Appends test results to the results file as they are received. Not thread-safe.
+     */
+    public class Writer implements Closeable {
+        private final KryoBackedEncoder encoder;
+        private final Map<String, ClassEntry> classes = new LinkedHashMap<String, ClassEntry>();
+
+        private Writer() {
+            try {
+                encoder = new KryoBackedEncoder(new FileOutputStream(resultsFile));
+            } catch (FileNotFoundException e) {
+                throw new UncheckedIOException(e);
+            }
+            encoder.writeSmallInt(RESULT_VERSION);
+        }
+
+        /**
+         * Returns the id of the given test class, or null when the class has not been started.
+         */
+        public Long getClassId(String className) {
+            ClassEntry entry = classes.get(className);
+            return entry == null ? null : entry.id;
+        }
+
+        /**
+         * Starts the results of the given test class. Replaces any results previously written for a class with the same name.
+         */
+        public void startClass(long id, String className, long startTime) {
+            classes.remove(className);
+            classes.put(className, new ClassEntry(id, className, startTime));
+        }
+
+        /**
+         * Sets the start time of the given test class, when the class was started without one.
+         */
+        public void updateStartTime(String className, long startTime) {
+            ClassEntry entry = classes.get(className);
+            if (entry.startTime == 0) {
+                entry.startTime = startTime;
+            }
+        }
+
+        /**
+         * Writes the result of a test of the given class, which must have been started.
+         */
+        public void write(String className, TestMethodResult methodResult) {
+            ClassEntry entry = classes.get(className);
+            entry.add(encoder.getWritePosition());
+            entry.endTime = Math.max(entry.endTime, methodResult.getEndTime());
+            entry.failed |= methodResult.getResultType() == TestResult.ResultType.FAILURE;
+            try {
+                writeMethodResult(methodResult, encoder);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public void close() {
+            encoder.close();
+            writeIndex();
+        }
+
+        private void writeIndex() {
+            try {
+                OutputStream outputStream = new FileOutputStream(indexFile);
+                try {
+                    if (!classes.isEmpty()) { // only write if we have results, otherwise truncate
+                        KryoBackedEncoder indexEncoder = new KryoBackedEncoder(outputStream);
+                        indexEncoder.writeSmallInt(RESULT_VERSION);
+                        indexEncoder.writeSmallInt(classes.size());
+                        for (ClassEntry entry : classes.values()) {
+                            indexEncoder.writeSmallLong(entry.id);
+                            indexEncoder.writeString(entry.className);
+                            indexEncoder.writeLong(entry.startTime);
+                            indexEncoder.writeSmallLong(entry.getDuration());
+                            indexEncoder.writeBoolean(entry.failed);
+                            indexEncoder.writeSmallInt(entry.count);
+                            long previous = 0;
+                            for (int i = 0; i < entry.count; i++) {
+                                // Positions increase within a class, so store the difference to the previous one
+                                indexEncoder.writeSmallLong(entry.positions[i] - previous);
+                                previous = entry.positions[i];
+                            }
+                        }
+                        indexEncoder.flush();
+                    }
+                } finally {
+                    outputStream.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
     }
 
-    private void write(TestMethodResult methodResult, Encoder encoder) throws IOException {
+    private static void writeMethodResult(TestMethodResult methodResult, Encoder encoder) throws IOException {
         encoder.writeSmallLong(methodResult.getId());
         encoder.writeString(methodResult.getName());
         encoder.writeSmallInt(methodResult.getResultType().ordinal());
@@ -92,16 +211,54 @@ public class TestResultSerializer {
             return;
         }
         try {
-            InputStream inputStream = new FileInputStream(resultsFile);
+            InputStream indexStream = new FileInputStream(indexFile);
+            try {
+                Decoder indexDecoder = new KryoBackedDecoder(indexStream);
+                checkVersion(indexDecoder, indexFile);
+                RandomAccessFile results = new RandomAccessFile(resultsFile, "r");
+                try {
+                    MethodResultReader methodReader = new MethodResultReader(results.getChannel());
+                    checkVersion(methodReader.decoderAt(0), resultsFile);
+                    readResults(indexDecoder, methodReader, visitor);
+                } finally {
+                    results.close();
+                }
+            } finally {
+                indexStream.close();
+            }
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    /**
+     * Reads the duration in milliseconds of each test class and the test classes which failed. Reads only the index, not the results of the tests.
+     */
+    public void readClassSummaries(Map<String, Long> durations, Set<String> failedClasses) {
+        if (!isHasResults()) {
+            return;
+        }
+        try {
+            InputStream indexStream = new FileInputStream(indexFile);
             try {
-                Decoder decoder = new KryoBackedDecoder(inputStream);
-                int version = decoder.readSmallInt();
-                if (version != RESULT_VERSION) {
-                    throw new IllegalArgumentException(String.format("Unexpected result file version %d found in %s.", version, resultsFile));
+                Decoder indexDecoder = new KryoBackedDecoder(indexStream);
+                checkVersion(indexDecoder, indexFile);
+                int classCount = indexDecoder.readSmallInt();
+                for (int i = 0; i < classCount; i++) {
+                    indexDecoder.readSmallLong();
+                    String className = indexDecoder.readString();
+                    indexDecoder.readLong();
+                    durations.put(className, indexDecoder.readSmallLong());
+                    if (indexDecoder.readBoolean()) {
+                        failedClasses.add(className);
+                    }
+                    int testMethodCount = indexDecoder.readSmallInt();
+                    for (int j = 0; j < testMethodCount; j++) {
+                        indexDecoder.readSmallLong();
+                    }
                 }
-                readResults(decoder, visitor);
             } finally {
-                inputStream.close();
+                indexStream.close();
             }
         } catch (Exception e) {
             throw UncheckedException.throwAsUncheckedException(e);
@@ -109,31 +266,37 @@ public class TestResultSerializer {
     }
 
     public boolean isHasResults() {
-        return resultsFile.exists() && resultsFile.length() > 0;
+        return indexFile.exists() && indexFile.length() > 0;
     }
 
-    private void readResults(Decoder decoder, Action<? super TestClassResult> visitor) throws ClassNotFoundException, IOException {
-        int classCount = decoder.readSmallInt();
-        for (int i = 0; i < classCount; i++) {
-            TestClassResult classResult = readClassResult(decoder);
-            visitor.execute(classResult);
+    private static void checkVersion(Decoder decoder, File file) throws IOException {
+        int version = decoder.readSmallInt();
+        if (version != RESULT_VERSION) {
+            throw new IllegalArgumentException(String.format("Unexpected result file version %d found in %s.", version, file));
         }
     }
 
-    private TestClassResult readClassResult(Decoder decoder) throws IOException, ClassNotFoundException {
-        long id = decoder.readSmallLong();
-        String className = decoder.readString();
-        long startTime = decoder.readLong();
-        TestClassResult result = new TestClassResult(id, className, startTime);
-        int testMethodCount = decoder.readSmallInt();
-        for (int i = 0; i < testMethodCount; i++) {
-            TestMethodResult methodResult = readMethodResult(decoder);
-            result.add(methodResult);
-        }
-        return result;
+    private void readResults(Decoder indexDecoder, MethodResultReader methodReader, Action<? super TestClassResult> visitor) throws IOException {
+        int classCount = indexDecoder.readSmallInt();
+        for (int i = 0; i < classCount; i++) {
+            long id = indexDecoder.readSmallLong();
+            String className = indexDecoder.readString();
+            long startTime = indexDecoder.readLong();
+            TestClassResult classResult = new TestClassResult(id, className, startTime);
+            // The duration and outcome are derived from the results of the tests
+            indexDecoder.readSmallLong();
+            indexDecoder.readBoolean();
+            int testMethodCount = indexDecoder.readSmallInt();
+            long position = 0;
+            for (int j = 0; j < testMethodCount; j++) {
+                position += indexDecoder.readSmallLong();
+                classResult.add(readMethodResult(methodReader.decoderAt(position)));
+            }
+            visitor.execute(classResult);
+        }
     }
 
-    private TestMethodResult readMethodResult(Decoder decoder) throws ClassNotFoundException, IOException {
+    private static TestMethodResult readMethodResult(Decoder decoder) throws IOException {
         long id = decoder.readSmallLong();
         String name = decoder.readString();
         TestResult.ResultType resultType = TestResult.ResultType.values()[decoder.readSmallInt()];
@@ -149,4 +312,30 @@ public class TestResultSerializer {
         }
         return methodResult;
     }
+
+    /**
+     * Provides a decoder positioned at a given position of the results file. The results of a class are mostly contiguous, so reading continues with the
+     * current decoder where possible.
+     */
+    private static class MethodResultReader {
+        private final FileChannel channel;
+        private KryoBackedDecoder decoder;
+        private long decoderStart;
+
+        MethodResultReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        Decoder decoderAt(long position) throws IOException {
+            long current = decoder == null ? -1 : decoderStart + decoder.getReadPosition();
+            if (decoder != null && position >= current && position - current <= READ_BUFFER_SIZE) {
+                decoder.skipBytes(position - current);
+            } else {
+                channel.position(position);
+                decoder = new KryoBackedDecoder(Channels.newInputStream(channel), READ_BUFFER_SIZE);
+                decoderStart = position;
+            }
+            return decoder;
+        }
+    }
 }
@@ -21,6 +21,7 @@ import org.gradle.api.tasks.testing.TestOutputEvent;
 
 import java.io.Closeable;
 import java.io.Writer;
+import java.util.Map;
 
 public interface TestResultsProvider extends Closeable {
     /**
@@ -46,5 +47,17 @@ public interface TestResultsProvider extends Closeable {
 
     boolean hasOutput(long id, TestOutputEvent.Destination destination);
 
+    /**
+     * Returns a checksum of all output of the given test class, without reading the output. This method must be called only after {@link #visitClasses(org.gradle.api.Action)}.
+     */
+    long getOutputChecksum(long id, TestOutputEvent.Destination destination);
+
+    /**
+     * Copies all output of the given test class to the given writer, in the order it was written, as output of the given target class. The output of each
+     * test is copied as output of the test with the id given by the map. Output of tests missing from the map is not copied. This method must be called only
+     * after {@link #visitClasses(org.gradle.api.Action)}.
+     */
+    void copyOutput(long id, TestOutputStore.Writer writer, long targetId, Map<Long, Long> testIds);
+
     boolean isHasResults();
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.internal.tasks.testing.results.StateTrackingTestResultProcessor;
+import org.gradle.api.internal.tasks.testing.results.TestState;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+
+/**
+ * Forwards test events to the given processor, and runs the given cancel action once the given number of tests have failed. A test, class or suite counts
+ * as failed when a failure is reported for it directly, rather than for one of its children.
+ */
+public class FailFastTestResultProcessor implements TestResultProcessor {
+    private static final Logger LOGGER = Logging.getLogger(FailFastTestResultProcessor.class);
+    private final TestResultProcessor delegate;
+    private final FailureCounter counter = new FailureCounter();
+    private final int maxFailures;
+    private final Runnable cancelAction;
+    private int failureCount;
+    private boolean cancelled;
+
+    public FailFastTestResultProcessor(TestResultProcessor delegate, int maxFailures, Runnable cancelAction) {
+        this.delegate = delegate;
+        this.maxFailures = maxFailures;
+        this.cancelAction = cancelAction;
+    }
+
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        synchronized (counter) {
+            counter.started(test, event);
+        }
+        delegate.started(test, event);
+    }
+
+    public void completed(Object testId, TestCompleteEvent event) {
+        boolean cancel;
+        int failures;
+        synchronized (counter) {
+            counter.completed(testId, event);
+            failures = failureCount;
+            cancel = !cancelled && failures >= maxFailures;
+            cancelled |= cancel;
+        }
+        delegate.completed(testId, event);
+        if (cancel) {
+            LOGGER.lifecycle("{} test failures, no further test classes will be started.", failures);
+            cancelAction.run();
+        }
+    }
+
+    public void failure(Object testId, Throwable result) {
+        synchronized (counter) {
+            counter.failure(testId, result);
+        }
+        delegate.failure(testId, result);
+    }
+
+    public void output(Object testId, TestOutputEvent event) {
+        delegate.output(testId, event);
+    }
+
+    private class FailureCounter extends StateTrackingTestResultProcessor {
+        @Override
+        protected void completed(TestState state) {
+            if (!state.failures.isEmpty()) {
+                failureCount++;
+            }
+        }
+    }
+}
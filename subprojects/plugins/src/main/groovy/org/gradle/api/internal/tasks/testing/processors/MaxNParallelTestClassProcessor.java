@@ -16,65 +16,287 @@
 
 package org.gradle.api.internal.tasks.testing.processors;
 
-import org.gradle.internal.Factory;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
-import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.Factory;
+import org.gradle.internal.TimeProvider;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.StoppableExecutor;
+import org.gradle.internal.exceptions.DefaultMultiCauseException;
 import org.gradle.messaging.actor.Actor;
 import org.gradle.messaging.actor.ActorFactory;
 import org.gradle.messaging.dispatch.DispatchException;
+import org.gradle.util.Clock;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
- * processors.
+ * Manages a set of parallel TestClassProcessors. Test classes are added to a queue which is shared by all processors. Each processor takes the next test class
+ * from the queue once it has finished with its previous test class, so that no processor sits idle while there are test classes waiting to be processed.
+ *
+ * <p>Test classes that failed in the previous run are taken from the queue first, so that their results are available as early as possible. Otherwise, test
+ * classes that took longest in a previous run are taken first, so that long running test classes do not hold up the end of the run. Test classes with no
+ * recorded duration are taken after those with one, in the order they were added.</p>
+ *
+ * <p>When a processor fails, it is replaced with a new processor while there are test classes waiting, until as many processors have failed as may run in
+ * parallel. Any test classes left once every processor has given up are reported as a failure from {@link #stop()}.</p>
+ *
+ * <p>The processing can be cancelled using {@link #cancel()}, in which case no further test classes are started.</p>
+ *
+ * <p>The target processors are expected to block in {@link TestClassProcessor#processTestClass(TestClassRunInfo)} until the test class has been processed.</p>
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
+    private static final Logger LOGGER = Logging.getLogger(MaxNParallelTestClassProcessor.class);
     private final int maxProcessors;
     private final Factory<TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    private final ExecutorFactory executorFactory;
+    private final TimeProvider timeProvider;
+    private final Map<String, Long> previousDurations;
+    private final Set<String> previouslyFailed;
+    private final Lock lock = new ReentrantLock();
+    private final Condition condition = lock.newCondition();
+    private final PriorityQueue<QueuedTestClass> queue = new PriorityQueue<QueuedTestClass>();
+    private final List<ProcessorWorker> workers = new ArrayList<ProcessorWorker>();
+    private final List<Throwable> failures = new ArrayList<Throwable>();
+    private boolean allTestClassesAdded;
+    private boolean cancelled;
+    private int activeWorkers;
+    private int skippedCount;
+    private long queuedCount;
+    private long startTime;
     private TestResultProcessor resultProcessor;
-    private int pos;
-    private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
-    private List<Actor> actors = new ArrayList<Actor>();
     private Actor resultProcessorActor;
+    private StoppableExecutor executor;
+
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, ExecutorFactory executorFactory,
+                                          TimeProvider timeProvider, Map<String, Long> previousDurations) {
+        this(maxProcessors, factory, actorFactory, executorFactory, timeProvider, previousDurations, Collections.<String>emptySet());
+    }
 
-    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory) {
+    /**
+     * @param previousDurations The duration in milliseconds of each test class in a previous run, keyed by test class name.
+     * @param previouslyFailed The names of the test classes that failed in the previous run.
+     */
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, ExecutorFactory executorFactory,
+                                          TimeProvider timeProvider, Map<String, Long> previousDurations, Set<String> previouslyFailed) {
         this.maxProcessors = maxProcessors;
         this.factory = factory;
         this.actorFactory = actorFactory;
+        this.executorFactory = executorFactory;
+        this.timeProvider = timeProvider;
+        this.previousDurations = previousDurations;
+        this.previouslyFailed = previouslyFailed;
     }
 
     public void startProcessing(TestResultProcessor resultProcessor) {
         resultProcessorActor = actorFactory.createActor(resultProcessor);
         this.resultProcessor = resultProcessorActor.getProxy(TestResultProcessor.class);
+        executor = executorFactory.create("Test class dispatcher");
+        startTime = timeProvider.getCurrentTime();
     }
 
     public void processTestClass(TestClassRunInfo testClass) {
-        TestClassProcessor processor;
-        if (processors.size() < maxProcessors) {
-            processor = factory.create();
-            Actor actor = actorFactory.createActor(processor);
-            processor = actor.getProxy(TestClassProcessor.class);
-            actors.add(actor);
-            processors.add(processor);
-            processor.startProcessing(resultProcessor);
-        } else {
-            processor = processors.get(pos);
-            pos = (pos + 1) % processors.size();
+        Long duration = previousDurations.get(testClass.getTestClassName());
+        boolean failed = previouslyFailed.contains(testClass.getTestClassName());
+        lock.lock();
+        try {
+            if (cancelled) {
+                skippedCount++;
+                return;
+            }
+            queue.add(new QueuedTestClass(testClass, failed, duration, queuedCount++));
+            condition.signalAll();
+            if (activeWorkers < maxProcessors && failures.size() <= maxProcessors) {
+                ProcessorWorker worker = new ProcessorWorker(workers.size() + 1);
+                workers.add(worker);
+                activeWorkers++;
+                executor.execute(worker);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops starting test classes. Test classes which are already being processed run to completion. May be called from any thread.
+     */
+    public void cancel() {
+        lock.lock();
+        try {
+            cancelled = true;
+            skippedCount += queue.size();
+            queue.clear();
+            condition.signalAll();
+        } finally {
+            lock.unlock();
         }
-        processor.processTestClass(testClass);
     }
 
     public void stop() {
+        lock.lock();
+        try {
+            allTestClassesAdded = true;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
         try {
-            CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
+            CompositeStoppable.stoppable(executor, resultProcessorActor).stop();
         } catch (DispatchException e) {
             throw UncheckedException.throwAsUncheckedException(e.getCause());
         }
+        logUtilisation();
+        if (skippedCount > 0) {
+            LOGGER.lifecycle("Skipped {} test classes as the test run was cancelled.", skippedCount);
+        }
+        if (!queue.isEmpty()) {
+            // Every worker has given up
+            int notRun = queue.size();
+            queue.clear();
+            throw new DefaultMultiCauseException(String.format("Could not run %s test classes as all test workers failed.", notRun), failures);
+        }
+        if (failures.size() == 1) {
+            throw UncheckedException.throwAsUncheckedException(failures.get(0));
+        }
+        if (!failures.isEmpty()) {
+            throw new DefaultMultiCauseException(String.format("%s test workers failed.", failures.size()), failures);
+        }
+    }
+
+    private void logUtilisation() {
+        if (workers.isEmpty() || !LOGGER.isInfoEnabled()) {
+            return;
+        }
+        long elapsed = Math.max(timeProvider.getCurrentTime() - startTime, 1);
+        for (ProcessorWorker worker : workers) {
+            LOGGER.info("Test worker {} processed {} test classes and was busy for {} of {} ({}%).", worker.number, worker.testClassCount,
+                    Clock.prettyTime(worker.busyTime), Clock.prettyTime(elapsed), worker.busyTime * 100 / elapsed);
+        }
+    }
+
+    /**
+     * Returns the next test class to process, blocking until one is available. Returns null when there are no further test classes.
+     */
+    private TestClassRunInfo takeNext() {
+        lock.lock();
+        try {
+            while (queue.isEmpty() && !allTestClassesAdded && !cancelled) {
+                try {
+                    condition.await();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.throwAsUncheckedException(e);
+                }
+            }
+            QueuedTestClass next = queue.poll();
+            return next == null ? null : next.testClass;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the failure of a processor. Returns true if the processor should be replaced.
+     */
+    private boolean processorFailed(ProcessorWorker worker, Throwable failure) {
+        lock.lock();
+        try {
+            failures.add(failure);
+            boolean replace = !cancelled && !queue.isEmpty() && failures.size() <= maxProcessors;
+            if (replace) {
+                LOGGER.info("Test worker {} failed. Starting a replacement test processor.", worker.number);
+            }
+            return replace;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private class ProcessorWorker implements Runnable {
+        private final int number;
+        // Only written by the worker thread. Stopping the executor makes these visible to the thread which calls stop()
+        private int testClassCount;
+        private long busyTime;
+
+        public ProcessorWorker(int number) {
+            this.number = number;
+        }
+
+        public void run() {
+            try {
+                boolean replace = true;
+                while (replace) {
+                    try {
+                        process();
+                        replace = false;
+                    } catch (Throwable t) {
+                        // Either start again with a new processor, or leave the remaining test classes to the other workers
+                        replace = processorFailed(this, t);
+                    }
+                }
+            } finally {
+                lock.lock();
+                try {
+                    activeWorkers--;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        private void process() {
+            TestClassProcessor processor = factory.create();
+            processor.startProcessing(resultProcessor);
+            try {
+                TestClassRunInfo testClass;
+                while ((testClass = takeNext()) != null) {
+                    long start = timeProvider.getCurrentTime();
+                    processor.processTestClass(testClass);
+                    busyTime += timeProvider.getCurrentTime() - start;
+                    testClassCount++;
+                }
+            } finally {
+                processor.stop();
+            }
+        }
+    }
+
+    private static class QueuedTestClass implements Comparable<QueuedTestClass> {
+        private final TestClassRunInfo testClass;
+        private final boolean failed;
+        private final Long duration;
+        private final long sequence;
+
+        private QueuedTestClass(TestClassRunInfo testClass, boolean failed, Long duration, long sequence) {
+            this.testClass = testClass;
+            this.failed = failed;
+            this.duration = duration;
+            this.sequence = sequence;
+        }
+
+        public int compareTo(QueuedTestClass other) {
+            if (failed != other.failed) {
+                return failed ? -1 : 1;
+            }
+            if (duration != null && other.duration == null) {
+                return -1;
+            }
+            if (duration == null && other.duration != null) {
+                return 1;
+            }
+            if (duration != null && !duration.equals(other.duration)) {
+                return other.duration.compareTo(duration);
+            }
+            return sequence < other.sequence ? -1 : sequence > other.sequence ? 1 : 0;
+        }
     }
 }
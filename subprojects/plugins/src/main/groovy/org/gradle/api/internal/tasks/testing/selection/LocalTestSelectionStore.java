@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.selection;
+
+import org.gradle.api.internal.cache.Loader;
+import org.gradle.api.internal.cache.SingleOperationPersistentStore;
+import org.gradle.api.internal.cache.Stash;
+import org.gradle.cache.CacheRepository;
+
+//Keeps the test selection state of the given Test task
+public class LocalTestSelectionStore implements Loader<TestSelectionState>, Stash<TestSelectionState> {
+
+    private final SingleOperationPersistentStore<TestSelectionState> store;
+
+    public LocalTestSelectionStore(CacheRepository cacheRepository, Object scope) {
+        this.store = new SingleOperationPersistentStore<TestSelectionState>(cacheRepository, scope, "test selection state", new TestSelectionState.Serializer());
+    }
+
+    public void put(TestSelectionState state) {
+        store.putAndClose(state);
+    }
+
+    public TestSelectionState get() {
+        return store.getAndClose();
+    }
+}
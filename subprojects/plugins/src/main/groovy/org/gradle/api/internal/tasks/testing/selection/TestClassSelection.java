@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.selection;
+
+import java.util.Set;
+
+/**
+ * The test classes selected to run by a {@link TestClassSelector}.
+ */
+public class TestClassSelection {
+    private final Set<String> classNames;
+    private final String description;
+
+    private TestClassSelection(Set<String> classNames, String description) {
+        this.classNames = classNames;
+        this.description = description;
+    }
+
+    public static TestClassSelection all(String reason) {
+        return new TestClassSelection(null, String.format("running all test classes as %s", reason));
+    }
+
+    public static TestClassSelection of(Set<String> classNames, int changedClasses) {
+        return new TestClassSelection(classNames, String.format("running only the test classes affected by %s changed classes", changedClasses));
+    }
+
+    /**
+     * Returns true when all test classes are selected.
+     */
+    public boolean isAll() {
+        return classNames == null;
+    }
+
+    /**
+     * Returns the names of the selected classes, or null when all test classes are selected. May contain names of classes that are not test classes.
+     */
+    public Set<String> getClassNames() {
+        return classNames;
+    }
+
+    public boolean isSelected(String className) {
+        return classNames == null || classNames.contains(className);
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.selection;
+
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysis;
+import org.gradle.api.internal.tasks.compile.incremental.deps.DependentsSet;
+
+import java.util.*;
+
+/**
+ * Selects the test classes to run, by comparing the state of the previous run with the current state. A test class is selected when it, or any class it
+ * transitively depends on, has been added, changed or removed since the previous run, or when it failed in the previous run.
+ *
+ * <p>All test classes are run when there is no previous state, when the results of the previous run are not available, when the task configuration, a jar
+ * or a non-class file has changed, when a changed class is a dependency to all classes (for example, because it declares a constant), when no class has
+ * changed, or after the configured number of consecutive selective runs.</p>
+ */
+public class TestClassSelector {
+    /**
+     * Enables the selection of test classes based on the classes changed since the previous run. Defaults to false.
+     */
+    public static final String ENABLED_PROPERTY = "org.gradle.test.selection";
+
+    /**
+     * The number of consecutive selective runs after which all test classes are run again. Defaults to 10.
+     */
+    public static final String FULL_RUN_EVERY_PROPERTY = "org.gradle.test.selection.fullRunEvery";
+
+    private final int fullRunEvery;
+
+    public TestClassSelector(int fullRunEvery) {
+        this.fullRunEvery = fullRunEvery;
+    }
+
+    /**
+     * Creates a selector as configured by the {@value #FULL_RUN_EVERY_PROPERTY} system property.
+     */
+    public static TestClassSelector create() {
+        return new TestClassSelector(Integer.getInteger(FULL_RUN_EVERY_PROPERTY, 10));
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Selects the test classes to run.
+     *
+     * @param previous The state of the previous run. May be null.
+     * @param current The current state.
+     * @param previouslyFailed The names of the test classes that failed in the previous run. May be null when the results of the previous run are not available.
+     */
+    public TestClassSelection select(TestSelectionState previous, TestSelectionState current, Collection<String> previouslyFailed) {
+        if (previous == null) {
+            return TestClassSelection.all("no previous test selection state");
+        }
+        if (previouslyFailed == null) {
+            return TestClassSelection.all("the results of the previous run are not available");
+        }
+        if (!previous.getConfiguration().equals(current.getConfiguration())) {
+            return TestClassSelection.all("the task configuration has changed");
+        }
+        if (!sameHashes(previous.getFileHashes(), current.getFileHashes())) {
+            return TestClassSelection.all("a jar or resource on the test runtime classpath has changed");
+        }
+        if (previous.getSelectiveRuns() >= fullRunEvery) {
+            return TestClassSelection.all(String.format("%s consecutive selective runs", previous.getSelectiveRuns()));
+        }
+
+        Set<String> changed = changedClasses(previous.getClassHashes(), current.getClassHashes());
+        if (changed.isEmpty()) {
+            return TestClassSelection.all("no class has changed");
+        }
+
+        // Removed classes are only known to the previous analysis, and new dependencies only to the current one
+        DependentsSet currentDependents = new ClassSetAnalysis(current.getAnalysis()).getRelevantDependents(changed);
+        if (currentDependents.isDependencyToAll()) {
+            return TestClassSelection.all("a changed class is a dependency to all classes");
+        }
+        DependentsSet previousDependents = new ClassSetAnalysis(previous.getAnalysis()).getRelevantDependents(changed);
+        if (previousDependents.isDependencyToAll()) {
+            return TestClassSelection.all("a changed class is a dependency to all classes");
+        }
+
+        Set<String> selected = new HashSet<String>();
+        for (String className : changed) {
+            selected.add(className);
+            int nested = className.indexOf('$');
+            if (nested > 0) {
+                selected.add(className.substring(0, nested));
+            }
+        }
+        selected.addAll(currentDependents.getDependentClasses());
+        selected.addAll(previousDependents.getDependentClasses());
+        selected.addAll(previouslyFailed);
+        return TestClassSelection.of(selected, changed.size());
+    }
+
+    private static Set<String> changedClasses(Map<String, byte[]> previous, Map<String, byte[]> current) {
+        Set<String> changed = new HashSet<String>();
+        for (Map.Entry<String, byte[]> entry : current.entrySet()) {
+            byte[] previousHash = previous.get(entry.getKey());
+            if (previousHash == null || !Arrays.equals(previousHash, entry.getValue())) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String className : previous.keySet()) {
+            if (!current.containsKey(className)) {
+                changed.add(className);
+            }
+        }
+        return changed;
+    }
+
+    private static boolean sameHashes(Map<String, byte[]> previous, Map<String, byte[]> current) {
+        if (!previous.keySet().equals(current.keySet())) {
+            return false;
+        }
+        for (Map.Entry<String, byte[]> entry : current.entrySet()) {
+            if (!Arrays.equals(previous.get(entry.getKey()), entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.selection;
+
+import org.gradle.api.file.EmptyFileVisitor;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.internal.file.collections.DirectoryFileTree;
+import org.gradle.api.internal.hash.Hasher;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.AnalysisWorkers;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassAnalysis;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassAnalysisCache;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
+import org.gradle.internal.Factory;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Takes a snapshot of the test classes and their classpath. Each class file in a classpath directory is hashed and analysed for its class-level dependencies,
+ * in the same way as for incremental Java compilation. Jars and other files are only hashed. The test task passes a hasher which takes the hashes from
+ * the snapshot of its input files, so that files are not hashed again.
+ */
+public class TestClassesSnapshotter {
+    private final Hasher hasher;
+    private final ClassDependenciesAnalyzer analyzer;
+    private final ClassAnalysisCache analysisCache;
+    private final AnalysisWorkers workers;
+
+    public TestClassesSnapshotter(Hasher hasher, ClassDependenciesAnalyzer analyzer, ClassAnalysisCache analysisCache, AnalysisWorkers workers) {
+        this.hasher = hasher;
+        this.analyzer = analyzer;
+        this.analysisCache = analysisCache;
+        this.workers = workers;
+    }
+
+    /**
+     * Takes a snapshot of the given classpath. When a class is present in more than one directory, the first one wins.
+     */
+    public TestSelectionState snapshot(String configuration, Iterable<File> classpath) {
+        final List<String> classNames = new ArrayList<String>();
+        final List<Factory<FileAnalysis>> work = new ArrayList<Factory<FileAnalysis>>();
+        final List<String> filePaths = new ArrayList<String>();
+        final List<Factory<FileAnalysis>> fileWork = new ArrayList<Factory<FileAnalysis>>();
+        final Set<String> seenClasses = new HashSet<String>();
+
+        for (File entry : classpath) {
+            if (entry.isDirectory()) {
+                new DirectoryFileTree(entry).visit(new EmptyFileVisitor() {
+                    public void visitFile(FileVisitDetails fileDetails) {
+                        File file = fileDetails.getFile();
+                        String path = fileDetails.getPath();
+                        if (path.endsWith(".class")) {
+                            String className = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+                            if (seenClasses.add(className)) {
+                                classNames.add(className);
+                                work.add(analyse(className, file));
+                            }
+                        } else {
+                            filePaths.add(file.getAbsolutePath());
+                            fileWork.add(hash(file));
+                        }
+                    }
+                });
+            } else if (entry.isFile()) {
+                filePaths.add(entry.getAbsolutePath());
+                fileWork.add(hash(entry));
+            }
+        }
+
+        List<FileAnalysis> classAnalyses = workers.run("Test class analysis worker", work);
+        List<FileAnalysis> fileAnalyses = workers.run("Test classpath hashing worker", fileWork);
+
+        Map<String, byte[]> classHashes = new HashMap<String, byte[]>();
+        ClassDependentsAccumulator accumulator = new ClassDependentsAccumulator("");
+        for (int i = 0; i < classNames.size(); i++) {
+            String className = classNames.get(i);
+            FileAnalysis analysis = classAnalyses.get(i);
+            classHashes.put(className, analysis.hash);
+            accumulator.addClass(className, analysis.classAnalysis.isDependencyToAll(), analysis.classAnalysis.getClassDependencies());
+        }
+        Map<String, byte[]> fileHashes = new HashMap<String, byte[]>();
+        for (int i = 0; i < filePaths.size(); i++) {
+            fileHashes.put(filePaths.get(i), fileAnalyses.get(i).hash);
+        }
+        return new TestSelectionState(configuration, 0, classHashes, fileHashes, new ClassSetAnalysisData(accumulator.getDependentsMap()));
+    }
+
+    private Factory<FileAnalysis> analyse(final String className, final File classFile) {
+        return new Factory<FileAnalysis>() {
+            public FileAnalysis create() {
+                byte[] hash = hasher.hash(classFile);
+                ClassAnalysis classAnalysis = analysisCache.get(hash, new Factory<ClassAnalysis>() {
+                    public ClassAnalysis create() {
+                        return analyzer.getClassAnalysis(className, classFile);
+                    }
+                });
+                return new FileAnalysis(hash, classAnalysis);
+            }
+        };
+    }
+
+    private Factory<FileAnalysis> hash(final File file) {
+        return new Factory<FileAnalysis>() {
+            public FileAnalysis create() {
+                return new FileAnalysis(hasher.hash(file), null);
+            }
+        };
+    }
+
+    private static class FileAnalysis {
+        final byte[] hash;
+        final ClassAnalysis classAnalysis;
+
+        FileAnalysis(byte[] hash, ClassAnalysis classAnalysis) {
+            this.hash = hash;
+            this.classAnalysis = classAnalysis;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.selection;
+
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
+import org.gradle.messaging.serialize.Decoder;
+import org.gradle.messaging.serialize.Encoder;
+import org.gradle.messaging.serialize.MapSerializer;
+
+import java.util.Map;
+
+import static org.gradle.messaging.serialize.BaseSerializerFactory.BYTE_ARRAY_SERIALIZER;
+import static org.gradle.messaging.serialize.BaseSerializerFactory.STRING_SERIALIZER;
+
+/**
+ * The state of the test classes and their classpath for a run of a {@link org.gradle.api.tasks.testing.Test} task, used to select the test classes to run
+ * in the next run.
+ */
+public class TestSelectionState {
+    private final String configuration;
+    private final int selectiveRuns;
+    private final Map<String, byte[]> classHashes;
+    private final Map<String, byte[]> fileHashes;
+    private final ClassSetAnalysisData analysis;
+
+    /**
+     * @param configuration Describes the configuration of the task which affects all test classes.
+     * @param selectiveRuns The number of consecutive runs in which only some of the test classes were selected.
+     * @param classHashes The hash of each class file in a classpath directory, keyed by class name.
+     * @param fileHashes The hash of each jar and of each other file in a classpath directory, keyed by absolute path.
+     * @param analysis The class-level dependencies between the classes in the classpath directories.
+     */
+    public TestSelectionState(String configuration, int selectiveRuns, Map<String, byte[]> classHashes, Map<String, byte[]> fileHashes, ClassSetAnalysisData analysis) {
+        this.configuration = configuration;
+        this.selectiveRuns = selectiveRuns;
+        this.classHashes = classHashes;
+        this.fileHashes = fileHashes;
+        this.analysis = analysis;
+    }
+
+    public String getConfiguration() {
+        return configuration;
+    }
+
+    public int getSelectiveRuns() {
+        return selectiveRuns;
+    }
+
+    public Map<String, byte[]> getClassHashes() {
+        return classHashes;
+    }
+
+    public Map<String, byte[]> getFileHashes() {
+        return fileHashes;
+    }
+
+    public ClassSetAnalysisData getAnalysis() {
+        return analysis;
+    }
+
+    public TestSelectionState withSelectiveRuns(int selectiveRuns) {
+        return new TestSelectionState(configuration, selectiveRuns, classHashes, fileHashes, analysis);
+    }
+
+    public static class Serializer implements org.gradle.messaging.serialize.Serializer<TestSelectionState> {
+        private final MapSerializer<String, byte[]> hashesSerializer = new MapSerializer<String, byte[]>(STRING_SERIALIZER, BYTE_ARRAY_SERIALIZER);
+        private final ClassSetAnalysisData.Serializer analysisSerializer = new ClassSetAnalysisData.Serializer();
+
+        public TestSelectionState read(Decoder decoder) throws Exception {
+            String configuration = decoder.readString();
+            int selectiveRuns = decoder.readSmallInt();
+            Map<String, byte[]> classHashes = hashesSerializer.read(decoder);
+            Map<String, byte[]> fileHashes = hashesSerializer.read(decoder);
+            ClassSetAnalysisData analysis = analysisSerializer.read(decoder);
+            return new TestSelectionState(configuration, selectiveRuns, classHashes, fileHashes, analysis);
+        }
+
+        public void write(Encoder encoder, TestSelectionState value) throws Exception {
+            encoder.writeString(value.configuration);
+            encoder.writeSmallInt(value.selectiveRuns);
+            hashesSerializer.write(encoder, value.classHashes);
+            hashesSerializer.write(encoder, value.fileHashes);
+            analysisSerializer.write(encoder, value.analysis);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.sharding;
+
+import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+
+/**
+ * Forwards only the test classes assigned to the current shard to the given processor.
+ */
+public class ShardingTestClassProcessor implements TestClassProcessor {
+    private final TestClassProcessor delegate;
+    private final TestShardAssignment assignment;
+
+    public ShardingTestClassProcessor(TestClassProcessor delegate, TestShardAssignment assignment) {
+        this.delegate = delegate;
+        this.assignment = assignment;
+    }
+
+    public void startProcessing(TestResultProcessor resultProcessor) {
+        delegate.startProcessing(resultProcessor);
+    }
+
+    public void processTestClass(TestClassRunInfo testClass) {
+        if (assignment.isSelected(testClass.getTestClassName())) {
+            delegate.processTestClass(testClass);
+        }
+    }
+
+    public void stop() {
+        delegate.stop();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.sharding;
+
+import org.gradle.api.InvalidUserDataException;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One of a number of shards of the test classes of a test task, given as {@code <index>/<count>} where the index starts at 1.
+ */
+public class TestShard {
+    private static final Pattern SHARD_PATTERN = Pattern.compile("\\s*(\\d+)\\s*/\\s*(\\d+)\\s*");
+    private final int index;
+    private final int count;
+
+    public TestShard(int index, int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new InvalidUserDataException(String.format("Invalid test shard %s/%s. The shard index must be between 1 and the number of shards.", index, count));
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    public static TestShard parse(String shard) {
+        Matcher matcher = SHARD_PATTERN.matcher(shard);
+        if (!matcher.matches()) {
+            throw new InvalidUserDataException(String.format("Invalid test shard '%s'. The shard must be given as <index>/<count>, for example '3/8'.", shard));
+        }
+        try {
+            return new TestShard(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+        } catch (NumberFormatException e) {
+            throw new InvalidUserDataException(String.format("Invalid test shard '%s'.", shard), e);
+        }
+    }
+
+    /**
+     * Returns the index of this shard, starting at 1.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
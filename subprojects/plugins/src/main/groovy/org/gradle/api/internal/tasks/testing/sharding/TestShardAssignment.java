@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.sharding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assigns test classes to the shards of a test task. The assignment depends only on the given durations, so that each shard that is given the same
+ * durations makes the same assignment, and each test class runs in exactly one shard.
+ *
+ * <p>The test classes with a previous duration are assigned longest first, each to the shard with the smallest total duration so far. Test classes with no
+ * previous duration are spread across the shards by name.</p>
+ */
+public class TestShardAssignment {
+    private final TestShard shard;
+    private final Set<String> knownClasses;
+    private final Set<String> assignedClasses;
+    private final long estimatedDuration;
+
+    private TestShardAssignment(TestShard shard, Set<String> knownClasses, Set<String> assignedClasses, long estimatedDuration) {
+        this.shard = shard;
+        this.knownClasses = knownClasses;
+        this.assignedClasses = assignedClasses;
+        this.estimatedDuration = estimatedDuration;
+    }
+
+    /**
+     * @param durations The duration in milliseconds of each test class in a previous run, keyed by test class name.
+     */
+    public static TestShardAssignment create(TestShard shard, Map<String, Long> durations) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(durations.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+                int result = o2.getValue().compareTo(o1.getValue());
+                return result != 0 ? result : o1.getKey().compareTo(o2.getKey());
+            }
+        });
+
+        long[] totals = new long[shard.getCount()];
+        Set<String> assigned = new HashSet<String>();
+        for (Map.Entry<String, Long> entry : entries) {
+            int target = 0;
+            for (int i = 1; i < totals.length; i++) {
+                if (totals[i] < totals[target]) {
+                    target = i;
+                }
+            }
+            totals[target] += Math.max(0, entry.getValue());
+            if (target == shard.getIndex() - 1) {
+                assigned.add(entry.getKey());
+            }
+        }
+        return new TestShardAssignment(shard, new HashSet<String>(durations.keySet()), assigned, totals[shard.getIndex() - 1]);
+    }
+
+    public boolean isSelected(String className) {
+        if (knownClasses.contains(className)) {
+            return assignedClasses.contains(className);
+        }
+        // String.hashCode() is specified, so this gives the same result in every JVM
+        return (className.hashCode() & Integer.MAX_VALUE) % shard.getCount() == shard.getIndex() - 1;
+    }
+
+    /**
+     * Returns the total previous duration in milliseconds of the test classes assigned to this shard.
+     */
+    public long getEstimatedDuration() {
+        return estimatedDuration;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("shard %s, %s of %s test classes with a previous duration assigned, estimated duration %.3fs", shard, assignedClasses.size(),
+                knownClasses.size(), estimatedDuration / 1000.0);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.*;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.concurrent.StoppableExecutor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link TestResultProcessor} which coalesces the output of each test and destination, so that a test which produces many lines of output results in a few
+ * output events rather than one per line. Buffered output is forwarded once the given time window has passed since it was received or once enough output has
+ * been buffered. It is always forwarded before any other event, so that events are received in the same order relative to the output.
+ *
+ * <p>This processor is thread-safe.</p>
+ */
+public class BatchingTestResultProcessor implements TestResultProcessor, Stoppable {
+    /**
+     * The time in milliseconds over which to coalesce the output of a test worker. 0 disables coalescing. Defaults to 0.
+     */
+    public static final String WINDOW_PROPERTY = "org.gradle.test.output.batch.window";
+
+    static final int MAX_BUFFERED_CHARS = 64 * 1024;
+
+    private final TestResultProcessor delegate;
+    private final long windowMillis;
+    private final Lock lock = new ReentrantLock();
+    private final Condition condition = lock.newCondition();
+    private final Map<OutputKey, PendingOutput> pending = new LinkedHashMap<OutputKey, PendingOutput>();
+    private final StoppableExecutor executor;
+    private int pendingChars;
+    private long firstPendingTime;
+    private boolean stopped;
+
+    public BatchingTestResultProcessor(TestResultProcessor delegate, long windowMillis, ExecutorFactory executorFactory) {
+        this.delegate = delegate;
+        this.windowMillis = windowMillis;
+        executor = executorFactory.create("Test output batching");
+        executor.execute(new Runnable() {
+            public void run() {
+                flushPeriodically();
+            }
+        });
+    }
+
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        lock.lock();
+        try {
+            flush();
+            delegate.started(test, event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void completed(Object testId, TestCompleteEvent event) {
+        lock.lock();
+        try {
+            flush();
+            delegate.completed(testId, event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void failure(Object testId, Throwable result) {
+        lock.lock();
+        try {
+            flush();
+            delegate.failure(testId, result);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void output(Object testId, TestOutputEvent event) {
+        lock.lock();
+        try {
+            if (stopped) {
+                delegate.output(testId, event);
+                return;
+            }
+            if (pending.isEmpty()) {
+                firstPendingTime = System.currentTimeMillis();
+                condition.signalAll();
+            }
+            OutputKey key = new OutputKey(testId, event.getDestination());
+            PendingOutput output = pending.get(key);
+            if (output == null) {
+                pending.put(key, new PendingOutput(event));
+            } else {
+                output.append(event);
+            }
+            pendingChars += event.getMessage().length();
+            if (pendingChars >= MAX_BUFFERED_CHARS) {
+                flush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forwards all buffered output to the delegate.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<Map.Entry<OutputKey, PendingOutput>> outputs = new ArrayList<Map.Entry<OutputKey, PendingOutput>>(pending.entrySet());
+            pending.clear();
+            pendingChars = 0;
+            for (Map.Entry<OutputKey, PendingOutput> entry : outputs) {
+                delegate.output(entry.getKey().testId, entry.getValue().toEvent());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushPeriodically() {
+        lock.lock();
+        try {
+            while (!stopped) {
+                if (pending.isEmpty()) {
+                    condition.await();
+                    continue;
+                }
+                long remaining = firstPendingTime + windowMillis - System.currentTimeMillis();
+                if (remaining > 0) {
+                    condition.await(remaining, TimeUnit.MILLISECONDS);
+                } else {
+                    flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forwards all buffered output to the delegate, and stops coalescing output.
+     */
+    public void stop() {
+        lock.lock();
+        try {
+            flush();
+            stopped = true;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        executor.stop();
+    }
+
+    private static class OutputKey {
+        final Object testId;
+        final TestOutputEvent.Destination destination;
+
+        OutputKey(Object testId, TestOutputEvent.Destination destination) {
+            this.testId = testId;
+            this.destination = destination;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof OutputKey)) {
+                return false;
+            }
+            OutputKey other = (OutputKey) obj;
+            return destination == other.destination && (testId == null ? other.testId == null : testId.equals(other.testId));
+        }
+
+        @Override
+        public int hashCode() {
+            return (testId == null ? 0 : testId.hashCode()) * 31 + destination.hashCode();
+        }
+    }
+
+    private static class PendingOutput {
+        private final TestOutputEvent first;
+        private StringBuilder message;
+
+        PendingOutput(TestOutputEvent first) {
+            this.first = first;
+        }
+
+        void append(TestOutputEvent event) {
+            if (message == null) {
+                message = new StringBuilder(first.getMessage());
+            }
+            message.append(event.getMessage());
+        }
+
+        TestOutputEvent toEvent() {
+            return message == null ? first : new DefaultTestOutputEvent(first.getDestination(), message.toString());
+        }
+    }
+}
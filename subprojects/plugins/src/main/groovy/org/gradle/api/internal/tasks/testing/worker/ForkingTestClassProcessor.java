@@ -17,46 +17,94 @@
 package org.gradle.api.internal.tasks.testing.worker;
 
 import org.gradle.api.Action;
-import org.gradle.api.internal.tasks.testing.TestClassProcessor;
-import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
-import org.gradle.api.internal.tasks.testing.TestResultProcessor;
-import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.api.internal.tasks.testing.*;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.api.tasks.testing.TestResult;
 import org.gradle.internal.Factory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.id.CompositeIdGenerator;
 import org.gradle.messaging.remote.ObjectConnection;
+import org.gradle.messaging.remote.internal.hub.HubStateListener;
 import org.gradle.process.JavaForkOptions;
+import org.gradle.process.internal.PooledWorkerProcess;
 import org.gradle.process.internal.WorkerProcess;
 import org.gradle.process.internal.WorkerProcessBuilder;
+import org.gradle.process.internal.WorkerProcessPool;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Processes test classes in a forked worker process. Each call to {@link #processTestClass(TestClassRunInfo)} blocks until the worker has finished
+ * processing the test class, so that the caller can decide which worker should receive the next test class.
+ *
+ * <p>When the worker disconnects before it has finished a test class, for example because the worker process crashed, the test class is reported as
+ * failed and {@link #processTestClass(TestClassRunInfo)} fails. No further test classes are sent to the worker.</p>
+ */
 public class ForkingTestClassProcessor implements TestClassProcessor {
+    /**
+     * When true, the JVM of each test worker is kept running once the worker has finished and is reused by later test workers with the same JVM options,
+     * for this and later builds in the same process. Defaults to false.
+     */
+    public static final String REUSE_WORKERS_PROPERTY = "org.gradle.test.workers.reuse";
+
     private final Factory<WorkerProcessBuilder> workerFactory;
     private final WorkerTestClassProcessorFactory processorFactory;
     private final JavaForkOptions options;
     private final Iterable<File> classPath;
     private final Action<WorkerProcessBuilder> buildConfigAction;
+    private final Action<? super WorkerProcessPool.Statistics> workerStatisticsListener;
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
     private TestResultProcessor resultProcessor;
+    final CompletionTracker completionTracker = new CompletionTracker();
+    RunningTestsTracker runningTests;
 
     public ForkingTestClassProcessor(Factory<WorkerProcessBuilder> workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction) {
+        this(workerFactory, processorFactory, options, classPath, buildConfigAction, null);
+    }
+
+    /**
+     * @param workerStatisticsListener Receives whether the worker process started a new JVM or reused a pooled one, once the worker process has started.
+     * Only notified for reusable worker processes. May be null.
+     */
+    public ForkingTestClassProcessor(Factory<WorkerProcessBuilder> workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction,
+                                     Action<? super WorkerProcessPool.Statistics> workerStatisticsListener) {
         this.workerFactory = workerFactory;
         this.processorFactory = processorFactory;
         this.options = options;
         this.classPath = classPath;
         this.buildConfigAction = buildConfigAction;
+        this.workerStatisticsListener = workerStatisticsListener;
     }
 
     public void startProcessing(TestResultProcessor resultProcessor) {
         this.resultProcessor = resultProcessor;
+        this.runningTests = new RunningTestsTracker(resultProcessor);
     }
 
     public void processTestClass(TestClassRunInfo testClass) {
+        if (completionTracker.isDisconnected()) {
+            throw new IllegalStateException("Cannot process test class as the test worker has disconnected.");
+        }
         if (remoteProcessor == null) {
             remoteProcessor = forkProcess();
         }
 
+        completionTracker.sent();
         remoteProcessor.processTestClass(testClass);
+        if (!completionTracker.waitForCompletion()) {
+            TestSuiteExecutionException failure = new TestSuiteExecutionException(String.format(
+                    "Test worker disconnected while processing test class %s.", testClass.getTestClassName()), null);
+            runningTests.failRunningTests(testClass.getTestClassName(), failure);
+            throw failure;
+        }
     }
 
     RemoteTestClassProcessor forkProcess() {
@@ -64,16 +112,21 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         builder.setBaseName("Gradle Test Executor");
         builder.applicationClasspath(classPath);
         builder.setLoadApplicationInSystemClassLoader(true);
-        builder.worker(new TestWorker(processorFactory));
+        builder.setReusable(Boolean.getBoolean(REUSE_WORKERS_PROPERTY));
+        builder.worker(new TestWorker(processorFactory, Long.getLong(BatchingTestResultProcessor.WINDOW_PROPERTY, 0), true));
         options.copyTo(builder.getJavaCommand());
         buildConfigAction.execute(builder);
 
         workerProcess = builder.build();
         workerProcess.start();
+        if (workerStatisticsListener != null && workerProcess instanceof PooledWorkerProcess) {
+            workerStatisticsListener.execute(((PooledWorkerProcess) workerProcess).getStatistics());
+        }
 
         ObjectConnection connection = workerProcess.getConnection();
         connection.useParameterSerializer(new TestEventSerializer());
-        connection.addIncoming(TestResultProcessor.class, resultProcessor);
+        connection.addIncoming(TestResultProcessor.class, runningTests);
+        connection.addIncoming(TestClassCompletionListener.class, completionTracker);
         RemoteTestClassProcessor remoteProcessor = connection.addOutgoing(RemoteTestClassProcessor.class);
         connection.connect();
         remoteProcessor.startProcessing();
@@ -86,4 +139,191 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
             workerProcess.waitForStop();
         }
     }
+
+    /**
+     * Tracks the test classes which have been sent to the worker but not yet completed. Stops waiting when the worker disconnects, for example when it crashes.
+     */
+    static class CompletionTracker implements TestClassCompletionListener, HubStateListener {
+        private final Lock lock = new ReentrantLock();
+        private final Condition condition = lock.newCondition();
+        private int outstanding;
+        private boolean disconnected;
+
+        void sent() {
+            lock.lock();
+            try {
+                outstanding++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Waits until the worker has completed all of the test classes sent to it.
+         *
+         * @return true if all test classes have completed, false if the worker disconnected first.
+         */
+        boolean waitForCompletion() {
+            lock.lock();
+            try {
+                while (outstanding > 0 && !disconnected) {
+                    try {
+                        condition.await();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                }
+                return outstanding == 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean isDisconnected() {
+            lock.lock();
+            try {
+                return disconnected;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void testClassCompleted() {
+            lock.lock();
+            try {
+                outstanding--;
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void onConnect() {
+        }
+
+        public void onDisconnect() {
+            lock.lock();
+            try {
+                disconnected = true;
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Forwards the test events received from the worker, and keeps track of the tests which have started but not yet completed, so that they can be reported
+     * as failed when the worker disconnects part way through a test class. The worker sends no further events once it has disconnected.
+     */
+    static class RunningTestsTracker implements TestResultProcessor, HubStateListener {
+        private final Lock lock = new ReentrantLock();
+        private final Condition condition = lock.newCondition();
+        private final TestResultProcessor delegate;
+        private final Map<Object, TestDescriptorInternal> running = new LinkedHashMap<Object, TestDescriptorInternal>();
+        private Object workerSuiteId;
+        private boolean disconnected;
+
+        RunningTestsTracker(TestResultProcessor delegate) {
+            this.delegate = delegate;
+        }
+
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            lock.lock();
+            try {
+                if (workerSuiteId == null && event.getParentId() == null) {
+                    workerSuiteId = test.getId();
+                }
+                running.put(test.getId(), test);
+                delegate.started(test, event);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void completed(Object testId, TestCompleteEvent event) {
+            lock.lock();
+            try {
+                running.remove(testId);
+                delegate.completed(testId, event);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void output(Object testId, TestOutputEvent event) {
+            lock.lock();
+            try {
+                delegate.output(testId, event);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void failure(Object testId, Throwable result) {
+            lock.lock();
+            try {
+                delegate.failure(testId, result);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void onConnect() {
+        }
+
+        public void onDisconnect() {
+            lock.lock();
+            try {
+                disconnected = true;
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Reports the given test class, and any of its tests which are still running, as failed. Waits until all events sent by the worker before it
+         * disconnected have been received, so that tests which did complete are not reported as failed.
+         */
+        void failRunningTests(String className, Throwable failure) {
+            lock.lock();
+            try {
+                while (!disconnected) {
+                    try {
+                        condition.await();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                List<Object> ids = new ArrayList<Object>(running.keySet());
+                int classIndex = -1;
+                for (int i = 0; i < ids.size(); i++) {
+                    TestDescriptorInternal test = running.get(ids.get(i));
+                    if (test.isComposite() && className.equals(test.getClassName())) {
+                        classIndex = i;
+                        break;
+                    }
+                }
+                if (classIndex < 0) {
+                    // The worker did not get as far as starting the test class
+                    Object classId = new CompositeIdGenerator.CompositeId(workerSuiteId == null ? className : workerSuiteId, className);
+                    delegate.started(new DefaultTestClassDescriptor(classId, className), new TestStartEvent(now, workerSuiteId));
+                    ids.add(classId);
+                    classIndex = ids.size() - 1;
+                }
+
+                // Tests run one at a time, so the last test started is the one which was running when the worker disconnected
+                delegate.failure(ids.get(ids.size() - 1), failure);
+                for (int i = ids.size() - 1; i >= classIndex; i--) {
+                    running.remove(ids.get(i));
+                    delegate.completed(ids.get(i), new TestCompleteEvent(now, TestResult.ResultType.FAILURE));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 }
@@ -46,12 +46,26 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
     private static final Logger LOGGER = LoggerFactory.getLogger(TestWorker.class);
     public static final String WORKER_ID_SYS_PROPERTY = "org.gradle.test.worker";
     private final WorkerTestClassProcessorFactory factory;
+    private final long outputBatchWindowMillis;
+    private final boolean acknowledgeTestClasses;
     private CountDownLatch completed;
     private TestClassProcessor processor;
     private TestResultProcessor resultProcessor;
+    private BatchingTestResultProcessor batchingResultProcessor;
+    private TestClassCompletionListener completionListener;
 
     public TestWorker(WorkerTestClassProcessorFactory factory) {
+        this(factory, 0, false);
+    }
+
+    /**
+     * @param outputBatchWindowMillis The time over which to coalesce test output before sending it to the build process. 0 sends each output event as it happens.
+     * @param acknowledgeTestClasses Whether to notify the build process through a {@link TestClassCompletionListener} as each test class completes.
+     */
+    public TestWorker(WorkerTestClassProcessorFactory factory, long outputBatchWindowMillis, boolean acknowledgeTestClasses) {
         this.factory = factory;
+        this.outputBatchWindowMillis = outputBatchWindowMillis;
+        this.acknowledgeTestClasses = acknowledgeTestClasses;
     }
 
     public void execute(final WorkerProcessContext workerProcessContext) {
@@ -91,6 +105,13 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         ObjectConnection serverConnection = workerProcessContext.getServerConnection();
         serverConnection.useParameterSerializer(new TestEventSerializer());
         this.resultProcessor = serverConnection.addOutgoing(TestResultProcessor.class);
+        if (outputBatchWindowMillis > 0) {
+            batchingResultProcessor = new BatchingTestResultProcessor(resultProcessor, outputBatchWindowMillis, testServices.get(ExecutorFactory.class));
+            this.resultProcessor = batchingResultProcessor;
+        }
+        if (acknowledgeTestClasses) {
+            this.completionListener = serverConnection.addOutgoing(TestClassCompletionListener.class);
+        }
         serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
         serverConnection.connect();
     }
@@ -107,13 +128,22 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         } finally {
             // Clean the interrupted status
             Thread.interrupted();
+            if (completionListener != null) {
+                completionListener.testClassCompleted();
+            }
         }
     }
 
     public void stop() {
         Thread.currentThread().setName("Test worker");
         try {
-            processor.stop();
+            try {
+                processor.stop();
+            } finally {
+                if (batchingResultProcessor != null) {
+                    batchingResultProcessor.stop();
+                }
+            }
         } finally {
             completed.countDown();
         }
@@ -260,6 +260,7 @@ public class JavaBasePlugin implements Plugin<ProjectInternal> {
                     public void execute(Test test) {
                         configureBasedOnSingleProperty(test);
                         overwriteDebugIfDebugPropertyIsSet(test);
+                        overwriteShardIfShardPropertyIsSet(test);
                     }
                 });
             }
@@ -278,6 +279,13 @@ public class JavaBasePlugin implements Plugin<ProjectInternal> {
         }
     }
 
+    private void overwriteShardIfShardPropertyIsSet(Test test) {
+        String shardProp = getTaskPrefixedProperty(test, "shard");
+        if (shardProp != null) {
+            test.setShard(shardProp);
+        }
+    }
+
     private void configureBasedOnSingleProperty(final Test test) {
         String singleTest = getTaskPrefixedProperty(test, "single");
         if (singleTest == null) {
@@ -24,7 +24,11 @@ import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.FileTree;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.internal.ConventionTask;
+import org.gradle.api.internal.changedetection.state.FileCollectionSnapshotHasher;
+import org.gradle.api.internal.changedetection.state.FileCollectionSnapshotter;
 import org.gradle.api.internal.file.FileResolver;
+import org.gradle.api.internal.hash.Hasher;
+import org.gradle.api.internal.hash.HasherFactory;
 import org.gradle.api.internal.initialization.loadercache.ClassLoaderCache;
 import org.gradle.api.internal.tasks.options.Option;
 import org.gradle.api.internal.tasks.testing.DefaultTestTaskReports;
@@ -32,6 +36,7 @@ import org.gradle.api.internal.tasks.testing.NoMatchingTestsReporter;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.detection.DefaultTestExecuter;
+import org.gradle.api.internal.tasks.testing.detection.TestClassDetectionCache;
 import org.gradle.api.internal.tasks.testing.detection.TestExecuter;
 import org.gradle.api.internal.tasks.testing.filter.DefaultTestFilter;
 import org.gradle.api.internal.tasks.testing.junit.JUnitTestFramework;
@@ -39,19 +44,33 @@ import org.gradle.api.internal.tasks.testing.junit.report.DefaultTestReport;
 import org.gradle.api.internal.tasks.testing.junit.report.TestReporter;
 import org.gradle.api.internal.tasks.testing.junit.result.*;
 import org.gradle.api.internal.tasks.testing.logging.*;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.AnalysisWorkers;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassAnalysisCache;
+import org.gradle.api.internal.tasks.compile.incremental.analyzer.DefaultClassDependenciesAnalyzer;
 import org.gradle.api.internal.tasks.testing.results.TestListenerAdapter;
+import org.gradle.api.internal.tasks.testing.selection.LocalTestSelectionStore;
+import org.gradle.api.internal.tasks.testing.selection.TestClassSelection;
+import org.gradle.api.internal.tasks.testing.selection.TestClassSelector;
+import org.gradle.api.internal.tasks.testing.selection.TestClassesSnapshotter;
+import org.gradle.api.internal.tasks.testing.selection.TestSelectionState;
+import org.gradle.api.internal.tasks.testing.sharding.TestShard;
+import org.gradle.api.internal.tasks.testing.sharding.TestShardAssignment;
 import org.gradle.api.internal.tasks.testing.testng.TestNGTestFramework;
+import org.gradle.api.internal.tasks.testing.worker.ForkingTestClassProcessor;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.api.reporting.DirectoryReport;
 import org.gradle.api.reporting.Reporting;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.*;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.testing.logging.TestLogging;
 import org.gradle.api.tasks.testing.logging.TestLoggingContainer;
 import org.gradle.api.tasks.util.PatternFilterable;
 import org.gradle.api.tasks.util.PatternSet;
+import org.gradle.cache.CacheRepository;
 import org.gradle.internal.Factory;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.listener.ClosureBackedMethodInvocationDispatch;
 import org.gradle.listener.ListenerBroadcast;
@@ -64,6 +83,7 @@ import org.gradle.process.JavaForkOptions;
 import org.gradle.process.ProcessForkOptions;
 import org.gradle.process.internal.DefaultJavaForkOptions;
 import org.gradle.process.internal.WorkerProcessBuilder;
+import org.gradle.process.internal.WorkerProcessPool;
 import org.gradle.util.ConfigureUtil;
 
 import javax.inject.Inject;
@@ -136,6 +156,8 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
     private boolean scanForTestClasses = true;
     private long forkEvery;
     private int maxParallelForks = 1;
+    private String shard;
+    private File shardHistoryDir;
     private TestReporter testReporter;
 
     @Nested
@@ -172,6 +194,16 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         throw new UnsupportedOperationException();
     }
 
+    @Inject
+    protected ExecutorFactory getExecutorFactory() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Inject
+    protected TestClassDetectionCache getTestClassDetectionCache() {
+        throw new UnsupportedOperationException();
+    }
+
     @Inject
     protected ClassLoaderCache getClassLoaderCache() {
         throw new UnsupportedOperationException();
@@ -197,6 +229,26 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         throw new UnsupportedOperationException();
     }
 
+    @Inject
+    protected CacheRepository getCacheRepository() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Inject
+    protected FileCollectionSnapshotter getFileCollectionSnapshotter() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Inject
+    protected ClassAnalysisCache getClassAnalysisCache() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Inject
+    protected AnalysisWorkers getAnalysisWorkers() {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * ATM. for testing only
      */
@@ -484,14 +536,44 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         }
 
         File binaryResultsDir = getBinResultsDir();
+        Map<String, Long> previousDurations = new HashMap<String, Long>();
+        Set<String> previouslyFailed = new HashSet<String>();
+        boolean hasPreviousResults = readPreviousResults(binaryResultsDir, previousDurations, previouslyFailed);
+
+        // The test classes and their classpath are inputs of this task, so the hash of each file is already known. Used for test detection and selection
+        Hasher classFileHasher = new FileCollectionSnapshotHasher(getFileCollectionSnapshotter(), getProject().files(getCandidateClassFiles(), getClasspath()),
+                new HasherFactory().create());
+
+        // Selection is skipped for filtered runs, as these do not run all of the affected test classes
+        LocalTestSelectionStore selectionStore = null;
+        TestSelectionState selectionState = null;
+        TestClassSelection selection = null;
+        if (TestClassSelector.isEnabled() && getFilter().getIncludePatterns().isEmpty()) {
+            selectionStore = new LocalTestSelectionStore(getCacheRepository(), this);
+            TestSelectionState previousState = selectionStore.get();
+            TestClassesSnapshotter snapshotter = new TestClassesSnapshotter(classFileHasher, new DefaultClassDependenciesAnalyzer(), getClassAnalysisCache(), getAnalysisWorkers());
+            selectionState = snapshotter.snapshot(getTestSelectionConfiguration(), getTestSelectionClasspath());
+            selection = TestClassSelector.create().select(previousState, selectionState, hasPreviousResults ? previouslyFailed : null);
+            selectionState = selectionState.withSelectiveRuns(selection.isAll() || previousState == null ? 0 : previousState.getSelectiveRuns() + 1);
+            getLogger().lifecycle("Test selection: {}.", selection);
+        }
+
+        TestShardAssignment shardAssignment = null;
+        if (getShard() != null) {
+            Map<String, Long> shardDurations = new HashMap<String, Long>();
+            if (getShardHistoryDir() != null && !readPreviousResults(getShardHistoryDir(), shardDurations, new HashSet<String>())) {
+                getLogger().warn("No test results found in {}, assigning the test classes to shards by name.", getShardHistoryDir());
+            }
+            shardAssignment = TestShardAssignment.create(TestShard.parse(getShard()), shardDurations);
+            getLogger().lifecycle("Test shard: {}.", shardAssignment);
+        }
+
         getProject().delete(binaryResultsDir);
         getProject().mkdir(binaryResultsDir);
 
-        Map<String, TestClassResult> results = new HashMap<String, TestClassResult>();
-        TestOutputStore testOutputStore = new TestOutputStore(binaryResultsDir);
-
-        TestOutputStore.Writer outputWriter = testOutputStore.writer();
-        TestReportDataCollector testReportDataCollector = new TestReportDataCollector(results, outputWriter);
+        TestOutputStore.Writer outputWriter = new TestOutputStore(binaryResultsDir).writer();
+        TestResultSerializer.Writer resultsWriter = new TestResultSerializer(binaryResultsDir).writer();
+        TestReportDataCollector testReportDataCollector = new TestReportDataCollector(resultsWriter, outputWriter);
 
         addTestListener(testReportDataCollector);
         addTestOutputListener(testReportDataCollector);
@@ -502,8 +584,10 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         TestResultProcessor resultProcessor = new TestListenerAdapter(
                 getTestListenerBroadcaster().getSource(), testOutputListenerBroadcaster.getSource());
 
+        WorkerProcessPool.StatisticsCollector workerStatistics = Boolean.getBoolean(ForkingTestClassProcessor.REUSE_WORKERS_PROPERTY) ? new WorkerProcessPool.StatisticsCollector() : null;
         if (testExecuter == null) {
-            testExecuter = new DefaultTestExecuter(getProcessBuilderFactory(), getActorFactory());
+            testExecuter = new DefaultTestExecuter(getProcessBuilderFactory(), getActorFactory(), getExecutorFactory(), previousDurations, previouslyFailed, getTestClassDetectionCache(), classFileHasher,
+                    selection, shardAssignment, workerStatistics);
         }
 
         try {
@@ -512,16 +596,24 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
             testExecuter = null;
             testListenerBroadcaster.removeAll();
             testOutputListenerBroadcaster.removeAll();
-            outputWriter.close();
+            CompositeStoppable.stoppable(outputWriter, resultsWriter).stop();
+            if (workerStatistics != null) {
+                getLogger().lifecycle("Test worker processes: {}.", workerStatistics.getTotal());
+            }
         }
 
-        new TestResultSerializer(binaryResultsDir).write(results.values());
+        // A run which failed, or which fail-fast cancelled, may not have run all of the selected classes. Keep the state of the last successful run, so that
+        // the next run selects the classes affected by all changes since then
+        if (selectionStore != null && !testCountLogger.hadFailures()) {
+            selectionStore.put(selectionState);
+        }
 
-        TestResultsProvider testResultsProvider = new InMemoryTestResultsProvider(results.values(), testOutputStore.reader());
+        TestResultsProvider testResultsProvider = new BinaryResultBackedTestResultsProvider(binaryResultsDir);
 
         try {
+            TestReportWorkers reportWorkers = TestReportWorkers.create(getExecutorFactory());
             if (testReporter == null) {
-                testReporter = new DefaultTestReport();
+                testReporter = new DefaultTestReport(reportWorkers);
             }
 
             JUnitXmlReport junitXml = reports.getJunitXml();
@@ -529,7 +621,7 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
                 TestOutputAssociation outputAssociation = junitXml.isOutputPerTestCase()
                         ? TestOutputAssociation.WITH_TESTCASE
                         : TestOutputAssociation.WITH_SUITE;
-                Binary2JUnitXmlReportGenerator binary2JUnitXmlReportGenerator = new Binary2JUnitXmlReportGenerator(junitXml.getDestination(), testResultsProvider, outputAssociation);
+                Binary2JUnitXmlReportGenerator binary2JUnitXmlReportGenerator = new Binary2JUnitXmlReportGenerator(junitXml.getDestination(), testResultsProvider, outputAssociation, reportWorkers);
                 binary2JUnitXmlReportGenerator.generate();
             }
 
@@ -550,6 +642,42 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         }
     }
 
+    /**
+     * Reads the duration of each test class and the failed test classes from the index of the given results. Returns false when the results are not available.
+     */
+    private boolean readPreviousResults(File binaryResultsDir, Map<String, Long> durations, Set<String> failedClasses) {
+        TestResultSerializer serializer = new TestResultSerializer(binaryResultsDir);
+        if (!serializer.isHasResults()) {
+            return false;
+        }
+        try {
+            serializer.readClassSummaries(durations, failedClasses);
+            return true;
+        } catch (Exception e) {
+            // The durations are only used to schedule the test classes, so carry on without them
+            getLogger().info("Could not read the test results of the previous run.", e);
+            durations.clear();
+            failedClasses.clear();
+            return false;
+        }
+    }
+
+    private String getTestSelectionConfiguration() {
+        return String.format("%s;%s;%s;%s;%s;%s", getTestFramework().getClass().getName(), isScanForTestClasses(), getIncludes(), getExcludes(), getAllJvmArgs(),
+                new TreeMap<String, Object>(getEnvironment()));
+    }
+
+    private List<File> getTestSelectionClasspath() {
+        List<File> classpath = new ArrayList<File>();
+        classpath.add(getTestClassesDir());
+        for (File file : getClasspath()) {
+            if (!file.equals(getTestClassesDir())) {
+                classpath.add(file);
+            }
+        }
+        return classpath;
+    }
+
     /**
      * Returns the {@link org.gradle.api.tasks.testing.TestListener} broadcaster.  This broadcaster will send messages to all listeners that have been registered with the ListenerManager.
      */
@@ -996,6 +1124,60 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         this.maxParallelForks = maxParallelForks;
     }
 
+    /**
+     * Returns the shard of the test classes to execute, as {@code <index>/<count>}. For example, {@code 3/8} executes the third of 8 shards. Returns
+     * null when all test classes are executed, which is the default.
+     *
+     * <p>The test classes are assigned to the shards using their durations from the results in {@link #getShardHistoryDir()}, so that the shards take
+     * about the same time to execute.</p>
+     *
+     * @return The shard. Returns null when the test classes are not sharded.
+     */
+    @Input
+    @Optional
+    @Incubating
+    public String getShard() {
+        return shard;
+    }
+
+    /**
+     * Sets the shard of the test classes to execute, as {@code <index>/<count>}. The index starts at 1.
+     *
+     * @param shard The shard. Use null to execute all test classes.
+     */
+    @Option(option = "shard", description = "Executes only the given shard of the test classes, for example '3/8'. [INCUBATING]")
+    @Incubating
+    public void setShard(String shard) {
+        if (shard != null) {
+            TestShard.parse(shard);
+        }
+        this.shard = shard;
+    }
+
+    /**
+     * Returns the binary test results used to assign the test classes to shards. Each shard must use the same results, so that each test class is
+     * executed in exactly one shard. These are usually the results of all shards of a previous run, merged using {@link TestReport#getMergedBinResultsDir()}.
+     * Test classes with no previous results, and all test classes when this is not set, are assigned to shards by name.
+     *
+     * @return The binary test results directory. May be null.
+     */
+    @InputFiles
+    @Optional
+    @Incubating
+    public File getShardHistoryDir() {
+        return shardHistoryDir;
+    }
+
+    /**
+     * Sets the binary test results used to assign the test classes to shards.
+     *
+     * @param shardHistoryDir The binary test results directory. May be null.
+     */
+    @Incubating
+    public void setShardHistoryDir(File shardHistoryDir) {
+        this.shardHistoryDir = shardHistoryDir;
+    }
+
     /**
      * Returns the classes files to scan for test classes.
      *
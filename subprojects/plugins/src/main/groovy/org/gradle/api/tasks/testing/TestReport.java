@@ -24,11 +24,17 @@ import org.gradle.api.internal.file.UnionFileCollection;
 import org.gradle.api.internal.tasks.testing.junit.report.DefaultTestReport;
 import org.gradle.api.internal.tasks.testing.junit.result.AggregateTestResultsProvider;
 import org.gradle.api.internal.tasks.testing.junit.result.BinaryResultBackedTestResultsProvider;
+import org.gradle.api.internal.tasks.testing.junit.result.BinaryTestResultsWriter;
+import org.gradle.api.internal.tasks.testing.junit.result.TestReportWorkers;
 import org.gradle.api.internal.tasks.testing.junit.result.TestResultsProvider;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.SkipWhenEmpty;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.internal.concurrent.ExecutorFactory;
+
+import javax.inject.Inject;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -39,13 +45,20 @@ import static org.gradle.internal.concurrent.CompositeStoppable.stoppable;
 import static org.gradle.util.CollectionUtils.collect;
 
 /**
- * Generates an HTML test report from the results of one or more {@link Test} tasks.
+ * Generates an HTML test report from the results of one or more {@link Test} tasks. Optionally, also merges the binary results of these tasks into a
+ * single binary results directory.
  */
 @Incubating
 public class TestReport extends DefaultTask {
     private File destinationDir;
+    private File mergedBinResultsDir;
     private List<Object> results = new ArrayList<Object>();
 
+    @Inject
+    protected ExecutorFactory getExecutorFactory() {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Returns the directory to write the HTML report to.
      */
@@ -61,6 +74,26 @@ public class TestReport extends DefaultTask {
         this.destinationDir = destinationDir;
     }
 
+    /**
+     * Returns the directory to write the merged binary test results to. The merged results contain the results of all of the test tasks and binary
+     * results directories included in the report, for example of all shards of a {@link Test} task. Returns null when no merged results are written, which
+     * is the default.
+     */
+    @OutputDirectory @Optional
+    @Incubating
+    public File getMergedBinResultsDir() {
+        return mergedBinResultsDir;
+    }
+
+    /**
+     * Sets the directory to write the merged binary test results to. The merged results can be used in place of the individual results, for example as
+     * the {@link Test#getShardHistoryDir()} of a later run.
+     */
+    @Incubating
+    public void setMergedBinResultsDir(File mergedBinResultsDir) {
+        this.mergedBinResultsDir = mergedBinResultsDir;
+    }
+
     /**
      * Returns the set of binary test results to include in the report.
      */
@@ -124,9 +157,19 @@ public class TestReport extends DefaultTask {
     @TaskAction
     void generateReport() {
         TestResultsProvider resultsProvider = createAggregateProvider();
+        if (getMergedBinResultsDir() != null) {
+            try {
+                getProject().delete(getMergedBinResultsDir());
+                getProject().mkdir(getMergedBinResultsDir());
+                new BinaryTestResultsWriter(getMergedBinResultsDir()).write(resultsProvider);
+            } finally {
+                stoppable(resultsProvider).stop();
+            }
+            resultsProvider = new BinaryResultBackedTestResultsProvider(getMergedBinResultsDir());
+        }
         try {
             if (resultsProvider.isHasResults()) {
-                DefaultTestReport testReport = new DefaultTestReport();
+                DefaultTestReport testReport = new DefaultTestReport(TestReportWorkers.create(getExecutorFactory()));
                 testReport.generateReport(resultsProvider, getDestinationDir());
             } else {
                 getLogger().info("{} - no binary test results found in dirs: {}.", getPath(), getTestResultDirs().getFiles());
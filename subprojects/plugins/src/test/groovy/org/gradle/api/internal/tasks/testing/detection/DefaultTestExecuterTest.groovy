@@ -21,6 +21,7 @@ import org.gradle.api.file.FileTree
 import org.gradle.api.internal.tasks.testing.TestFramework
 import org.gradle.api.internal.tasks.testing.TestResultProcessor
 import org.gradle.api.tasks.testing.Test
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.messaging.actor.Actor
 import org.gradle.messaging.actor.ActorFactory
 import spock.lang.Specification
@@ -37,8 +38,9 @@ class DefaultTestExecuterTest extends Specification {
     TestFrameworkDetector testFrameworkTestDetector = Mock()
     File testClassesDir = Mock()
     FileCollection testClasspath = Mock()
+    TestClassDetectionCache detectionCache = Mock()
 
-    DefaultTestExecuter executer = new DefaultTestExecuter(workerFactory, actorFactory)
+    DefaultTestExecuter executer = new DefaultTestExecuter(workerFactory, actorFactory, new DefaultExecutorFactory(), [:], detectionCache)
 
     def setup() {
         _ * testTask.testFramework >> testFramework
@@ -65,4 +67,11 @@ class DefaultTestExecuterTest extends Specification {
         1 * testTask.getClasspath() >> testClasspath
         1 * testFrameworkTestDetector.setTestClasspath(testClasspath)
     }
+
+    def "detection cache for testclassdetector is configured before executing"() {
+        when:
+        executer.execute(testTask, testResultProcessor);
+        then:
+        1 * testFrameworkTestDetector.setDetectionCache(detectionCache, _)
+    }
 }
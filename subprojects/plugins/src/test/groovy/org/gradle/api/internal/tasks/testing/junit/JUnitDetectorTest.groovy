@@ -0,0 +1,151 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit
+
+import org.gradle.api.internal.hash.DefaultHasher
+import org.gradle.api.internal.hash.Hasher
+import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.api.internal.tasks.testing.detection.ClassFileExtractionManager
+import org.gradle.api.internal.tasks.testing.detection.DetectedClassInfo
+import org.gradle.api.internal.tasks.testing.detection.TestClassDetectionCache
+import org.gradle.internal.Factory
+import org.gradle.internal.hash.HashValue
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import org.junit.Test
+import spock.lang.Specification
+
+class JUnitDetectorTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def processor = Mock(TestClassProcessor)
+    def detector = new JUnitDetector(new ClassFileExtractionManager({ tmpDir.createDir("tmp") } as Factory))
+
+    def "detects test class"() {
+        def classFile = classFile(SomeTest)
+
+        when:
+        detector.startDetection(processor)
+        detector.processTestClass(classFile)
+
+        then:
+        1 * processor.processTestClass({ it.testClassName == SomeTest.name })
+        0 * processor._
+    }
+
+    def "ignores class which is not a test"() {
+        def classFile = classFile(NotATest)
+
+        when:
+        detector.startDetection(processor)
+        detector.processTestClass(classFile)
+
+        then:
+        0 * processor._
+    }
+
+    def "parses class file and stores the result in the detection cache"() {
+        def cache = Mock(TestClassDetectionCache)
+        def classFile = classFile(SomeTest)
+        DetectedClassInfo info = null
+
+        when:
+        detector.setDetectionCache(cache, new DefaultHasher())
+        detector.startDetection(processor)
+        detector.processTestClass(classFile)
+
+        then:
+        1 * cache.get({ it.startsWith(JUnitDetector.name + ":") }, _) >> { String key, Factory factory -> info = factory.create() }
+        1 * processor.processTestClass({ it.testClassName == SomeTest.name })
+        info.className == SomeTest.name.replace('.', '/')
+        info.superClassName == "java/lang/Object"
+        info.test
+        !info.abstract
+    }
+
+    def "uses cached result instead of parsing class file"() {
+        def cache = Mock(TestClassDetectionCache)
+        def classFile = tmpDir.file("Cached.class").write("not a class file")
+
+        when:
+        detector.setDetectionCache(cache, new DefaultHasher())
+        detector.startDetection(processor)
+        detector.processTestClass(classFile)
+
+        then:
+        1 * cache.get(_, _) >> new DetectedClassInfo("org/gradle/Cached", "java/lang/Object", true, false)
+        1 * processor.processTestClass({ it.testClassName == "org.gradle.Cached" })
+    }
+
+    def "uses the same cache key for class files with the same content"() {
+        def cache = Mock(TestClassDetectionCache)
+        def classFile1 = classFile(SomeTest)
+        def classFile2 = tmpDir.file("other/Copy.class")
+        classFile2.parentFile.mkdirs()
+        classFile2.bytes = classFile1.bytes
+        def keys = []
+
+        when:
+        detector.setDetectionCache(cache, new DefaultHasher())
+        detector.startDetection(processor)
+        detector.processTestClass(classFile1)
+        detector.processTestClass(classFile2)
+        detector.processTestClass(classFile(NotATest))
+
+        then:
+        3 * cache.get(_, _) >> { String key, Factory factory -> keys << key; factory.create() }
+        keys[0] == keys[1]
+        keys[0] != keys[2]
+    }
+
+    def "uses the given hasher to find the cached result"() {
+        def cache = Mock(TestClassDetectionCache)
+        def hasher = Mock(Hasher)
+        def classFile = classFile(SomeTest)
+        def hash = [1, 2, 3] as byte[]
+
+        when:
+        detector.setDetectionCache(cache, hasher)
+        detector.startDetection(processor)
+        detector.processTestClass(classFile)
+
+        then:
+        _ * hasher.getAlgorithm() >> "ALG"
+        1 * hasher.hash(classFile) >> hash
+        1 * cache.get(JUnitDetector.name + ":ALG:" + new HashValue(hash).asCompactString(), _) >> new DetectedClassInfo("org/gradle/Cached", "java/lang/Object", true, false)
+        1 * processor.processTestClass({ it.testClassName == "org.gradle.Cached" })
+    }
+
+    private File classFile(Class<?> type) {
+        def resource = type.name.replace('.', '/') + ".class"
+        def file = tmpDir.file("classes/" + resource)
+        file.parentFile.mkdirs()
+        file.bytes = type.classLoader.getResource(resource).bytes
+        return file
+    }
+
+    static class SomeTest {
+        @Test
+        void test() {
+        }
+    }
+
+    static class NotATest {
+        void test() {
+        }
+    }
+}
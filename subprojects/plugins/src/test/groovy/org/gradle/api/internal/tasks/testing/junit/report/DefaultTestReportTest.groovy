@@ -17,7 +17,9 @@ package org.gradle.api.internal.tasks.testing.junit.report
 
 import org.gradle.api.internal.tasks.testing.BuildableTestResultsProvider
 import org.gradle.api.internal.tasks.testing.junit.result.AggregateTestResultsProvider
+import org.gradle.api.internal.tasks.testing.junit.result.TestReportWorkers
 import org.gradle.api.internal.tasks.testing.junit.result.TestResultsProvider
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.ConfigureUtil
@@ -477,6 +479,52 @@ class DefaultTestReportTest extends Specification {
         testClassFile.assertHasStandardError('err:\u0102')
     }
 
+    def doesNotRenderPagesWhoseResultsHaveNotChanged() {
+        given:
+        report.generateReport(aggregatedBuildResultsRun1(), reportDir)
+        def unchangedClassFile = reportDir.file('classes/org.gradle.aggregation.FooTest.html')
+        unchangedClassFile.text = "unchanged"
+
+        when:
+        report.generateReport(aggregatedBuildResultsRun2(), reportDir)
+
+        then:
+        unchangedClassFile.text == "unchanged"
+
+        def changedClassFile = results(reportDir.file('classes/org.gradle.aggregation.BarTest.html'))
+        changedClassFile.assertHasFailures(1)
+
+        def packageFile = results(reportDir.file('packages/org.gradle.aggregation.html'))
+        packageFile.assertHasFailures(1)
+    }
+
+    def rendersUnchangedPageWhichNoLongerExists() {
+        given:
+        report.generateReport(passingBuildResults(), reportDir)
+        def classFile = reportDir.file('classes/org.gradle.passing.Passed.html')
+        classFile.delete()
+
+        when:
+        report.generateReport(passingBuildResults(), reportDir)
+
+        then:
+        results(classFile).assertHasTests(1)
+    }
+
+    def rendersPagesUsingMultipleWorkers() {
+        given:
+        def parallelReport = new DefaultTestReport(new TestReportWorkers(new DefaultExecutorFactory(), 4))
+
+        when:
+        parallelReport.generateReport(failingBuildResults(), reportDir)
+
+        then:
+        results(indexFile).assertHasTests(7)
+        results(reportDir.file('packages/org.gradle.failing.html')).assertHasFailures(1)
+        results(reportDir.file('classes/org.gradle.passing.Passed.html')).assertHasTests(1)
+        results(reportDir.file('classes/org.gradle.failing.SomeIgnoredSomePassedSomeFailed.html')).assertHasFailures(1)
+    }
+
     TestResultsProvider buildResults(Closure closure) {
         ConfigureUtil.configure(closure, new BuildableTestResultsProvider())
     }
@@ -18,10 +18,13 @@ package org.gradle.api.internal.tasks.testing.junit.result
 
 import org.gradle.api.Action
 import org.gradle.api.GradleException
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
 import spock.lang.Specification
 
+import java.util.concurrent.CopyOnWriteArrayList
+
 class Binary2JUnitXmlReportGeneratorSpec extends Specification {
 
     @Rule private TestNameTestDirectoryProvider temp = new TestNameTestDirectoryProvider()
@@ -54,6 +57,25 @@ class Binary2JUnitXmlReportGeneratorSpec extends Specification {
         0 * generator.saxWriter._
     }
 
+    def "writes results using multiple workers"() {
+        def classes = (1..20).collect { new TestClassResult(it, "FooTest$it".toString(), 100).add(new TestMethodResult(it, "foo")) }
+        resultsProvider.visitClasses(_) >> { Action action ->
+            classes.each { action.execute(it) }
+        }
+        generator = new Binary2JUnitXmlReportGenerator(temp.testDirectory, resultsProvider, TestOutputAssociation.WITH_SUITE, new TestReportWorkers(new DefaultExecutorFactory(), 4))
+        def written = new CopyOnWriteArrayList()
+        generator.saxWriter = Stub(JUnitXmlResultWriter) {
+            write(_, _) >> { TestClassResult result, OutputStream output -> written << result }
+        }
+
+        when:
+        generator.generate()
+
+        then:
+        written as Set == classes as Set
+        temp.testDirectory.list().length == 20
+    }
+
     def "adds context information to the failure if something goes wrong"() {
         def fooTest = new TestClassResult(1, 'FooTest', 100)
                 .add(new TestMethodResult(1, "foo"))
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit.result
+
+import org.gradle.api.Action
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.tasks.testing.TestResult
+import org.gradle.test.fixtures.file.WorkspaceTest
+
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdErr
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdOut
+
+class BinaryTestResultsWriterTest extends WorkspaceTest {
+    def "merges the results and output of several results directories"() {
+        def shard1 = file("shard1").createDir()
+        def shard2 = file("shard2").createDir()
+        def merged = file("merged").createDir()
+        def class1 = new TestClassResult(1, "Class1", 100)
+        class1.add(new TestMethodResult(2, "ok", TestResult.ResultType.SUCCESS, 10, 110))
+        class1.add(new TestMethodResult(3, "broken", TestResult.ResultType.FAILURE, 20, 130).addFailure("message", "stack-trace", "ExceptionType"))
+        new TestResultSerializer(shard1).write([class1])
+        writeOutput(shard1) {
+            it.onOutput(1, new DefaultTestOutputEvent(StdOut, "class output"))
+            it.onOutput(1, 3, new DefaultTestOutputEvent(StdErr, "test output"))
+        }
+        def class2 = new TestClassResult(1, "Class2", 200)
+        class2.add(new TestMethodResult(2, "ok", TestResult.ResultType.SKIPPED, 0, 200))
+        new TestResultSerializer(shard2).write([class2])
+        writeOutput(shard2) {
+            it.onOutput(1, 2, new DefaultTestOutputEvent(StdOut, "other output"))
+        }
+        def provider = new AggregateTestResultsProvider([new BinaryResultBackedTestResultsProvider(shard1), new BinaryResultBackedTestResultsProvider(shard2)])
+
+        when:
+        new BinaryTestResultsWriter(merged).write(provider)
+        provider.close()
+        def mergedProvider = new BinaryResultBackedTestResultsProvider(merged)
+        def results = []
+        mergedProvider.visitClasses({ results << it } as Action)
+
+        then:
+        results*.className == ["Class1", "Class2"]
+        results*.startTime == [100, 200]
+        results[0].results*.name == ["ok", "broken"]
+        results[0].results*.resultType == [TestResult.ResultType.SUCCESS, TestResult.ResultType.FAILURE]
+        results[0].results*.duration == [10, 20]
+        results[0].results[1].failures*.stackTrace == ["stack-trace"]
+        results[1].results*.resultType == [TestResult.ResultType.SKIPPED]
+        ([results*.id] + results*.results*.id).flatten().unique().size() == 5
+
+        and:
+        output { mergedProvider.writeNonTestOutput(results[0].id, StdOut, it) } == "class output"
+        output { mergedProvider.writeTestOutput(results[0].id, results[0].results[1].id, StdErr, it) } == "test output"
+        output { mergedProvider.writeTestOutput(results[0].id, results[0].results[0].id, StdErr, it) } == ""
+        output { mergedProvider.writeTestOutput(results[1].id, results[1].results[0].id, StdOut, it) } == "other output"
+
+        cleanup:
+        mergedProvider?.close()
+    }
+
+    def "keeps the original order of class and test output"() {
+        def input = file("input").createDir()
+        def merged = file("merged").createDir()
+        def class1 = new TestClassResult(1, "Class1", 100)
+        class1.add(new TestMethodResult(2, "first", TestResult.ResultType.SUCCESS, 10, 110))
+        class1.add(new TestMethodResult(3, "second", TestResult.ResultType.SUCCESS, 10, 120))
+        new TestResultSerializer(input).write([class1])
+        writeOutput(input) {
+            it.onOutput(1, 2, new DefaultTestOutputEvent(StdOut, "[test-1]"))
+            it.onOutput(1, new DefaultTestOutputEvent(StdOut, "[class-1]"))
+            it.onOutput(1, 3, new DefaultTestOutputEvent(StdOut, "[test-2]"))
+            it.onOutput(1, 4, new DefaultTestOutputEvent(StdOut, "[unknown test]"))
+            it.onOutput(1, new DefaultTestOutputEvent(StdOut, "[class-2]"))
+        }
+        def provider = new BinaryResultBackedTestResultsProvider(input)
+
+        when:
+        new BinaryTestResultsWriter(merged).write(provider)
+        provider.close()
+        def mergedProvider = new BinaryResultBackedTestResultsProvider(merged)
+        def results = []
+        mergedProvider.visitClasses({ results << it } as Action)
+
+        then:
+        output { mergedProvider.writeAllOutput(results[0].id, StdOut, it) } == "[test-1][class-1][test-2][class-2]"
+        output { mergedProvider.writeTestOutput(results[0].id, results[0].results[1].id, StdOut, it) } == "[test-2]"
+
+        cleanup:
+        mergedProvider?.close()
+    }
+
+    private static void writeOutput(File dir, Closure action) {
+        def writer = new TestOutputStore(dir).writer()
+        action(writer)
+        writer.close()
+    }
+
+    private static String output(Closure action) {
+        def writer = new StringWriter()
+        action(writer)
+        return writer.toString()
+    }
+}
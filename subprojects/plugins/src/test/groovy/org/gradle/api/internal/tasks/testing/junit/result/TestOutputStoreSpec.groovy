@@ -20,6 +20,8 @@ import org.gradle.api.internal.tasks.testing.TestDescriptorInternal
 import org.gradle.api.tasks.testing.TestOutputEvent
 import org.gradle.test.fixtures.file.WorkspaceTest
 
+import java.util.concurrent.CopyOnWriteArrayList
+
 import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdErr
 import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdOut
 
@@ -89,10 +91,140 @@ class TestOutputStoreSpec extends WorkspaceTest {
         collectOutput(reader, 2, StdOut) == "[out-6]"
     }
 
+    def "output checksum of class changes only when output of class changes"() {
+        when:
+        def writer = output.writer()
+        writer.onOutput(1, output(StdOut, "[out-1]"))
+        writer.onOutput(1, 1, output(StdOut, "[out-2]"))
+        writer.onOutput(2, 1, output(StdOut, "[out-3]"))
+        writer.close()
+        def reader = output.reader()
+        def stdout = reader.getOutputChecksum(1, StdOut)
+        def otherClass = reader.getOutputChecksum(2, StdOut)
+        reader.close()
+
+        then:
+        stdout != 0
+        reader.getOutputChecksum(1, StdErr) == 0
+        reader.getOutputChecksum(3, StdOut) == 0
+
+        when:
+        writer = output.writer()
+        writer.onOutput(1, output(StdOut, "[out-1]"))
+        writer.onOutput(2, 1, output(StdOut, "[out-3]"))
+        writer.onOutput(1, 1, output(StdOut, "[out-X]"))
+        writer.close()
+        reader = output.reader()
+
+        then:
+        reader.getOutputChecksum(1, StdOut) != stdout
+        reader.getOutputChecksum(2, StdOut) == otherClass
+
+        cleanup:
+        reader?.close()
+    }
+
     def DefaultTestOutputEvent output(TestOutputEvent.Destination destination, String msg) {
         new DefaultTestOutputEvent(destination, msg)
     }
 
+    def "decodes messages which are larger than the read buffer"() {
+        def message = (1..5000).collect { "[out-$it \u0256\u20ac\ud83d\ude00]" }.join("")
+
+        when:
+        def writer = output.writer()
+        writer.onOutput(1, output(StdOut, "[out-1]"))
+        writer.onOutput(1, 1, output(StdOut, message))
+        writer.onOutput(1, 1, output(StdOut, ""))
+        writer.onOutput(1, 2, output(StdOut, "[out-2]"))
+        writer.close()
+        def reader = output.reader()
+
+        then:
+        collectAllOutput(reader, 1, StdOut) == "[out-1]" + message + "[out-2]"
+        collectOutput(reader, 1, 1, StdOut) == message
+    }
+
+    def "reads messages which span mapped regions"() {
+        // Use tiny regions, so that most messages span more than one region
+        def store = new TestOutputStore(testDirectory, 16)
+        def message = (1..100).collect { "[out-$it \u0256\u20ac]" }.join("")
+
+        when:
+        def writer = store.writer()
+        writer.onOutput(1, output(StdOut, "[out-1]"))
+        writer.onOutput(1, 1, output(StdOut, message))
+        writer.onOutput(2, 1, output(StdErr, "[out-2]"))
+        writer.onOutput(1, 2, output(StdOut, "[out-3]"))
+        writer.close()
+        def reader = store.reader()
+
+        then:
+        collectAllOutput(reader, 1, StdOut) == "[out-1]" + message + "[out-3]"
+        collectOutput(reader, 1, 1, StdOut) == message
+        collectAllOutput(reader, 2, StdErr) == "[out-2]"
+
+        cleanup:
+        reader?.close()
+    }
+
+    def "looks up classes and tests in any order"() {
+        when:
+        def writer = output.writer()
+        writer.onOutput(300, 20, output(StdOut, "[out-1]"))
+        writer.onOutput(2, 1, output(StdOut, "[out-2]"))
+        writer.onOutput(300, 10, output(StdOut, "[out-3]"))
+        writer.onOutput(100000, 5, output(StdErr, "[out-4]"))
+        writer.onOutput(300, 20, output(StdOut, "[out-5]"))
+        writer.close()
+        def reader = output.reader()
+
+        then:
+        collectAllOutput(reader, 300, StdOut) == "[out-1][out-3][out-5]"
+        collectOutput(reader, 300, 20, StdOut) == "[out-1][out-5]"
+        collectOutput(reader, 300, 10, StdOut) == "[out-3]"
+        collectAllOutput(reader, 2, StdOut) == "[out-2]"
+        collectOutput(reader, 100000, 5, StdErr) == "[out-4]"
+        reader.hasOutput(100000, StdErr)
+        !reader.hasOutput(100000, StdOut)
+
+        cleanup:
+        reader?.close()
+    }
+
+    def "can read output from multiple threads"() {
+        given:
+        def writer = output.writer()
+        (1..20).each { classId ->
+            (1..5).each { testId ->
+                writer.onOutput(classId, testId, output(StdOut, "[out-$classId-$testId]"))
+            }
+        }
+        writer.close()
+        def reader = output.reader()
+        def failures = new CopyOnWriteArrayList()
+
+        when:
+        def threads = (1..8).collect {
+            Thread.start {
+                (1..20).each { classId ->
+                    def expected = (1..5).collect { "[out-$classId-$it]" }.join("")
+                    def actual = collectAllOutput(reader, classId, StdOut)
+                    if (actual != expected) {
+                        failures << actual
+                    }
+                }
+            }
+        }
+        threads*.join()
+
+        then:
+        failures.empty
+
+        cleanup:
+        reader?.close()
+    }
+
     def "writes nothing for unknown test class"() {
         when:
         def writer = output.writer()
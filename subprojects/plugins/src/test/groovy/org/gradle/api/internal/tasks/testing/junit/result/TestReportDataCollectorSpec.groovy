@@ -18,7 +18,10 @@ package org.gradle.api.internal.tasks.testing.junit.result
 
 import org.gradle.api.internal.tasks.testing.*
 import org.gradle.api.internal.tasks.testing.results.DefaultTestResult
+import org.gradle.api.Action
 import org.gradle.messaging.remote.internal.PlaceholderException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
 import spock.lang.Issue
 import spock.lang.Specification
 
@@ -29,9 +32,30 @@ import static org.gradle.api.tasks.testing.TestResult.ResultType.FAILURE
 import static org.gradle.api.tasks.testing.TestResult.ResultType.SUCCESS
 
 class TestReportDataCollectorSpec extends Specification {
-    def Map<String, TestClassResult> results = [:]
+    @Rule
+    TestNameTestDirectoryProvider tmp = new TestNameTestDirectoryProvider()
+    def serializer = new TestResultSerializer(tmp.createDir("results"))
+    def resultsWriter = serializer.writer()
     def TestOutputStore.Writer writer = Mock()
-    def collector = new TestReportDataCollector(results, writer)
+    def collector = new TestReportDataCollector(resultsWriter, writer)
+
+    def resultsWritten = false
+
+    def cleanup() {
+        if (!resultsWritten) {
+            resultsWriter.close()
+        }
+    }
+
+    Map<String, TestClassResult> getResults() {
+        if (!resultsWritten) {
+            resultsWriter.close()
+            resultsWritten = true
+        }
+        def results = [:]
+        serializer.read({ results[it.className] = it } as Action)
+        return results
+    }
 
     def "keeps track of test results"() {
         def root = new DefaultTestSuiteDescriptor("1", "Suite")
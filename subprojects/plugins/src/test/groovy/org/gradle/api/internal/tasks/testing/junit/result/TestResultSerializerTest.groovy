@@ -67,6 +67,83 @@ class TestResultSerializerTest extends Specification {
         readClass2.results.empty
     }
 
+    def "groups results of interleaved classes by class"() {
+        def serializer = new TestResultSerializer(tmp.createDir("results"))
+        def writer = serializer.writer()
+
+        when:
+        writer.startClass(1, "Class1", 0)
+        writer.startClass(2, "Class2", 200)
+        (1..500).each { i ->
+            // Long names, so that the results of a class are spread over more than one read buffer
+            writer.write(i % 3 == 0 ? "Class2" : "Class1", new TestMethodResult(i, "method${i}-${'x' * 100}", TestResult.ResultType.SUCCESS, i, 1000 + i))
+        }
+        writer.updateStartTime("Class1", 100)
+        writer.updateStartTime("Class2", 300)
+        writer.close()
+        def read = []
+        serializer.read({ read << it } as Action)
+
+        then:
+        read*.className == ["Class1", "Class2"]
+        read*.id == [1, 2]
+        read*.startTime == [100, 200]
+        read[0].results*.id == (1..500).findAll { it % 3 != 0 }
+        read[1].results*.id == (1..500).findAll { it % 3 == 0 }
+        read[1].results.every { it.name == "method${it.id}-${'x' * 100}" && it.duration == it.id && it.endTime == 1000 + it.id }
+    }
+
+    def "starting a class again replaces its results"() {
+        def serializer = new TestResultSerializer(tmp.createDir("results"))
+        def writer = serializer.writer()
+
+        when:
+        writer.startClass(1, "Class1", 100)
+        writer.write("Class1", new TestMethodResult(2, "method1", TestResult.ResultType.SUCCESS, 100, 200))
+        writer.startClass(3, "Class1", 300)
+        writer.write("Class1", new TestMethodResult(4, "execution failure", TestResult.ResultType.FAILURE, 100, 400))
+        writer.close()
+        def read = []
+        serializer.read({ read << it } as Action)
+
+        then:
+        read.size() == 1
+        read[0].id == 3
+        read[0].results*.name == ["execution failure"]
+    }
+
+    def "reads duration and outcome of each class from the index"() {
+        def class1 = new TestClassResult(1, 'Class1', 1000)
+        class1.add(new TestMethodResult(1, "method1", TestResult.ResultType.SUCCESS, 100, 1300))
+        class1.add(new TestMethodResult(2, "method2", TestResult.ResultType.FAILURE, 200, 1700).addFailure("message", "stack-trace", "ExceptionType"))
+        def class2 = new TestClassResult(2, 'Class2', 2000)
+        class2.add(new TestMethodResult(3, "method3", TestResult.ResultType.SKIPPED, 0, 2500))
+        def class3 = new TestClassResult(3, 'Class3', 3000)
+        def serializer = new TestResultSerializer(tmp.createDir("results"))
+        def durations = [:]
+        def failed = [] as Set
+
+        when:
+        serializer.write([class1, class2, class3])
+        serializer.readClassSummaries(durations, failed)
+
+        then:
+        durations == [Class1: 700L, Class2: 500L, Class3: 0L]
+        durations == [class1, class2, class3].collectEntries { [it.className, it.duration] }
+        failed == ["Class1"] as Set
+    }
+
+    def "has no results when no class has been written"() {
+        def serializer = new TestResultSerializer(tmp.createDir("results"))
+
+        when:
+        serializer.write([])
+
+        then:
+        !serializer.hasResults
+        serialize([]).empty
+    }
+
     List<TestClassResult> serialize(Collection<TestClassResult> results) {
         def serializer = new TestResultSerializer(tmp.createDir("results"))
         serializer.write(results)
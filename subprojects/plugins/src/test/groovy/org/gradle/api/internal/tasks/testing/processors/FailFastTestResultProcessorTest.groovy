@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.internal.tasks.testing.*
+import org.gradle.api.tasks.testing.TestOutputEvent
+import spock.lang.Specification
+
+class FailFastTestResultProcessorTest extends Specification {
+    private final TestResultProcessor target = Mock()
+    private final Runnable cancelAction = Mock()
+    private final FailFastTestResultProcessor processor = new FailFastTestResultProcessor(target, 2, cancelAction)
+
+    def setup() {
+        processor.started(new DefaultTestSuiteDescriptor("suite", "Suite"), new TestStartEvent(100L))
+    }
+
+    def "forwards all events to the target processor"() {
+        def test = test("test")
+        def start = new TestStartEvent(100L, "suite")
+        def complete = new TestCompleteEvent(200L)
+        def failure = new RuntimeException()
+        def output = new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "text")
+
+        when:
+        processor.started(test, start)
+        processor.output("test", output)
+        processor.failure("test", failure)
+        processor.completed("test", complete)
+
+        then:
+        1 * target.started(test, start)
+        1 * target.output("test", output)
+        1 * target.failure("test", failure)
+        1 * target.completed("test", complete)
+        0 * _
+    }
+
+    def "runs cancel action once the maximum number of tests have failed"() {
+        when:
+        runTest("test1", true)
+        runTest("test2", false)
+
+        then:
+        0 * cancelAction.run()
+
+        when:
+        runTest("test3", true)
+
+        then:
+        1 * cancelAction.run()
+
+        when:
+        runTest("test4", true)
+
+        then:
+        0 * cancelAction.run()
+    }
+
+    def "counts failures of test classes"() {
+        def testClass = new DefaultTestClassDescriptor("class", "SomeTest")
+
+        when:
+        processor.started(testClass, new TestStartEvent(100L, "suite"))
+        processor.started(test("test1"), new TestStartEvent(100L, "class"))
+        processor.failure("test1", new RuntimeException())
+        processor.completed("test1", new TestCompleteEvent(200L))
+        processor.failure("class", new RuntimeException())
+        processor.completed("class", new TestCompleteEvent(200L))
+
+        then:
+        1 * cancelAction.run()
+    }
+
+    private void runTest(String id, boolean failed) {
+        processor.started(test(id), new TestStartEvent(100L, "suite"))
+        if (failed) {
+            processor.failure(id, new RuntimeException())
+        }
+        processor.completed(id, new TestCompleteEvent(200L))
+    }
+
+    private static TestDescriptorInternal test(String id) {
+        return new DefaultTestDescriptor(id, "SomeTest", id)
+    }
+}
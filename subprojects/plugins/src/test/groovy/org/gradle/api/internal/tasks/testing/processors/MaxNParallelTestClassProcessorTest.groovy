@@ -19,10 +19,17 @@ package org.gradle.api.internal.tasks.testing.processors
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
 import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.internal.Factory
+import org.gradle.internal.TrueTimeProvider
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.exceptions.DefaultMultiCauseException
 import org.gradle.messaging.actor.Actor
 import org.gradle.messaging.actor.ActorFactory
 import spock.lang.Specification
-import org.gradle.internal.Factory
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 
 class MaxNParallelTestClassProcessorTest extends Specification {
     private final Factory<TestClassProcessor> factory = Mock()
@@ -30,7 +37,13 @@ class MaxNParallelTestClassProcessorTest extends Specification {
     private final TestResultProcessor asyncResultProcessor = Mock()
     private final Actor resultProcessorActor = Mock()
     private final ActorFactory actorFactory = Mock()
-    private final MaxNParallelTestClassProcessor processor = new MaxNParallelTestClassProcessor(2, factory, actorFactory)
+    private final DefaultExecutorFactory executorFactory = new DefaultExecutorFactory()
+    private final Map<String, Long> previousDurations = [:]
+    private MaxNParallelTestClassProcessor processor = new MaxNParallelTestClassProcessor(2, factory, actorFactory, executorFactory, new TrueTimeProvider(), previousDurations)
+
+    def cleanup() {
+        executorFactory.stop()
+    }
 
     def createsThreadSafeWrapperForResultProcessorOnStart() {
         when:
@@ -43,7 +56,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
 
     def doesNothingWhenNoTestsProcessed() {
         startProcessor()
-        
+
         when:
         processor.stop()
 
@@ -61,110 +74,211 @@ class MaxNParallelTestClassProcessorTest extends Specification {
     def startsProcessorsOnDemandAndStopsAtEnd() {
         TestClassRunInfo test = Mock()
         TestClassProcessor processor1 = Mock()
-        TestClassProcessor asyncProcessor1 = Mock()
-        Actor actor1 = Mock()
 
         startProcessor()
 
         when:
         processor.processTestClass(test)
+        processor.stop()
 
         then:
         1 * factory.create() >> processor1
-        1 * actorFactory.createActor(processor1) >> actor1
-        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
-        1 * asyncProcessor1.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor1.processTestClass(test)
+        1 * processor1.startProcessing(asyncResultProcessor)
+        1 * processor1.processTestClass(test)
+        1 * processor1.stop()
+        1 * resultProcessorActor.stop()
+    }
+
+    def startsNoMoreThanMaxProcessors() {
+        def processed = new CopyOnWriteArrayList()
+        def tests = (1..10).collect { testClass("Test${it}") }
+        def processor1 = recordingProcessor(processed)
+        def processor2 = recordingProcessor(processed)
+
+        startProcessor()
 
         when:
+        tests.each { processor.processTestClass(it) }
         processor.stop()
 
         then:
-        1 * asyncProcessor1.stop()
-        1 * actor1.stop()
-        1 * resultProcessorActor.stop()
+        2 * factory.create() >>> [processor1, processor2]
+        processed as Set == tests as Set
+        processed.size() == 10
     }
 
-    def startsMultipleProcessorsOnDemandAndStopsAtEnd() {
-        TestClassRunInfo test = Mock()
+    def idleProcessorTakesTheNextTestClass() {
+        def slowTestStarted = new CountDownLatch(1)
+        def slowTestFinished = new CountDownLatch(1)
+        def slowTest = testClass("SlowTest")
+        def tests = (1..5).collect { testClass("Test${it}") }
+        def processedBy1 = new CopyOnWriteArrayList()
+        def processedBy2 = new CopyOnWriteArrayList()
         TestClassProcessor processor1 = Mock()
         TestClassProcessor processor2 = Mock()
-        TestClassProcessor asyncProcessor1 = Mock()
-        TestClassProcessor asyncProcessor2 = Mock()
-        Actor actor1 = Mock()
-        Actor actor2 = Mock()
 
         startProcessor()
 
         when:
-        processor.processTestClass(test)
+        processor.processTestClass(slowTest)
+        slowTestStarted.await(5, TimeUnit.SECONDS)
+        tests.each { processor.processTestClass(it) }
+        def deadline = System.currentTimeMillis() + 5000
+        while (processedBy2.size() < tests.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+        slowTestFinished.countDown()
+        processor.stop()
 
         then:
-        1 * factory.create() >> processor1
-        1 * actorFactory.createActor(processor1) >> actor1
-        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
-        1 * asyncProcessor1.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor1.processTestClass(test)
+        2 * factory.create() >>> [processor1, processor2]
+        1 * processor1.processTestClass(slowTest) >> { slowTestStarted.countDown(); slowTestFinished.await(5, TimeUnit.SECONDS); processedBy1 << slowTest }
+        _ * processor1.processTestClass(_) >> { TestClassRunInfo test -> processedBy1 << test }
+        _ * processor2.processTestClass(_) >> { TestClassRunInfo test -> processedBy2 << test }
+        processedBy1 == [slowTest]
+        processedBy2 == tests
+    }
+
+    def startsTestClassesWithLongestPreviousDurationFirst() {
+        def processed = new CopyOnWriteArrayList()
+        def startWorker = new CountDownLatch(1)
+        def processor1 = recordingProcessor(processed)
+        previousDurations.putAll(Medium: 200L, Long: 1000L, Short: 10L)
+        processor = new MaxNParallelTestClassProcessor(1, factory, actorFactory, executorFactory, new TrueTimeProvider(), previousDurations)
+
+        startProcessor()
 
         when:
-        processor.processTestClass(test)
+        ["New1", "Short", "Long", "New2", "Medium"].each { processor.processTestClass(testClass(it)) }
+        startWorker.countDown()
+        processor.stop()
 
         then:
-        1 * factory.create() >> processor2
-        1 * actorFactory.createActor(processor2) >> actor2
-        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
-        1 * asyncProcessor2.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor2.processTestClass(test)
+        1 * factory.create() >> { startWorker.await(5, TimeUnit.SECONDS); processor1 }
+        processed*.testClassName == ["Long", "Medium", "Short", "New1", "New2"]
+    }
+
+    def startsTestClassesWhichFailedPreviouslyFirst() {
+        def processed = new CopyOnWriteArrayList()
+        def startWorker = new CountDownLatch(1)
+        def processor1 = recordingProcessor(processed)
+        previousDurations.putAll(Medium: 200L, Long: 1000L, Short: 10L)
+        processor = new MaxNParallelTestClassProcessor(1, factory, actorFactory, executorFactory, new TrueTimeProvider(), previousDurations, ["Short", "New2"] as Set)
+
+        startProcessor()
 
         when:
+        ["New1", "Short", "Long", "New2", "Medium"].each { processor.processTestClass(testClass(it)) }
+        startWorker.countDown()
         processor.stop()
 
         then:
-        1 * asyncProcessor1.stop()
-        1 * asyncProcessor2.stop()
+        1 * factory.create() >> { startWorker.await(5, TimeUnit.SECONDS); processor1 }
+        processed*.testClassName == ["Short", "New2", "Long", "Medium", "New1"]
     }
 
-    def roundRobinsTestClassesToProcessors() {
-        TestClassRunInfo test = Mock()
+    def startsNoFurtherTestClassesWhenCancelled() {
+        def processed = new CopyOnWriteArrayList()
+        def startWorker = new CountDownLatch(1)
+        def processor1 = Stub(TestClassProcessor) {
+            processTestClass(_) >> { TestClassRunInfo test ->
+                processed << test
+                processor.cancel()
+            }
+        }
+        processor = new MaxNParallelTestClassProcessor(1, factory, actorFactory, executorFactory, new TrueTimeProvider(), previousDurations)
+
+        startProcessor()
+
+        when:
+        ["Test1", "Test2", "Test3"].each { processor.processTestClass(testClass(it)) }
+        startWorker.countDown()
+        processor.stop()
+
+        then:
+        1 * factory.create() >> { startWorker.await(5, TimeUnit.SECONDS); processor1 }
+        processed*.testClassName == ["Test1"]
+    }
+
+    def propagatesFailureOfProcessor() {
+        def failure = new RuntimeException("broken")
         TestClassProcessor processor1 = Mock()
-        TestClassProcessor processor2 = Mock()
-        TestClassProcessor asyncProcessor1 = Mock()
-        TestClassProcessor asyncProcessor2 = Mock()
-        Actor actor1 = Mock()
-        Actor actor2 = Mock()
 
         startProcessor()
 
         when:
-        processor.processTestClass(test)
+        processor.processTestClass(testClass("Test1"))
+        processor.stop()
 
         then:
         1 * factory.create() >> processor1
-        1 * actorFactory.createActor(processor1) >> actor1
-        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
-        1 * asyncProcessor1.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor1.processTestClass(test)
+        1 * processor1.processTestClass(_) >> { throw failure }
+        1 * resultProcessorActor.stop()
+        def e = thrown(RuntimeException)
+        e == failure
+    }
+
+    def replacesFailedProcessorWhileTestClassesAreQueued() {
+        def failure = new RuntimeException("broken")
+        def processed = new CopyOnWriteArrayList()
+        def startWorker = new CountDownLatch(1)
+        TestClassProcessor processor1 = Mock()
+        def processor2 = recordingProcessor(processed)
+        processor = new MaxNParallelTestClassProcessor(1, factory, actorFactory, executorFactory, new TrueTimeProvider(), previousDurations)
+
+        startProcessor()
 
         when:
-        processor.processTestClass(test)
+        ["Test1", "Test2", "Test3"].each { processor.processTestClass(testClass(it)) }
+        startWorker.countDown()
+        processor.stop()
 
         then:
+        1 * factory.create() >> { startWorker.await(5, TimeUnit.SECONDS); processor1 }
+        1 * processor1.processTestClass(_) >> { throw failure }
+        1 * processor1.stop()
         1 * factory.create() >> processor2
-        1 * actorFactory.createActor(processor2) >> actor2
-        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
-        1 * asyncProcessor2.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor2.processTestClass(test)
+        1 * resultProcessorActor.stop()
+        def e = thrown(RuntimeException)
+        e == failure
+        processed*.testClassName == ["Test2", "Test3"]
+    }
 
-        when:
-        processor.processTestClass(test)
+    def failsWithEveryFailureWhenAllProcessorsFailWithTestClassesQueued() {
+        def failure1 = new RuntimeException("broken 1")
+        def failure2 = new RuntimeException("broken 2")
+        def startWorker = new CountDownLatch(1)
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor processor2 = Mock()
+        processor = new MaxNParallelTestClassProcessor(1, factory, actorFactory, executorFactory, new TrueTimeProvider(), previousDurations)
 
-        then:
-        1 * asyncProcessor1.processTestClass(test)
+        startProcessor()
 
         when:
-        processor.processTestClass(test)
+        ["Test1", "Test2", "Test3"].each { processor.processTestClass(testClass(it)) }
+        startWorker.countDown()
+        processor.stop()
 
         then:
-        1 * asyncProcessor2.processTestClass(test)
+        1 * factory.create() >> { startWorker.await(5, TimeUnit.SECONDS); processor1 }
+        1 * processor1.processTestClass(_) >> { throw failure1 }
+        1 * factory.create() >> processor2
+        1 * processor2.processTestClass(_) >> { throw failure2 }
+        1 * resultProcessorActor.stop()
+        def e = thrown(DefaultMultiCauseException)
+        e.message == "Could not run 1 test classes as all test workers failed."
+        e.causes == [failure1, failure2]
+    }
+
+    private TestClassRunInfo testClass(String name) {
+        return Stub(TestClassRunInfo) {
+            getTestClassName() >> name
+        }
+    }
+
+    private TestClassProcessor recordingProcessor(List processed) {
+        return Stub(TestClassProcessor) {
+            processTestClass(_) >> { TestClassRunInfo test -> processed << test }
+        }
     }
 }
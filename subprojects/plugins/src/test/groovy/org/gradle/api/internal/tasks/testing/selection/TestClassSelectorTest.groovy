@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.selection
+
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData
+import spock.lang.Specification
+import spock.lang.Subject
+
+class TestClassSelectorTest extends Specification {
+    @Subject selector = new TestClassSelector(3)
+
+    // FooTest -> Foo -> Base, BarTest -> Bar, OtherTest
+    def classes = [
+            "FooTest": ["Foo"],
+            "FooTest\$1": ["FooTest"],
+            "Foo": ["Base"],
+            "Base": [],
+            "BarTest": ["Bar"],
+            "Bar": [],
+            "OtherTest": []
+    ]
+    def previous = state(classes)
+
+    def "runs only the test classes which depend on changed classes"() {
+        when:
+        def selection = selector.select(previous, state(classes, [Base: 2]), [])
+
+        then:
+        !selection.all
+        ["FooTest", "Foo", "Base"].every { selection.isSelected(it) }
+        !selection.isSelected("BarTest")
+        !selection.isSelected("OtherTest")
+    }
+
+    def "runs changed test classes and the test classes of changed inner classes"() {
+        when:
+        def selection = selector.select(previous, state(classes, ['FooTest$1': 2, BarTest: 2]), [])
+
+        then:
+        selection.isSelected("FooTest")
+        selection.isSelected("BarTest")
+        !selection.isSelected("OtherTest")
+    }
+
+    def "runs the test classes which depended on a removed class"() {
+        def current = classes.findAll { it.key != "Bar" }
+        current.BarTest = []
+
+        when:
+        def selection = selector.select(previous, state(current), [])
+
+        then:
+        selection.isSelected("BarTest")
+        !selection.isSelected("FooTest")
+    }
+
+    def "runs the test classes which failed in the previous run"() {
+        when:
+        def selection = selector.select(previous, state(classes, [Bar: 2]), ["OtherTest"])
+
+        then:
+        selection.isSelected("BarTest")
+        selection.isSelected("OtherTest")
+        !selection.isSelected("FooTest")
+    }
+
+    def "runs all test classes when there is no previous state or previous results"() {
+        expect:
+        selector.select(null, previous, []).all
+        selector.select(previous, state(classes, [Bar: 2]), null).all
+    }
+
+    def "runs all test classes when the configuration, a jar or a resource has changed"() {
+        expect:
+        selector.select(previous, state(classes, [Bar: 2], [:], "other"), []).all
+        selector.select(previous, state(classes, [Bar: 2], ["lib.jar": 2]), []).all
+        selector.select(previous, state(classes, [Bar: 2], ["lib.jar": 1, "resource.txt": 1]), []).all
+    }
+
+    def "runs all test classes when a changed class is a dependency to all classes"() {
+        def current = state(classes, [Bar: 2], [:], "config", ["Bar"])
+
+        expect:
+        selector.select(previous, current, []).all
+    }
+
+    def "runs all test classes when no class has changed"() {
+        expect:
+        selector.select(previous, state(classes), []).all
+    }
+
+    def "runs all test classes after the configured number of selective runs"() {
+        def current = state(classes, [Bar: 2])
+
+        expect:
+        !selector.select(previous.withSelectiveRuns(2), current, []).all
+        selector.select(previous.withSelectiveRuns(3), current, []).all
+    }
+
+    private static TestSelectionState state(Map<String, List<String>> classes, Map<String, Integer> changes = [:], Map<String, Integer> files = ["lib.jar": 1],
+                                            String configuration = "config", List<String> dependencyToAll = []) {
+        def accumulator = new ClassDependentsAccumulator("")
+        def hashes = [:]
+        classes.each { name, dependencies ->
+            accumulator.addClass(name, dependencyToAll.contains(name), dependencies)
+            hashes[name] = [changes.get(name, 1)] as byte[]
+        }
+        def fileHashes = files.collectEntries { path, hash -> [path, [hash] as byte[]] }
+        return new TestSelectionState(configuration, 0, hashes, fileHashes, new ClassSetAnalysisData(accumulator.dependentsMap))
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.sharding
+
+import org.gradle.api.InvalidUserDataException
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class TestShardAssignmentTest extends Specification {
+    def "parses shard"() {
+        expect:
+        def shard = TestShard.parse(" 3/8 ")
+        shard.index == 3
+        shard.count == 8
+        shard.toString() == "3/8"
+    }
+
+    @Unroll
+    def "fails on invalid shard #value"() {
+        when:
+        TestShard.parse(value)
+
+        then:
+        thrown(InvalidUserDataException)
+
+        where:
+        value << ["", "3", "3/", "a/8", "0/8", "9/8", "1/0", "-1/8"]
+    }
+
+    def "assigns test classes with longest previous duration first to the shard with the least total duration"() {
+        def durations = [A: 100L, B: 80L, C: 60L, D: 50L, E: 30L]
+
+        expect:
+        selected(1, 2, durations) == ["A", "D"]
+        selected(2, 2, durations) == ["B", "C", "E"]
+        TestShardAssignment.create(new TestShard(1, 2), durations).estimatedDuration == 150
+        TestShardAssignment.create(new TestShard(2, 2), durations).estimatedDuration == 170
+    }
+
+    def "assigns each test class to exactly one shard"() {
+        def durations = (1..50).collectEntries { ["Known${it}".toString(), (long) (it * 7) % 23] }
+        def classes = durations.keySet() + (1..50).collect { "New${it}".toString() }
+
+        when:
+        def assignments = (1..4).collect { TestShardAssignment.create(new TestShard(it, 4), durations) }
+
+        then:
+        classes.every { className -> assignments.count { it.isSelected(className) } == 1 }
+        assignments.every { assignment -> classes.count { assignment.isSelected(it) } > 0 }
+    }
+
+    def "assignment does not depend on the order of the durations"() {
+        def durations = [A: 10L, B: 10L, C: 10L, D: 10L]
+        def reversed = [D: 10L, C: 10L, B: 10L, A: 10L]
+
+        expect:
+        selected(1, 3, durations) == selected(1, 3, reversed)
+        selected(2, 3, durations) == selected(2, 3, reversed)
+    }
+
+    def "assigns all test classes to a single shard"() {
+        def assignment = TestShardAssignment.create(new TestShard(1, 1), [A: 10L])
+
+        expect:
+        assignment.isSelected("A")
+        assignment.isSelected("B")
+    }
+
+    private static List<String> selected(int index, int count, Map<String, Long> durations) {
+        def assignment = TestShardAssignment.create(new TestShard(index, count), durations)
+        return durations.keySet().findAll { assignment.isSelected(it) }.sort()
+    }
+}
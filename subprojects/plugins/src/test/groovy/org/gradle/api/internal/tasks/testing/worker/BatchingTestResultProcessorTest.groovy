@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import spock.lang.Specification
+
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdErr
+import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdOut
+
+class BatchingTestResultProcessorTest extends Specification {
+    def delegate = Mock(TestResultProcessor)
+    def executorFactory = new DefaultExecutorFactory()
+    def processor = new BatchingTestResultProcessor(delegate, 60000, executorFactory)
+
+    def cleanup() {
+        processor.stop()
+        executorFactory.stop()
+    }
+
+    def "coalesces output of each test and destination"() {
+        when:
+        processor.output(1, new DefaultTestOutputEvent(StdOut, "line 1\n"))
+        processor.output(1, new DefaultTestOutputEvent(StdErr, "error 1\n"))
+        processor.output(2, new DefaultTestOutputEvent(StdOut, "other\n"))
+        processor.output(1, new DefaultTestOutputEvent(StdOut, "line 2\n"))
+        processor.output(1, new DefaultTestOutputEvent(StdErr, "error 2\n"))
+
+        then:
+        0 * delegate._
+
+        when:
+        processor.flush()
+
+        then:
+        1 * delegate.output(1, new DefaultTestOutputEvent(StdOut, "line 1\nline 2\n"))
+
+        then:
+        1 * delegate.output(1, new DefaultTestOutputEvent(StdErr, "error 1\nerror 2\n"))
+
+        then:
+        1 * delegate.output(2, new DefaultTestOutputEvent(StdOut, "other\n"))
+        0 * delegate._
+    }
+
+    def "forwards buffered output before other events"() {
+        def test = Mock(TestDescriptorInternal)
+        def startEvent = new TestStartEvent(100)
+        def completeEvent = new TestCompleteEvent(200)
+        def failure = new RuntimeException()
+
+        when:
+        processor.output(1, new DefaultTestOutputEvent(StdOut, "before start\n"))
+        processor.started(test, startEvent)
+        processor.output(1, new DefaultTestOutputEvent(StdOut, "before failure\n"))
+        processor.failure(1, failure)
+        processor.output(1, new DefaultTestOutputEvent(StdOut, "before complete\n"))
+        processor.completed(1, completeEvent)
+
+        then:
+        1 * delegate.output(1, new DefaultTestOutputEvent(StdOut, "before start\n"))
+
+        then:
+        1 * delegate.started(test, startEvent)
+
+        then:
+        1 * delegate.output(1, new DefaultTestOutputEvent(StdOut, "before failure\n"))
+
+        then:
+        1 * delegate.failure(1, failure)
+
+        then:
+        1 * delegate.output(1, new DefaultTestOutputEvent(StdOut, "before complete\n"))
+
+        then:
+        1 * delegate.completed(1, completeEvent)
+    }
+
+    def "forwards output once enough output has been buffered"() {
+        def message = "x" * (BatchingTestResultProcessor.MAX_BUFFERED_CHARS / 2)
+
+        when:
+        processor.output(1, new DefaultTestOutputEvent(StdOut, message))
+
+        then:
+        0 * delegate._
+
+        when:
+        processor.output(1, new DefaultTestOutputEvent(StdOut, message))
+
+        then:
+        1 * delegate.output(1, new DefaultTestOutputEvent(StdOut, message + message))
+    }
+
+    def "forwards output once time window has passed"() {
+        def processor = new BatchingTestResultProcessor(delegate, 10, executorFactory)
+        def received = new java.util.concurrent.CountDownLatch(1)
+
+        when:
+        processor.output(1, new DefaultTestOutputEvent(StdOut, "line 1\n"))
+        processor.output(1, new DefaultTestOutputEvent(StdOut, "line 2\n"))
+        received.await()
+
+        then:
+        1 * delegate.output(1, new DefaultTestOutputEvent(StdOut, "line 1\nline 2\n")) >> { received.countDown() }
+
+        cleanup:
+        processor.stop()
+    }
+
+    def "forwards buffered output when stopped"() {
+        when:
+        processor.output(null, new DefaultTestOutputEvent(StdOut, "line 1\n"))
+        processor.stop()
+
+        then:
+        1 * delegate.output(null, new DefaultTestOutputEvent(StdOut, "line 1\n"))
+
+        when:
+        processor.output(null, new DefaultTestOutputEvent(StdOut, "line 2\n"))
+
+        then:
+        1 * delegate.output(null, new DefaultTestOutputEvent(StdOut, "line 2\n"))
+    }
+}
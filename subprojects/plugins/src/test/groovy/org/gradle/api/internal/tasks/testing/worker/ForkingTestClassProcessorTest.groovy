@@ -17,10 +17,13 @@
 package org.gradle.api.internal.tasks.testing.worker
 
 import org.gradle.api.Action
-import org.gradle.api.internal.tasks.testing.TestClassRunInfo
-import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory
+import org.gradle.api.internal.tasks.testing.*
+import org.gradle.api.tasks.testing.TestResult
 import org.gradle.internal.Factory
+import org.gradle.messaging.remote.ObjectConnection
 import org.gradle.process.JavaForkOptions
+import org.gradle.process.internal.WorkerProcess
+import org.gradle.process.internal.WorkerProcessBuilder
 import spock.lang.Specification
 import spock.lang.Subject
 
@@ -39,8 +42,117 @@ class ForkingTestClassProcessorTest extends Specification {
 
         then:
         1 * processor.forkProcess() >> remoteProcessor
-        1 * remoteProcessor.processTestClass(test1)
-        1 * remoteProcessor.processTestClass(test2)
+        1 * remoteProcessor.processTestClass(test1) >> { processor.completionTracker.testClassCompleted() }
+        1 * remoteProcessor.processTestClass(test2) >> { processor.completionTracker.testClassCompleted() }
         0 * remoteProcessor._
     }
+
+    def "waits for the worker to complete each test class"() {
+        def test = Mock(TestClassRunInfo)
+        def remoteProcessor = Mock(RemoteTestClassProcessor)
+        processor.forkProcess() >> remoteProcessor
+        def completed = false
+
+        when:
+        def thread = Thread.start {
+            processor.processTestClass(test)
+            completed = true
+        }
+        Thread.sleep(100)
+
+        then:
+        !completed
+
+        when:
+        processor.completionTracker.testClassCompleted()
+        thread.join(5000)
+
+        then:
+        completed
+    }
+
+    def "fails test class when the worker disconnects"() {
+        def test = Mock(TestClassRunInfo) { getTestClassName() >> "SomeTest" }
+        def resultProcessor = Mock(TestResultProcessor)
+        processor.forkProcess() >> Mock(RemoteTestClassProcessor)
+        processor.startProcessing(resultProcessor)
+        def failure = null
+
+        when:
+        def thread = Thread.start {
+            try {
+                processor.processTestClass(test)
+            } catch (TestSuiteExecutionException e) {
+                failure = e
+            }
+        }
+        processor.completionTracker.onDisconnect()
+        processor.runningTests.onDisconnect()
+        thread.join(5000)
+
+        then:
+        !thread.alive
+        failure.message == "Test worker disconnected while processing test class SomeTest."
+        1 * resultProcessor.started({ it.className == "SomeTest" }, _)
+        1 * resultProcessor.failure(_, failure)
+        1 * resultProcessor.completed(_, { it.resultType == TestResult.ResultType.FAILURE })
+
+        when:
+        processor.processTestClass(test)
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "fails running tests of test class when the worker disconnects"() {
+        def resultProcessor = Mock(TestResultProcessor)
+        def tracker = new ForkingTestClassProcessor.RunningTestsTracker(resultProcessor)
+        def suite = new DefaultTestSuiteDescriptor("worker", "worker")
+        def testClass = new DefaultTestClassDescriptor("class", "SomeTest")
+        def completedMethod = new DefaultTestMethodDescriptor("method1", "SomeTest", "method1")
+        def runningMethod = new DefaultTestMethodDescriptor("method2", "SomeTest", "method2")
+        def failure = new RuntimeException()
+        tracker.started(suite, new TestStartEvent(0))
+        tracker.started(testClass, new TestStartEvent(0, "worker"))
+        tracker.started(completedMethod, new TestStartEvent(0, "class"))
+        tracker.completed("method1", new TestCompleteEvent(0))
+        tracker.started(runningMethod, new TestStartEvent(0, "class"))
+        tracker.onDisconnect()
+
+        when:
+        tracker.failRunningTests("SomeTest", failure)
+
+        then:
+        1 * resultProcessor.failure("method2", failure)
+
+        then:
+        1 * resultProcessor.completed("method2", { it.resultType == TestResult.ResultType.FAILURE })
+
+        then:
+        1 * resultProcessor.completed("class", { it.resultType == TestResult.ResultType.FAILURE })
+        0 * resultProcessor._
+    }
+
+    def "requests a reusable worker process when worker reuse is enabled"() {
+        def workerFactory = Mock(Factory)
+        def builder = Mock(WorkerProcessBuilder)
+        def workerProcess = Mock(WorkerProcess)
+        def connection = Mock(ObjectConnection)
+        def processor = new ForkingTestClassProcessor(workerFactory, Mock(WorkerTestClassProcessorFactory), Mock(JavaForkOptions), [], Mock(Action))
+        System.setProperty(ForkingTestClassProcessor.REUSE_WORKERS_PROPERTY, "true")
+
+        when:
+        processor.forkProcess()
+
+        then:
+        1 * workerFactory.create() >> builder
+        1 * builder.setReusable(true)
+        1 * builder.build() >> workerProcess
+        1 * workerProcess.start()
+        _ * workerProcess.getConnection() >> connection
+        1 * connection.addOutgoing(RemoteTestClassProcessor) >> Mock(RemoteTestClassProcessor)
+
+        cleanup:
+        System.clearProperty(ForkingTestClassProcessor.REUSE_WORKERS_PROPERTY)
+    }
 }
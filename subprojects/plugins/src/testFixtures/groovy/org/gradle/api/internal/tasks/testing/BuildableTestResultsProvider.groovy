@@ -20,11 +20,14 @@ import org.gradle.api.Action
 import org.gradle.api.internal.tasks.testing.junit.result.TestClassResult
 import org.gradle.api.internal.tasks.testing.junit.result.TestFailure
 import org.gradle.api.internal.tasks.testing.junit.result.TestMethodResult
+import org.gradle.api.internal.tasks.testing.junit.result.TestOutputStore
 import org.gradle.api.internal.tasks.testing.junit.result.TestResultsProvider
 import org.gradle.api.tasks.testing.TestOutputEvent
 import org.gradle.api.tasks.testing.TestResult
 import org.gradle.util.ConfigureUtil
 
+import java.util.zip.CRC32
+
 import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdErr
 import static org.gradle.api.tasks.testing.TestOutputEvent.Destination.StdOut
 
@@ -75,6 +78,25 @@ class BuildableTestResultsProvider implements TestResultsProvider {
         testClasses[classId]?.outputEvents?.find { it.testOutputEvent.destination == destination }
     }
 
+    long getOutputChecksum(long classId, TestOutputEvent.Destination destination) {
+        def checksum = new CRC32()
+        testClasses[classId]?.outputEvents?.each { BuildableOutputEvent event ->
+            if (event.testOutputEvent.destination == destination) {
+                checksum.update("${event.testId}:${event.testOutputEvent.message}".getBytes("UTF-8"))
+            }
+        }
+        checksum.value
+    }
+
+    void copyOutput(long classId, TestOutputStore.Writer writer, long targetClassId, Map<Long, Long> testIds) {
+        testClasses[classId]?.outputEvents?.each { BuildableOutputEvent event ->
+            def targetTestId = event.testId == 0 ? 0L : testIds[event.testId]
+            if (targetTestId != null) {
+                writer.onOutput(targetClassId, targetTestId, event.testOutputEvent)
+            }
+        }
+    }
+
     static class BuildableOutputEvent {
         long testId
         TestOutputEvent testOutputEvent
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.gradle.internal.concurrent.Stoppable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of keep-alive HTTP connections, which may be shared by several {@link HttpClientHelper} instances. Also collects some statistics about the requests
+ * made using the pool.
+ */
+public class HttpConnectionPool implements Stoppable {
+    /**
+     * The maximum number of connections to open to a single host. Defaults to the value of the {@code http.maxConnections} system property, or 5.
+     */
+    public static final String MAX_CONNECTIONS_PER_HOST_PROPERTY = "org.gradle.http.maxConnectionsPerHost";
+
+    /**
+     * The maximum number of connections to open to all hosts. Defaults to 50.
+     */
+    public static final String MAX_CONNECTIONS_PROPERTY = "org.gradle.http.maxTotalConnections";
+
+    private static final int DEFAULT_MAX_CONNECTIONS = 50;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpConnectionPool.class);
+
+    private final PoolingClientConnectionManager connectionManager;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong firstRequestTime = new AtomicLong();
+    private final AtomicLong lastReceiveTime = new AtomicLong();
+
+    public HttpConnectionPool() {
+        this(Integer.getInteger(MAX_CONNECTIONS_PER_HOST_PROPERTY, Integer.getInteger("http.maxConnections", 5)),
+                Integer.getInteger(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS));
+    }
+
+    public HttpConnectionPool(int maxConnectionsPerHost, int maxConnections) {
+        if (maxConnectionsPerHost < 1) {
+            throw new IllegalArgumentException("Not a valid number of connections per host: " + maxConnectionsPerHost);
+        }
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("Not a valid number of connections: " + maxConnections);
+        }
+        connectionManager = new PoolingClientConnectionManager(SchemeRegistryFactory.createSystemDefault()) {
+            @Override
+            protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schemeRegistry) {
+                return new CountingConnectionOperator(schemeRegistry);
+            }
+        };
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+        connectionManager.setMaxTotal(maxConnections);
+    }
+
+    public ClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return connectionManager.getDefaultMaxPerRoute();
+    }
+
+    public int getMaxConnections() {
+        return connectionManager.getMaxTotal();
+    }
+
+    /**
+     * Records that a request is about to be made using this pool.
+     */
+    public void requestStarted() {
+        requests.incrementAndGet();
+        firstRequestTime.compareAndSet(0, System.nanoTime());
+    }
+
+    /**
+     * Returns an entity which counts the bytes read from the given entity.
+     */
+    public HttpEntity countBytes(HttpEntity entity) {
+        return new HttpEntityWrapper(entity) {
+            @Override
+            public InputStream getContent() throws IOException {
+                return new CountingInputStream(super.getContent());
+            }
+        };
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Returns the number of requests that were made using a connection opened for an earlier request.
+     */
+    public long getReusedConnectionCount() {
+        return Math.max(0, requests.get() - connections.get());
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * Returns the rate at which response content has been received, from the start of the first request to the end of the most recent read.
+     */
+    public long getBytesPerSecond() {
+        long elapsed = lastReceiveTime.get() - firstRequestTime.get();
+        return elapsed <= 0 ? 0 : (long) (bytesReceived.get() * 1000000000.0 / elapsed);
+    }
+
+    public void stop() {
+        if (requests.get() > 0) {
+            LOGGER.info("Made {} HTTP requests using {} connections ({} reused), received {} bytes at {} bytes/s.", new Object[]{
+                    getRequestCount(), getConnectionCount(), getReusedConnectionCount(), getBytesReceived(), getBytesPerSecond()});
+        }
+        connectionManager.shutdown();
+    }
+
+    private class CountingConnectionOperator extends DefaultClientConnectionOperator {
+        CountingConnectionOperator(SchemeRegistry schemeRegistry) {
+            super(schemeRegistry);
+        }
+
+        @Override
+        public void openConnection(OperatedClientConnection conn, HttpHost target, InetAddress local, HttpContext context, HttpParams params) throws IOException {
+            connections.incrementAndGet();
+            super.openConnection(conn, target, local, context, params);
+        }
+    }
+
+    private class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                received(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                received(count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long count = super.skip(n);
+            if (count > 0) {
+                received(count);
+            }
+            return count;
+        }
+
+        private void received(long count) {
+            bytesReceived.addAndGet(count);
+            lastReceiveTime.set(System.nanoTime());
+        }
+    }
+}
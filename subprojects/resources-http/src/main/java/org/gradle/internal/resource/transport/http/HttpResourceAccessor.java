@@ -38,7 +38,13 @@ public class HttpResourceAccessor implements ExternalResourceAccessor {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpResourceAccessor.class);
     private final HttpClientHelper http;
 
-    private final List<ExternalResource> openResources = new ArrayList<ExternalResource>();
+    // Tracked per thread, so that concurrent downloads do not close each other's resources
+    private final ThreadLocal<List<ExternalResource>> openResources = new ThreadLocal<List<ExternalResource>>() {
+        @Override
+        protected List<ExternalResource> initialValue() {
+            return new ArrayList<ExternalResource>();
+        }
+    };
 
     public HttpResourceAccessor(HttpClientHelper http) {
         this.http = http;
@@ -89,12 +95,13 @@ public class HttpResourceAccessor implements ExternalResourceAccessor {
     }
 
     private HttpResponseResource recordOpenGetResource(HttpResponseResource httpResource) {
-        openResources.add(httpResource);
+        openResources.get().add(httpResource);
         return httpResource;
     }
 
     private void abortOpenResources() {
-        for (ExternalResource openResource : openResources) {
+        List<ExternalResource> openResources = this.openResources.get();
+        for (ExternalResource openResource : new ArrayList<ExternalResource>(openResources)) {
             LOGGER.warn("Forcing close on abandoned resource: " + openResource);
             try {
                 openResource.close();
@@ -132,7 +139,7 @@ public class HttpResourceAccessor implements ExternalResourceAccessor {
             @Override
             public void close() throws IOException {
                 super.close();
-                HttpResourceAccessor.this.openResources.remove(this);
+                HttpResourceAccessor.this.openResources.get().remove(this);
             }
         };
     }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpHandler
+import com.sun.net.httpserver.HttpServer
+import org.apache.http.util.EntityUtils
+import org.gradle.internal.resource.PasswordCredentials
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class HttpConnectionPoolTest extends Specification {
+    final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+    final pool = new HttpConnectionPool(4, 10)
+
+    def setup() {
+        server.createContext("/", new HttpHandler() {
+            void handle(HttpExchange exchange) {
+                def content = ("x" * 1000).bytes
+                exchange.sendResponseHeaders(200, content.length)
+                exchange.responseBody.write(content)
+                exchange.close()
+            }
+        })
+        server.executor = Executors.newCachedThreadPool()
+        server.start()
+    }
+
+    def cleanup() {
+        pool.stop()
+        server.stop(0)
+        server.executor.shutdownNow()
+    }
+
+    def "reuses connections for sequential requests"() {
+        def http = new HttpClientHelper(httpSettings, pool)
+
+        when:
+        5.times {
+            EntityUtils.toString(http.performGet(uri("file${it}")).entity)
+        }
+
+        then:
+        pool.requestCount == 5
+        pool.connectionCount == 1
+        pool.reusedConnectionCount == 4
+        pool.bytesReceived == 5000
+    }
+
+    def "shares connections between clients"() {
+        def http1 = new HttpClientHelper(httpSettings, pool)
+        def http2 = new HttpClientHelper(httpSettings, pool)
+
+        when:
+        EntityUtils.consume(http1.performGet(uri("file1")).entity)
+        EntityUtils.consume(http2.performGet(uri("file2")).entity)
+
+        then:
+        pool.requestCount == 2
+        pool.connectionCount == 1
+    }
+
+    def "makes concurrent requests using no more than the maximum number of connections per host"() {
+        def http = new HttpClientHelper(httpSettings, pool)
+        def executor = Executors.newFixedThreadPool(8)
+
+        when:
+        def results = executor.invokeAll((1..40).collect { i ->
+            { -> EntityUtils.toString(http.performGet(uri("file${i}")).entity) } as Callable<String>
+        })
+
+        then:
+        results*.get().every { it.length() == 1000 }
+        pool.requestCount == 40
+        pool.connectionCount <= 4
+        pool.reusedConnectionCount >= 36
+        pool.bytesReceived == 40000
+        pool.bytesPerSecond > 0
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "limits the total number of connections independently of the number of connections per host"() {
+        when:
+        def other = new HttpConnectionPool(2, 30)
+
+        then:
+        other.maxConnectionsPerHost == 2
+        other.maxConnections == 30
+
+        cleanup:
+        other?.stop()
+    }
+
+    private String uri(String path) {
+        return "http://localhost:${server.address.port}/${path}"
+    }
+
+    private HttpSettings getHttpSettings() {
+        return Stub(HttpSettings) {
+            getCredentials() >> new PasswordCredentials()
+            getProxySettings() >> Stub(HttpProxySettings)
+        }
+    }
+}